@@ -60,7 +60,6 @@
 import org.scijava.plugin.event.PluginsAddedEvent;
 import org.scijava.plugin.event.PluginsRemovedEvent;
 import org.scijava.service.Service;
-import org.scijava.util.ListUtils;
 
 /**
  * Default service for working with {@link Command}s. Available commands are
@@ -90,6 +89,13 @@ public class DefaultCommandService extends AbstractPTService<Command> implements
 	/** Mapping from vanilla plugin metadata to command metadata objects. */
 	private HashMap<PluginInfo<?>, CommandInfo> commandMap;
 
+	/**
+	 * Mapping from class names to the commands of that class, in order of
+	 * registration. Kept up to date as commands are added and removed, so that
+	 * commands can be looked up by class without scanning every plugin.
+	 */
+	private HashMap<String, List<CommandInfo>> classIndex;
+
 	// -- CommandService methods --
 
 	@Override
@@ -131,31 +137,32 @@ public <CT extends Command> List<CommandInfo> getCommandsOfType(
 	public <C extends Command> CommandInfo getCommand(
 		final Class<C> commandClass)
 	{
-		return ListUtils.first(getCommandsOfClass(commandClass));
+		return getCommand(commandClass.getName());
 	}
 
 	@Override
 	public CommandInfo getCommand(final String className) {
-		return ListUtils.first(getCommandsOfClass(className));
+		synchronized (classIndex) {
+			final List<CommandInfo> commands = classIndex.get(className);
+			return commands == null ? null : commands.get(0);
+		}
 	}
 
 	@Override
 	public <C extends Command> List<CommandInfo> getCommandsOfClass(
 		final Class<C> commandClass)
 	{
-		final List<PluginInfo<Command>> plugins =
-			pluginService.getPluginsOfClass(commandClass, Command.class);
-		final List<CommandInfo> commands = getCommands(plugins);
-		return commands;
+		return getCommandsOfClass(commandClass.getName());
 	}
 
 	@Override
 	public List<CommandInfo> getCommandsOfClass(final String className)
 	{
-		final List<PluginInfo<SciJavaPlugin>> plugins =
-			pluginService.getPluginsOfClass(className);
-		final List<CommandInfo> commands = getCommandsUnknown(downcast(plugins));
-		return commands;
+		synchronized (classIndex) {
+			final List<CommandInfo> commands = classIndex.get(className);
+			if (commands == null) return new ArrayList<CommandInfo>();
+			return new ArrayList<CommandInfo>(commands);
+		}
 	}
 
 	@Override
@@ -242,6 +249,7 @@ public Class<Command> getPluginType() {
 	@Override
 	public void initialize() {
 		commandMap = new HashMap<PluginInfo<?>, CommandInfo>();
+		classIndex = new HashMap<String, List<CommandInfo>>();
 
 		// inform the module service of available commands
 		final List<PluginInfo<Command>> plugins =
@@ -306,6 +314,7 @@ private void addCommands(final List<PluginInfo<Command>> plugins) {
 
 			// record association between plugin info and derived command info
 			commandMap.put(info, commandInfo);
+			index(info.getClassName(), commandInfo);
 		}
 
 		// add extracted commands to the module service
@@ -316,15 +325,39 @@ private void addCommands(final List<PluginInfo<Command>> plugins) {
 	private void removeCommands(final List<PluginInfo<?>> plugins) {
 		final List<CommandInfo> commands = getCommandsUnknown(plugins);
 
-		for (final CommandInfo info : commands) {
+		for (final PluginInfo<?> info : plugins) {
 			// clear association between plugin info and derived command info
-			commandMap.remove(info);
+			final CommandInfo commandInfo = commandMap.remove(info);
+			if (commandInfo != null) unindex(info.getClassName(), commandInfo);
 		}
 
 		// remove extracted commands from the module service
 		moduleService.removeModules(commands);
 	}
 
+	/** Adds a command to the class name index. */
+	private void index(final String className, final CommandInfo command) {
+		synchronized (classIndex) {
+			List<CommandInfo> commands = classIndex.get(className);
+			if (commands == null) {
+				// NB - most classes back exactly one command
+				commands = new ArrayList<CommandInfo>(1);
+				classIndex.put(className, commands);
+			}
+			commands.add(command);
+		}
+	}
+
+	/** Removes a command from the class name index. */
+	private void unindex(final String className, final CommandInfo command) {
+		synchronized (classIndex) {
+			final List<CommandInfo> commands = classIndex.get(className);
+			if (commands == null) return;
+			commands.remove(command);
+			if (commands.isEmpty()) classIndex.remove(className);
+		}
+	}
+
 	/**
 	 * Gets the command corresponding to each plugin on the given list. The
 	 * linkage is obtained from the {@link #commandMap}.
@@ -37,7 +37,9 @@
 
 import imagej.module.event.ModulesAddedEvent;
 import imagej.module.event.ModulesRemovedEvent;
+import imagej.module.event.ModulesUpdatedEvent;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -48,6 +50,7 @@
 
 import org.scijava.MenuPath;
 import org.scijava.Priority;
+import org.scijava.event.EventHandler;
 import org.scijava.event.EventService;
 import org.scijava.input.Accelerator;
 import org.scijava.log.LogService;
@@ -82,6 +85,16 @@ public class DefaultModuleService extends AbstractService implements
 	/** Index of registered modules. */
 	private ModuleIndex moduleIndex;
 
+	/**
+	 * Registered modules by the accelerator of their menu leaf, in order of
+	 * registration. Kept up to date as modules are added, removed and updated,
+	 * so that accelerators can be resolved without scanning every module.
+	 */
+	private HashMap<Accelerator, List<ModuleInfo>> acceleratorIndex;
+
+	/** The accelerator each module is indexed under. */
+	private HashMap<ModuleInfo, Accelerator> indexedAccelerators;
+
 	// -- ModuleService methods --
 
 	@Override
@@ -92,6 +105,7 @@ public ModuleIndex getIndex() {
 	@Override
 	public void addModule(final ModuleInfo module) {
 		if (moduleIndex.add(module)) {
+			indexAccelerator(module);
 			eventService.publish(new ModulesAddedEvent(module));
 		}
 	}
@@ -99,6 +113,7 @@ public void addModule(final ModuleInfo module) {
 	@Override
 	public void removeModule(final ModuleInfo module) {
 		if (moduleIndex.remove(module)) {
+			unindexAccelerator(module);
 			eventService.publish(new ModulesRemovedEvent(module));
 		}
 	}
@@ -106,6 +121,9 @@ public void removeModule(final ModuleInfo module) {
 	@Override
 	public void addModules(final Collection<? extends ModuleInfo> modules) {
 		if (moduleIndex.addAll(modules)) {
+			for (final ModuleInfo module : modules) {
+				indexAccelerator(module);
+			}
 			eventService.publish(new ModulesAddedEvent(modules));
 		}
 	}
@@ -113,6 +131,9 @@ public void addModules(final Collection<? extends ModuleInfo> modules) {
 	@Override
 	public void removeModules(final Collection<? extends ModuleInfo> modules) {
 		if (moduleIndex.removeAll(modules)) {
+			for (final ModuleInfo module : modules) {
+				unindexAccelerator(module);
+			}
 			eventService.publish(new ModulesRemovedEvent(modules));
 		}
 	}
@@ -124,12 +145,10 @@ public List<ModuleInfo> getModules() {
 
 	@Override
 	public ModuleInfo getModuleForAccelerator(final Accelerator acc) {
-		for (final ModuleInfo info : getModules()) {
-			final MenuPath menuPath = info.getMenuPath();
-			if (menuPath == null || menuPath.isEmpty()) continue;
-			if (acc.equals(menuPath.getLeaf().getAccelerator())) return info;
+		synchronized (acceleratorIndex) {
+			final List<ModuleInfo> modules = acceleratorIndex.get(acc);
+			return modules == null ? null : modules.get(0);
 		}
-		return null;
 	}
 
 	@Override
@@ -233,10 +252,63 @@ public <T> ModuleItem<T> getSingleOutput(final Module module,
 	@Override
 	public void initialize() {
 		moduleIndex = new ModuleIndex();
+		acceleratorIndex = new HashMap<Accelerator, List<ModuleInfo>>();
+		indexedAccelerators = new HashMap<ModuleInfo, Accelerator>();
+	}
+
+	// -- Event handlers --
+
+	/** Reindexes modules whose menu paths (and accelerators) may have changed. */
+	@EventHandler
+	protected void onEvent(final ModulesUpdatedEvent event) {
+		for (final ModuleInfo module : event.getItems()) {
+			synchronized (acceleratorIndex) {
+				if (!indexedAccelerators.containsKey(module)) continue;
+				unindexAccelerator(module);
+				indexAccelerator(module);
+			}
+		}
 	}
 
 	// -- Helper methods --
 
+	/** Returns the accelerator of the given module's menu leaf, if any. */
+	private Accelerator getAccelerator(final ModuleInfo module) {
+		final MenuPath menuPath = module.getMenuPath();
+		if (menuPath == null || menuPath.isEmpty()) return null;
+		return menuPath.getLeaf().getAccelerator();
+	}
+
+	/** Adds a module to the accelerator index. */
+	private void indexAccelerator(final ModuleInfo module) {
+		synchronized (acceleratorIndex) {
+			if (indexedAccelerators.containsKey(module)) return;
+			final Accelerator acc = getAccelerator(module);
+			indexedAccelerators.put(module, acc);
+			if (acc == null) return;
+			List<ModuleInfo> modules = acceleratorIndex.get(acc);
+			if (modules == null) {
+				// NB - accelerators are rarely shared
+				modules = new ArrayList<ModuleInfo>(1);
+				acceleratorIndex.put(acc, modules);
+			}
+			modules.add(module);
+		}
+	}
+
+	/** Removes a module from the accelerator index. */
+	private void unindexAccelerator(final ModuleInfo module) {
+		synchronized (acceleratorIndex) {
+			if (!indexedAccelerators.containsKey(module)) return;
+			final Accelerator acc = indexedAccelerators.remove(module);
+			if (acc == null) return;
+			final List<ModuleInfo> modules = acceleratorIndex.get(acc);
+			if (modules == null) return;
+			modules.remove(module);
+			if (modules.isEmpty()) acceleratorIndex.remove(acc);
+		}
+	}
+
 	/** Converts the given list of name/value pairs into an input map. */
 	private Map<String, Object> createMap(final Object[] values) {
 		if (values == null || values.length == 0) return null;
@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Utility methods for splitting work into chunks and running those chunks
+ * concurrently on the {@link ThreadService} pool.
+ * 
+ * @author Barry DeZonia
+ */
+public final class ParallelUtils {
+
+	private ParallelUtils() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Returns the number of tasks worth creating for a job of the given size.
+	 * The count never exceeds the number of available processors and each task
+	 * is given at least minChunk units of work.
+	 * 
+	 * @param workSize The total number of work units (pixels, planes, rows...)
+	 * @param minChunk The smallest number of units worth handing to a task
+	 */
+	public static int taskCount(final long workSize, final long minChunk) {
+		final int procs = Runtime.getRuntime().availableProcessors();
+		if (workSize <= 0) return 1;
+		final long byChunk = Math.max(1, workSize / Math.max(1, minChunk));
+		return (int) Math.max(1, Math.min(procs, byChunk));
+	}
+
+	/**
+	 * Returns the first work unit of the given task when workSize units are
+	 * divided as evenly as possible between numTasks tasks.
+	 */
+	public static long chunkStart(final long workSize, final int numTasks,
+		final int task)
+	{
+		final long base = workSize / numTasks;
+		final long extra = workSize % numTasks;
+		return task * base + Math.min(task, extra);
+	}
+
+	/**
+	 * Returns the number of work units given to the given task when workSize
+	 * units are divided as evenly as possible between numTasks tasks.
+	 */
+	public static long chunkSize(final long workSize, final int numTasks,
+		final int task)
+	{
+		return chunkStart(workSize, numTasks, task + 1) -
+			chunkStart(workSize, numTasks, task);
+	}
+
+	/**
+	 * Runs a set of tasks and waits for all of them to complete. Tasks are run
+	 * on the given {@link ThreadService} when there is more than one of them and
+	 * a service is available; otherwise they are run on the calling thread.
+	 * 
+	 * @return The results of the tasks, in the same order as the tasks
+	 * @throws IllegalStateException if a task fails or the calling thread is
+	 *           interrupted while waiting
+	 */
+	public static <T> List<T> invokeAll(final ThreadService threadService,
+		final List<? extends Callable<T>> tasks)
+	{
+		final List<T> results = new ArrayList<T>(tasks.size());
+		if (threadService == null || tasks.size() == 1) {
+			for (final Callable<T> task : tasks) {
+				try {
+					results.add(task.call());
+				}
+				catch (final RuntimeException e) {
+					throw e;
+				}
+				catch (final Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return results;
+		}
+		final List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		for (final Callable<T> task : tasks) {
+			futures.add(threadService.run(task));
+		}
+		try {
+			for (final Future<T> future : futures) {
+				results.add(future.get());
+			}
+		}
+		catch (final InterruptedException e) {
+			cancelAll(futures);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for tasks", e);
+		}
+		catch (final ExecutionException e) {
+			cancelAll(futures);
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+		return results;
+	}
+
+	// -- Helper methods --
+
+	private static void cancelAll(final List<? extends Future<?>> futures) {
+		for (final Future<?> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+}
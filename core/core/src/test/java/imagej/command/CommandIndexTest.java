@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import imagej.module.ModuleInfo;
+import imagej.module.ModuleService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.MenuPath;
+import org.scijava.input.Accelerator;
+import org.scijava.plugin.PluginInfo;
+import org.scijava.plugin.PluginService;
+
+/**
+ * Tests that the indexed command and accelerator lookups of
+ * {@link CommandService} and {@link ModuleService} agree with the linear scans
+ * they replace.
+ * 
+ * @author Barry DeZonia
+ */
+public class CommandIndexTest {
+
+	private static final int COMMAND_COUNT = 100;
+
+	private static final String KEYS = "abcdefghijklmnopqrstuvwxyz";
+
+	private Context context;
+	private PluginService pluginService;
+	private CommandService commandService;
+	private ModuleService moduleService;
+	private List<PluginInfo<?>> infos;
+	private List<Accelerator> accelerators;
+
+	@Before
+	public void setUp() {
+		context = new Context(CommandService.class);
+		pluginService = context.getService(PluginService.class);
+		commandService = context.getService(CommandService.class);
+		moduleService = context.getService(ModuleService.class);
+
+		infos = new ArrayList<PluginInfo<?>>();
+		accelerators = new ArrayList<Accelerator>();
+		for (int i = 0; i < COMMAND_COUNT; i++) {
+			final CommandInfo info = new CommandInfo(className(i));
+			if (i < KEYS.length()) {
+				final MenuPath menuPath = new MenuPath("Index>Command" + i);
+				final Accelerator acc =
+					Accelerator.create("ctrl alt " + KEYS.charAt(i));
+				menuPath.getLeaf().setAccelerator(acc);
+				info.setMenuPath(menuPath);
+				accelerators.add(acc);
+			}
+			infos.add(info);
+		}
+		pluginService.addPlugins(infos);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testCommandLookupMatchesScan() {
+		for (int i = 0; i < COMMAND_COUNT; i++) {
+			final List<CommandInfo> scanned = scanForClass(className(i));
+			assertEquals(1, scanned.size());
+			assertSame(scanned.get(0), commandService.getCommand(className(i)));
+			assertEquals(scanned, commandService.getCommandsOfClass(className(i)));
+		}
+		assertNull(commandService.getCommand("imagej.command.index.NoSuchCommand"));
+		assertTrue(commandService.getCommandsOfClass(
+			"imagej.command.index.NoSuchCommand").isEmpty());
+	}
+
+	@Test
+	public void testAcceleratorLookupMatchesScan() {
+		for (final Accelerator acc : accelerators) {
+			final ModuleInfo scanned = scanForAccelerator(acc);
+			assertNotNull(scanned);
+			assertSame(scanned, moduleService.getModuleForAccelerator(acc));
+		}
+		final Accelerator unused = Accelerator.create("ctrl alt shift F12");
+		assertNull(scanForAccelerator(unused));
+		assertNull(moduleService.getModuleForAccelerator(unused));
+	}
+
+	@Test
+	public void testRemovedCommandsAreUnindexed() {
+		final List<PluginInfo<?>> removed = infos.subList(0, 2);
+		pluginService.removePlugins(new ArrayList<PluginInfo<?>>(removed));
+		for (int i = 0; i < 2; i++) {
+			assertTrue(scanForClass(className(i)).isEmpty());
+			assertNull(commandService.getCommand(className(i)));
+			assertNull(scanForAccelerator(accelerators.get(i)));
+			assertNull(moduleService.getModuleForAccelerator(accelerators.get(i)));
+		}
+		assertSame(scanForClass(className(2)).get(0), commandService
+			.getCommand(className(2)));
+	}
+
+	// -- helpers --
+
+	private static String className(final int i) {
+		return "imagej.command.index.Command" + i;
+	}
+
+	/**
+	 * Finds the commands of a class the way getCommandsOfClass used to: by
+	 * scanning every command plugin and mapping it to its CommandInfo.
+	 */
+	private List<CommandInfo> scanForClass(final String className) {
+		final List<CommandInfo> commands = new ArrayList<CommandInfo>();
+		for (final CommandInfo info : commandService.getCommands()) {
+			if (className.equals(info.getClassName())) commands.add(info);
+		}
+		return commands;
+	}
+
+	/** The linear scan previously used by getModuleForAccelerator. */
+	private ModuleInfo scanForAccelerator(final Accelerator acc) {
+		for (final ModuleInfo info : moduleService.getModules()) {
+			final MenuPath menuPath = info.getMenuPath();
+			if (menuPath == null || menuPath.isEmpty()) continue;
+			if (acc.equals(menuPath.getLeaf().getAccelerator())) return info;
+		}
+		return null;
+	}
+
+}
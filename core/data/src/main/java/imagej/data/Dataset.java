@@ -158,6 +158,15 @@ public interface Dataset extends Data, Metadata {
 	// TODO - move into Imglib
 	void setAxes(AxisType[] axes);
 
+	/**
+	 * Informs interested parties that the pixels of a single plane of the
+	 * dataset have changed. Listeners that cache per-plane information can then
+	 * discard just that plane's information.
+	 * 
+	 * @see imagej.data.event.DatasetUpdatedEvent#getPlaneIndex()
+	 */
+	void update(int planeNum);
+
 	// -- Data methods --
 
 	/**
@@ -98,6 +98,23 @@ Dataset create(long[] dims, String name, AxisType[] axes, int bitsPerPixel,
 	<T extends RealType<T> & NativeType<T>> Dataset create(T type, long[] dims,
 		String name, AxisType[] axes);
 
+	/**
+	 * Creates a new disk-backed dataset. Its planes are kept in a memory-mapped
+	 * temporary file and only a bounded cache of recently used planes is held in
+	 * memory, so the dataset may be larger than the available memory. Modified
+	 * planes are written back to the file when they leave the cache. Types stored
+	 * as bits are kept in memory.
+	 * 
+	 * @param <T> The type of the dataset.
+	 * @param type The type of the dataset.
+	 * @param dims The dataset's dimensional extents.
+	 * @param name The dataset's name.
+	 * @param axes The dataset's dimensional axis labels.
+	 * @return The newly created dataset.
+	 */
+	<T extends RealType<T> & NativeType<T>> Dataset createDiskBacked(T type,
+		long[] dims, String name, AxisType[] axes);
+
 	/**
 	 * Creates a new dataset using the provided {@link ImgFactory}.
 	 * 
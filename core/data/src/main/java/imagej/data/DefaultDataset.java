@@ -35,12 +35,20 @@
 
 package imagej.data;
 
+import imagej.data.cow.PlaneShare;
+import imagej.data.cow.SharedPlane;
+import imagej.data.cow.SharedPlanes;
+import imagej.data.disk.DiskPlanarImg;
+import imagej.data.disk.DiskPlane;
 import imagej.data.event.DatasetCreatedEvent;
 import imagej.data.event.DatasetDeletedEvent;
 import imagej.data.event.DatasetRGBChangedEvent;
 import imagej.data.event.DatasetRestructuredEvent;
 import imagej.data.event.DatasetTypeChangedEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+
+import java.lang.reflect.Array;
+
 import net.imglib2.Cursor;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
@@ -104,6 +112,13 @@ protected void register() {
 	@Override
 	protected void delete() {
 		publish(new DatasetDeletedEvent(this));
+		// NB - the backing file of a disk-backed image is no longer needed
+		final Img<?> img = imgPlus.getImg();
+		if (img instanceof DiskPlanarImg) {
+			((DiskPlanarImg<?, ?>) img).getStore().dispose();
+		}
+		// NB - planes still shared with other Datasets need no longer be copied
+		SharedPlanes.release(img);
 	}
 
 	// -- Dataset methods --
@@ -174,6 +189,10 @@ public Object getPlane(final int planeNumber) {
 	 * a reference to the actual data cannot be obtained depends upon the value of
 	 * the input copyOK boolean. If copyOK is true a copy of the data is created
 	 * and returned. If copyOK is false null is returned.
+	 * <p>
+	 * NB - the planes of disk-backed images are never returned by reference:
+	 * the array of a plane becomes stale once the plane is evicted from memory.
+	 * </p>
 	 */
 	@Override
 	public Object getPlane(final int planeNumber, final boolean copyOK) {
@@ -181,8 +200,9 @@ public Object getPlane(final int planeNumber, final boolean copyOK) {
 		if (img instanceof PlanarAccess) {
 			final PlanarAccess<?> planarAccess = (PlanarAccess<?>) img;
 			final Object plane = planarAccess.getPlane(planeNumber);
-			if (plane instanceof ArrayDataAccess) return ((ArrayDataAccess<?>) plane)
-				.getCurrentStorageArray();
+			if (plane instanceof ArrayDataAccess && !(plane instanceof DiskPlane)) {
+				return ((ArrayDataAccess<?>) plane).getCurrentStorageArray();
+			}
 		}
 		if (copyOK) return copyOfPlane(planeNumber);
 		return null;
@@ -202,8 +222,34 @@ public boolean setPlaneSilently(final int planeNum, final Object newPlane) {
 		final PlanarAccess planarAccess = (PlanarAccess) img;
 		final ArrayDataAccess<?> arrayAccess =
 			(ArrayDataAccess<?>) planarAccess.getPlane(planeNum);
-		final Object currPlane = arrayAccess.getCurrentStorageArray();
-		if (newPlane == currPlane) return false;
+		final PlaneShare share = (arrayAccess instanceof SharedPlane) ?
+			((SharedPlane) arrayAccess).getShare() : null;
+		if (share != null) {
+			// NB - the caller may have written to the shared array itself, so the
+			// plane detaches from the share and is reported as changed
+			if (newPlane == share.getArray()) {
+				arrayAccess.getCurrentStorageArray();
+				return true;
+			}
+			// NB - otherwise the shared plane is replaced without copying it
+			((SharedPlane) arrayAccess).release();
+		}
+		else if (arrayAccess instanceof DiskPlane) {
+			// NB - a disk-backed plane keeps its own copy, as the given array would
+			// go stale once the plane is evicted
+			final DiskPlane diskPlane = (DiskPlane) arrayAccess;
+			if (newPlane == diskPlane.getArray()) return false;
+			final int length = Array.getLength(newPlane);
+			final Object copy =
+				Array.newInstance(newPlane.getClass().getComponentType(), length);
+			System.arraycopy(newPlane, 0, copy, 0, length);
+			diskPlane.assign(copy);
+			return true;
+		}
+		else {
+			final Object currPlane = arrayAccess.getCurrentStorageArray();
+			if (newPlane == currPlane) return false;
+		}
 		final ArrayDataAccess<?> array = createArrayDataAccess(newPlane);
 		planarAccess.setPlane(planeNum, array);
 		return true;
@@ -212,11 +258,17 @@ public boolean setPlaneSilently(final int planeNum, final Object newPlane) {
 	@Override
 	public boolean setPlane(final int planeNum, final Object newPlane) {
 		if (setPlaneSilently(planeNum, newPlane)) {
-			update(false);
+			update(planeNum);
 			return true;
 		}
 		return false;
 	}
+
+	@Override
+	public void update(final int planeNum) {
+		setDirty(true);
+		publish(new DatasetUpdatedEvent(this, planeNum));
+	}
 		
 	@Override
 	public RealType<?> getType() {
@@ -253,7 +305,16 @@ public String getTypeLabelLong() {
 
 	@Override
 	public Dataset duplicate() {
-		ImgPlus<? extends RealType<?>> newImgPlus = imgPlus.copy();
+		// NB - in-memory planar data is shared copy-on-write rather than copied
+		ImgPlus<? extends RealType<?>> newImgPlus = sharedCopy();
+		if (newImgPlus == null) newImgPlus = imgPlus.copy();
+		else {
+			// NB - planes handed out by reference before the sharing (e.g. to legacy
+			// ImageJ) still point at the now shared arrays. Reporting the planes as
+			// updated gets them handed out again, detached from the copy. The pixels
+			// are unchanged, so the Dataset is not made dirty.
+			publish(new DatasetUpdatedEvent(this, false));
+		}
 		return new DefaultDataset(getContext(), newImgPlus);
 		// OLD WAY
 		//final Dataset d = duplicateBlank();
@@ -610,6 +671,16 @@ public double getBytesOfInfo() {
 
 	// -- Helper methods --
 
+	/**
+	 * Returns a copy-on-write duplicate of the ImgPlus, or null if its planes
+	 * cannot be shared.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private ImgPlus<? extends RealType<?>> sharedCopy() {
+		if (!SharedPlanes.isSupported(imgPlus)) return null;
+		return SharedPlanes.duplicate((ImgPlus) imgPlus);
+	}
+
 	/**
 	 * Wraps the given primitive array in an {@link ArrayDataAccess} object of the
 	 * proper type.
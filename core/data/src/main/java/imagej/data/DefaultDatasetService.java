@@ -36,6 +36,7 @@
 package imagej.data;
 
 import imagej.data.display.DataView;
+import imagej.data.disk.DiskPlanarImgFactory;
 import imagej.data.display.ImageDisplay;
 
 import java.util.ArrayList;
@@ -153,6 +154,14 @@ public <T extends RealType<T> & NativeType<T>> Dataset create(
 		return create(imgFactory, type, dims, name, axes);
 	}
 
+	@Override
+	public <T extends RealType<T> & NativeType<T>> Dataset createDiskBacked(
+		final T type, final long[] dims, final String name, final AxisType[] axes)
+	{
+		final DiskPlanarImgFactory<T> imgFactory = new DiskPlanarImgFactory<T>();
+		return create(imgFactory, type, dims, name, axes);
+	}
+
 	@Override
 	public <T extends RealType<T>> Dataset create(
 		final ImgFactory<T> factory, final T type, final long[] dims,
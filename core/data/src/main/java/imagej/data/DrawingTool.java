@@ -291,6 +291,36 @@ public void drawPixel(final long u, final long v) {
 		dataset.setDirty(true);
 	}
 
+	/**
+	 * Draws the run of pixels from u1 to u2 (inclusive) along row v of the
+	 * current UV plane. Equivalent to calling drawPixel() on each of them but
+	 * moves the accessor along the row rather than repositioning it per pixel.
+	 */
+	public void drawSpan(final long u1, final long u2, final long v) {
+		if (v < 0) return;
+		if (v > maxV) return;
+		final long uStart = Math.max(u1, 0);
+		final long uEnd = Math.min(u2, maxU);
+		if (uStart > uEnd) return;
+		accessor.setPosition(v, vAxis);
+		// draw in single channel mode
+		if (preferredChannel >= 0) {
+			final double value = intensity * channels.getChannelValue(preferredChannel);
+			if (channelAxis != -1) accessor.setPosition(preferredChannel, channelAxis);
+			fillRun(uStart, uEnd, value);
+		}
+		else { // draw across all channels
+			long numChannels = 1;
+			if (channelAxis != -1) numChannels = dataset.dimension(channelAxis);
+			for (long c = 0; c < numChannels; c++) {
+				final double value = intensity * channels.getChannelValue(c);
+				if (channelAxis != -1) accessor.setPosition(c, channelAxis);
+				fillRun(uStart, uEnd, value);
+			}
+		}
+		dataset.setDirty(true);
+	}
+
 	/**
 	 * Draws a dot in the current UV plane at specified UV coordinates. The size
 	 * of the dot is determined by the current line width.
@@ -476,6 +506,15 @@ public void drawText(final long anchorU, final long anchorV,
 
 	// -- private helpers --
 
+	/** Sets the pixels from uStart to uEnd of the accessor's row to a value. */
+	private void fillRun(final long uStart, final long uEnd, final double value) {
+		accessor.setPosition(uStart, uAxis);
+		for (long u = uStart; u <= uEnd; u++) {
+			accessor.get().setReal(value);
+			accessor.fwd(uAxis);
+		}
+	}
+
 	private void initAxisVariables() {
 		channelAxis = dataset.getAxisIndex(Axes.CHANNEL);
 		uAxis = -1;
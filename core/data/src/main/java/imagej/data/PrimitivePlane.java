@@ -0,0 +1,583 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import imagej.data.cow.PlaneShare;
+import imagej.data.cow.SharedPlane;
+import imagej.data.cow.SharedPlanes;
+import imagej.data.disk.DiskPlane;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * PrimitivePlane gives fast, type aware access to the primitive array that
+ * backs one plane of a planar {@link Dataset}. It exists so that bulk
+ * operations can avoid a virtual {@link RealType} call per pixel: the element
+ * loops of the bulk methods are specialized for each supported array type.
+ * <p>
+ * Values are exchanged as doubles. Values written into integer planes are
+ * rounded and clamped to the range of the type.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public abstract class PrimitivePlane {
+
+	// -- static helpers --
+
+	/**
+	 * Wraps a primitive array holding pixels of the given type. Returns null if
+	 * the combination of array and type is not supported.
+	 */
+	public static PrimitivePlane wrap(final Object array, final RealType<?> type)
+	{
+		if (array instanceof byte[]) {
+			final byte[] data = (byte[]) array;
+			if (type instanceof UnsignedByteType) return new UnsignedBytePlane(data);
+			if (type instanceof ByteType) return new BytePlane(data);
+		}
+		else if (array instanceof short[]) {
+			final short[] data = (short[]) array;
+			if (type instanceof UnsignedShortType) return new UnsignedShortPlane(data);
+			if (type instanceof ShortType) return new ShortPlane(data);
+		}
+		else if (array instanceof int[]) {
+			final int[] data = (int[]) array;
+			if (type instanceof UnsignedIntType) return new UnsignedIntPlane(data);
+			if (type instanceof IntType) return new IntPlane(data);
+		}
+		else if (array instanceof float[]) {
+			if (type instanceof FloatType) return new FloatPlane((float[]) array);
+		}
+		else if (array instanceof double[]) {
+			if (type instanceof DoubleType) return new DoublePlane((double[]) array);
+		}
+		return null;
+	}
+
+	/**
+	 * Wraps the given plane of a Dataset by reference. Returns null if the
+	 * Dataset is not planar, is disk-backed (see
+	 * {@link Dataset#getPlane(int, boolean)}) or its type is not supported.
+	 */
+	public static PrimitivePlane wrap(final Dataset ds, final int planeNum) {
+		final Object array = ds.getPlane(planeNum, false);
+		if (array == null) return null;
+		return wrap(array, ds.getType());
+	}
+
+	/**
+	 * Wraps the given plane of a Dataset for reading. Unlike
+	 * {@link #wrap(Dataset, int)} this does not give a plane that is shared
+	 * copy-on-write its own copy, so the result must not be written to or kept
+	 * beyond the read at hand. Returns null when wrap() would.
+	 */
+	public static PrimitivePlane wrapForReading(final Dataset ds,
+		final int planeNum)
+	{
+		final Object array = readPlane(ds, planeNum);
+		if (array == null) return null;
+		return wrap(array, ds.getType());
+	}
+
+	/**
+	 * Returns the primitive array of the given plane of a Dataset for reading
+	 * only. Unlike {@link Dataset#getPlane(int, boolean)} this does not give a
+	 * plane that is shared copy-on-write its own copy. Returns null where
+	 * getPlane(planeNum, false) would.
+	 */
+	public static Object readPlane(final Dataset ds, final int planeNum) {
+		final Object shared = SharedPlanes.peek(ds.getImgPlus(), planeNum);
+		if (shared != null) return shared;
+		return ds.getPlane(planeNum, false);
+	}
+
+	/**
+	 * Returns the primitive array of a plane for reading only. Unlike
+	 * {@link ArrayDataAccess#getCurrentStorageArray()} this neither gives a
+	 * plane that is shared copy-on-write its own copy nor marks a disk-backed
+	 * plane as changed. A disk-backed plane must be pinned (see
+	 * {@link DiskPlane#pin()}) for as long as the result is in use.
+	 */
+	public static Object readArray(final ArrayDataAccess<?> plane) {
+		if (plane instanceof SharedPlane) {
+			final PlaneShare share = ((SharedPlane) plane).getShare();
+			if (share != null) return share.getArray();
+		}
+		if (plane instanceof DiskPlane) return ((DiskPlane) plane).getArray();
+		return plane.getCurrentStorageArray();
+	}
+
+	/**
+	 * Returns true if every plane of the given Dataset can be wrapped by
+	 * reference as a PrimitivePlane.
+	 */
+	public static boolean isSupported(final Dataset ds) {
+		return wrapForReading(ds, 0) != null;
+	}
+
+	/** Returns the number of planes of the given Dataset. */
+	public static long planeCount(final Dataset ds) {
+		long count = 1;
+		for (int d = 2; d < ds.numDimensions(); d++) {
+			count *= ds.dimension(d);
+		}
+		return count;
+	}
+
+	/** Rounds a value the way ImgLib2 integer types do. */
+	public static long round(final double value) {
+		return (long) (value > 0 ? value + 0.5 : value - 0.5);
+	}
+
+	// -- PrimitivePlane methods --
+
+	/** Returns the backing primitive array. */
+	public abstract Object getArray();
+
+	/** Returns the number of elements in the plane. */
+	public abstract int size();
+
+	/** Returns the value of the element at the given index. */
+	public abstract double get(int index);
+
+	/** Sets the value of the element at the given index. */
+	public abstract void set(int index, double value);
+
+	/** Copies length element values starting at offset into dest. */
+	public abstract void get(int offset, double[] dest, int destOffset,
+		int length);
+
+	/** Sets length element values starting at offset from src. */
+	public abstract void set(int offset, double[] src, int srcOffset, int length);
+
+	// -- helpers --
+
+	private static long clamp(final double value, final long min, final long max)
+	{
+		if (!(value >= min)) return (value != value) ? 0 : min; // NaN -> 0
+		if (value >= max) return max;
+		return round(value);
+	}
+
+	// -- implementations --
+
+	private static class UnsignedBytePlane extends PrimitivePlane {
+
+		private final byte[] data;
+
+		public UnsignedBytePlane(final byte[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object getArray() {
+			return data;
+		}
+
+		@Override
+		public int size() {
+			return data.length;
+		}
+
+		@Override
+		public double get(final int index) {
+			return data[index] & 0xff;
+		}
+
+		@Override
+		public void set(final int index, final double value) {
+			data[index] = (byte) clamp(value, 0, 0xff);
+		}
+
+		@Override
+		public void get(final int offset, final double[] dest,
+			final int destOffset, final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				dest[destOffset + i] = data[offset + i] & 0xff;
+			}
+		}
+
+		@Override
+		public void set(final int offset, final double[] src, final int srcOffset,
+			final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				data[offset + i] = (byte) clamp(src[srcOffset + i], 0, 0xff);
+			}
+		}
+	}
+
+	private static class BytePlane extends PrimitivePlane {
+
+		private final byte[] data;
+
+		public BytePlane(final byte[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object getArray() {
+			return data;
+		}
+
+		@Override
+		public int size() {
+			return data.length;
+		}
+
+		@Override
+		public double get(final int index) {
+			return data[index];
+		}
+
+		@Override
+		public void set(final int index, final double value) {
+			data[index] = (byte) clamp(value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+		}
+
+		@Override
+		public void get(final int offset, final double[] dest,
+			final int destOffset, final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				dest[destOffset + i] = data[offset + i];
+			}
+		}
+
+		@Override
+		public void set(final int offset, final double[] src, final int srcOffset,
+			final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				data[offset + i] =
+					(byte) clamp(src[srcOffset + i], Byte.MIN_VALUE, Byte.MAX_VALUE);
+			}
+		}
+	}
+
+	private static class UnsignedShortPlane extends PrimitivePlane {
+
+		private final short[] data;
+
+		public UnsignedShortPlane(final short[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object getArray() {
+			return data;
+		}
+
+		@Override
+		public int size() {
+			return data.length;
+		}
+
+		@Override
+		public double get(final int index) {
+			return data[index] & 0xffff;
+		}
+
+		@Override
+		public void set(final int index, final double value) {
+			data[index] = (short) clamp(value, 0, 0xffff);
+		}
+
+		@Override
+		public void get(final int offset, final double[] dest,
+			final int destOffset, final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				dest[destOffset + i] = data[offset + i] & 0xffff;
+			}
+		}
+
+		@Override
+		public void set(final int offset, final double[] src, final int srcOffset,
+			final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				data[offset + i] = (short) clamp(src[srcOffset + i], 0, 0xffff);
+			}
+		}
+	}
+
+	private static class ShortPlane extends PrimitivePlane {
+
+		private final short[] data;
+
+		public ShortPlane(final short[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object getArray() {
+			return data;
+		}
+
+		@Override
+		public int size() {
+			return data.length;
+		}
+
+		@Override
+		public double get(final int index) {
+			return data[index];
+		}
+
+		@Override
+		public void set(final int index, final double value) {
+			data[index] = (short) clamp(value, Short.MIN_VALUE, Short.MAX_VALUE);
+		}
+
+		@Override
+		public void get(final int offset, final double[] dest,
+			final int destOffset, final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				dest[destOffset + i] = data[offset + i];
+			}
+		}
+
+		@Override
+		public void set(final int offset, final double[] src, final int srcOffset,
+			final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				data[offset + i] =
+					(short) clamp(src[srcOffset + i], Short.MIN_VALUE, Short.MAX_VALUE);
+			}
+		}
+	}
+
+	private static class UnsignedIntPlane extends PrimitivePlane {
+
+		private final int[] data;
+
+		public UnsignedIntPlane(final int[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object getArray() {
+			return data;
+		}
+
+		@Override
+		public int size() {
+			return data.length;
+		}
+
+		@Override
+		public double get(final int index) {
+			return data[index] & 0xffffffffL;
+		}
+
+		@Override
+		public void set(final int index, final double value) {
+			data[index] = (int) clamp(value, 0, 0xffffffffL);
+		}
+
+		@Override
+		public void get(final int offset, final double[] dest,
+			final int destOffset, final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				dest[destOffset + i] = data[offset + i] & 0xffffffffL;
+			}
+		}
+
+		@Override
+		public void set(final int offset, final double[] src, final int srcOffset,
+			final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				data[offset + i] = (int) clamp(src[srcOffset + i], 0, 0xffffffffL);
+			}
+		}
+	}
+
+	private static class IntPlane extends PrimitivePlane {
+
+		private final int[] data;
+
+		public IntPlane(final int[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object getArray() {
+			return data;
+		}
+
+		@Override
+		public int size() {
+			return data.length;
+		}
+
+		@Override
+		public double get(final int index) {
+			return data[index];
+		}
+
+		@Override
+		public void set(final int index, final double value) {
+			data[index] = (int) clamp(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public void get(final int offset, final double[] dest,
+			final int destOffset, final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				dest[destOffset + i] = data[offset + i];
+			}
+		}
+
+		@Override
+		public void set(final int offset, final double[] src, final int srcOffset,
+			final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				data[offset + i] =
+					(int) clamp(src[srcOffset + i], Integer.MIN_VALUE,
+						Integer.MAX_VALUE);
+			}
+		}
+	}
+
+	private static class FloatPlane extends PrimitivePlane {
+
+		private final float[] data;
+
+		public FloatPlane(final float[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object getArray() {
+			return data;
+		}
+
+		@Override
+		public int size() {
+			return data.length;
+		}
+
+		@Override
+		public double get(final int index) {
+			return data[index];
+		}
+
+		@Override
+		public void set(final int index, final double value) {
+			data[index] = (float) value;
+		}
+
+		@Override
+		public void get(final int offset, final double[] dest,
+			final int destOffset, final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				dest[destOffset + i] = data[offset + i];
+			}
+		}
+
+		@Override
+		public void set(final int offset, final double[] src, final int srcOffset,
+			final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				data[offset + i] = (float) src[srcOffset + i];
+			}
+		}
+	}
+
+	private static class DoublePlane extends PrimitivePlane {
+
+		private final double[] data;
+
+		public DoublePlane(final double[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object getArray() {
+			return data;
+		}
+
+		@Override
+		public int size() {
+			return data.length;
+		}
+
+		@Override
+		public double get(final int index) {
+			return data[index];
+		}
+
+		@Override
+		public void set(final int index, final double value) {
+			data[index] = value;
+		}
+
+		@Override
+		public void get(final int offset, final double[] dest,
+			final int destOffset, final int length)
+		{
+			System.arraycopy(data, offset, dest, destOffset, length);
+		}
+
+		@Override
+		public void set(final int offset, final double[] src, final int srcOffset,
+			final int length)
+		{
+			System.arraycopy(src, srcOffset, data, offset, length);
+		}
+	}
+
+}
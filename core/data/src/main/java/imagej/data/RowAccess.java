@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * RowAccess reads and writes whole rows (runs along the X axis) of one plane of
+ * a {@link Dataset} as doubles. Planar Datasets of the common primitive types
+ * are accessed through their plane arrays via {@link PrimitivePlane}; all other
+ * images fall back to a {@link RandomAccess} that is moved along X.
+ * <p>
+ * A RowAccess is not thread safe, but any number of them may be used
+ * concurrently on the same Dataset as long as they write different rows.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public abstract class RowAccess {
+
+	// -- instance variables --
+
+	protected final int width;
+
+	// -- constructor --
+
+	protected RowAccess(final int width) {
+		this.width = width;
+	}
+
+	// -- static helpers --
+
+	/**
+	 * Creates a RowAccess on a plane of a Dataset.
+	 * 
+	 * @param ds The Dataset to access
+	 * @param planePos The position of the plane in the dimensions beyond X and
+	 *          Y (can be empty for 2d Datasets)
+	 */
+	public static RowAccess create(final Dataset ds, final long[] planePos) {
+		final int width = (int) ds.dimension(0);
+		final PrimitivePlane plane =
+			PrimitivePlane.wrap(ds, planeIndex(ds, planePos));
+		if (plane != null) return new PrimitiveRowAccess(plane, width);
+		return new GenericRowAccess(ds.getImgPlus(), planePos, width);
+	}
+
+	/**
+	 * Creates a RowAccess on a plane of a Dataset that is only read from. Unlike
+	 * {@link #create(Dataset, long[])} this leaves a plane that is shared
+	 * copy-on-write shared, so the result must not be written to.
+	 * 
+	 * @param ds The Dataset to access
+	 * @param planePos The position of the plane in the dimensions beyond X and
+	 *          Y (can be empty for 2d Datasets)
+	 */
+	public static RowAccess createForReading(final Dataset ds,
+		final long[] planePos)
+	{
+		final int width = (int) ds.dimension(0);
+		final PrimitivePlane plane =
+			PrimitivePlane.wrapForReading(ds, planeIndex(ds, planePos));
+		if (plane != null) return new PrimitiveRowAccess(plane, width);
+		return new GenericRowAccess(ds.getImgPlus(), planePos, width);
+	}
+
+	/**
+	 * Returns the raster index (as used by planar images) of the plane at the
+	 * given position in the dimensions beyond X and Y.
+	 */
+	public static int planeIndex(final Dataset ds, final long[] planePos) {
+		long index = 0;
+		long stride = 1;
+		for (int i = 0; i < planePos.length; i++) {
+			index += planePos[i] * stride;
+			stride *= ds.dimension(i + 2);
+		}
+		return (int) index;
+	}
+
+	/**
+	 * Returns the position in the dimensions beyond X and Y of the plane with
+	 * the given raster index. This is the inverse of
+	 * {@link #planeIndex(Dataset, long[])}.
+	 */
+	public static long[] planePosition(final Dataset ds, final int planeIndex) {
+		final long[] planePos = new long[ds.numDimensions() - 2];
+		long index = planeIndex;
+		for (int i = 0; i < planePos.length; i++) {
+			final long size = ds.dimension(i + 2);
+			planePos[i] = index % size;
+			index /= size;
+		}
+		return planePos;
+	}
+
+	// -- RowAccess methods --
+
+	/** Returns the number of values in a row. */
+	public int getWidth() {
+		return width;
+	}
+
+	/** Reads all the values of row y into dest starting at destOffset. */
+	public abstract void read(int y, double[] dest, int destOffset);
+
+	/**
+	 * Writes count values from src (starting at src[x0]) into row y starting at
+	 * column x0.
+	 */
+	public abstract void write(int y, int x0, double[] src, int count);
+
+	// -- implementations --
+
+	private static class PrimitiveRowAccess extends RowAccess {
+
+		private final PrimitivePlane plane;
+
+		public PrimitiveRowAccess(final PrimitivePlane plane, final int width) {
+			super(width);
+			this.plane = plane;
+		}
+
+		@Override
+		public void read(final int y, final double[] dest, final int destOffset) {
+			plane.get(y * width, dest, destOffset, width);
+		}
+
+		@Override
+		public void write(final int y, final int x0, final double[] src,
+			final int count)
+		{
+			plane.set(y * width + x0, src, x0, count);
+		}
+	}
+
+	private static class GenericRowAccess extends RowAccess {
+
+		private final RandomAccess<? extends RealType<?>> access;
+		private final long[] position;
+
+		public GenericRowAccess(final Img<? extends RealType<?>> img,
+			final long[] planePos, final int width)
+		{
+			super(width);
+			access = img.randomAccess();
+			position = new long[planePos.length + 2];
+			for (int i = 0; i < planePos.length; i++) {
+				position[i + 2] = planePos[i];
+			}
+		}
+
+		@Override
+		public void read(final int y, final double[] dest, final int destOffset) {
+			position[0] = 0;
+			position[1] = y;
+			access.setPosition(position);
+			for (int x = 0; x < width; x++) {
+				dest[destOffset + x] = access.get().getRealDouble();
+				access.fwd(0);
+			}
+		}
+
+		@Override
+		public void write(final int y, final int x0, final double[] src,
+			final int count)
+		{
+			position[0] = x0;
+			position[1] = y;
+			access.setPosition(position);
+			for (int x = x0; x < x0 + count; x++) {
+				access.get().setReal(src[x]);
+				access.fwd(0);
+			}
+		}
+	}
+
+}
@@ -35,10 +35,13 @@
 
 package imagej.data.autoscale;
 
+import imagej.data.Dataset;
+import imagej.data.event.DatasetRangeRefinedEvent;
 import imagej.plugin.SingletonService;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccessibleInterval;
@@ -91,4 +94,37 @@ DataRange getDefaultIntervalRange(
 	 */
 	DataRange getDefaultRandomAccessRange(
 		RandomAccessibleInterval<? extends RealType<?>> interval);
+
+	/**
+	 * Quickly estimates the range of the values of one channel of a
+	 * {@link Dataset} from a stratified random sample of pixels: a random plane
+	 * from each of a number of evenly sized groups of the channel's planes, and
+	 * a random pixel from each tile of a grid laid over each chosen plane. Small
+	 * channels are read completely.
+	 * <p>
+	 * The sample holds enough pixels that, were they drawn independently, the
+	 * fraction of the channel's values below (or above) the returned range would
+	 * differ from the requested tail proportion by less than 0.005 with 99%
+	 * confidence. But as they come from at most 64 planes, that holds only as
+	 * far as the chosen planes are typical of their groups; values confined to
+	 * a few unchosen planes are missed. The estimate is meant for display, not
+	 * for measurement.
+	 * </p>
+	 * 
+	 * @param channel The channel (0 if the Dataset has no channel axis)
+	 * @param lowerTail The fraction of values to fall below the range
+	 * @param upperTail The fraction of values to fall above the range
+	 */
+	DataRange estimateChannelRange(Dataset dataset, int channel,
+		double lowerTail, double upperTail);
+
+	/**
+	 * Computes the exact minimum and maximum of one channel of a
+	 * {@link Dataset} in the background. When done they are cached as the
+	 * Dataset's channel minimum and maximum and a
+	 * {@link DatasetRangeRefinedEvent} is published.
+	 * 
+	 * @return A future yielding the exact range
+	 */
+	Future<DataRange> refineChannelRange(Dataset dataset, int channel);
 }
@@ -35,21 +35,34 @@
 
 package imagej.data.autoscale;
 
+import imagej.data.Dataset;
+import imagej.data.RowAccess;
+import imagej.data.event.DatasetRangeRefinedEvent;
+import imagej.data.histogram.HistogramService;
 import imagej.plugin.AbstractSingletonService;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.meta.Axes;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.view.Views;
 
+import org.scijava.event.EventService;
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
 
 /**
  * Default service for working with autoscale methods.
@@ -62,8 +75,43 @@ public class DefaultAutoscaleService extends
 	AbstractSingletonService<AutoscaleMethod> implements AutoscaleService
 {
 
+	// -- constants --
+
+	/** Largest error of the sampled proportion of values outside a range. */
+	private static final double SAMPLE_ERROR = 0.005;
+
+	/** Probability that the sampled error exceeds {@link #SAMPLE_ERROR}. */
+	private static final double SAMPLE_RISK = 0.01;
+
+	/**
+	 * The number of pixels to sample. By the Dvoretzky-Kiefer-Wolfowitz
+	 * inequality this many independent samples keep the error of every sampled
+	 * proportion within SAMPLE_ERROR with probability 1 - SAMPLE_RISK. NB - the
+	 * samples are clustered in at most MAX_SAMPLED_PLANES planes, so the bound
+	 * does not hold for channels whose planes differ much within their groups.
+	 */
+	private static final int SAMPLE_SIZE = (int) Math.ceil(Math.log(2 /
+		SAMPLE_RISK) /
+		(2 * SAMPLE_ERROR * SAMPLE_ERROR));
+
+	/** The most planes a sample is drawn from. */
+	private static final int MAX_SAMPLED_PLANES = 64;
+
+	// -- parameters --
+
+	@Parameter
+	private HistogramService histogramService;
+
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter
+	private EventService eventService;
+
 	// -- instance variables --
 
+	private final Random random = new Random();
+
 	private ConcurrentHashMap<String, AutoscaleMethod> methods;
 
 	private List<String> methodNames;
@@ -102,6 +150,79 @@ public void initialize() {
 
 	// -- helpers --
 
+	/** Returns the raster indices of the planes of a channel. */
+	private int[] channelPlanes(Dataset dataset, int channel) {
+		int chAxis = dataset.getAxisIndex(Axes.CHANNEL);
+		if (chAxis >= 2) {
+			return histogramService.getPlaneIndices(dataset, chAxis, channel);
+		}
+		long count = 1;
+		for (int d = 2; d < dataset.numDimensions(); d++) {
+			count *= dataset.dimension(d);
+		}
+		int[] planes = new int[(int) count];
+		for (int p = 0; p < planes.length; p++) {
+			planes[p] = p;
+		}
+		return planes;
+	}
+
+	/**
+	 * Returns the non-NaN values of a stratified random sample of about
+	 * SAMPLE_SIZE pixels of the given planes.
+	 */
+	private double[] sample(Dataset dataset, int[] planes) {
+		int planeCount = Math.min(planes.length, MAX_SAMPLED_PLANES);
+		int perPlane = (SAMPLE_SIZE + planeCount - 1) / planeCount;
+		long width = dataset.dimension(0);
+		long height = dataset.dimension(1);
+
+		// lay a grid of about perPlane tiles over a plane
+		long tilesX =
+			Math.max(1, Math.min(width, Math.round(Math.sqrt((double) perPlane *
+				width / height))));
+		long tilesY = Math.max(1, Math.min(height, (perPlane + tilesX - 1) / tilesX));
+		if (tilesX * tilesY >= width * height) {
+			// NB - sample every pixel of small planes
+			tilesX = width;
+			tilesY = height;
+		}
+
+		double[] samples = new double[(int) (planeCount * tilesX * tilesY)];
+		int n = 0;
+		RandomAccess<? extends RealType<?>> access =
+			dataset.getImgPlus().randomAccess();
+		for (int s = 0; s < planeCount; s++) {
+			// a random plane from each group of planes
+			int first = (int) ((long) s * planes.length / planeCount);
+			int last = (int) ((long) (s + 1) * planes.length / planeCount);
+			int plane = planes[first + random.nextInt(last - first)];
+			long[] planePos = RowAccess.planePosition(dataset, plane);
+			for (int i = 0; i < planePos.length; i++) {
+				access.setPosition(planePos[i], i + 2);
+			}
+			// a random pixel from each tile of the plane
+			for (long ty = 0; ty < tilesY; ty++) {
+				long y = pick(ty * height / tilesY, (ty + 1) * height / tilesY);
+				access.setPosition(y, 1);
+				for (long tx = 0; tx < tilesX; tx++) {
+					long x = pick(tx * width / tilesX, (tx + 1) * width / tilesX);
+					access.setPosition(x, 0);
+					double value = access.get().getRealDouble();
+					if (!Double.isNaN(value)) samples[n++] = value;
+				}
+			}
+		}
+		return Arrays.copyOf(samples, n);
+	}
+
+	/** Returns a random position in [start, end). */
+	private long pick(long start, long end) {
+		long size = end - start;
+		if (size <= 1) return start;
+		return start + (long) (random.nextDouble() * size);
+	}
+
 	private void buildDataStructures() {
 		methods = new ConcurrentHashMap<String, AutoscaleMethod>();
 		methodNames = new ArrayList<String>();
@@ -133,4 +254,39 @@ public DataRange getDefaultRandomAccessRange(
 		return getDefaultIntervalRange(newInterval);
 	}
 
+	@Override
+	public DataRange estimateChannelRange(Dataset dataset, int channel,
+		double lowerTail, double upperTail)
+	{
+		if (lowerTail < 0 || upperTail < 0 || lowerTail + upperTail >= 1) {
+			throw new IllegalArgumentException("invalid tail proportions: " +
+				lowerTail + ", " + upperTail);
+		}
+		double[] samples = sample(dataset, channelPlanes(dataset, channel));
+		if (samples.length == 0) return new DataRange(0, 0);
+		Arrays.sort(samples);
+		int lo = (int) Math.floor(lowerTail * samples.length);
+		int hi = samples.length - 1 - (int) Math.floor(upperTail * samples.length);
+		return new DataRange(samples[lo], samples[Math.max(lo, hi)]);
+	}
+
+	@Override
+	public Future<DataRange> refineChannelRange(final Dataset dataset,
+		final int channel)
+	{
+		final int[] planes = channelPlanes(dataset, channel);
+		return threadService.run(new Callable<DataRange>() {
+
+			@Override
+			public DataRange call() {
+				DataRange range = histogramService.getRange(dataset, planes);
+				dataset.getImgPlus().setChannelMinimum(channel, range.getMin());
+				dataset.getImgPlus().setChannelMaximum(channel, range.getMax());
+				eventService.publishLater(new DatasetRangeRefinedEvent(dataset,
+					channel, range.getMin(), range.getMax()));
+				return range;
+			}
+		});
+	}
+
 }
@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.cow;
+
+/**
+ * A primitive plane array shared by several {@link SharedPlane}s. The last
+ * sharer to write takes over the array; every earlier writer gets a private
+ * copy.
+ * 
+ * @author Barry DeZonia
+ */
+public class PlaneShare {
+
+	// -- instance variables --
+
+	private final Object array;
+	private int sharers;
+
+	// -- constructor --
+
+	/** Creates a share of the given primitive array among a number of planes. */
+	public PlaneShare(final Object array, final int sharers) {
+		this.array = array;
+		this.sharers = sharers;
+	}
+
+	// -- PlaneShare methods --
+
+	/** Returns the shared array. It must not be written to. */
+	public Object getArray() {
+		return array;
+	}
+
+	/** Returns the number of planes still reading from the shared array. */
+	public synchronized int getSharers() {
+		return sharers;
+	}
+
+	/**
+	 * Adds a sharer. Returns false if every sharer has already detached, in
+	 * which case the array may have been taken over and must not be shared.
+	 */
+	public synchronized boolean join() {
+		if (sharers == 0) return false;
+		sharers++;
+		return true;
+	}
+
+	/**
+	 * Removes a sharer that is about to write and returns the array it may
+	 * write to: the shared array itself if it is the last sharer, otherwise a
+	 * private copy of it.
+	 */
+	public synchronized Object detach() {
+		sharers--;
+		if (sharers == 0) return array;
+		return copy(array);
+	}
+
+	/** Removes a sharer that is being discarded without writing. */
+	public synchronized void release() {
+		sharers--;
+	}
+
+	// -- helpers --
+
+	private static Object copy(final Object array) {
+		if (array instanceof byte[]) return ((byte[]) array).clone();
+		if (array instanceof short[]) return ((short[]) array).clone();
+		if (array instanceof int[]) return ((int[]) array).clone();
+		if (array instanceof long[]) return ((long[]) array).clone();
+		if (array instanceof float[]) return ((float[]) array).clone();
+		if (array instanceof double[]) return ((double[]) array).clone();
+		throw new IllegalArgumentException("Unsupported plane array: " +
+			array.getClass().getName());
+	}
+
+}
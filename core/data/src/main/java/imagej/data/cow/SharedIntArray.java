@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.cow;
+
+import net.imglib2.img.basictypeaccess.array.IntArray;
+
+/**
+ * An {@link IntArray} that shares its data with other planes until it is
+ * first written to. See {@link SharedPlane}.
+ * 
+ * @author Barry DeZonia
+ */
+public class SharedIntArray extends IntArray implements SharedPlane {
+
+	// -- instance variables --
+
+	// NB - volatile so a thread that sees the share gone also sees the new array
+	private volatile PlaneShare share;
+	private int[] array;
+
+	// -- constructor --
+
+	public SharedIntArray(final PlaneShare share) {
+		super((int[]) null);
+		this.share = share;
+		this.array = (int[]) share.getArray();
+	}
+
+	// -- IntArray methods --
+
+	@Override
+	public int getValue(final int index) {
+		return array[index];
+	}
+
+	@Override
+	public void setValue(final int index, final int value) {
+		if (share != null) detach();
+		array[index] = value;
+	}
+
+	@Override
+	public IntArray createArray(final int numEntities) {
+		return new IntArray(numEntities);
+	}
+
+	@Override
+	public int[] getCurrentStorageArray() {
+		// the caller may write to the array
+		if (share != null) detach();
+		return array;
+	}
+
+	// -- SharedPlane methods --
+
+	@Override
+	public PlaneShare getShare() {
+		return share;
+	}
+
+	@Override
+	public synchronized void release() {
+		if (share == null) return;
+		share.release();
+		share = null;
+	}
+
+	// -- helpers --
+
+	private synchronized void detach() {
+		if (share == null) return;
+		array = (int[]) share.detach();
+		share = null;
+	}
+
+}
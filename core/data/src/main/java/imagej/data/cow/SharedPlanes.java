@@ -0,0 +1,312 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.cow;
+
+import imagej.data.disk.DiskPlanarImg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+
+/**
+ * Utility methods for sharing the planes of in-memory {@link PlanarImg}s
+ * copy-on-write. Sharing a plane replaces it in both images with a
+ * {@link SharedPlane}; whichever image first writes to it gets its own copy.
+ * Duplicating an image this way costs time proportional to its number of
+ * planes rather than its number of pixels.
+ * <p>
+ * NB - a plane is shared by swapping the plane objects of the source image.
+ * Cursors and accessors created on the source before the swap, and arrays
+ * handed out by reference before it, keep writing to the now shared array.
+ * Callers must get such references again once the planes are shared (see
+ * DefaultDataset, which reports its planes as updated so that legacy ImageJ
+ * takes new references), and must not write to the source while sharing it.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public final class SharedPlanes {
+
+	private SharedPlanes() {
+		// utility class
+	}
+
+	// -- SharedPlanes methods --
+
+	/**
+	 * Returns true if the planes of the given image can be shared: it must be
+	 * an in-memory {@link PlanarImg} of byte, short, int, long, float or double
+	 * planes.
+	 */
+	public static boolean isSupported(final Img<?> img) {
+		final PlanarImg<?, ?> planar = planar(img);
+		if (planar == null || planar.numSlices() == 0) return false;
+		// NB - test the plane class; asking for its array would detach it
+		final Object plane = planar.getPlane(0);
+		return plane instanceof ByteArray || plane instanceof ShortArray ||
+			plane instanceof IntArray || plane instanceof LongArray ||
+			plane instanceof FloatArray || plane instanceof DoubleArray;
+	}
+
+	/**
+	 * Creates a copy-on-write duplicate of the given image, carrying over its
+	 * metadata as {@link ImgPlus#copy()} does. Returns null if the image is not
+	 * supported; see {@link #isSupported(Img)}.
+	 */
+	public static <T extends NativeType<T>> ImgPlus<T> duplicate(
+		final ImgPlus<T> imgPlus)
+	{
+		if (!isSupported(imgPlus.getImg())) return null;
+		final PlanarImg<?, ?> source = planar(imgPlus.getImg());
+		final List<ArrayDataAccess<?>> planes = new ArrayList<ArrayDataAccess<?>>();
+		for (int no = 0; no < source.numSlices(); no++) {
+			planes.add(share(source, no));
+		}
+		final long[] dims = new long[imgPlus.numDimensions()];
+		imgPlus.dimensions(dims);
+		final Img<T> copy =
+			new SharingFactory<T>(planes).create(dims, imgPlus.firstElement()
+				.createVariable());
+		return new ImgPlus<T>(copy, imgPlus);
+	}
+
+	/**
+	 * Makes a plane of one image share the array of a plane of another. Returns
+	 * false (and changes nothing) if either image is not supported or the two
+	 * differ in pixel type or plane size.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static boolean sharePlane(final Img<?> src, final int srcPlane,
+		final Img<?> dest, final int destPlane)
+	{
+		if (!isSupported(src) || !isSupported(dest)) return false;
+		final PlanarImg source = planar(src);
+		final PlanarImg target = planar(dest);
+		if (source.firstElement().getClass() != target.firstElement().getClass())
+		{
+			return false;
+		}
+		if (planeSize(source) != planeSize(target)) return false;
+		final ArrayDataAccess<?> shared = share(source, srcPlane);
+		final Object current = target.getPlane(destPlane);
+		if (current instanceof SharedPlane) ((SharedPlane) current).release();
+		target.setPlane(destPlane, shared);
+		return true;
+	}
+
+	/**
+	 * Returns the shared array of a plane that is still shared, or null if the
+	 * plane is not shared. Reading through the result does not detach the
+	 * plane; it must not be written to.
+	 */
+	public static Object peek(final Img<?> img, final int no) {
+		final PlanarImg<?, ?> planar = planar(img);
+		if (planar == null) return null;
+		final Object plane = planar.getPlane(no);
+		if (!(plane instanceof SharedPlane)) return null;
+		final PlaneShare share = ((SharedPlane) plane).getShare();
+		return share == null ? null : share.getArray();
+	}
+
+	/**
+	 * Gives up the claims of all the planes of the given image on their shares,
+	 * so the images still sharing them need not copy them when written to. Call
+	 * this when the image is being discarded; it must not be used afterwards.
+	 */
+	public static void release(final Img<?> img) {
+		final PlanarImg<?, ?> planar = planar(img);
+		if (planar == null) return;
+		for (int no = 0; no < planar.numSlices(); no++) {
+			final Object plane = planar.getPlane(no);
+			if (plane instanceof SharedPlane) ((SharedPlane) plane).release();
+		}
+	}
+
+	// -- helpers --
+
+	private static long planeSize(final PlanarImg<?, ?> img) {
+		long size = img.dimension(0);
+		if (img.numDimensions() > 1) size *= img.dimension(1);
+		return size;
+	}
+
+	/** Returns the in-memory PlanarImg underlying an Img, or null. */
+	private static PlanarImg<?, ?> planar(final Img<?> img) {
+		Img<?> result = img;
+		while (result instanceof ImgPlus) {
+			result = ((ImgPlus<?>) result).getImg();
+		}
+		if (!(result instanceof PlanarImg)) return null;
+		if (result instanceof DiskPlanarImg) return null;
+		return (PlanarImg<?, ?>) result;
+	}
+
+	/**
+	 * Shares a plane of the given image: the image's plane is replaced by a
+	 * shared one (unless it already is one) and another sharer of the same array
+	 * is returned.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static ArrayDataAccess<?> share(final PlanarImg img, final int no) {
+		final Object plane = img.getPlane(no);
+		if (plane instanceof SharedPlane) {
+			final PlaneShare share = ((SharedPlane) plane).getShare();
+			if (share != null && share.join()) return wrap(share);
+		}
+		final Object array = ((ArrayDataAccess<?>) plane).getCurrentStorageArray();
+		final PlaneShare share = new PlaneShare(array, 2);
+		img.setPlane(no, wrap(share));
+		return wrap(share);
+	}
+
+	/** Creates a shared plane over a share. Returns null if unsupported. */
+	private static ArrayDataAccess<?> wrap(final PlaneShare share) {
+		final Object array = share.getArray();
+		if (array instanceof byte[]) return new SharedByteArray(share);
+		if (array instanceof short[]) return new SharedShortArray(share);
+		if (array instanceof int[]) return new SharedIntArray(share);
+		if (array instanceof long[]) return new SharedLongArray(share);
+		if (array instanceof float[]) return new SharedFloatArray(share);
+		if (array instanceof double[]) return new SharedDoubleArray(share);
+		return null;
+	}
+
+	// -- helper classes --
+
+	/** A PlanarImgFactory whose new images take the given planes in order. */
+	private static class SharingFactory<T extends NativeType<T>> extends
+		PlanarImgFactory<T>
+	{
+
+		private final List<ArrayDataAccess<?>> planes;
+		private int next;
+
+		public SharingFactory(final List<ArrayDataAccess<?>> planes) {
+			this.planes = planes;
+		}
+
+		@Override
+		public PlanarImg<T, ByteArray> createByteInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, ByteArray>(new ByteArray(0) {
+
+				@Override
+				public ByteArray createArray(final int numEntities) {
+					return (ByteArray) planes.get(next++);
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, ShortArray> createShortInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, ShortArray>(new ShortArray(0) {
+
+				@Override
+				public ShortArray createArray(final int numEntities) {
+					return (ShortArray) planes.get(next++);
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, IntArray> createIntInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, IntArray>(new IntArray(0) {
+
+				@Override
+				public IntArray createArray(final int numEntities) {
+					return (IntArray) planes.get(next++);
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, LongArray> createLongInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, LongArray>(new LongArray(0) {
+
+				@Override
+				public LongArray createArray(final int numEntities) {
+					return (LongArray) planes.get(next++);
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, FloatArray> createFloatInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, FloatArray>(new FloatArray(0) {
+
+				@Override
+				public FloatArray createArray(final int numEntities) {
+					return (FloatArray) planes.get(next++);
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, DoubleArray> createDoubleInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, DoubleArray>(new DoubleArray(0) {
+
+				@Override
+				public DoubleArray createArray(final int numEntities) {
+					return (DoubleArray) planes.get(next++);
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+	}
+
+}
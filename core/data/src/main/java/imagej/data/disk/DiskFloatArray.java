@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.disk;
+
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+
+/**
+ * A {@link FloatArray} whose data lives in a {@link PlaneStore} and is only
+ * loaded into memory while it is in use.
+ * 
+ * @author Barry DeZonia
+ */
+public class DiskFloatArray extends FloatArray implements DiskPlane {
+
+	// -- instance variables --
+
+	private final PlaneStore store;
+	private final PlaneStore.Slot slot;
+
+	// -- constructors --
+
+	/**
+	 * Creates a prototype whose {@link #createArray(int)} adds planes to the
+	 * given store.
+	 */
+	public DiskFloatArray(final PlaneStore store) {
+		this(store, null);
+	}
+
+	private DiskFloatArray(final PlaneStore store, final PlaneStore.Slot slot) {
+		super((float[]) null);
+		this.store = store;
+		this.slot = slot;
+	}
+
+	// -- FloatArray methods --
+
+	@Override
+	public float getValue(final int index) {
+		return array()[index];
+	}
+
+	@Override
+	public void setValue(final int index, final float value) {
+		// NB - the write is redone should the plane be evicted meanwhile
+		float[] array;
+		do {
+			array = array();
+			array[index] = value;
+		}
+		while (!slot.setDirty(array));
+	}
+
+	@Override
+	public DiskFloatArray createArray(final int numEntities) {
+		return new DiskFloatArray(store, store.addPlane(numEntities));
+	}
+
+	/**
+	 * Returns the array of this plane, marked as changed as the caller may write
+	 * to it. The array is only valid while the plane is resident: callers must
+	 * pin the plane (see {@link #pin()}) for as long as they use the array.
+	 */
+	@Override
+	public float[] getCurrentStorageArray() {
+		float[] array;
+		do {
+			array = array();
+		}
+		while (!slot.setDirty(array));
+		return array;
+	}
+
+	// -- DiskPlane methods --
+
+	@Override
+	public PlaneStore getStore() {
+		return store;
+	}
+
+	@Override
+	public void pin() {
+		slot.pin();
+	}
+
+	@Override
+	public void unpin() {
+		slot.unpin();
+	}
+
+	@Override
+	public float[] getArray() {
+		return array();
+	}
+
+	@Override
+	public void assign(final Object array) {
+		store.assign(slot, array);
+	}
+
+	// -- helpers --
+
+	private float[] array() {
+		return (float[]) slot.get();
+	}
+
+}
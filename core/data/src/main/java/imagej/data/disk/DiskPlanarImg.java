@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.disk;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+
+/**
+ * A {@link PlanarImg} whose planes are {@link DiskPlane}s held in a
+ * {@link PlaneStore}, allowing images larger than memory. Planes set by
+ * reference via {@link #setPlane(int, ArrayDataAccess)} are stored back into
+ * the PlaneStore rather than replacing the disk-backed planes, and copies are
+ * disk-backed as well.
+ * 
+ * @author Barry DeZonia
+ */
+public class DiskPlanarImg<T extends NativeType<T>, A extends ArrayDataAccess<A>>
+	extends PlanarImg<T, A>
+{
+
+	// -- instance variables --
+
+	private final PlaneStore store;
+	private final DiskPlanarImgFactory<T> factory;
+
+	// -- constructor --
+
+	public DiskPlanarImg(final A creator, final long[] dim,
+		final int entitiesPerPixel, final PlaneStore store,
+		final DiskPlanarImgFactory<T> factory)
+	{
+		super(creator, dim, entitiesPerPixel);
+		this.store = store;
+		this.factory = factory;
+	}
+
+	// -- DiskPlanarImg methods --
+
+	/** Returns the store holding the planes of this image. */
+	public PlaneStore getStore() {
+		return store;
+	}
+
+	// -- PlanarImg methods --
+
+	@Override
+	public void setPlane(final int no, final A plane) {
+		final A current = getPlane(no);
+		if (current instanceof DiskPlane && current != plane) {
+			((DiskPlane) current).assign(plane.getCurrentStorageArray());
+		}
+		else super.setPlane(no, plane);
+	}
+
+	@Override
+	public DiskPlanarImgFactory<T> factory() {
+		return factory;
+	}
+
+	@Override
+	public PlanarImg<T, ?> copy() {
+		final long[] dims = new long[numDimensions()];
+		dimensions(dims);
+		final PlanarImg<T, ?> copy =
+			factory.create(dims, firstElement().createVariable());
+		final Cursor<T> source = cursor();
+		final Cursor<T> target = copy.cursor();
+		while (source.hasNext()) {
+			target.next().set(source.next());
+		}
+		return copy;
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.disk;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+
+/**
+ * Creates {@link DiskPlanarImg}s: planar images whose planes are kept in a
+ * memory-mapped temporary file with a bounded in-memory plane cache. Types
+ * stored as bits or chars are not supported out of core and get ordinary
+ * {@link PlanarImg}s.
+ * 
+ * @author Barry DeZonia
+ */
+public class DiskPlanarImgFactory<T extends NativeType<T>> extends
+	PlanarImgFactory<T>
+{
+
+	// -- instance variables --
+
+	private final File directory;
+	private final long cacheBytes;
+
+	// -- constructors --
+
+	/**
+	 * Creates a factory that stores planes in the default temporary directory
+	 * using a cache of {@link #defaultCacheBytes()} per image.
+	 */
+	public DiskPlanarImgFactory() {
+		this(null, defaultCacheBytes());
+	}
+
+	/**
+	 * Creates a factory.
+	 * 
+	 * @param directory The directory for the plane files or null for the default
+	 *          temporary directory
+	 * @param cacheBytes The number of bytes of planes each image may keep in
+	 *          memory
+	 */
+	public DiskPlanarImgFactory(final File directory, final long cacheBytes) {
+		this.directory = directory;
+		this.cacheBytes = cacheBytes;
+	}
+
+	// -- static helpers --
+
+	/** Returns the default per image cache size: a quarter of the heap. */
+	public static long defaultCacheBytes() {
+		return Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	// -- DiskPlanarImgFactory methods --
+
+	/** Returns the number of bytes of planes each image may keep in memory. */
+	public long getCacheBytes() {
+		return cacheBytes;
+	}
+
+	// -- PlanarImgFactory methods --
+
+	@Override
+	public PlanarImg<T, ByteArray> createByteInstance(final long[] dimensions,
+		final int entitiesPerPixel)
+	{
+		final PlaneStore store = store(PlaneStore.Kind.BYTE);
+		return new DiskPlanarImg<T, ByteArray>(new DiskByteArray(store),
+			dimensions, entitiesPerPixel, store, this);
+	}
+
+	@Override
+	public PlanarImg<T, ShortArray> createShortInstance(final long[] dimensions,
+		final int entitiesPerPixel)
+	{
+		final PlaneStore store = store(PlaneStore.Kind.SHORT);
+		return new DiskPlanarImg<T, ShortArray>(new DiskShortArray(store),
+			dimensions, entitiesPerPixel, store, this);
+	}
+
+	@Override
+	public PlanarImg<T, IntArray> createIntInstance(final long[] dimensions,
+		final int entitiesPerPixel)
+	{
+		final PlaneStore store = store(PlaneStore.Kind.INT);
+		return new DiskPlanarImg<T, IntArray>(new DiskIntArray(store),
+			dimensions, entitiesPerPixel, store, this);
+	}
+
+	@Override
+	public PlanarImg<T, LongArray> createLongInstance(final long[] dimensions,
+		final int entitiesPerPixel)
+	{
+		final PlaneStore store = store(PlaneStore.Kind.LONG);
+		return new DiskPlanarImg<T, LongArray>(new DiskLongArray(store),
+			dimensions, entitiesPerPixel, store, this);
+	}
+
+	@Override
+	public PlanarImg<T, FloatArray> createFloatInstance(final long[] dimensions,
+		final int entitiesPerPixel)
+	{
+		final PlaneStore store = store(PlaneStore.Kind.FLOAT);
+		return new DiskPlanarImg<T, FloatArray>(new DiskFloatArray(store),
+			dimensions, entitiesPerPixel, store, this);
+	}
+
+	@Override
+	public PlanarImg<T, DoubleArray> createDoubleInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		final PlaneStore store = store(PlaneStore.Kind.DOUBLE);
+		return new DiskPlanarImg<T, DoubleArray>(new DiskDoubleArray(store),
+			dimensions, entitiesPerPixel, store, this);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public <S> ImgFactory<S> imgFactory(final S type)
+		throws IncompatibleTypeException
+	{
+		if (NativeType.class.isInstance(type)) {
+			return new DiskPlanarImgFactory(directory, cacheBytes);
+		}
+		throw new IncompatibleTypeException(this, type.getClass()
+			.getCanonicalName() +
+			" does not implement NativeType.");
+	}
+
+	// -- helpers --
+
+	private PlaneStore store(final PlaneStore.Kind kind) {
+		try {
+			return new PlaneStore(kind, cacheBytes, directory);
+		}
+		catch (final IOException e) {
+			throw new IllegalStateException("Cannot create plane file", e);
+		}
+	}
+
+}
@@ -0,0 +1,480 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A PlaneStore keeps the planes of one disk-backed image in a memory-mapped
+ * temporary file. Only a bounded number of bytes worth of planes are resident
+ * in memory as primitive arrays at any time. When room is needed the least
+ * recently used plane is evicted (using the second chance "clock"
+ * approximation of LRU so that pixel accesses stay cheap) and written back to
+ * the file if it was modified.
+ * <p>
+ * The array of a plane is only valid while the plane is resident. Code that
+ * holds on to the array of a plane (rather than going through the plane's
+ * accessors) must pin the plane with {@link DiskPlane#pin()} for as long as
+ * it uses the array; pinned planes are never evicted, even if that means
+ * exceeding the byte budget. For this reason
+ * {@link imagej.data.Dataset#getPlane(int)} hands out copies of disk-backed
+ * planes rather than references. To keep concurrently processed planes
+ * resident the store always allows at least {@link #MIN_RESIDENT_PLANES}
+ * planes in memory regardless of the byte budget.
+ * </p>
+ * <p>
+ * A store can be given a {@link Loader} that supplies the original contents of
+ * planes that have never been modified, for instance by reading them from an
+ * image file. Such planes are then only read when first accessed, and are
+ * simply dropped (and reread if needed again) when evicted unmodified.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public class PlaneStore {
+
+	// -- constants --
+
+	/** The primitive storage types a PlaneStore can hold. */
+	public enum Kind {
+		BYTE(1), SHORT(2), INT(4), LONG(8), FLOAT(4), DOUBLE(8);
+
+		private final int bytesPerEntity;
+
+		private Kind(final int bytesPerEntity) {
+			this.bytesPerEntity = bytesPerEntity;
+		}
+
+		public int getBytesPerEntity() {
+			return bytesPerEntity;
+		}
+	}
+
+	/** Supplies the initial contents of planes that have not been modified. */
+	public interface Loader {
+
+		/**
+		 * Fills the given primitive array with the contents of the given plane.
+		 */
+		void loadPlane(int planeIndex, Object array) throws IOException;
+	}
+
+	/** The fewest planes that are kept resident regardless of memory budget. */
+	public static final int MIN_RESIDENT_PLANES =
+		2 * Runtime.getRuntime().availableProcessors();
+
+	// -- instance variables --
+
+	private final Kind kind;
+	private final long maxBytes;
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final List<Slot> slots = new ArrayList<Slot>();
+	private final List<Slot> resident = new ArrayList<Slot>();
+	private int hand;
+	private long residentBytes;
+	private long fileBytes;
+	private Loader loader;
+
+	// -- constructor --
+
+	/**
+	 * Creates an empty PlaneStore.
+	 * 
+	 * @param kind The primitive type of the planes
+	 * @param maxBytes The number of bytes of planes to keep in memory
+	 * @param directory The directory for the backing file or null for the
+	 *          default temporary directory
+	 * @throws IOException if the backing file cannot be created
+	 */
+	public PlaneStore(final Kind kind, final long maxBytes,
+		final File directory) throws IOException
+	{
+		this.kind = kind;
+		this.maxBytes = maxBytes;
+		file = File.createTempFile("imagej-planes", ".raw", directory);
+		file.deleteOnExit();
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+	}
+
+	// -- PlaneStore methods --
+
+	/** Returns the primitive type of the planes. */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/** Returns the number of bytes of planes kept in memory. */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/** Returns the number of bytes of planes currently in memory. */
+	public synchronized long getResidentBytes() {
+		return residentBytes;
+	}
+
+	/** Returns the number of planes in the store. */
+	public synchronized int getPlaneCount() {
+		return slots.size();
+	}
+
+	/** Returns the number of planes currently in memory. */
+	public synchronized int getResidentPlaneCount() {
+		return resident.size();
+	}
+
+	/** Returns the loader supplying unmodified planes, or null if none. */
+	public synchronized Loader getLoader() {
+		return loader;
+	}
+
+	/**
+	 * Sets the loader supplying the contents of planes that have not been
+	 * modified. Without a loader such planes are all zero.
+	 */
+	public synchronized void setLoader(final Loader loader) {
+		this.loader = loader;
+	}
+
+	/** Returns true if the given plane is currently in memory. */
+	public synchronized boolean isResident(final int planeIndex) {
+		return slots.get(planeIndex).data != null;
+	}
+
+	/**
+	 * Makes the given plane resident ahead of its use. A prefetched plane that
+	 * is not accessed is among the first to be evicted again.
+	 */
+	public synchronized void prefetch(final int planeIndex) {
+		final Slot slot = slots.get(planeIndex);
+		if (slot.data != null) return;
+		load(slot);
+		slot.referenced = false;
+	}
+
+	/** Writes all modified resident planes to the backing file. */
+	public synchronized void flush() {
+		for (final Slot slot : resident) {
+			synchronized (slot) {
+				writeBack(slot);
+			}
+		}
+	}
+
+	/**
+	 * Releases all planes and deletes the backing file. The store cannot be
+	 * used afterwards.
+	 */
+	public synchronized void dispose() {
+		for (final Slot slot : resident) {
+			slot.data = null;
+		}
+		resident.clear();
+		residentBytes = 0;
+		try {
+			channel.close();
+			raf.close();
+		}
+		catch (final IOException e) {
+			// nothing more can be done
+		}
+		file.delete();
+	}
+
+	// -- package access methods --
+
+	/** Adds a new (all zero) plane to the end of the store. */
+	synchronized Slot addPlane(final int numEntities) {
+		final long bytes = (long) numEntities * kind.getBytesPerEntity();
+		final Slot slot =
+			new Slot(this, slots.size(), numEntities, fileBytes, bytes);
+		fileBytes += bytes;
+		slots.add(slot);
+		return slot;
+	}
+
+	/** Makes a plane resident and returns its array. */
+	synchronized Object load(final Slot slot) {
+		if (slot.data != null) return slot.data;
+		makeRoom(slot.bytes);
+		final Object array = newArray(slot.numEntities);
+		if (slot.written) {
+			final ByteBuffer buffer = map(slot, MapMode.READ_ONLY);
+			read(buffer, array);
+		}
+		else if (loader != null) {
+			try {
+				loader.loadPlane(slot.index, array);
+			}
+			catch (final IOException e) {
+				throw new IllegalStateException("Cannot read plane " + slot.index, e);
+			}
+		}
+		slot.data = array;
+		slot.referenced = true;
+		resident.add(slot);
+		residentBytes += slot.bytes;
+		return array;
+	}
+
+	/**
+	 * Makes a plane resident and keeps it so until it is unpinned as often as it
+	 * was pinned. Returns its array.
+	 */
+	synchronized Object pin(final Slot slot) {
+		slot.pins++;
+		return load(slot);
+	}
+
+	/** Allows a pinned plane to be evicted again. */
+	synchronized void unpin(final Slot slot) {
+		if (slot.pins == 0) {
+			throw new IllegalStateException("Plane " + slot.index + " is not pinned");
+		}
+		slot.pins--;
+	}
+
+	/** Replaces the contents of a plane with the given array by reference. */
+	synchronized void assign(final Slot slot, final Object array) {
+		if (!array.getClass().equals(newArray(0).getClass())) {
+			throw new IllegalArgumentException("Plane of type " +
+				array.getClass().getSimpleName() + " does not match store of " + kind);
+		}
+		if (slot.data == null) {
+			makeRoom(slot.bytes);
+			resident.add(slot);
+			residentBytes += slot.bytes;
+		}
+		slot.data = array;
+		slot.dirty = true;
+		slot.referenced = true;
+	}
+
+	// -- helpers --
+
+	private void makeRoom(final long bytes) {
+		while (residentBytes + bytes > maxBytes &&
+			resident.size() >= MIN_RESIDENT_PLANES)
+		{
+			// NB - when every resident plane is pinned the budget is exceeded
+			if (!evictOne()) return;
+		}
+	}
+
+	/** Evicts one unpinned plane. Returns false if all planes are pinned. */
+	private boolean evictOne() {
+		// two sweeps clear every second chance
+		for (int i = 0; i < 2 * resident.size() + 1; i++) {
+			if (hand >= resident.size()) hand = 0;
+			final Slot slot = resident.get(hand);
+			if (slot.pins > 0) {
+				hand++;
+			}
+			else if (slot.referenced) {
+				// second chance
+				slot.referenced = false;
+				hand++;
+			}
+			else {
+				// NB - writers mark the plane dirty holding its lock (see Slot)
+				synchronized (slot) {
+					writeBack(slot);
+					slot.data = null;
+				}
+				resident.remove(hand);
+				residentBytes -= slot.bytes;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void writeBack(final Slot slot) {
+		if (!slot.dirty) return;
+		final ByteBuffer buffer = map(slot, MapMode.READ_WRITE);
+		write(buffer, slot.data);
+		slot.dirty = false;
+		slot.written = true;
+	}
+
+	private ByteBuffer map(final Slot slot, final MapMode mode) {
+		try {
+			final MappedByteBuffer buffer =
+				channel.map(mode, slot.offset, slot.bytes);
+			buffer.order(ByteOrder.nativeOrder());
+			return buffer;
+		}
+		catch (final IOException e) {
+			throw new IllegalStateException("Cannot access plane file " + file, e);
+		}
+	}
+
+	private Object newArray(final int numEntities) {
+		switch (kind) {
+			case BYTE:
+				return new byte[numEntities];
+			case SHORT:
+				return new short[numEntities];
+			case INT:
+				return new int[numEntities];
+			case LONG:
+				return new long[numEntities];
+			case FLOAT:
+				return new float[numEntities];
+			default:
+				return new double[numEntities];
+		}
+	}
+
+	private void read(final ByteBuffer buffer, final Object array) {
+		switch (kind) {
+			case BYTE:
+				buffer.get((byte[]) array);
+				break;
+			case SHORT:
+				buffer.asShortBuffer().get((short[]) array);
+				break;
+			case INT:
+				buffer.asIntBuffer().get((int[]) array);
+				break;
+			case LONG:
+				buffer.asLongBuffer().get((long[]) array);
+				break;
+			case FLOAT:
+				buffer.asFloatBuffer().get((float[]) array);
+				break;
+			default:
+				buffer.asDoubleBuffer().get((double[]) array);
+		}
+	}
+
+	private void write(final ByteBuffer buffer, final Object array) {
+		switch (kind) {
+			case BYTE:
+				buffer.put((byte[]) array);
+				break;
+			case SHORT:
+				buffer.asShortBuffer().put((short[]) array);
+				break;
+			case INT:
+				buffer.asIntBuffer().put((int[]) array);
+				break;
+			case LONG:
+				buffer.asLongBuffer().put((long[]) array);
+				break;
+			case FLOAT:
+				buffer.asFloatBuffer().put((float[]) array);
+				break;
+			default:
+				buffer.asDoubleBuffer().put((double[]) array);
+		}
+	}
+
+	// -- helper class --
+
+	/**
+	 * The state of one plane of a {@link PlaneStore}. Pixel reads only touch
+	 * volatile fields without locking; loading and eviction are synchronized on
+	 * the store. Writers mark the plane dirty after writing, holding the lock of
+	 * the slot that eviction also holds while writing the plane back, so a write
+	 * is either written back or seen to need redoing.
+	 */
+	static final class Slot {
+
+		private final PlaneStore store;
+		private final int index;
+		private final int numEntities;
+		private final long offset;
+		private final long bytes;
+		private volatile Object data;
+		private volatile boolean dirty;
+		private volatile boolean referenced;
+		private boolean written;
+		private int pins;
+
+		private Slot(final PlaneStore store, final int index,
+			final int numEntities, final long offset, final long bytes)
+		{
+			this.store = store;
+			this.index = index;
+			this.numEntities = numEntities;
+			this.offset = offset;
+			this.bytes = bytes;
+		}
+
+		/** Returns the plane's array, loading it if necessary. */
+		Object get() {
+			if (!referenced) referenced = true;
+			final Object array = data;
+			return array != null ? array : store.load(this);
+		}
+
+		/** Makes the plane resident until unpinned; returns its array. */
+		Object pin() {
+			return store.pin(this);
+		}
+
+		/** Allows the plane to be evicted again. */
+		void unpin() {
+			store.unpin(this);
+		}
+
+		/**
+		 * Marks the plane as needing to be written back after the given array of
+		 * it was written to. Returns false if the array is no longer the plane's
+		 * resident array, in which case the write may have been lost and must be
+		 * redone on the plane's current array.
+		 */
+		synchronized boolean setDirty(final Object array) {
+			if (data != array) return false;
+			dirty = true;
+			return true;
+		}
+	}
+
+}
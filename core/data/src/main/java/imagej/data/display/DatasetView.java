@@ -39,6 +39,7 @@
 import imagej.data.Dataset;
 import imagej.display.Display;
 import imagej.util.ColorRGB;
+import imagej.util.RealRect;
 
 import java.util.List;
 
@@ -59,8 +60,32 @@
  */
 public interface DatasetView extends DataView {
 
+	/**
+	 * Gets the rendered image of the view. Normally this covers the whole
+	 * current plane at data resolution. When viewport rendering is enabled it
+	 * covers only the visible region, at screen resolution; see
+	 * {@link #getScreenImageBounds()}.
+	 */
 	ARGBScreenImage getScreenImage();
 
+	/**
+	 * Gets the region of the plane, in data coordinates, covered by the screen
+	 * image.
+	 */
+	RealRect getScreenImageBounds();
+
+	/**
+	 * Gets whether the view renders only the region of the plane visible in its
+	 * display's canvas, at screen resolution, instead of the whole plane.
+	 */
+	boolean isViewportRendering();
+
+	/**
+	 * Sets whether the view renders only the region of the plane visible in its
+	 * display's canvas. Views of very large planes always do.
+	 */
+	void setViewportRendering(boolean enabled);
+
 	int getCompositeDimIndex();
 
 	CompositeXYProjector<? extends RealType<?>> getProjector();
@@ -39,18 +39,30 @@
 import imagej.data.Data;
 import imagej.data.Dataset;
 import imagej.data.Position;
+import imagej.data.PrimitivePlane;
 import imagej.data.autoscale.AutoscaleService;
 import imagej.data.autoscale.DataRange;
 import imagej.data.display.event.DataViewUpdatedEvent;
 import imagej.data.display.event.LUTsChangedEvent;
+import imagej.data.display.event.PanZoomEvent;
+import imagej.data.display.event.ViewportResizeEvent;
 import imagej.data.event.DatasetRGBChangedEvent;
+import imagej.data.event.DatasetRangeRefinedEvent;
 import imagej.data.event.DatasetTypeChangedEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.histogram.HistogramService;
+import imagej.data.pyramid.PyramidService;
+import imagej.data.pyramid.PyramidUpdatedEvent;
 import imagej.util.ColorRGB;
+import imagej.util.IntCoords;
+import imagej.util.RealCoords;
+import imagej.util.RealRect;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.imglib2.Binning;
 import net.imglib2.RandomAccessibleInterval;
@@ -69,6 +81,7 @@
 import org.scijava.event.EventHandler;
 import org.scijava.event.EventService;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * A view into a {@link Dataset}, for use with a {@link ImageDisplay}.
@@ -81,6 +94,15 @@
 public class DefaultDatasetView extends AbstractDataView implements DatasetView
 {
 
+	/** Planes with more pixels than this are always rendered by viewport. */
+	private static final long VIEWPORT_PLANE_SIZE = 4096L * 4096L;
+
+	/** The most memory used to cache rendered viewport tiles. */
+	private static final long TILE_CACHE_BYTES = 64L * 1024 * 1024;
+
+	/** Datasets with more samples than this are autoscaled by sampling. */
+	private static final long SAMPLED_RANGE_SIZE = 64L * 1024 * 1024;
+
 	/** The dimensional index representing channels, for compositing. */
 	private int channelDimIndex;
 
@@ -92,11 +114,24 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 
 	private ARGBScreenImage screenImage;
 
+	/** The region of the plane, in data coordinates, in the screen image. */
+	private RealRect screenImageBounds = new RealRect();
+
+	/** Whether viewport rendering was requested for planes of any size. */
+	private boolean viewportRendering;
+
+	/** Renders the visible region when in viewport mode; otherwise null. */
+	private ViewportRenderer viewportRenderer;
+
 	private CompositeXYProjector<? extends RealType<?>> projector;
 
 	private final ArrayList<RealLUTConverter<? extends RealType<?>>> converters =
 		new ArrayList<RealLUTConverter<? extends RealType<?>>>();
 
+	/** Sampled channel ranges awaiting their exact background refinement. */
+	private final Map<Integer, DataRange> estimatedRanges =
+		new ConcurrentHashMap<Integer, DataRange>();
+
 	// -- DatasetView methods --
 
 	@Override
@@ -110,6 +145,24 @@ public ARGBScreenImage getScreenImage() {
 		return screenImage;
 	}
 
+	@Override
+	public RealRect getScreenImageBounds() {
+		final RealRect b = screenImageBounds;
+		return new RealRect(b.x, b.y, b.width, b.height);
+	}
+
+	@Override
+	public boolean isViewportRendering() {
+		return viewportRenderer != null;
+	}
+
+	@Override
+	public void setViewportRendering(final boolean enabled) {
+		if (viewportRendering == enabled) return;
+		viewportRendering = enabled;
+		if (isInitialized()) rebuild();
+	}
+
 	@Override
 	public int getCompositeDimIndex() {
 		return channelDimIndex;
@@ -151,23 +204,9 @@ public void setChannelRanges(final double min, final double max) {
 
 	@Override
 	public void autoscale(final int c) {
-		// get the channel min/max from metadata
-		final ImgPlus<? extends RealType<?>> imgPlus = getData().getImgPlus();
-		double min = imgPlus.getChannelMinimum(c);
-		double max = imgPlus.getChannelMaximum(c);
-		if (Double.isNaN(min) || Double.isNaN(max)) {
-			// not provided in metadata, so calculate the min/max
-			RandomAccessibleInterval<? extends RealType<?>> interval = channelData(getData(), c);
-			interval = xyPlane(interval);
-			AutoscaleService service = getContext().getService(AutoscaleService.class);
-			DataRange result = service.getDefaultRandomAccessRange(interval);
-			min = result.getMin();
-			max = result.getMax();
-			// cache min/max in metadata for next time
-			imgPlus.setChannelMinimum(c, min);
-			imgPlus.setChannelMaximum(c, max);
-		}
-		setChannelRange(c, min, max);
+		final DataRange range = channelRange(c);
+		setChannelRange(c, range.getMin(), range.getMax());
+		refineEstimate(c);
 	}
 
 	@Override
@@ -332,12 +371,12 @@ public Dataset getData() {
 
 	@Override
 	public int getPreferredWidth() {
-		return getScreenImage().image().getWidth(null);
+		return (int) getData().dimension(0);
 	}
 
 	@Override
 	public int getPreferredHeight() {
-		return getScreenImage().image().getHeight(null);
+		return (int) getData().dimension(1);
 	}
 
 	@Override
@@ -364,7 +403,19 @@ public void rebuild() {
 
 		final int width = (int) img.dimension(0);
 		final int height = (int) img.dimension(1);
-		screenImage = new ARGBScreenImage(width, height);
+		if (viewportRendering || (long) width * height > VIEWPORT_PLANE_SIZE) {
+			// NB - the screen image is sized to the viewport when first rendered
+			screenImage = new ARGBScreenImage(1, 1);
+			screenImageBounds = new RealRect(0, 0, 0, 0);
+			viewportRenderer =
+				new ViewportRenderer(getData(), converters, channelDimIndex,
+					threadService(), pyramidService(), TILE_CACHE_BYTES);
+		}
+		else {
+			screenImage = new ARGBScreenImage(width, height);
+			screenImageBounds = new RealRect(0, 0, width, height);
+			viewportRenderer = null;
+		}
 
 		initializeView(isComposite());
 
@@ -437,10 +488,54 @@ protected void onEvent(final DatasetUpdatedEvent event) {
 		}
 		if (getData() == event.getObject()) {
 			if (event.isMetaDataOnly()) return;
+			// NB - make sure stale pyramid planes are not drawn
+			final PyramidService pyramidService = pyramidService();
+			if (viewportRenderer != null && pyramidService != null) {
+				pyramidService.getPyramid(getData()).invalidate(event.getPlaneIndex());
+			}
 			projector.map();
 		}
 	}
-  
+
+	@EventHandler
+	protected void onEvent(final DatasetRangeRefinedEvent event) {
+		if (getData() != event.getObject()) return;
+		final int c = event.getChannel();
+		final DataRange estimate = estimatedRanges.remove(c);
+		if (estimate == null || c >= converters.size()) return;
+		// NB - keep any range the user has chosen since autoscaling
+		final RealLUTConverter<? extends RealType<?>> conv = converters.get(c);
+		if (conv.getMin() != estimate.getMin() ||
+			conv.getMax() != estimate.getMax()) return;
+		setChannelRange(c, event.getMin(), event.getMax());
+		projector.map();
+		update();
+	}
+
+	@EventHandler
+	protected void onEvent(final PyramidUpdatedEvent event) {
+		if (viewportRenderer == null) return;
+		if (getData() != event.getPyramid().getDataset()) return;
+		projector.map();
+		update();
+	}
+
+	@EventHandler
+	protected void onEvent(final PanZoomEvent event) {
+		if (viewportRenderer == null) return;
+		if (!event.getDisplay().contains(this)) return;
+		renderViewport(event.getCanvas());
+		update();
+	}
+
+	@EventHandler
+	protected void onEvent(final ViewportResizeEvent event) {
+		if (viewportRenderer == null) return;
+		if (!event.getDisplay().contains(this)) return;
+		renderViewport(event.getCanvas());
+		update();
+	}
+
 	// -- Helper methods --
   
 	private int getChannelDimIndex() {
@@ -467,16 +562,25 @@ private void initializeView(final boolean composite) {
 		converters.clear();
 		final int channelCount = getChannelCount();
 		for (int c = 0; c < channelCount; c++) {
-			autoscale(c);
+			final DataRange range = channelRange(c);
 			final RealLUTConverter converter =
-				new RealLUTConverter(getData().getImgPlus().getChannelMinimum(c),
-					getData().getImgPlus().getChannelMaximum(c), null);
+				new RealLUTConverter(range.getMin(), range.getMax(), null);
 			converters.add(converter);
 		}
 		
 		ImgPlus<?> img = getData().getImgPlus();
 		
-		if (AbstractCellImg.class.isAssignableFrom(img.getImg().getClass())) {
+		if (viewportRenderer != null) {
+			projector =
+				new ViewportProjector(getData().getImgPlus(), screenImage, converters,
+					channelDimIndex);
+		}
+		else if (PrimitivePlane.isSupported(getData())) {
+			projector =
+				new PlanarCompositeXYProjector(getData(), screenImage, converters,
+					channelDimIndex, threadService());
+		}
+		else if (AbstractCellImg.class.isAssignableFrom(img.getImg().getClass())) {
 		  projector =
 		      new SourceOptimizedCompositeXYProjector(getData().getImgPlus(), screenImage, converters,
 		          channelDimIndex);
@@ -488,6 +592,53 @@ private void initializeView(final boolean composite) {
 		}
 		
 		projector.setComposite(composite);
+
+		// NB - only now can a refined range replace the estimate it was made for
+		for (int c = 0; c < channelCount; c++) {
+			refineEstimate(c);
+		}
+	}
+
+	/**
+	 * Returns the range of all values of the given channel: the one cached in
+	 * the metadata if any, else the exact one, which is cached in turn. The range
+	 * of a Dataset too big to scan up front is estimated from a sample instead
+	 * and needs to be {@link #refineEstimate refined} once it is shown.
+	 */
+	private DataRange channelRange(final int c) {
+		final Dataset d = getData();
+		final ImgPlus<? extends RealType<?>> imgPlus = d.getImgPlus();
+		final double min = imgPlus.getChannelMinimum(c);
+		final double max = imgPlus.getChannelMaximum(c);
+		if (!Double.isNaN(min) && !Double.isNaN(max)) return new DataRange(min, max);
+
+		final AutoscaleService autoscaleService = autoscaleService();
+		if (autoscaleService != null && imgPlus.size() > SAMPLED_RANGE_SIZE) {
+			final DataRange estimate =
+				autoscaleService.estimateChannelRange(d, c, 0, 0);
+			estimatedRanges.put(c, estimate);
+			return estimate;
+		}
+		final HistogramService service =
+			getContext().getService(HistogramService.class);
+		final int chIndex = d.getAxisIndex(Axes.CHANNEL);
+		final DataRange result =
+			chIndex < 2 ? service.getRange(d) : service.getRange(d, service
+				.getPlaneIndices(d, chIndex, c));
+		// cache min/max in metadata for next time
+		imgPlus.setChannelMinimum(c, result.getMin());
+		imgPlus.setChannelMaximum(c, result.getMax());
+		return result;
+	}
+
+	/**
+	 * Starts the background scan replacing the estimated range of the given
+	 * channel with its exact one. Needs to be called after the estimate is
+	 * applied, as the exact range only replaces a range equal to the estimate.
+	 */
+	private void refineEstimate(final int c) {
+		if (!estimatedRanges.containsKey(c)) return;
+		autoscaleService().refineChannelRange(getData(), c);
 	}
 
 	private void updateLUTs() {
@@ -506,6 +657,56 @@ private void updateLUTs() {
 		evtSrv.publishLater(new LUTsChangedEvent(this));
 	}
 
+	/** Renders the visible region of the given canvas into the screen image. */
+	private void renderViewport(final ImageCanvas canvas) {
+		if (canvas == null || !isInitialized()) return;
+		final int width = Math.max(1, canvas.getViewportWidth());
+		final int height = Math.max(1, canvas.getViewportHeight());
+		if (screenImage.dimension(0) != width || screenImage.dimension(1) != height)
+		{
+			screenImage = new ARGBScreenImage(width, height);
+		}
+		final RealCoords topLeft = canvas.panelToDataCoords(new IntCoords(0, 0));
+		final long[] position = new long[getData().numDimensions()];
+		for (int d = 2; d < position.length; d++) {
+			position[d] = projector.getLongPosition(d);
+		}
+		screenImageBounds =
+			viewportRenderer.render(screenImage, canvas.getZoomFactor(), topLeft.x,
+				topLeft.y, position, projector.isComposite());
+	}
+
+	/** Returns the canvas of the display showing this view, if any. */
+	private ImageCanvas findCanvas() {
+		final Context context = getContext();
+		if (context == null) return null;
+		final ImageDisplayService imageDisplayService =
+			context.getService(ImageDisplayService.class);
+		if (imageDisplayService == null) return null;
+		for (final ImageDisplay display : imageDisplayService.getImageDisplays()) {
+			if (display.contains(this)) return display.getCanvas();
+		}
+		return null;
+	}
+
+	private AutoscaleService autoscaleService() {
+		final Context context = getContext();
+		if (context == null) return null;
+		return context.getService(AutoscaleService.class);
+	}
+
+	private PyramidService pyramidService() {
+		final Context context = getContext();
+		if (context == null) return null;
+		return context.getService(PyramidService.class);
+	}
+
+	private ThreadService threadService() {
+		final Context context = getContext();
+		if (context == null) return null;
+		return context.getService(ThreadService.class);
+	}
+
 	private ColorTable getCurrentLUT(final int cPos) {
 		final Position pos = getPlanePosition();
 		if (channelDimIndex >= 0) {
@@ -519,22 +720,27 @@ private ColorTable getCurrentLUT(final int cPos) {
 		return defaultLUTs.get(cPos); // return default channel LUT
 	}
 
-	private RandomAccessibleInterval<? extends RealType<?>> channelData(final Dataset d,
-		final int c)
-	{
-		final ImgPlus<? extends RealType<?>> imgPlus = d.getImgPlus();
-		final int chIndex = imgPlus.getAxisIndex(Axes.CHANNEL);
-		if (chIndex < 0) {
-			return imgPlus;
-		}
-		final long[] mn = new long[d.numDimensions()];
-		final long[] mx = d.getDims();
-		for (int i = 0; i < mx.length; i++) {
-			mx[i]--;
-		}
-		mn[chIndex] = c;
-		mx[chIndex] = c;
-		return Views.interval(imgPlus, mn, mx);
+	// -- Helper classes --
+
+	/**
+	 * A projector that tracks the view's position but, when mapped, renders
+	 * only the visible region of the plane.
+	 */
+	@SuppressWarnings("rawtypes")
+	private class ViewportProjector extends CompositeXYProjector {
+
+		@SuppressWarnings("unchecked")
+		public ViewportProjector(final ImgPlus img, final ARGBScreenImage target,
+			final ArrayList converters, final int dimIndex)
+		{
+			super(img, target, converters, dimIndex);
+		}
+
+		@Override
+		public void map() {
+			viewportRenderer.invalidate();
+			renderViewport(findCanvas());
+		}
 	}
 
 }
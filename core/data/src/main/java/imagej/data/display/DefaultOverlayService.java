@@ -45,6 +45,8 @@
 import imagej.data.overlay.CompositeOverlay;
 import imagej.data.overlay.Overlay;
 import imagej.data.overlay.OverlaySettings;
+import imagej.data.overlay.ScanlineSpans;
+import imagej.data.overlay.SpanRasterizer;
 import imagej.display.Display;
 import imagej.display.DisplayService;
 import imagej.options.OptionsService;
@@ -54,13 +56,6 @@
 import java.util.ArrayList;
 import java.util.List;
 
-import net.imglib2.RealRandomAccess;
-import net.imglib2.ops.pointset.PointSet;
-import net.imglib2.ops.pointset.PointSetIterator;
-import net.imglib2.ops.pointset.RoiPointSet;
-import net.imglib2.roi.RegionOfInterest;
-import net.imglib2.type.logic.BitType;
-
 import org.scijava.object.ObjectService;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
@@ -95,6 +90,7 @@ public final class DefaultOverlayService extends AbstractService implements
 
 	private OverlaySettings defaultSettings;
 	private OverlayInfoList overlayInfo;
+	private SpanRasterizer rasterizer;
 
 	// -- OverlayService methods --
 
@@ -246,12 +242,17 @@ public OverlaySettings getDefaultSettings() {
 
 	@Override
 	public void drawOverlay(Overlay o, ImageDisplay display, ChannelCollection channels) {
-		draw(o, display, channels, new OverlayOutliner());
+		draw(getSpans(o).outline(), display, channels);
 	}
 
 	@Override
 	public void fillOverlay(Overlay o, ImageDisplay display, ChannelCollection channels) {
-		draw(o, display, channels, new OverlayFiller());
+		draw(getSpans(o), display, channels);
+	}
+
+	@Override
+	public ScanlineSpans getSpans(Overlay o) {
+		return rasterizer.getSpans(o);
 	}
 
 	@Override
@@ -333,74 +334,13 @@ public void initialize() {
 			optionsService.getOptions(OptionsOverlay.class);
 		overlayOptions.updateSettings(defaultSettings);
 		overlayInfo = new OverlayInfoList();
+		rasterizer = new SpanRasterizer();
 	}
 
 	// -- helpers --
 
-	private interface Drawer {
-		void draw(Overlay o, DrawingTool tool);
-	}
-
-	private static class OverlayOutliner implements Drawer {
-		@Override
-		public void draw(Overlay o, DrawingTool tool) {
-			final RegionOfInterest region = o.getRegionOfInterest();
-			PointSet pointSet = new RoiPointSet(region);
-			// TODO - rather than a pointSet use an IterableInterval? Investigate.
-			final RealRandomAccess<BitType> accessor = region.realRandomAccess();
-			final PointSetIterator iter = pointSet.iterator();
-			final long[] max = new long[pointSet.numDimensions()];
-			pointSet.max(max);
-			long[] pos;
-			while (iter.hasNext()) {
-				pos = iter.next();
-				accessor.setPosition(pos);
-				if (accessor.get().get())
-					if (isBorderPixel(accessor, pos, max[0], max[1]))
-						tool.drawPixel(pos[0], pos[1]);
-			}
-		}
-		
-		private boolean isBorderPixel(RealRandomAccess<BitType> accessor, long[] pos,
-			long maxX, long maxY)
-		{
-			if (pos[0] == 0) return true;
-			if (pos[0] == maxX) return true;
-			if (pos[1] == 0) return true;
-			if (pos[1] == maxY) return true;
-			accessor.setPosition(pos[0]-1,0);
-			if (!accessor.get().get()) return true;
-			accessor.setPosition(pos[0]+1,0);
-			if (!accessor.get().get()) return true;
-			accessor.setPosition(pos[0],0);
-			accessor.setPosition(pos[1]-1,1);
-			if (!accessor.get().get()) return true;
-			accessor.setPosition(pos[1]+1,1);
-			if (!accessor.get().get()) return true;
-			return false;
-		}
-
-	}
-
-	private static class OverlayFiller implements Drawer {
-		@Override
-		public void draw(Overlay o, DrawingTool tool) {
-			final RegionOfInterest region = o.getRegionOfInterest();
-			final RoiPointSet pointSet = new RoiPointSet(region);
-			final RealRandomAccess<BitType> accessor = region.realRandomAccess();
-			final PointSetIterator iter = pointSet.iterator();
-			long[] pos;
-			while (iter.hasNext()) {
-				pos = iter.next();
-				accessor.setPosition(pos);
-				if (accessor.get().get())
-					tool.drawPixel(pos[0], pos[1]);
-			}
-			
-		}
-	}
-
-	private void draw(Overlay o, ImageDisplay display, ChannelCollection channels, Drawer drawer)
+	private void draw(ScanlineSpans spans, ImageDisplay display,
+		ChannelCollection channels)
 	{
 		final Dataset ds = getDataset(display);
 		if (ds == null) return;
@@ -413,7 +353,12 @@ private void draw(Overlay o, ImageDisplay display, ChannelCollection channels, D
 			fullPos[i] = pp[i-2];
 		tool.setPosition(fullPos);
 		tool.setChannels(channels);
-		drawer.draw(o, tool);
+		for (long y = spans.minY(); y <= spans.maxY(); y++) {
+			final int count = spans.spanCount(y);
+			for (int i = 0; i < count; i++) {
+				tool.drawSpan(spans.spanStart(y, i), spans.spanEnd(y, i) - 1, y);
+			}
+		}
 		ds.update();
 	}
 	
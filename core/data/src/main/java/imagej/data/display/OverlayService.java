@@ -39,6 +39,7 @@
 import imagej.data.overlay.CompositeOverlay;
 import imagej.data.overlay.Overlay;
 import imagej.data.overlay.OverlaySettings;
+import imagej.data.overlay.ScanlineSpans;
 import imagej.util.RealRect;
 
 import java.util.List;
@@ -117,6 +118,12 @@ public interface OverlayService extends Service {
 	 */
 	void fillOverlay(Overlay o, ImageDisplay display, ChannelCollection channelData);
 
+	/**
+	 * Gets the pixels of a given overlay's X and Y dimensions as scanline spans.
+	 * Spans are cached and recomputed only when the overlay's geometry changes.
+	 */
+	ScanlineSpans getSpans(Overlay o);
+
 	/**
 	 * Returns the first display associated with an overlay
 	 */
@@ -0,0 +1,442 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import imagej.data.Dataset;
+import imagej.data.PrimitivePlane;
+import imagej.data.RowAccess;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import net.imglib2.Binning;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * As {@link CompositeXYProjector} but specialized for planar {@link Dataset}s
+ * whose channels are converted by {@link RealLUTConverter}s. Rather than
+ * converting each pixel of each channel through a generic random access and
+ * converter, this projector reads the primitive plane arrays directly and
+ * maps them through precomputed ARGB lookup tables. 8 and 16 bit data is
+ * mapped with one table lookup per pixel. The rows of the screen image are
+ * divided between the available cores.
+ * <p>
+ * The result is identical to that of {@link CompositeXYProjector}. If the
+ * current planes cannot be accessed as primitive arrays (or a converter is not
+ * a {@link RealLUTConverter}) this projector defers to its superclass.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public class PlanarCompositeXYProjector<A extends RealType<A>> extends
+	CompositeXYProjector<A>
+{
+
+	// -- constants --
+
+	/** The minimum number of rows worth handing to a single task. */
+	private static final int MIN_ROWS = 64;
+
+	// -- instance variables --
+
+	private final Dataset dataset;
+	private final ARGBScreenImage target;
+	private final ArrayList<Converter<A, ARGBType>> converterList;
+	private final int channelIndex;
+	private final ThreadService threadService;
+
+	/** Lookup tables of 8 and 16 bit channels, kept between calls to map(). */
+	private final Map<Converter<A, ARGBType>, LookupTable> tables =
+		new HashMap<Converter<A, ARGBType>, LookupTable>();
+
+	// -- constructor --
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public PlanarCompositeXYProjector(final Dataset dataset,
+		final ARGBScreenImage target,
+		final ArrayList<Converter<A, ARGBType>> converters, final int dimIndex,
+		final ThreadService threadService)
+	{
+		super((ImgPlus) dataset.getImgPlus(), target, converters, dimIndex);
+		this.dataset = dataset;
+		this.target = target;
+		this.converterList = converters;
+		this.channelIndex = dimIndex;
+		this.threadService = threadService;
+	}
+
+	// -- Projector methods --
+
+	@Override
+	public void map() {
+		final ChannelMapper[] mappers = createMappers();
+		if (mappers == null) {
+			super.map();
+			return;
+		}
+		final int width = (int) dataset.dimension(0);
+		final int height = (int) dataset.dimension(1);
+		final int[] argb = target.getData();
+		final int numTasks = ParallelUtils.taskCount(height, MIN_ROWS);
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < numTasks; t++) {
+			final int y0 = (int) ParallelUtils.chunkStart(height, numTasks, t);
+			final int rows = (int) ParallelUtils.chunkSize(height, numTasks, t);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					mapRows(mappers, argb, width, y0, rows);
+					return null;
+				}
+			});
+		}
+		ParallelUtils.invokeAll(threadService, tasks);
+	}
+
+	// -- helpers --
+
+	/**
+	 * Returns a mapper for each channel contributing to the current view, or
+	 * null if the fast path does not apply.
+	 */
+	private ChannelMapper[] createMappers() {
+		if (target.dimension(0) != dataset.dimension(0)) return null;
+		if (target.dimension(1) != dataset.dimension(1)) return null;
+		final int size;
+		final long[] positions;
+		final Converter<A, ARGBType>[] convs;
+		if (channelIndex < 0) {
+			size = 1;
+			positions = new long[] { 0 };
+			@SuppressWarnings("unchecked")
+			final Converter<A, ARGBType>[] single =
+				new Converter[] { converterList.get(0) };
+			convs = single;
+		}
+		else {
+			size = updateCurrentArrays();
+			positions = currentPositions;
+			convs = currentConverters;
+		}
+		final long[] planePos = new long[dataset.numDimensions() - 2];
+		for (int i = 0; i < planePos.length; i++) {
+			planePos[i] = getLongPosition(i + 2);
+		}
+		final RealType<?> type = dataset.getType();
+		final ChannelMapper[] mappers = new ChannelMapper[size];
+		for (int i = 0; i < size; i++) {
+			if (!(convs[i] instanceof RealLUTConverter)) return null;
+			final RealLUTConverter<?> conv = (RealLUTConverter<?>) convs[i];
+			if (conv.getLUT() == null) return null;
+			if (channelIndex >= 0) planePos[channelIndex - 2] = positions[i];
+			final int planeNum = RowAccess.planeIndex(dataset, planePos);
+			final PrimitivePlane plane =
+				PrimitivePlane.wrapForReading(dataset, planeNum);
+			if (plane == null) return null;
+			mappers[i] = createMapper(convs[i], conv, plane, type);
+		}
+		return mappers;
+	}
+
+	private ChannelMapper createMapper(final Converter<A, ARGBType> key,
+		final RealLUTConverter<?> conv, final PrimitivePlane plane,
+		final RealType<?> type)
+	{
+		final Object array = plane.getArray();
+		if (type instanceof UnsignedByteType) {
+			final int[] table = lookupTable(key, conv, 256, 0);
+			return new UnsignedByteMapper((byte[]) array, table);
+		}
+		if (type instanceof ByteType) {
+			final int[] table = lookupTable(key, conv, 256, Byte.MIN_VALUE);
+			return new ByteMapper((byte[]) array, table);
+		}
+		if (type instanceof UnsignedShortType) {
+			final int[] table = lookupTable(key, conv, 65536, 0);
+			return new UnsignedShortMapper((short[]) array, table);
+		}
+		if (type instanceof ShortType) {
+			final int[] table = lookupTable(key, conv, 65536, Short.MIN_VALUE);
+			return new ShortMapper((short[]) array, table);
+		}
+		return new RealMapper(plane, conv.getMin(), conv.getMax(), colors(conv
+			.getLUT()));
+	}
+
+	/**
+	 * Returns the ARGB value of every representable value of an 8 or 16 bit
+	 * type, reusing the previous table if the converter has not changed.
+	 */
+	private synchronized int[] lookupTable(final Converter<A, ARGBType> key,
+		final RealLUTConverter<?> conv, final int length, final int firstValue)
+	{
+		final double min = conv.getMin();
+		final double max = conv.getMax();
+		final ColorTable lut = conv.getLUT();
+		final LookupTable cached = tables.get(key);
+		if (cached != null && cached.matches(min, max, lut, firstValue)) {
+			return cached.argb;
+		}
+		final int[] colors = colors(lut);
+		final int[] argb = new int[length];
+		for (int i = 0; i < length; i++) {
+			final int bin =
+				Binning.valueToBin(colors.length, min, max, firstValue + i);
+			argb[i] = colors[bin];
+		}
+		tables.put(key, new LookupTable(min, max, lut, firstValue, argb));
+		return argb;
+	}
+
+	private static int[] colors(final ColorTable lut) {
+		final int[] colors = new int[lut.getLength()];
+		for (int i = 0; i < colors.length; i++) {
+			colors[i] = lut.argb(i);
+		}
+		return colors;
+	}
+
+	/** Composites the given rows of all channels into the screen image. */
+	private static void mapRows(final ChannelMapper[] mappers,
+		final int[] argb, final int width, final int y0, final int rows)
+	{
+		if (mappers.length == 1) {
+			final int offset = y0 * width;
+			mappers[0].map(offset, argb, offset, rows * width);
+			return;
+		}
+		final int[] values = new int[width];
+		final int[] aSum = new int[width];
+		final int[] rSum = new int[width];
+		final int[] gSum = new int[width];
+		final int[] bSum = new int[width];
+		for (int y = y0; y < y0 + rows; y++) {
+			final int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				aSum[x] = rSum[x] = gSum[x] = bSum[x] = 0;
+			}
+			for (final ChannelMapper mapper : mappers) {
+				mapper.map(offset, values, 0, width);
+				for (int x = 0; x < width; x++) {
+					final int value = values[x];
+					aSum[x] += (value >>> 24) & 0xff;
+					rSum[x] += (value >> 16) & 0xff;
+					gSum[x] += (value >> 8) & 0xff;
+					bSum[x] += value & 0xff;
+				}
+			}
+			for (int x = 0; x < width; x++) {
+				final int a = aSum[x] > 255 ? 255 : aSum[x];
+				final int r = rSum[x] > 255 ? 255 : rSum[x];
+				final int g = gSum[x] > 255 ? 255 : gSum[x];
+				final int b = bSum[x] > 255 ? 255 : bSum[x];
+				argb[offset + x] = ARGBType.rgba(r, g, b, a);
+			}
+		}
+	}
+
+	// -- helper classes --
+
+	/** A lookup table along with the converter settings it was built from. */
+	private static class LookupTable {
+
+		private final double min, max;
+		private final ColorTable lut;
+		private final int firstValue;
+		private final int[] argb;
+
+		public LookupTable(final double min, final double max,
+			final ColorTable lut, final int firstValue, final int[] argb)
+		{
+			this.min = min;
+			this.max = max;
+			this.lut = lut;
+			this.firstValue = firstValue;
+			this.argb = argb;
+		}
+
+		public boolean matches(final double mn, final double mx,
+			final ColorTable table, final int first)
+		{
+			return min == mn && max == mx && lut == table && firstValue == first;
+		}
+	}
+
+	/** Maps a run of pixels of one channel plane to ARGB values. */
+	private interface ChannelMapper {
+
+		void map(int offset, int[] dest, int destOffset, int count);
+	}
+
+	private static class UnsignedByteMapper implements ChannelMapper {
+
+		private final byte[] data;
+		private final int[] table;
+
+		public UnsignedByteMapper(final byte[] data, final int[] table) {
+			this.data = data;
+			this.table = table;
+		}
+
+		@Override
+		public void map(final int offset, final int[] dest, final int destOffset,
+			final int count)
+		{
+			for (int i = 0; i < count; i++) {
+				dest[destOffset + i] = table[data[offset + i] & 0xff];
+			}
+		}
+	}
+
+	private static class ByteMapper implements ChannelMapper {
+
+		private final byte[] data;
+		private final int[] table;
+
+		public ByteMapper(final byte[] data, final int[] table) {
+			this.data = data;
+			this.table = table;
+		}
+
+		@Override
+		public void map(final int offset, final int[] dest, final int destOffset,
+			final int count)
+		{
+			for (int i = 0; i < count; i++) {
+				dest[destOffset + i] = table[data[offset + i] - Byte.MIN_VALUE];
+			}
+		}
+	}
+
+	private static class UnsignedShortMapper implements ChannelMapper {
+
+		private final short[] data;
+		private final int[] table;
+
+		public UnsignedShortMapper(final short[] data, final int[] table) {
+			this.data = data;
+			this.table = table;
+		}
+
+		@Override
+		public void map(final int offset, final int[] dest, final int destOffset,
+			final int count)
+		{
+			for (int i = 0; i < count; i++) {
+				dest[destOffset + i] = table[data[offset + i] & 0xffff];
+			}
+		}
+	}
+
+	private static class ShortMapper implements ChannelMapper {
+
+		private final short[] data;
+		private final int[] table;
+
+		public ShortMapper(final short[] data, final int[] table) {
+			this.data = data;
+			this.table = table;
+		}
+
+		@Override
+		public void map(final int offset, final int[] dest, final int destOffset,
+			final int count)
+		{
+			for (int i = 0; i < count; i++) {
+				dest[destOffset + i] = table[data[offset + i] - Short.MIN_VALUE];
+			}
+		}
+	}
+
+	/**
+	 * Maps 32 and 64 bit pixels, whose range is too large to tabulate, by
+	 * computing their color table bin.
+	 */
+	private static class RealMapper implements ChannelMapper {
+
+		private static final int BUFFER_SIZE = 4096;
+
+		private final PrimitivePlane plane;
+		private final double min, max;
+		private final int[] colors;
+
+		public RealMapper(final PrimitivePlane plane, final double min,
+			final double max, final int[] colors)
+		{
+			this.plane = plane;
+			this.min = min;
+			this.max = max;
+			this.colors = colors;
+		}
+
+		@Override
+		public void map(final int offset, final int[] dest, final int destOffset,
+			final int count)
+		{
+			final double[] values = new double[Math.min(count, BUFFER_SIZE)];
+			final int binCount = colors.length;
+			int done = 0;
+			while (done < count) {
+				final int n = Math.min(values.length, count - done);
+				plane.get(offset + done, values, 0, n);
+				for (int i = 0; i < n; i++) {
+					final int bin = Binning.valueToBin(binCount, min, max, values[i]);
+					dest[destOffset + done + i] = colors[bin];
+				}
+				done += n;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,539 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import imagej.data.Dataset;
+import imagej.data.PrimitivePlane;
+import imagej.data.RowAccess;
+import imagej.data.pyramid.Pyramid;
+import imagej.data.pyramid.PyramidService;
+import imagej.util.ParallelUtils;
+import imagej.util.RealRect;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import net.imglib2.Binning;
+import net.imglib2.RandomAccess;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Renders the visible region of the current plane of a {@link Dataset} at
+ * screen resolution. Rather than projecting the whole plane into a bitmap that
+ * is then panned and zoomed, only the screen pixels of the viewport are
+ * computed, each one sampling the nearest data pixel.
+ * <p>
+ * The zoomed plane is divided into square tiles of screen pixels. Rendered
+ * tiles are kept in a bounded cache so that panning only renders the tiles
+ * that become exposed. The cache must be invalidated whenever the rendered
+ * pixels change (new position, display ranges, color tables or data).
+ * </p>
+ * <p>
+ * When given a {@link PyramidService}, zoomed out viewports are sampled from
+ * the coarsest suitable {@link Pyramid} level instead of the full resolution
+ * data. Until that level has been built the full resolution data is used.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public class ViewportRenderer {
+
+	// -- constants --
+
+	/** The width and height, in screen pixels, of a tile. */
+	public static final int TILE_SIZE = 256;
+
+	private static final long TILE_BYTES = 4L * TILE_SIZE * TILE_SIZE;
+
+	// -- instance variables --
+
+	private final Dataset dataset;
+	private final List<? extends RealLUTConverter<? extends RealType<?>>> converters;
+	private final int channelDimIndex;
+	private final ThreadService threadService;
+	private final PyramidService pyramidService;
+	private final int maxTiles;
+
+	/** Rendered tiles, in least recently used order. */
+	private final LinkedHashMap<TileKey, int[]> tiles =
+		new LinkedHashMap<TileKey, int[]>(16, 0.75f, true);
+
+	// -- constructor --
+
+	/**
+	 * Creates a renderer for the given Dataset.
+	 * 
+	 * @param dataset The Dataset to render
+	 * @param converters The converters of each channel of the Dataset
+	 * @param channelDimIndex The index of the channel axis (or -1 if none)
+	 * @param threadService The service used to render tiles in parallel; if
+	 *          null tiles are rendered on the calling thread
+	 * @param pyramidService The service providing reduced resolution planes, or
+	 *          null to always sample the full resolution data
+	 * @param cacheBytes The most memory that rendered tiles can occupy
+	 */
+	public ViewportRenderer(final Dataset dataset,
+		final List<? extends RealLUTConverter<? extends RealType<?>>> converters,
+		final int channelDimIndex, final ThreadService threadService,
+		final PyramidService pyramidService, final long cacheBytes)
+	{
+		this.dataset = dataset;
+		this.converters = converters;
+		this.channelDimIndex = channelDimIndex;
+		this.threadService = threadService;
+		this.pyramidService = pyramidService;
+		this.maxTiles = (int) Math.max(1, cacheBytes / TILE_BYTES);
+	}
+
+	// -- ViewportRenderer methods --
+
+	/** Discards all rendered tiles. */
+	public synchronized void invalidate() {
+		tiles.clear();
+	}
+
+	/**
+	 * Renders a viewport into the given screen image. Areas of the viewport
+	 * outside of the plane are left transparent.
+	 * 
+	 * @param dest The screen image, as large as the viewport
+	 * @param zoom The zoom factor (screen pixels per data pixel)
+	 * @param left The data X coordinate of the left edge of the viewport
+	 * @param top The data Y coordinate of the top edge of the viewport
+	 * @param position The position of the plane to render; only the dimensions
+	 *          beyond X and Y are used
+	 * @param composite Whether all channels are composited or only the channel
+	 *          at the given position is rendered
+	 * @return The region of the plane, in data coordinates, covered by the
+	 *         screen image
+	 */
+	public synchronized RealRect render(final ARGBScreenImage dest,
+		final double zoom, final double left, final double top,
+		final long[] position, final boolean composite)
+	{
+		final int width = (int) dest.dimension(0);
+		final int height = (int) dest.dimension(1);
+		final long originX = (long) Math.floor(left * zoom);
+		final long originY = (long) Math.floor(top * zoom);
+		final long firstTileX = floorDiv(originX, TILE_SIZE);
+		final long firstTileY = floorDiv(originY, TILE_SIZE);
+		final long lastTileX = floorDiv(originX + width - 1, TILE_SIZE);
+		final long lastTileY = floorDiv(originY + height - 1, TILE_SIZE);
+		final List<ChannelPlane> planes = channelPlanes(position, composite);
+		final int level = attachLevel(zoom, planes);
+
+		// find the exposed tiles that have not been rendered yet
+		final List<TileKey> visible = new ArrayList<TileKey>();
+		final List<TileKey> missing = new ArrayList<TileKey>();
+		for (long ty = firstTileY; ty <= lastTileY; ty++) {
+			for (long tx = firstTileX; tx <= lastTileX; tx++) {
+				final TileKey key = new TileKey(zoom, level, tx, ty);
+				visible.add(key);
+				if (!tiles.containsKey(key)) missing.add(key);
+			}
+		}
+		renderTiles(missing, zoom, level, planes);
+
+		// copy the visible part of each tile into the screen image
+		final int[] argb = dest.getData();
+		for (final TileKey key : visible) {
+			final int[] tile = tiles.get(key);
+			final long tileX = key.tx * TILE_SIZE;
+			final long tileY = key.ty * TILE_SIZE;
+			final int x0 = (int) Math.max(0, tileX - originX);
+			final int x1 = (int) Math.min(width, tileX + TILE_SIZE - originX);
+			final int y0 = (int) Math.max(0, tileY - originY);
+			final int y1 = (int) Math.min(height, tileY + TILE_SIZE - originY);
+			for (int y = y0; y < y1; y++) {
+				final int srcPos =
+					(int) ((originY + y - tileY) * TILE_SIZE + originX + x0 - tileX);
+				System.arraycopy(tile, srcPos, argb, y * width + x0, x1 - x0);
+			}
+		}
+		trimCache();
+
+		return new RealRect(originX / zoom, originY / zoom, width / zoom, height /
+			zoom);
+	}
+
+	// -- helpers --
+
+	/** Returns the plane index and converter of each rendered channel. */
+	private List<ChannelPlane> channelPlanes(final long[] position,
+		final boolean composite)
+	{
+		final long[] planePos = new long[dataset.numDimensions() - 2];
+		for (int i = 0; i < planePos.length; i++) {
+			planePos[i] = position[i + 2];
+		}
+		final List<ChannelPlane> planes = new ArrayList<ChannelPlane>();
+		if (channelDimIndex < 0) {
+			planes.add(new ChannelPlane(planePos, converters.get(0)));
+		}
+		else if (composite) {
+			for (int c = 0; c < converters.size(); c++) {
+				planePos[channelDimIndex - 2] = c;
+				planes.add(new ChannelPlane(planePos, converters.get(c)));
+			}
+		}
+		else {
+			final int c = (int) position[channelDimIndex];
+			planes.add(new ChannelPlane(planePos, converters.get(c)));
+		}
+		return planes;
+	}
+
+	/**
+	 * Gives each channel plane its data at the pyramid level suiting the zoom
+	 * factor. Returns the level used, which is 0 if no coarser level is suitable
+	 * or available yet.
+	 */
+	private int attachLevel(final double zoom, final List<ChannelPlane> planes) {
+		if (pyramidService == null) return 0;
+		final Pyramid pyramid = pyramidService.getPyramid(dataset);
+		final int level = pyramid.getLevel(zoom);
+		if (level == 0) return 0;
+		final List<float[]> data = new ArrayList<float[]>();
+		for (final ChannelPlane plane : planes) {
+			final float[] levelPlane = pyramid.getPlane(level, plane.planeIndex);
+			if (levelPlane == null) return 0;
+			data.add(levelPlane);
+		}
+		final int width = (int) pyramid.getWidth(level);
+		final int height = (int) pyramid.getHeight(level);
+		for (int i = 0; i < planes.size(); i++) {
+			planes.get(i).setLevel(data.get(i), width, height);
+		}
+		return level;
+	}
+
+	/** Renders the given tiles, dividing them between the available cores. */
+	private void renderTiles(final List<TileKey> keys, final double zoom,
+		final int level, final List<ChannelPlane> planes)
+	{
+		if (keys.isEmpty()) return;
+		final double scale = zoom * (1L << level);
+		final long width, height;
+		if (level == 0) {
+			width = dataset.dimension(0);
+			height = dataset.dimension(1);
+		}
+		else {
+			width = planes.get(0).levelWidth;
+			height = planes.get(0).levelHeight;
+		}
+		final int numTasks = ParallelUtils.taskCount(keys.size(), 1);
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < numTasks; t++) {
+			final int start = (int) ParallelUtils.chunkStart(keys.size(), numTasks, t);
+			final int count = (int) ParallelUtils.chunkSize(keys.size(), numTasks, t);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					final List<ChannelSampler> samplers =
+						new ArrayList<ChannelSampler>();
+					for (final ChannelPlane plane : planes) {
+						samplers.add(plane.createSampler());
+					}
+					for (int i = start; i < start + count; i++) {
+						final TileKey key = keys.get(i);
+						final int[] tile =
+							renderTile(key, scale, width, height, samplers);
+						synchronized (tiles) {
+							tiles.put(key, tile);
+						}
+					}
+					return null;
+				}
+			});
+		}
+		ParallelUtils.invokeAll(threadService, tasks);
+	}
+
+	/**
+	 * Renders a tile from planes of the given size, with the given number of
+	 * screen pixels per plane pixel.
+	 */
+	private int[] renderTile(final TileKey key, final double scale,
+		final long width, final long height, final List<ChannelSampler> samplers)
+	{
+		final int[] tile = new int[TILE_SIZE * TILE_SIZE];
+
+		// the data column sampled by each column of the tile
+		final int[] xs = new int[TILE_SIZE];
+		int first = TILE_SIZE, last = -1;
+		for (int i = 0; i < TILE_SIZE; i++) {
+			final long x = (long) Math.floor((key.tx * TILE_SIZE + i) / scale);
+			xs[i] = x < 0 || x >= width ? -1 : (int) x;
+			if (xs[i] >= 0) {
+				if (first == TILE_SIZE) first = i;
+				last = i;
+			}
+		}
+		if (last < 0) return tile;
+		final int count = last - first + 1;
+
+		final int[] values = new int[count];
+		final int[] aSum = new int[count];
+		final int[] rSum = new int[count];
+		final int[] gSum = new int[count];
+		final int[] bSum = new int[count];
+		for (int j = 0; j < TILE_SIZE; j++) {
+			final long y = (long) Math.floor((key.ty * TILE_SIZE + j) / scale);
+			if (y < 0 || y >= height) continue;
+			final int offset = j * TILE_SIZE + first;
+			if (samplers.size() == 1) {
+				samplers.get(0).sample((int) y, xs, first, count, tile, offset);
+				continue;
+			}
+			for (int i = 0; i < count; i++) {
+				aSum[i] = rSum[i] = gSum[i] = bSum[i] = 0;
+			}
+			for (final ChannelSampler sampler : samplers) {
+				sampler.sample((int) y, xs, first, count, values, 0);
+				for (int i = 0; i < count; i++) {
+					final int value = values[i];
+					aSum[i] += (value >>> 24) & 0xff;
+					rSum[i] += (value >> 16) & 0xff;
+					gSum[i] += (value >> 8) & 0xff;
+					bSum[i] += value & 0xff;
+				}
+			}
+			for (int i = 0; i < count; i++) {
+				final int a = aSum[i] > 255 ? 255 : aSum[i];
+				final int r = rSum[i] > 255 ? 255 : rSum[i];
+				final int g = gSum[i] > 255 ? 255 : gSum[i];
+				final int b = bSum[i] > 255 ? 255 : bSum[i];
+				tile[offset + i] = ARGBType.rgba(r, g, b, a);
+			}
+		}
+		return tile;
+	}
+
+	private static long floorDiv(final long a, final long b) {
+		final long q = a / b;
+		return (a % b != 0 && (a < 0) != (b < 0)) ? q - 1 : q;
+	}
+
+	/** Discards the least recently used tiles beyond the cache limit. */
+	private void trimCache() {
+		final Iterator<Map.Entry<TileKey, int[]>> iter =
+			tiles.entrySet().iterator();
+		int excess = tiles.size() - maxTiles;
+		while (excess-- > 0 && iter.hasNext()) {
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	// -- helper classes --
+
+	/**
+	 * Identifies a tile of the plane at a given zoom factor, rendered from a
+	 * given pyramid level.
+	 */
+	private static class TileKey {
+
+		private final double zoom;
+		private final int level;
+		private final long tx, ty;
+
+		public TileKey(final double zoom, final int level, final long tx,
+			final long ty)
+		{
+			this.zoom = zoom;
+			this.level = level;
+			this.tx = tx;
+			this.ty = ty;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof TileKey)) return false;
+			final TileKey other = (TileKey) o;
+			return zoom == other.zoom && level == other.level && tx == other.tx &&
+				ty == other.ty;
+		}
+
+		@Override
+		public int hashCode() {
+			final long bits = Double.doubleToLongBits(zoom);
+			int hash = (int) (bits ^ (bits >>> 32));
+			hash = 31 * hash + level;
+			hash = 31 * hash + (int) (tx ^ (tx >>> 32));
+			hash = 31 * hash + (int) (ty ^ (ty >>> 32));
+			return hash;
+		}
+	}
+
+	/** The plane of one rendered channel along with its converter. */
+	private class ChannelPlane {
+
+		private final long[] planePos;
+		private final int planeIndex;
+		private final RealLUTConverter<? extends RealType<?>> converter;
+		private float[] levelData;
+		private int levelWidth, levelHeight;
+
+		public ChannelPlane(final long[] planePos,
+			final RealLUTConverter<? extends RealType<?>> converter)
+		{
+			this.planePos = planePos.clone();
+			this.planeIndex = RowAccess.planeIndex(dataset, planePos);
+			this.converter = converter;
+		}
+
+		/** Uses the plane's data at a pyramid level instead of the Dataset. */
+		public void setLevel(final float[] data, final int width,
+			final int height)
+		{
+			levelData = data;
+			levelWidth = width;
+			levelHeight = height;
+		}
+
+		/** Creates a sampler for use by a single thread. */
+		public ChannelSampler createSampler() {
+			final ColorTable lut = converter.getLUT();
+			if (levelData != null && lut != null) {
+				return new PrimitiveSampler(PrimitivePlane.wrap(levelData,
+					new FloatType()), levelWidth, converter.getMin(), converter
+					.getMax(), colors(lut));
+			}
+			final PrimitivePlane plane =
+				PrimitivePlane.wrapForReading(dataset, planeIndex);
+			if (plane != null && lut != null) {
+				return new PrimitiveSampler(plane, (int) dataset.dimension(0),
+					converter.getMin(), converter.getMax(), colors(lut));
+			}
+			return new GenericSampler(planePos, converter);
+		}
+
+		private int[] colors(final ColorTable lut) {
+			final int[] colors = new int[lut.getLength()];
+			for (int i = 0; i < colors.length; i++) {
+				colors[i] = lut.argb(i);
+			}
+			return colors;
+		}
+	}
+
+	/** Computes the ARGB values of data pixels of one channel. */
+	private interface ChannelSampler {
+
+		/**
+		 * Samples the data pixels of row y at the columns xs[first] through
+		 * xs[first + count - 1] into dest.
+		 */
+		void sample(int y, int[] xs, int first, int count, int[] dest,
+			int destOffset);
+	}
+
+	/** Samples a plane that can be accessed as a primitive array. */
+	private static class PrimitiveSampler implements ChannelSampler {
+
+		private final PrimitivePlane plane;
+		private final int width;
+		private final double min, max;
+		private final int[] colors;
+
+		public PrimitiveSampler(final PrimitivePlane plane, final int width,
+			final double min, final double max, final int[] colors)
+		{
+			this.plane = plane;
+			this.width = width;
+			this.min = min;
+			this.max = max;
+			this.colors = colors;
+		}
+
+		@Override
+		public void sample(final int y, final int[] xs, final int first,
+			final int count, final int[] dest, final int destOffset)
+		{
+			final int row = y * width;
+			for (int i = 0; i < count; i++) {
+				final double value = plane.get(row + xs[first + i]);
+				final int bin = Binning.valueToBin(colors.length, min, max, value);
+				dest[destOffset + i] = colors[bin];
+			}
+		}
+	}
+
+	/** Samples any plane through a random access and the channel converter. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private class GenericSampler implements ChannelSampler {
+
+		private final RealLUTConverter converter;
+		private final RandomAccess<? extends RealType<?>> access;
+		private final ARGBType argb = new ARGBType();
+
+		public GenericSampler(final long[] planePos,
+			final RealLUTConverter<? extends RealType<?>> converter)
+		{
+			this.converter = converter;
+			access = dataset.getImgPlus().randomAccess();
+			for (int i = 0; i < planePos.length; i++) {
+				access.setPosition(planePos[i], i + 2);
+			}
+		}
+
+		@Override
+		public void sample(final int y, final int[] xs, final int first,
+			final int count, final int[] dest, final int destOffset)
+		{
+			access.setPosition(y, 1);
+			for (int i = 0; i < count; i++) {
+				access.setPosition(xs[first + i], 0);
+				converter.convert(access.get(), argb);
+				dest[destOffset + i] = argb.get();
+			}
+		}
+	}
+
+}
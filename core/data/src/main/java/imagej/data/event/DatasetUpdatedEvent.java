@@ -51,11 +51,21 @@ public class DatasetUpdatedEvent extends DataUpdatedEvent {
 
 	private final Dataset dataset;
 	private final boolean metadataOnly;
+	private final int planeIndex;
 
 	public DatasetUpdatedEvent(final Dataset dataset, boolean metadataOnly) {
 		super(dataset);
 		this.dataset = dataset;
 		this.metadataOnly = metadataOnly;
+		this.planeIndex = -1;
+	}
+
+	/** Creates an event reporting a change to the pixels of a single plane. */
+	public DatasetUpdatedEvent(final Dataset dataset, final int planeIndex) {
+		super(dataset);
+		this.dataset = dataset;
+		this.metadataOnly = false;
+		this.planeIndex = planeIndex;
 	}
 
 	// -- ObjectEvent methods --
@@ -68,4 +78,12 @@ public Dataset getObject() {
 	public boolean isMetaDataOnly() {
 		return metadataOnly;
 	}
+
+	/**
+	 * Returns the index of the only plane whose pixels changed, or -1 if any
+	 * part of the dataset may have changed.
+	 */
+	public int getPlaneIndex() {
+		return planeIndex;
+	}
 }
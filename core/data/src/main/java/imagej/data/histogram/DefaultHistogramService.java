@@ -0,0 +1,527 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.histogram;
+
+import imagej.data.Dataset;
+import imagej.data.RowAccess;
+import imagej.data.autoscale.DataRange;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.event.DatasetRestructuredEvent;
+import imagej.data.event.DatasetUpdatedEvent;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+
+import org.scijava.event.EventHandler;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Default implementation of {@link HistogramService}. Every plane of a cached
+ * dataset has a data version that is bumped whenever the plane is reported as
+ * changed. Cached plane results remember the version they were computed from
+ * and are recomputed once it is out of date.
+ * 
+ * @author Barry DeZonia
+ */
+@Plugin(type = Service.class)
+public class DefaultHistogramService extends AbstractService implements
+	HistogramService
+{
+
+	// -- constants --
+
+	/** The fewest pixels worth handing to a separate task. */
+	private static final long MIN_CHUNK = 65536;
+
+	// -- Parameters --
+
+	@Parameter
+	private ThreadService threadService;
+
+	// -- instance variables --
+
+	// NB - guarded by itself
+	private final Map<Dataset, PlaneCache> caches =
+		new WeakHashMap<Dataset, PlaneCache>();
+
+	// -- HistogramService methods --
+
+	@Override
+	public DataRange getRange(final Dataset dataset) {
+		return getRange(dataset, allPlanes(dataset));
+	}
+
+	@Override
+	public DataRange getRange(final Dataset dataset, final int[] planeIndices) {
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (final RangeEntry entry : ranges(dataset, planeIndices)) {
+			if (entry.min < min) min = entry.min;
+			if (entry.max > max) max = entry.max;
+		}
+		// no values or only NaNs
+		if (min > max) return new DataRange(0, 0);
+		return new DataRange(min, max);
+	}
+
+	@Override
+	public DataRange getPlaneRange(final Dataset dataset, final int planeIndex) {
+		return getRange(dataset, new int[] { planeIndex });
+	}
+
+	@Override
+	public long[] getHistogram(final Dataset dataset, final double min,
+		final double max, final int binCount)
+	{
+		return getHistogram(dataset, allPlanes(dataset), min, max, binCount);
+	}
+
+	@Override
+	public long[] getHistogram(final Dataset dataset, final int[] planeIndices,
+		final double min, final double max, final int binCount)
+	{
+		if (binCount <= 0) {
+			throw new IllegalArgumentException("bin count must be positive");
+		}
+		if (!(min <= max)) {
+			throw new IllegalArgumentException("invalid range: " + min + " to " +
+				max);
+		}
+		final long[] counts = new long[binCount];
+		for (final HistogramEntry entry : histograms(dataset, planeIndices, min,
+			max, binCount))
+		{
+			for (int i = 0; i < binCount; i++) {
+				counts[i] += entry.counts[i];
+			}
+		}
+		return counts;
+	}
+
+	@Override
+	public long[] getPlaneHistogram(final Dataset dataset, final int planeIndex,
+		final double min, final double max, final int binCount)
+	{
+		return getHistogram(dataset, new int[] { planeIndex }, min, max, binCount);
+	}
+
+	@Override
+	public int[] getPlaneIndices(final Dataset dataset, final int axisIndex,
+		final long position)
+	{
+		if (axisIndex < 2 || axisIndex >= dataset.numDimensions()) {
+			throw new IllegalArgumentException("axis " + axisIndex +
+				" does not vary between planes");
+		}
+		long stride = 1;
+		for (int d = 2; d < axisIndex; d++) {
+			stride *= dataset.dimension(d);
+		}
+		final long size = dataset.dimension(axisIndex);
+		final int numPlanes = numPlanes(dataset);
+		final int[] planes = new int[(int) (numPlanes / size)];
+		int n = 0;
+		for (int p = 0; p < numPlanes; p++) {
+			if ((p / stride) % size == position) planes[n++] = p;
+		}
+		return planes;
+	}
+
+	// -- event handlers --
+
+	@EventHandler
+	protected void onEvent(final DatasetUpdatedEvent event) {
+		if (event.isMetaDataOnly()) return;
+		final PlaneCache cache;
+		synchronized (caches) {
+			cache = caches.get(event.getObject());
+		}
+		if (cache == null) return;
+		final int planeIndex = event.getPlaneIndex();
+		synchronized (cache) {
+			if (planeIndex >= 0 && planeIndex < cache.versions.length) {
+				cache.versions[planeIndex]++;
+			}
+			else {
+				for (int p = 0; p < cache.versions.length; p++) {
+					cache.versions[p]++;
+				}
+			}
+		}
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetRestructuredEvent event) {
+		synchronized (caches) {
+			caches.remove(event.getObject());
+		}
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		synchronized (caches) {
+			caches.remove(event.getObject());
+		}
+	}
+
+	// -- helpers --
+
+	private PlaneCache cache(final Dataset dataset) {
+		final int numPlanes = numPlanes(dataset);
+		synchronized (caches) {
+			PlaneCache cache = caches.get(dataset);
+			if (cache == null || cache.versions.length != numPlanes) {
+				cache = new PlaneCache(numPlanes);
+				caches.put(dataset, cache);
+			}
+			return cache;
+		}
+	}
+
+	/** Returns up to date range entries for the given planes. */
+	private RangeEntry[] ranges(final Dataset dataset, final int[] planes) {
+		final PlaneCache cache = cache(dataset);
+		final RangeEntry[] entries = new RangeEntry[planes.length];
+		final List<Integer> missing = new ArrayList<Integer>();
+		final long[] versions = new long[planes.length];
+		synchronized (cache) {
+			for (int i = 0; i < planes.length; i++) {
+				final int p = planes[i];
+				versions[i] = cache.versions[p];
+				final RangeEntry entry = cache.ranges[p];
+				if (entry != null && entry.version == versions[i]) entries[i] = entry;
+				else missing.add(i);
+			}
+		}
+		if (missing.isEmpty()) return entries;
+		final List<double[]> results =
+			scan(dataset, select(planes, missing), new RangeAccumulator());
+		synchronized (cache) {
+			for (int m = 0; m < missing.size(); m++) {
+				final int i = missing.get(m);
+				final double[] range = results.get(m);
+				entries[i] = new RangeEntry(versions[i], range[0], range[1]);
+				store(cache.ranges, planes[i], entries[i]);
+			}
+		}
+		return entries;
+	}
+
+	/** Returns up to date histogram entries for the given planes and bins. */
+	private HistogramEntry[] histograms(final Dataset dataset,
+		final int[] planes, final double min, final double max,
+		final int binCount)
+	{
+		final PlaneCache cache = cache(dataset);
+		final HistogramEntry[] entries = new HistogramEntry[planes.length];
+		final List<Integer> missing = new ArrayList<Integer>();
+		final long[] versions = new long[planes.length];
+		synchronized (cache) {
+			for (int i = 0; i < planes.length; i++) {
+				final int p = planes[i];
+				versions[i] = cache.versions[p];
+				final HistogramEntry entry = cache.histograms[p];
+				if (entry != null && entry.matches(versions[i], min, max, binCount)) {
+					entries[i] = entry;
+				}
+				else missing.add(i);
+			}
+		}
+		if (missing.isEmpty()) return entries;
+		final List<long[]> results =
+			scan(dataset, select(planes, missing), new HistogramAccumulator(min,
+				max, binCount));
+		synchronized (cache) {
+			for (int m = 0; m < missing.size(); m++) {
+				final int i = missing.get(m);
+				entries[i] =
+					new HistogramEntry(versions[i], min, max, binCount, results.get(m));
+				store(cache.histograms, planes[i], entries[i]);
+			}
+		}
+		return entries;
+	}
+
+	/** Caches an entry unless a more recent one is already cached. */
+	private <E extends Entry> void store(final E[] cached, final int plane,
+		final E entry)
+	{
+		final E current = cached[plane];
+		if (current == null || current.version <= entry.version) {
+			cached[plane] = entry;
+		}
+	}
+
+	/**
+	 * Accumulates values over every row of the given planes. The rows of all
+	 * the planes are divided between parallel tasks so that both stacks of
+	 * small planes and single large planes use all processors.
+	 * 
+	 * @return The accumulated values for each plane, in order
+	 */
+	private <A> List<A> scan(final Dataset dataset, final int[] planes,
+		final Accumulator<A> accumulator)
+	{
+		final int width = (int) dataset.dimension(0);
+		final int height = (int) dataset.dimension(1);
+		final long totalRows = (long) planes.length * height;
+		final int numTasks =
+			ParallelUtils.taskCount(totalRows * width, MIN_CHUNK);
+		final List<Callable<List<A>>> tasks = new ArrayList<Callable<List<A>>>();
+		for (int t = 0; t < numTasks; t++) {
+			final long start = ParallelUtils.chunkStart(totalRows, numTasks, t);
+			final long end = start + ParallelUtils.chunkSize(totalRows, numTasks, t);
+			tasks.add(new Callable<List<A>>() {
+
+				@Override
+				public List<A> call() {
+					final List<A> partials = new ArrayList<A>(planes.length);
+					for (int i = 0; i < planes.length; i++) {
+						partials.add(null);
+					}
+					final double[] row = new double[width];
+					final long[] planePos = new long[dataset.numDimensions() - 2];
+					long r = start;
+					while (r < end) {
+						final int i = (int) (r / height);
+						final int y0 = (int) (r % height);
+						final int y1 = (int) Math.min(height, y0 + end - r);
+						position(dataset, planes[i], planePos);
+						final RowAccess access =
+							RowAccess.createForReading(dataset, planePos);
+						final A partial = accumulator.create();
+						for (int y = y0; y < y1; y++) {
+							access.read(y, row, 0);
+							accumulator.add(partial, row);
+						}
+						partials.set(i, partial);
+						r += y1 - y0;
+					}
+					return partials;
+				}
+			});
+		}
+		final List<List<A>> partials = ParallelUtils.invokeAll(threadService, tasks);
+		final List<A> results = new ArrayList<A>(planes.length);
+		for (int i = 0; i < planes.length; i++) {
+			A result = null;
+			for (final List<A> taskPartials : partials) {
+				final A partial = taskPartials.get(i);
+				if (partial == null) continue;
+				if (result == null) result = partial;
+				else accumulator.merge(result, partial);
+			}
+			if (result == null) result = accumulator.create(); // no rows
+			results.add(result);
+		}
+		return results;
+	}
+
+	private int numPlanes(final Dataset dataset) {
+		long numPlanes = 1;
+		for (int d = 2; d < dataset.numDimensions(); d++) {
+			numPlanes *= dataset.dimension(d);
+		}
+		return (int) numPlanes;
+	}
+
+	private int[] allPlanes(final Dataset dataset) {
+		final int[] planes = new int[numPlanes(dataset)];
+		for (int p = 0; p < planes.length; p++) {
+			planes[p] = p;
+		}
+		return planes;
+	}
+
+	private int[] select(final int[] planes, final List<Integer> indices) {
+		final int[] selected = new int[indices.size()];
+		for (int i = 0; i < selected.length; i++) {
+			selected[i] = planes[indices.get(i)];
+		}
+		return selected;
+	}
+
+	private void position(final Dataset dataset, final int planeIndex,
+		final long[] planePos)
+	{
+		long index = planeIndex;
+		for (int i = 0; i < planePos.length; i++) {
+			final long size = dataset.dimension(i + 2);
+			planePos[i] = index % size;
+			index /= size;
+		}
+	}
+
+	// -- helper classes --
+
+	/** The data versions and cached results of the planes of a dataset. */
+	private static class PlaneCache {
+
+		private final long[] versions;
+		private final RangeEntry[] ranges;
+		private final HistogramEntry[] histograms;
+
+		public PlaneCache(final int numPlanes) {
+			versions = new long[numPlanes];
+			ranges = new RangeEntry[numPlanes];
+			histograms = new HistogramEntry[numPlanes];
+		}
+	}
+
+	private static class Entry {
+
+		protected final long version;
+
+		public Entry(final long version) {
+			this.version = version;
+		}
+	}
+
+	private static class RangeEntry extends Entry {
+
+		private final double min, max;
+
+		public RangeEntry(final long version, final double min, final double max)
+		{
+			super(version);
+			this.min = min;
+			this.max = max;
+		}
+	}
+
+	private static class HistogramEntry extends Entry {
+
+		private final double min, max;
+		private final int binCount;
+		private final long[] counts;
+
+		public HistogramEntry(final long version, final double min,
+			final double max, final int binCount, final long[] counts)
+		{
+			super(version);
+			this.min = min;
+			this.max = max;
+			this.binCount = binCount;
+			this.counts = counts;
+		}
+
+		public boolean matches(final long v, final double mn, final double mx,
+			final int bins)
+		{
+			return version == v && min == mn && max == mx && binCount == bins;
+		}
+	}
+
+	/** Gathers a statistic over rows of values. */
+	private interface Accumulator<A> {
+
+		A create();
+
+		void add(A acc, double[] row);
+
+		void merge(A acc, A other);
+	}
+
+	/** Gathers the min and max of non-NaN values. */
+	private static class RangeAccumulator implements Accumulator<double[]> {
+
+		@Override
+		public double[] create() {
+			return new double[] { Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY };
+		}
+
+		@Override
+		public void add(final double[] acc, final double[] row) {
+			double min = acc[0], max = acc[1];
+			for (final double v : row) {
+				// NB - NaNs fail both tests
+				if (v < min) min = v;
+				if (v > max) max = v;
+			}
+			acc[0] = min;
+			acc[1] = max;
+		}
+
+		@Override
+		public void merge(final double[] acc, final double[] other) {
+			if (other[0] < acc[0]) acc[0] = other[0];
+			if (other[1] > acc[1]) acc[1] = other[1];
+		}
+	}
+
+	/** Counts values into evenly sized bins spanning [min, max]. */
+	private static class HistogramAccumulator implements Accumulator<long[]> {
+
+		private final HistogramBins bins;
+
+		public HistogramAccumulator(final double min, final double max,
+			final int binCount)
+		{
+			bins = new HistogramBins(min, max, binCount);
+		}
+
+		@Override
+		public long[] create() {
+			return new long[bins.getBinCount()];
+		}
+
+		@Override
+		public void add(final long[] acc, final double[] row) {
+			final int binCount = bins.getBinCount();
+			for (final double v : row) {
+				final int bin = bins.bin(v);
+				if (bin >= 0 && bin < binCount) acc[bin]++;
+			}
+		}
+
+		@Override
+		public void merge(final long[] acc, final long[] other) {
+			for (int i = 0; i < acc.length; i++) {
+				acc[i] += other[i];
+			}
+		}
+	}
+
+}
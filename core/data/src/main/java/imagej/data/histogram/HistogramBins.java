@@ -0,0 +1,74 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.histogram;
+
+/**
+ * Assigns values to the bins of a histogram of a range of values, the way the
+ * {@link HistogramService} counts them. The range is split into bins of equal
+ * width, with the range's maximum falling into the last bin.
+ */
+public class HistogramBins {
+
+	private final double min, max;
+	private final int binCount;
+	private final double scale;
+
+	public HistogramBins(final double min, final double max, final int binCount)
+	{
+		this.min = min;
+		this.max = max;
+		this.binCount = binCount;
+		scale = (max > min) ? binCount / (max - min) : 0;
+	}
+
+	/** Returns the number of bins. */
+	public int getBinCount() {
+		return binCount;
+	}
+
+	/**
+	 * Returns the bin of a value. Values below the range, and NaNs, give -1;
+	 * values above it give the bin count.
+	 */
+	public int bin(final double value) {
+		// NB - NaNs fail both range tests
+		if (!(value >= min)) return -1;
+		if (value > max) return binCount;
+		final int bin = (int) ((value - min) * scale);
+		return bin >= binCount ? binCount - 1 : bin;
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.histogram;
+
+import imagej.data.Dataset;
+import imagej.data.autoscale.DataRange;
+
+import org.scijava.service.Service;
+
+/**
+ * A service that computes value ranges and histograms of {@link Dataset}s and
+ * shares them between their users. Results are computed plane by plane in
+ * parallel and cached per plane. When a dataset reports changes (via
+ * {@link imagej.data.event.DatasetUpdatedEvent}s) only the information of the
+ * affected planes is recomputed; results spanning several planes are merged
+ * from the cached plane results.
+ * <p>
+ * Planes are identified by their raster index as used by planar images (see
+ * {@link imagej.data.RowAccess#planeIndex(Dataset, long[])}). Histogram bins
+ * evenly divide the closed range [min, max]; values outside the range and NaNs
+ * are not counted. Returned arrays belong to the caller.
+ * </p>
+ * <p>
+ * Pixels changed without a subsequent update event are not noticed.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public interface HistogramService extends Service {
+
+	/** Returns the range of the (non-NaN) values of a dataset. */
+	DataRange getRange(Dataset dataset);
+
+	/** Returns the range of the (non-NaN) values of a set of planes. */
+	DataRange getRange(Dataset dataset, int[] planeIndices);
+
+	/** Returns the range of the (non-NaN) values of a single plane. */
+	DataRange getPlaneRange(Dataset dataset, int planeIndex);
+
+	/** Returns the histogram of all the values of a dataset. */
+	long[] getHistogram(Dataset dataset, double min, double max, int binCount);
+
+	/** Returns the histogram of the values of a set of planes. */
+	long[] getHistogram(Dataset dataset, int[] planeIndices, double min,
+		double max, int binCount);
+
+	/** Returns the histogram of the values of a single plane. */
+	long[] getPlaneHistogram(Dataset dataset, int planeIndex, double min,
+		double max, int binCount);
+
+	/**
+	 * Returns the indices of the planes of a dataset lying at the given position
+	 * along one of its axes (for instance all the planes of one channel).
+	 * 
+	 * @param axisIndex The index of an axis beyond X and Y
+	 * @param position The position along that axis
+	 */
+	int[] getPlaneIndices(Dataset dataset, int axisIndex, long position);
+
+}
@@ -64,6 +64,9 @@ public class BasicStats {
 	/** unbiased estimate of variance */
 	private double s2n1;
 	
+	/** sample median (possibly estimated) */
+	private double median;
+	
 	// -- constructor --
 	
 	/** Default constructor */
@@ -99,13 +102,35 @@ public BasicStats() { }
 	public double getS2n1() { return s2n1; }
 
 	/**
-	 * Calculates the statistics from a sample and records them for later
-	 * retrieval via the public getters of this class.
+	 * Returns the sample median, or NaN if it was not calculated. When the stats
+	 * were calculated from a {@link SummaryStats} the median is the estimate
+	 * that was supplied with it.
+	 */
+	public double getMedian() { return median; }
+
+	/**
+	 * Calculates the statistics other than the median from a sample and records
+	 * them for later retrieval via the public getters of this class.
 	 * 
 	 * @param data
 	 * The set of values in the sample of the population.
 	 */
 	public void calcStats(double[] data) {
+		calcStats(data, false);
+	}
+
+	/**
+	 * Calculates the statistics from a sample and records them for later
+	 * retrieval via the public getters of this class. The median is found in
+	 * linear time by selection, which reorders the values of the sample; pass a
+	 * copy if their order matters.
+	 * 
+	 * @param data
+	 * The set of values in the sample of the population.
+	 * @param calcMedian
+	 * Whether to calculate the median too.
+	 */
+	public void calcStats(double[] data, boolean calcMedian) {
 		// Reference: MathWorld.com
 		int n = data.length;
 		double sum;
@@ -123,8 +148,74 @@ public void calcStats(double[] data) {
 		s2n1 = (n <= 1) ? 0 : sum / (n-1);
 		sn = Math.sqrt(s2n);
 		sn1 = Math.sqrt(s2n1);
+		if (!calcMedian) median = Double.NaN;
+		else if (n == 0) median = 0;
+		else {
+			double upper = select(data, n/2);
+			if (n % 2 == 1) median = upper;
+			else {
+				// NB - the values below index n/2 are now the smaller ones
+				double lower = data[0];
+				for (int i = 1; i < n/2; i++) {
+					if (data[i] > lower) lower = data[i];
+				}
+				median = (lower + upper) / 2;
+			}
+		}
+	}
+
+	/**
+	 * Records the statistics gathered by a {@link SummaryStats} for later
+	 * retrieval via the public getters of this class. This allows the stats to
+	 * be calculated without holding all the samples in memory.
+	 * 
+	 * @param stats
+	 * The SummaryStats that has seen the sample of the population.
+	 * @param medianEstimate
+	 * The (possibly estimated) median of the sample.
+	 */
+	public void calcStats(SummaryStats stats, double medianEstimate) {
+		xbar = stats.getArithmeticMean();
+		s2n = stats.getPopulationVariance();
+		s2n1 = stats.getSampleVariance();
+		sn = Math.sqrt(s2n);
+		sn1 = Math.sqrt(s2n1);
+		median = medianEstimate;
 	}
 	
 	/** Creates a new BasicStats object */
 	public BasicStats create() { return new BasicStats(); }
+
+	// -- helpers --
+
+	/**
+	 * Partially orders the given values so that index k holds the value it
+	 * would hold if they were sorted, with no greater value before it and no
+	 * smaller one after it, and returns that value. Runs in expected linear
+	 * time (Hoare's selection with a middle pivot).
+	 */
+	private static double select(double[] a, int k) {
+		int lo = 0;
+		int hi = a.length - 1;
+		while (lo < hi) {
+			double pivot = a[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (a[i] < pivot) i++;
+				while (a[j] > pivot) j--;
+				if (i <= j) {
+					double t = a[i];
+					a[i] = a[j];
+					a[j] = t;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) hi = j;
+			else if (k >= i) lo = i;
+			else break;
+		}
+		return a[k];
+	}
 }
@@ -56,6 +56,13 @@
  * The MeasurementService is limited to a set of outputs of a single type. In
  * practice this is probably not much of a limitation.
  * </p>
+ * <p>
+ * By default the values of the region are gathered into an array before the
+ * stats are calculated. In streaming mode the moments are instead updated one
+ * value at a time and the median is estimated with a {@link QuantileSketch}, so
+ * memory use does not grow with the size of the region. Regions too large to
+ * fit in an array are always streamed.
+ * </p>
  * 
  * @author Barry DeZonia
  * @param <T> The output type of the input Function.
@@ -68,6 +75,7 @@
 
 	private final Function<long[], T> otherFunc;
 	private final T tmp;
+	private final boolean streaming;
 	private double[] data;
 	private PointSet lastPointSet;
 	private PointSetIterator iter;
@@ -82,8 +90,24 @@
 	 *          for temporary calculations.
 	 */
 	public BasicStatsFunction(final Function<long[], T> func, final T tmp) {
+		this(func, tmp, false);
+	}
+
+	/**
+	 * Creates a BasicStatsFunction on another {@link Function}.
+	 * 
+	 * @param func The other Function to compute the BasicStats of.
+	 * @param tmp A variable of the type of the other Function that can be used
+	 *          for temporary calculations.
+	 * @param streaming If true the stats are computed without materializing the
+	 *          values of the region and the median is estimated.
+	 */
+	public BasicStatsFunction(final Function<long[], T> func, final T tmp,
+		final boolean streaming)
+	{
 		this.otherFunc = func;
 		this.tmp = tmp.createVariable();
+		this.streaming = streaming;
 		this.data = null;
 		this.lastPointSet = null;
 		this.iter = null;
@@ -98,19 +122,24 @@ public BasicStatsFunction(final Function<long[], T> func, final T tmp) {
 	@Override
 	public void compute(final PointSet input, final BasicStats output) {
 		if (iter == null || lastPointSet != input) {
-			// TODO - use an Img<DoubleType> to break limitations
-			data = new double[(int) input.size()];
 			iter = input.iterator();
+			data = null;
 		}
 		else iter.reset();
 		lastPointSet = input;
+		if (streaming || input.size() > Integer.MAX_VALUE) {
+			computeStreaming(output);
+			return;
+		}
+		if (data == null) data = new double[(int) input.size()];
 		int i = 0;
 		while (iter.hasNext()) {
 			final long[] coord = iter.next();
 			otherFunc.compute(coord, tmp);
 			data[i++] = tmp.getRealDouble();
 		}
-		output.calcStats(data);
+		// NB - the values are gathered anew each time, so they may be reordered
+		output.calcStats(data, true);
 	}
 
 	/**
@@ -128,7 +157,22 @@ public BasicStats createOutput() {
 	 */
 	@Override
 	public Function<PointSet, BasicStats> copy() {
-		return new BasicStatsFunction<T>(otherFunc, tmp);
+		return new BasicStatsFunction<T>(otherFunc, tmp, streaming);
+	}
+
+	// -- helpers --
+
+	private void computeStreaming(final BasicStats output) {
+		final SummaryStats stats = new SummaryStats();
+		final QuantileSketch median = new QuantileSketch(0.5);
+		while (iter.hasNext()) {
+			final long[] coord = iter.next();
+			otherFunc.compute(coord, tmp);
+			final double value = tmp.getRealDouble();
+			stats.add(value);
+			median.add(value);
+		}
+		output.calcStats(stats, median.getEstimate());
 	}
 
 }
@@ -36,6 +36,15 @@
 package imagej.data.measure;
 
 import imagej.data.Dataset;
+import imagej.data.overlay.ScanlineSpans;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.function.real.RealAlphaTrimmedMeanFunction;
@@ -66,17 +75,23 @@
 import net.imglib2.ops.function.real.RealWeightedSumFunction;
 import net.imglib2.ops.pointset.HyperVolumePointSet;
 import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.ops.pointset.PointSetIterator;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
 
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
 
 // TODO - make MeasurementService smarter. Compute values without always
 // revisiting the pixels. This current impl goes over pixels once for each
 // measurement. I will mock something up soon. BDZ
 
+// NB - computeAll() gathers all the statistics in a single pass over the
+// pixels; the individual measures still make a pass each.
+
 // TODO - this service is limited to only the kinds of stats it knows. It can't
 // measure a user provided statistic. This can be done by calling the
 // MeasurementService more directly.
@@ -99,12 +114,26 @@ public class DefaultStatisticsService extends AbstractService implements
 	StatisticsService
 {
 
+	// -- constants --
+
+	/** Integer types with no more than this many values get exact histograms. */
+	private static final long MAX_EXACT_BINS = 65536;
+
+	/** Number of bins used to estimate rank statistics of real data. */
+	private static final int REAL_BINS = 65536;
+
+	/** Smallest number of pixels worth handing to a thread. */
+	private static final long MIN_CHUNK = 65536;
+
 	// -- Parameters --
 
 	// later
 	// @Parameter
 	// private MeasurementService mSrv;
 
+	@Parameter
+	private ThreadService threadService;
+
 	// -- StatisticsService methods --
 
 	@Override
@@ -438,8 +467,136 @@ public PointSet allOf(final Dataset ds) {
 		return new HyperVolumePointSet(ds.getDims());
 	}
 
+	@Override
+	public SummaryStats computeAll(final Dataset ds, final PointSet region) {
+		return computeAllOf(ds, region);
+	}
+
+	@Override
+	public SummaryStats computeAll(final Dataset ds) {
+		return computeAllOf(ds, null);
+	}
+
+	@Override
+	public SummaryStats computeAll(final Dataset ds, final ScanlineSpans region,
+		final long[] planePosition)
+	{
+		final SummaryStats stats =
+			gatherSpans(ds, region, planePosition, new SummaryStats(
+				exactHistogram(ds)));
+		if (stats.hasRankStatistics() || stats.getCount() == 0) return stats;
+		return stats.withRanks(gatherSpans(ds, region, planePosition,
+			binning(stats)));
+	}
+
 	// -- private helpers --
 
+	/**
+	 * Gathers a {@link SummaryStats} from a region of a Dataset (or the whole
+	 * Dataset when the region is null). Integer data with a small range gets an
+	 * exact histogram in the same pass. Other data needs its range before it can
+	 * be binned, so a second pass only bins the values into an estimating
+	 * histogram; the moments of the first pass are kept.
+	 */
+	private SummaryStats computeAllOf(final Dataset ds, final PointSet region) {
+		final SummaryStats stats =
+			gather(ds, region, new SummaryStats(exactHistogram(ds)));
+		if (stats.hasRankStatistics() || stats.getCount() == 0) return stats;
+		return stats.withRanks(gather(ds, region, binning(stats)));
+	}
+
+	/** Creates a SummaryStats that bins values in the range of the given one. */
+	private SummaryStats binning(final SummaryStats stats) {
+		return SummaryStats.binning(new ValueHistogram(stats.getMinimum(), stats
+			.getMaximum(), REAL_BINS));
+	}
+
+	private ValueHistogram exactHistogram(final Dataset ds) {
+		if (!ds.isInteger()) return null;
+		final RealType<?> type = ds.getType();
+		final double min = type.getMinValue();
+		final double max = type.getMaxValue();
+		if (max - min >= MAX_EXACT_BINS) return null;
+		return new ValueHistogram((long) min, (long) max);
+	}
+
+	/**
+	 * Splits the samples among a number of tasks, each accumulating into a
+	 * blank copy of the prototype, and merges the per task results.
+	 */
+	private SummaryStats gather(final Dataset ds, final PointSet region,
+		final SummaryStats prototype)
+	{
+		if (region != null) return gatherRegion(ds, region, prototype);
+		final long size = ds.getImgPlus().size();
+		final int numTasks = ParallelUtils.taskCount(size, MIN_CHUNK);
+		final List<Callable<SummaryStats>> tasks =
+			new ArrayList<Callable<SummaryStats>>();
+		for (int t = 0; t < numTasks; t++) {
+			final long start = ParallelUtils.chunkStart(size, numTasks, t);
+			final long count = ParallelUtils.chunkSize(size, numTasks, t);
+			tasks.add(new ImgChunkTask(ds, start, count, prototype.blankCopy()));
+		}
+		final SummaryStats result = prototype.blankCopy();
+		for (final SummaryStats partial : ParallelUtils.invokeAll(threadService,
+			tasks))
+		{
+			result.merge(partial);
+		}
+		return result;
+	}
+
+	/**
+	 * Like {@link #gather(Dataset, PointSet, SummaryStats)} for a region. Each
+	 * task walks the region with its own iterator and measures a contiguous
+	 * range of its points.
+	 */
+	private SummaryStats gatherRegion(final Dataset ds, final PointSet region,
+		final SummaryStats prototype)
+	{
+		final long size = region.size();
+		final int numTasks = ParallelUtils.taskCount(size, MIN_CHUNK);
+		final List<Callable<SummaryStats>> tasks =
+			new ArrayList<Callable<SummaryStats>>();
+		for (int t = 0; t < numTasks; t++) {
+			final long start = ParallelUtils.chunkStart(size, numTasks, t);
+			final long count = ParallelUtils.chunkSize(size, numTasks, t);
+			tasks.add(new RegionChunkTask(ds, region, start, count, prototype
+				.blankCopy()));
+		}
+		final SummaryStats result = prototype.blankCopy();
+		for (final SummaryStats partial : ParallelUtils.invokeAll(threadService,
+			tasks))
+		{
+			result.merge(partial);
+		}
+		return result;
+	}
+
+	/**
+	 * Like {@link #gather(Dataset, PointSet, SummaryStats)} but for a region of
+	 * spans. Rows are interleaved among the tasks.
+	 */
+	private SummaryStats gatherSpans(final Dataset ds,
+		final ScanlineSpans region, final long[] planePosition,
+		final SummaryStats prototype)
+	{
+		final int numTasks = ParallelUtils.taskCount(region.size(), MIN_CHUNK);
+		final List<Callable<SummaryStats>> tasks =
+			new ArrayList<Callable<SummaryStats>>();
+		for (int t = 0; t < numTasks; t++) {
+			tasks.add(new SpanChunkTask(ds, region, planePosition, t, numTasks,
+				prototype.blankCopy()));
+		}
+		final SummaryStats result = prototype.blankCopy();
+		for (final SummaryStats partial : ParallelUtils.invokeAll(threadService,
+			tasks))
+		{
+			result.merge(partial);
+		}
+		return result;
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	private RealImageFunction<?, DoubleType> imgFunc(final Dataset ds) {
 		final Img<? extends RealType<?>> imgPlus = ds.getImgPlus();
@@ -454,4 +611,127 @@ private double measure(final Function<PointSet, DoubleType> func,
 		return output.getRealDouble();
 	}
 
+	// -- helper classes --
+
+	/** Accumulates the statistics of a contiguous run of an Img's pixels. */
+	private static class ImgChunkTask implements Callable<SummaryStats> {
+
+		private final Img<? extends RealType<?>> img;
+		private final long start;
+		private final long count;
+		private final SummaryStats stats;
+
+		public ImgChunkTask(final Dataset ds, final long start, final long count,
+			final SummaryStats stats)
+		{
+			this.img = ds.getImgPlus();
+			this.start = start;
+			this.count = count;
+			this.stats = stats;
+		}
+
+		@Override
+		public SummaryStats call() {
+			final Cursor<? extends RealType<?>> cursor = img.cursor();
+			cursor.jumpFwd(start);
+			for (long i = 0; i < count; i++) {
+				cursor.fwd();
+				stats.add(cursor.get().getRealDouble());
+			}
+			return stats;
+		}
+	}
+
+	/**
+	 * Accumulates the statistics of a contiguous range of the points of a
+	 * region, in iteration order.
+	 */
+	private class RegionChunkTask implements Callable<SummaryStats> {
+
+		private final Function<long[], DoubleType> func;
+		private final PointSet region;
+		private final long start;
+		private final long count;
+		private final SummaryStats stats;
+
+		public RegionChunkTask(final Dataset ds, final PointSet region,
+			final long start, final long count, final SummaryStats stats)
+		{
+			this.func = imgFunc(ds);
+			this.region = region;
+			this.start = start;
+			this.count = count;
+			this.stats = stats;
+		}
+
+		@Override
+		public SummaryStats call() {
+			final DoubleType value = new DoubleType();
+			final PointSetIterator iter = region.iterator();
+			for (long i = 0; i < start; i++) {
+				iter.next();
+			}
+			for (long i = 0; i < count; i++) {
+				func.compute(iter.next(), value);
+				stats.add(value.getRealDouble());
+			}
+			return stats;
+		}
+	}
+
+	/**
+	 * Accumulates the statistics of every numTasks'th row of a region of spans
+	 * within one plane of a Dataset. Spans are clipped to the plane.
+	 */
+	private static class SpanChunkTask implements Callable<SummaryStats> {
+
+		private final Img<? extends RealType<?>> img;
+		private final ScanlineSpans region;
+		private final long[] planePosition;
+		private final int task;
+		private final int numTasks;
+		private final SummaryStats stats;
+
+		public SpanChunkTask(final Dataset ds, final ScanlineSpans region,
+			final long[] planePosition, final int task, final int numTasks,
+			final SummaryStats stats)
+		{
+			this.img = ds.getImgPlus();
+			this.region = region;
+			this.planePosition = planePosition;
+			this.task = task;
+			this.numTasks = numTasks;
+			this.stats = stats;
+		}
+
+		@Override
+		public SummaryStats call() {
+			final RandomAccess<? extends RealType<?>> accessor = img.randomAccess();
+			if (planePosition != null) {
+				for (int d = 0; d < planePosition.length; d++) {
+					accessor.setPosition(planePosition[d], d + 2);
+				}
+			}
+			final long maxX = img.dimension(0) - 1;
+			final long minY = Math.max(region.minY(), 0);
+			final long maxY = Math.min(region.maxY(), img.dimension(1) - 1);
+			for (long y = minY; y <= maxY; y++) {
+				if ((y - region.minY()) % numTasks != task) continue;
+				accessor.setPosition(y, 1);
+				final int count = region.spanCount(y);
+				for (int i = 0; i < count; i++) {
+					final long start = Math.max(region.spanStart(y, i), 0);
+					final long end = Math.min(region.spanEnd(y, i) - 1, maxX);
+					if (start > end) continue;
+					accessor.setPosition(start, 0);
+					for (long x = start; x <= end; x++) {
+						stats.add(accessor.get().getRealDouble());
+						accessor.fwd(0);
+					}
+				}
+			}
+			return stats;
+		}
+	}
+
 }
@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import java.util.Arrays;
+
+/**
+ * Estimates a single quantile (such as the median) of a stream of values in
+ * constant memory using the P-square algorithm of Jain and Chlamtac ("The P2
+ * algorithm for dynamic calculation of quantiles and histograms without
+ * storing observations", CACM 1985). Five markers track the minimum, the
+ * maximum, the desired quantile and the quantiles midway between them; their
+ * heights are adjusted with piecewise parabolic interpolation as values
+ * arrive. With fewer than five values the estimate is interpolated linearly
+ * between the values either side of the quantile's rank.
+ * 
+ * @author Barry DeZonia
+ */
+public class QuantileSketch {
+
+	// -- instance variables --
+
+	private final double p;
+	private final double[] heights = new double[5];
+	private final double[] positions = new double[5];
+	private final double[] desired = new double[5];
+	private final double[] increments;
+	private long count;
+
+	// -- constructor --
+
+	/**
+	 * Creates a sketch that estimates the given quantile.
+	 * 
+	 * @param p The quantile to estimate; 0.5 is the median. Must be within
+	 *          [0,1].
+	 */
+	public QuantileSketch(final double p) {
+		if (p < 0 || p > 1) {
+			throw new IllegalArgumentException("Quantile must be within [0,1]");
+		}
+		this.p = p;
+		this.increments = new double[] { 0, p / 2, p, (1 + p) / 2, 1 };
+	}
+
+	// -- QuantileSketch methods --
+
+	/** Returns the number of values seen by this sketch. */
+	public long getCount() {
+		return count;
+	}
+
+	/** Includes a value in the sketch. */
+	public void add(final double value) {
+		if (count < 5) {
+			heights[(int) count++] = value;
+			if (count == 5) initMarkers();
+			return;
+		}
+		count++;
+
+		// find the cell containing the value, widening the extremes if needed
+		final int k;
+		if (value < heights[0]) {
+			heights[0] = value;
+			k = 0;
+		}
+		else if (value < heights[1]) k = 0;
+		else if (value < heights[2]) k = 1;
+		else if (value < heights[3]) k = 2;
+		else if (value <= heights[4]) k = 3;
+		else {
+			heights[4] = value;
+			k = 3;
+		}
+
+		for (int i = k + 1; i < 5; i++) {
+			positions[i]++;
+		}
+		for (int i = 0; i < 5; i++) {
+			desired[i] += increments[i];
+		}
+
+		// adjust the heights of the middle markers if they are off position
+		for (int i = 1; i <= 3; i++) {
+			final double d = desired[i] - positions[i];
+			if ((d >= 1 && positions[i + 1] - positions[i] > 1) ||
+				(d <= -1 && positions[i - 1] - positions[i] < -1))
+			{
+				final int sign = (d > 0) ? 1 : -1;
+				final double candidate = parabolic(i, sign);
+				if (heights[i - 1] < candidate && candidate < heights[i + 1]) {
+					heights[i] = candidate;
+				}
+				else heights[i] = linear(i, sign);
+				positions[i] += sign;
+			}
+		}
+	}
+
+	/** Returns the current estimate of the quantile (0 if no values seen). */
+	public double getEstimate() {
+		if (count == 0) return 0;
+		if (count >= 5) return heights[2];
+		final double[] seen = Arrays.copyOf(heights, (int) count);
+		Arrays.sort(seen);
+		final double index = p * (count - 1);
+		// interpolate linearly between the values either side of the rank
+		final int lo = (int) Math.floor(index);
+		final int hi = (int) Math.ceil(index);
+		return seen[lo] + (index - lo) * (seen[hi] - seen[lo]);
+	}
+
+	// -- helpers --
+
+	private void initMarkers() {
+		Arrays.sort(heights);
+		for (int i = 0; i < 5; i++) {
+			positions[i] = i + 1;
+		}
+		desired[0] = 1;
+		desired[1] = 1 + 2 * p;
+		desired[2] = 1 + 4 * p;
+		desired[3] = 3 + 2 * p;
+		desired[4] = 5;
+	}
+
+	private double parabolic(final int i, final int d) {
+		final double nLo = positions[i - 1], n = positions[i];
+		final double nHi = positions[i + 1];
+		final double qLo = heights[i - 1], q = heights[i], qHi = heights[i + 1];
+		return q + d / (nHi - nLo) *
+			((n - nLo + d) * (qHi - q) / (nHi - n) + (nHi - n - d) * (q - qLo) /
+				(n - nLo));
+	}
+
+	private double linear(final int i, final int d) {
+		return heights[i] + d * (heights[i + d] - heights[i]) /
+			(positions[i + d] - positions[i]);
+	}
+
+}
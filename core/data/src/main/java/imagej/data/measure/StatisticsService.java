@@ -36,6 +36,7 @@
 package imagej.data.measure;
 
 import imagej.data.Dataset;
+import imagej.data.overlay.ScanlineSpans;
 import net.imglib2.ops.pointset.PointSet;
 
 import org.scijava.service.Service;
@@ -44,6 +45,9 @@
 // revisiting the pixels. This current impl goes over pixels once for each
 // measurement. I will mock something up soon. BDZ
 
+// NB - computeAll() gathers all the statistics in a single pass over the
+// pixels; the individual measures still make a pass each.
+
 // TODO - this service is limited to only the kinds of stats it knows. It can't
 // measure a user provided statistic. This can be done by calling the
 // MeasurementService more directly.
@@ -545,4 +549,43 @@ public interface StatisticsService extends Service {
 	 */
 	PointSet allOf(Dataset ds);
 
+	/**
+	 * Computes a whole family of statistics (moments, extrema, sums, means,
+	 * median and trimmed means) of the values within a {@link PointSet} region
+	 * of a {@link Dataset}. The region is visited once, in chunks divided among
+	 * the available processors. Rank based statistics come from a histogram
+	 * that is exact for integer types of 16 bits or less and is estimated from a
+	 * second binning pass otherwise.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @param region The PointSet region upon which to calculate
+	 * @return The measured values
+	 */
+	SummaryStats computeAll(Dataset ds, PointSet region);
+
+	/**
+	 * Computes a whole family of statistics (moments, extrema, sums, means,
+	 * median and trimmed means) of the values within a {@link Dataset}. See
+	 * {@link #computeAll(Dataset, PointSet)}.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @return The measured values
+	 */
+	SummaryStats computeAll(Dataset ds);
+
+	/**
+	 * Computes a whole family of statistics of the values of a {@link Dataset}
+	 * within a rasterized region of one of its planes, such as the spans of an
+	 * overlay. The pixels are visited span by span without any containment
+	 * tests. See {@link #computeAll(Dataset, PointSet)}.
+	 * 
+	 * @param ds The Dataset to measure (X and Y must be its first two axes)
+	 * @param region The XY pixels to measure
+	 * @param planePosition The position of the plane in the Dataset's remaining
+	 *          axes (may be null for two dimensional Datasets)
+	 * @return The measured values
+	 */
+	SummaryStats computeAll(Dataset ds, ScanlineSpans region,
+		long[] planePosition);
+
 }
@@ -0,0 +1,376 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+/**
+ * A class that accumulates a whole family of statistics (moments, extrema,
+ * sums, means, median, trimmed means) from a single pass over a set of sample
+ * values. Moments are updated online (Welford/Terriberry style) so no copy of
+ * the samples is ever made. Two SummaryStats that gathered disjoint sets of
+ * samples can be merged (Pebay's pairwise formulas) which makes this class
+ * suitable as a per-thread accumulator in multithreaded computations.
+ * <p>
+ * Rank based statistics (median and trimmed means) are only available when
+ * the SummaryStats was created with a histogram. They are exact for integer
+ * data and accurate to within one histogram bin for real data.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public class SummaryStats {
+
+	// -- instance variables --
+
+	private long n;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+	private double sum;
+	private double sumOfLogs;
+	private double sumOfReciprocals;
+	private double product = 1;
+
+	/** running mean */
+	private double mean;
+
+	/** running sums of 2nd, 3rd, and 4th powers of deviations from the mean */
+	private double m2, m3, m4;
+
+	private final ValueHistogram histogram;
+
+	/** whether only the histogram is updated, the moments being known */
+	private final boolean binOnly;
+
+	// -- constructors --
+
+	/** Creates a SummaryStats that does not support rank based statistics. */
+	public SummaryStats() {
+		this(null);
+	}
+
+	/** Creates a SummaryStats that counts samples in the given histogram. */
+	SummaryStats(final ValueHistogram histogram) {
+		this(histogram, false);
+	}
+
+	private SummaryStats(final ValueHistogram histogram, final boolean binOnly)
+	{
+		this.histogram = histogram;
+		this.binOnly = binOnly;
+	}
+
+	/**
+	 * Creates a SummaryStats that only counts samples in the given histogram.
+	 * This is for a second pass over samples whose moments were gathered by a
+	 * first pass; see {@link #withRanks(SummaryStats)}.
+	 */
+	static SummaryStats binning(final ValueHistogram histogram) {
+		return new SummaryStats(histogram, true);
+	}
+
+	// -- SummaryStats methods --
+
+	/** Creates an empty SummaryStats configured like this one. */
+	public SummaryStats blankCopy() {
+		return new SummaryStats(histogram == null ? null : histogram.blankCopy(),
+			binOnly);
+	}
+
+	/**
+	 * Returns a SummaryStats with the moments of this one and the histogram of
+	 * the given {@link #binning(ValueHistogram) binning} one, which must have
+	 * seen the same samples.
+	 */
+	SummaryStats withRanks(final SummaryStats binned) {
+		final SummaryStats result = new SummaryStats(binned.histogram);
+		result.copyMoments(this);
+		return result;
+	}
+
+	/** Includes a sample value in the statistics. */
+	public void add(final double value) {
+		if (binOnly) {
+			histogram.add(value);
+			return;
+		}
+		final double n1 = n;
+		n++;
+		final double nd = n;
+		final double delta = value - mean;
+		final double deltaN = delta / nd;
+		final double deltaN2 = deltaN * deltaN;
+		final double term1 = delta * deltaN * n1;
+		mean += deltaN;
+		m4 +=
+			term1 * deltaN2 * (nd * nd - 3 * nd + 3) + 6 * deltaN2 * m2 - 4 *
+				deltaN * m3;
+		m3 += term1 * deltaN * (nd - 2) - 3 * deltaN * m2;
+		m2 += term1;
+		if (value < min) min = value;
+		if (value > max) max = value;
+		sum += value;
+		sumOfLogs += Math.log(value);
+		sumOfReciprocals += 1 / value;
+		product *= value;
+		if (histogram != null) histogram.add(value);
+	}
+
+	/**
+	 * Includes all the samples gathered by another SummaryStats in these
+	 * statistics. The other SummaryStats must be a blank copy of this one (or
+	 * vice versa) if histograms are in use.
+	 */
+	public void merge(final SummaryStats other) {
+		if (binOnly) {
+			histogram.merge(other.histogram);
+			return;
+		}
+		if (other.n == 0) return;
+		if (n == 0) {
+			copyMoments(other);
+		}
+		else {
+			final double na = n;
+			final double nb = other.n;
+			final double nt = na + nb;
+			final double delta = other.mean - mean;
+			final double delta2 = delta * delta;
+			final double delta3 = delta2 * delta;
+			final double delta4 = delta2 * delta2;
+			final double newM4 =
+				m4 + other.m4 + delta4 * na * nb * (na * na - na * nb + nb * nb) /
+					(nt * nt * nt) + 6 * delta2 * (na * na * other.m2 + nb * nb * m2) /
+					(nt * nt) + 4 * delta * (na * other.m3 - nb * m3) / nt;
+			final double newM3 =
+				m3 + other.m3 + delta3 * na * nb * (na - nb) / (nt * nt) + 3 * delta *
+					(na * other.m2 - nb * m2) / nt;
+			final double newM2 = m2 + other.m2 + delta2 * na * nb / nt;
+			mean += delta * nb / nt;
+			m2 = newM2;
+			m3 = newM3;
+			m4 = newM4;
+			n += other.n;
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+			sum += other.sum;
+			sumOfLogs += other.sumOfLogs;
+			sumOfReciprocals += other.sumOfReciprocals;
+			product *= other.product;
+		}
+		if (histogram != null && other.histogram != null) {
+			histogram.merge(other.histogram);
+		}
+	}
+
+	/** Returns the number of samples gathered. */
+	public long getCount() {
+		return n;
+	}
+
+	/** Returns the minimum sample value. */
+	public double getMinimum() {
+		return (n == 0) ? 0 : min;
+	}
+
+	/** Returns the maximum sample value. */
+	public double getMaximum() {
+		return (n == 0) ? 0 : max;
+	}
+
+	/** Returns the point midway between the minimum and maximum values. */
+	public double getMidpoint() {
+		return (getMinimum() + getMaximum()) / 2;
+	}
+
+	/** Returns the sum of the sample values. */
+	public double getSum() {
+		return sum;
+	}
+
+	/** Returns the product of the sample values. */
+	public double getProduct() {
+		return (n == 0) ? 0 : product;
+	}
+
+	/** Returns the arithmetic mean of the sample values. */
+	public double getArithmeticMean() {
+		return mean;
+	}
+
+	/** Returns the geometric mean of the sample values. */
+	public double getGeometricMean() {
+		return (n == 0) ? 0 : Math.exp(sumOfLogs / n);
+	}
+
+	/** Returns the harmonic mean of the sample values. */
+	public double getHarmonicMean() {
+		return (n == 0) ? 0 : n / sumOfReciprocals;
+	}
+
+	/** Returns the sum of squared deviations from the mean. */
+	public double getSumOfSquaredDeviations() {
+		return m2;
+	}
+
+	/** Returns the (biased) estimate of the sample variance. */
+	public double getPopulationVariance() {
+		return (n == 0) ? 0 : m2 / n;
+	}
+
+	/** Returns the (unbiased) estimate of the sample variance. */
+	public double getSampleVariance() {
+		return (n <= 1) ? 0 : m2 / (n - 1);
+	}
+
+	/** Returns the (biased) estimate of the sample standard deviation. */
+	public double getPopulationStdDev() {
+		return Math.sqrt(getPopulationVariance());
+	}
+
+	/** Returns the (unbiased) estimate of the sample standard deviation. */
+	public double getSampleStdDev() {
+		return Math.sqrt(getSampleVariance());
+	}
+
+	/** Returns the (biased) skew of the sample values. */
+	public double getPopulationSkew() {
+		if (n == 0 || m2 == 0) return 0;
+		return Math.sqrt(n) * m3 / Math.pow(m2, 1.5);
+	}
+
+	/** Returns the (unbiased) skew of the sample values. */
+	public double getSampleSkew() {
+		if (n <= 2) return 0;
+		return getPopulationSkew() * Math.sqrt(n * (n - 1.0)) / (n - 2);
+	}
+
+	/** Returns the (biased) kurtosis of the sample values. */
+	public double getPopulationKurtosis() {
+		if (n == 0 || m2 == 0) return 0;
+		return n * m4 / (m2 * m2);
+	}
+
+	/** Returns the (biased) kurtosis excess of the sample values. */
+	public double getPopulationKurtosisExcess() {
+		return getPopulationKurtosis() - 3;
+	}
+
+	/** Returns the (unbiased) kurtosis of the sample values. */
+	public double getSampleKurtosis() {
+		return getSampleKurtosisExcess() + 3;
+	}
+
+	/** Returns the (unbiased) kurtosis excess of the sample values. */
+	public double getSampleKurtosisExcess() {
+		if (n <= 3) return 0;
+		final double g2 = getPopulationKurtosisExcess();
+		return ((n + 1) * g2 + 6) * (n - 1) / ((n - 2.0) * (n - 3.0));
+	}
+
+	/** Returns true if rank based statistics can be calculated. */
+	public boolean hasRankStatistics() {
+		return histogram != null;
+	}
+
+	/** Returns true if rank based statistics are exact rather than estimates. */
+	public boolean isRankStatisticsExact() {
+		return histogram != null && histogram.isExact();
+	}
+
+	/**
+	 * Returns the median of the sample values.
+	 * 
+	 * @throws IllegalStateException if rank based statistics are not available
+	 */
+	public double getMedian() {
+		checkRankStatistics();
+		if (n == 0) return 0;
+		if (n % 2 == 1) return histogram.valueAtRank(n / 2);
+		return (histogram.valueAtRank(n / 2 - 1) + histogram.valueAtRank(n / 2)) / 2;
+	}
+
+	/**
+	 * Returns the mean of the sample values after discarding halfTrimSize values
+	 * from each end of the sorted samples.
+	 * 
+	 * @throws IllegalStateException if rank based statistics are not available
+	 */
+	public double getTrimmedMean(final long halfTrimSize) {
+		checkRankStatistics();
+		final long kept = n - 2 * halfTrimSize;
+		if (halfTrimSize < 0 || kept <= 0) {
+			throw new IllegalArgumentException("Invalid trim size " +
+				halfTrimSize + " for " + n + " samples");
+		}
+		return histogram.sumOfRanks(halfTrimSize, n - halfTrimSize - 1) / kept;
+	}
+
+	/**
+	 * Returns the mean of the sample values after discarding a proportion alpha
+	 * of the values from each end of the sorted samples. Alpha must be >= 0 and
+	 * < 0.5.
+	 * 
+	 * @throws IllegalStateException if rank based statistics are not available
+	 */
+	public double getAlphaTrimmedMean(final double alpha) {
+		if (alpha < 0 || alpha >= 0.5) {
+			throw new IllegalArgumentException("Alpha must be >= 0 and < 0.5");
+		}
+		return getTrimmedMean((long) Math.floor(alpha * n));
+	}
+
+	// -- helpers --
+
+	private void copyMoments(final SummaryStats other) {
+		n = other.n;
+		min = other.min;
+		max = other.max;
+		sum = other.sum;
+		sumOfLogs = other.sumOfLogs;
+		sumOfReciprocals = other.sumOfReciprocals;
+		product = other.product;
+		mean = other.mean;
+		m2 = other.m2;
+		m3 = other.m3;
+		m4 = other.m4;
+	}
+
+	private void checkRankStatistics() {
+		if (histogram == null) {
+			throw new IllegalStateException(
+				"Rank statistics require a SummaryStats built with a histogram");
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+/**
+ * A histogram of sample values that supports the rank based statistics (median,
+ * trimmed means) of {@link SummaryStats}. Histograms built for integer data
+ * have one bin per integer value and are exact. Histograms built for real data
+ * also record the sum of the values falling in each bin so that rank based
+ * statistics can be estimated to within a single bin width.
+ * 
+ * @author Barry DeZonia
+ */
+class ValueHistogram {
+
+	// -- instance variables --
+
+	private final double min;
+	private final double max;
+	private final double binWidth;
+	private final boolean integral;
+	private final long[] counts;
+	private final double[] sums;
+
+	// -- constructors --
+
+	/**
+	 * Creates a histogram with one bin per integer value within [min, max].
+	 */
+	ValueHistogram(final long min, final long max) {
+		this.min = min;
+		this.max = max;
+		this.binWidth = 1;
+		this.integral = true;
+		this.counts = new long[(int) (max - min + 1)];
+		this.sums = null;
+	}
+
+	/**
+	 * Creates a histogram of numBins equally sized bins spanning [min, max].
+	 */
+	ValueHistogram(final double min, final double max, final int numBins) {
+		this.min = min;
+		this.max = max;
+		this.binWidth = (max > min) ? (max - min) / numBins : 1;
+		this.integral = false;
+		this.counts = new long[(max > min) ? numBins : 1];
+		this.sums = new double[counts.length];
+	}
+
+	// -- ValueHistogram methods --
+
+	/** Creates an empty histogram with the same binning as this one. */
+	ValueHistogram blankCopy() {
+		if (integral) return new ValueHistogram((long) min, (long) max);
+		return new ValueHistogram(min, max, counts.length);
+	}
+
+	/** Returns true if the values in this histogram are counted exactly. */
+	boolean isExact() {
+		return integral;
+	}
+
+	/** Counts a value in the histogram. Out of range values are clamped. */
+	void add(final double value) {
+		final int bin = bin(value);
+		counts[bin]++;
+		if (sums != null) sums[bin] += value;
+	}
+
+	/** Adds the counts of another histogram of identical binning into this one. */
+	void merge(final ValueHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		if (sums != null) {
+			for (int i = 0; i < sums.length; i++) {
+				sums[i] += other.sums[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of the given zero based rank among the n values counted
+	 * by this histogram. Inexact histograms interpolate within the bin.
+	 */
+	double valueAtRank(final long rank) {
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			final long count = counts[i];
+			if (rank < seen + count) {
+				if (integral) return min + i;
+				final double fraction = (rank - seen + 0.5) / count;
+				return min + binWidth * (i + fraction);
+			}
+			seen += count;
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the sum of the values whose zero based ranks lie within
+	 * [firstRank, lastRank]. Inexact histograms apportion partially included
+	 * bins by count.
+	 */
+	double sumOfRanks(final long firstRank, final long lastRank) {
+		double total = 0;
+		long seen = 0;
+		for (int i = 0; i < counts.length && seen <= lastRank; i++) {
+			final long count = counts[i];
+			if (count == 0) continue;
+			final long binFirst = seen;
+			final long binLast = seen + count - 1;
+			seen += count;
+			final long lo = Math.max(binFirst, firstRank);
+			final long hi = Math.min(binLast, lastRank);
+			if (lo > hi) continue;
+			final long included = hi - lo + 1;
+			if (integral) total += included * (min + i);
+			else total += sums[i] * included / count;
+		}
+		return total;
+	}
+
+	// -- helpers --
+
+	private int bin(final double value) {
+		final double offset = (value - min) / binWidth;
+		if (!(offset > 0)) return 0; // also catches NaN
+		if (offset >= counts.length) return counts.length - 1;
+		return (int) offset;
+	}
+
+}
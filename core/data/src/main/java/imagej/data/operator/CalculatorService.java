@@ -41,6 +41,8 @@
 import java.util.Map;
 
 import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
 
@@ -85,4 +87,44 @@ public interface CalculatorService extends SingletonService<CalculatorOp<?, ?>>
 	<U extends RealType<U>, V extends RealType<V>> Img<DoubleType> combine(
 		Img<U> img1, Img<V> img2, CalculatorOp<U, V> op);
 
+	/**
+	 * Creates an {@link Img} of the given type from the combination of two input
+	 * {@link Img}s. The size of the output {@link Img} matches the region of
+	 * overlap between the two input {@link Img}s.
+	 * 
+	 * @param img1 data input Img 1
+	 * @param img2 data input Img 2
+	 * @param op The CalculatorOp algorithm used to combine the two inputs
+	 * @param factory The factory used to create the output Img
+	 * @param type The pixel type of the output Img
+	 * @return An Img containing the combined data of the overlapping regions of
+	 *         the two input Imgs.
+	 * @see #combine(Img, Img, CalculatorOp, Img)
+	 */
+	<U extends RealType<U>, V extends RealType<V>, W extends RealType<W> & NativeType<W>>
+		Img<W> combine(Img<U> img1, Img<V> img2, CalculatorOp<U, V> op,
+			ImgFactory<W> factory, W type);
+
+	/**
+	 * Fills an existing output {@link Img} with the combination of two input
+	 * {@link Img}s. Only the region of overlap of all three {@link Img}s is
+	 * written. The output may be one of the inputs, which is then changed in
+	 * place.
+	 * <p>
+	 * The work is split across the available processors. When all three
+	 * {@link Img}s are planar and of the same size their primitive plane arrays
+	 * are processed directly; otherwise the pixels are visited with cursors.
+	 * Values written into integer outputs are rounded and clamped to the range
+	 * of the type.
+	 * </p>
+	 * 
+	 * @param img1 data input Img 1
+	 * @param img2 data input Img 2
+	 * @param op The CalculatorOp algorithm used to combine the two inputs
+	 * @param output The Img to fill with the combined data
+	 * @throws IllegalArgumentException if the Imgs differ in dimensionality
+	 */
+	<U extends RealType<U>, V extends RealType<V>, W extends RealType<W>> void
+		combine(Img<U> img1, Img<V> img2, CalculatorOp<U, V> op, Img<W> output);
+
 }
@@ -35,22 +35,41 @@
 
 package imagej.data.operator;
 
+import imagej.data.PrimitivePlane;
+import imagej.data.disk.DiskPlanarImg;
+import imagej.data.disk.DiskPlane;
+import imagej.data.disk.DiskPlanarImgFactory;
 import imagej.plugin.AbstractSingletonService;
+import imagej.util.ParallelUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
-import net.imglib2.img.array.ArrayImgFactory;
-import net.imglib2.ops.img.ImageCombiner;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.ops.operation.BinaryOperation;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
 
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
 
 /**
  * Default service for managing available {@link CalculatorOp}s.
@@ -62,6 +81,19 @@ public class DefaultCalculatorService extends
 	AbstractSingletonService<CalculatorOp<?, ?>> implements CalculatorService
 {
 
+	// -- constants --
+
+	/** The fewest pixels worth handing to a task. */
+	private static final long MIN_CHUNK = 64 * 1024;
+
+	/** The number of pixels combined per pass over the plane buffers. */
+	private static final int BLOCK_SIZE = 4096;
+
+	// -- parameters --
+
+	@Parameter
+	private ThreadService threadService;
+
 	// -- instance variables --
 
 	private Map<String, CalculatorOp<?, ?>> operators;
@@ -88,9 +120,35 @@ public List<String> getOperatorNames() {
 	public <U extends RealType<U>, V extends RealType<V>> Img<DoubleType>
 		combine(final Img<U> img1, final Img<V> img2, final CalculatorOp<U, V> op)
 	{
-		// TODO - limited by ArrayImg size constraints
-		return ImageCombiner.applyOp(op, img1, img2,
-			new ArrayImgFactory<DoubleType>(), new DoubleType());
+		// NB - planar storage avoids ArrayImg's limit on total size. Keep results
+		// of disk-backed inputs out of core as well.
+		final ImgFactory<DoubleType> factory;
+		if (img1 instanceof DiskPlanarImg || img2 instanceof DiskPlanarImg) {
+			factory = new DiskPlanarImgFactory<DoubleType>();
+		}
+		else factory = new PlanarImgFactory<DoubleType>();
+		return combine(img1, img2, op, factory, new DoubleType());
+	}
+
+	@Override
+	public
+		<U extends RealType<U>, V extends RealType<V>, W extends RealType<W> & NativeType<W>>
+		Img<W> combine(final Img<U> img1, final Img<V> img2,
+			final CalculatorOp<U, V> op, final ImgFactory<W> factory, final W type)
+	{
+		final Img<W> output = factory.create(overlap(img1, img2), type);
+		combine(img1, img2, op, output);
+		return output;
+	}
+
+	@Override
+	public <U extends RealType<U>, V extends RealType<V>, W extends RealType<W>>
+		void combine(final Img<U> img1, final Img<V> img2,
+			final CalculatorOp<U, V> op, final Img<W> output)
+	{
+		final long[] dims = overlap(img1, img2, output);
+		if (combinePlanes(img1, img2, op, output)) return;
+		combinePixels(img1, img2, op, output, dims);
 	}
 
 	// -- PTService methods --
@@ -111,6 +169,238 @@ public void initialize() {
 
 	// -- helpers --
 
+	/**
+	 * Returns the dimensions of the region shared by the given Imgs.
+	 * 
+	 * @throws IllegalArgumentException if the Imgs differ in dimensionality
+	 */
+	private long[] overlap(final Interval... intervals) {
+		final long[] dims = new long[intervals[0].numDimensions()];
+		intervals[0].dimensions(dims);
+		for (final Interval interval : intervals) {
+			if (interval.numDimensions() != dims.length) {
+				throw new IllegalArgumentException(
+					"Images must have the same number of dimensions");
+			}
+			for (int d = 0; d < dims.length; d++) {
+				dims[d] = Math.min(dims[d], interval.dimension(d));
+			}
+		}
+		return dims;
+	}
+
+	private boolean sameDimensions(final Interval a, final Interval b) {
+		for (int d = 0; d < a.numDimensions(); d++) {
+			if (a.dimension(d) != b.dimension(d)) return false;
+		}
+		return true;
+	}
+
+	/** Returns the Img underlying any ImgPlus wrappers. */
+	private Img<?> unwrap(final Img<?> img) {
+		Img<?> result = img;
+		while (result instanceof ImgPlus) {
+			result = ((ImgPlus<?>) result).getImg();
+		}
+		return result;
+	}
+
+	/** Wraps a plane of a PlanarImg; returns null if its type is unsupported. */
+	private PrimitivePlane wrap(final PlanarImg<?, ?> img, final int no,
+		final RealType<?> type)
+	{
+		return PrimitivePlane.wrap(img.getPlane(no).getCurrentStorageArray(), type);
+	}
+
+	/** Wraps a plane of a PlanarImg that is only read from. */
+	private PrimitivePlane wrapForReading(final PlanarImg<?, ?> img,
+		final int no, final RealType<?> type)
+	{
+		return PrimitivePlane.wrap(PrimitivePlane.readArray(img.getPlane(no)), type);
+	}
+
+	/** Keeps a disk-backed plane in memory while its array is in use. */
+	private static void pin(final Object plane) {
+		if (plane instanceof DiskPlane) ((DiskPlane) plane).pin();
+	}
+
+	private static void unpin(final Object plane) {
+		if (plane instanceof DiskPlane) ((DiskPlane) plane).unpin();
+	}
+
+	/**
+	 * Combines equally sized planar Imgs directly on their plane arrays. Returns
+	 * false, having done nothing, if the Imgs are not suitable.
+	 */
+	private <U extends RealType<U>, V extends RealType<V>, W extends RealType<W>>
+		boolean combinePlanes(final Img<U> img1, final Img<V> img2,
+			final CalculatorOp<U, V> op, final Img<W> output)
+	{
+		if (!sameDimensions(img1, output) || !sameDimensions(img2, output)) {
+			return false;
+		}
+		final Img<?> raw1 = unwrap(img1);
+		final Img<?> raw2 = unwrap(img2);
+		final Img<?> rawOut = unwrap(output);
+		if (!(raw1 instanceof PlanarImg) || !(raw2 instanceof PlanarImg) ||
+			!(rawOut instanceof PlanarImg))
+		{
+			return false;
+		}
+		final PlanarImg<?, ?> planar1 = (PlanarImg<?, ?>) raw1;
+		final PlanarImg<?, ?> planar2 = (PlanarImg<?, ?>) raw2;
+		final PlanarImg<?, ?> planarOut = (PlanarImg<?, ?>) rawOut;
+		final U type1 = img1.firstElement();
+		final V type2 = img2.firstElement();
+		final W typeOut = output.firstElement();
+		final PrimitivePlane first = wrapForReading(planarOut, 0, typeOut);
+		if (first == null || wrapForReading(planar1, 0, type1) == null ||
+			wrapForReading(planar2, 0, type2) == null)
+		{
+			return false;
+		}
+
+		final long planeSize = first.size();
+		final long total = planeSize * planarOut.numSlices();
+		final int taskCount = ParallelUtils.taskCount(total, MIN_CHUNK);
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < taskCount; t++) {
+			final long start = ParallelUtils.chunkStart(total, taskCount, t);
+			final long end = start + ParallelUtils.chunkSize(total, taskCount, t);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					final BinaryOperation<U, V, DoubleType> operation = op.copy();
+					final U v1 = type1.createVariable();
+					final V v2 = type2.createVariable();
+					final DoubleType result = new DoubleType();
+					final double[] buf1 = new double[BLOCK_SIZE];
+					final double[] buf2 = new double[BLOCK_SIZE];
+					long pos = start;
+					while (pos < end) {
+						final int no = (int) (pos / planeSize);
+						final int offset = (int) (pos % planeSize);
+						final int length = (int) Math.min(planeSize - offset, end - pos);
+						// NB - disk-backed planes must stay resident while in use
+						final Object plane1 = planar1.getPlane(no);
+						final Object plane2 = planar2.getPlane(no);
+						final Object planeOut = planarOut.getPlane(no);
+						pin(plane1);
+						pin(plane2);
+						pin(planeOut);
+						try {
+							final PrimitivePlane in1 = wrapForReading(planar1, no, type1);
+							final PrimitivePlane in2 = wrapForReading(planar2, no, type2);
+							final PrimitivePlane out = wrap(planarOut, no, typeOut);
+							for (int i = 0; i < length; i += BLOCK_SIZE) {
+								final int n = Math.min(BLOCK_SIZE, length - i);
+								in1.get(offset + i, buf1, 0, n);
+								in2.get(offset + i, buf2, 0, n);
+								for (int j = 0; j < n; j++) {
+									v1.setReal(buf1[j]);
+									v2.setReal(buf2[j]);
+									operation.compute(v1, v2, result);
+									buf1[j] = result.getRealDouble();
+								}
+								out.set(offset + i, buf1, 0, n);
+							}
+							// NB - mark disk-backed planes as changed
+							if (planeOut instanceof DiskPlane) {
+								((DiskPlane) planeOut).assign(out.getArray());
+							}
+						}
+						finally {
+							unpin(planeOut);
+							unpin(plane2);
+							unpin(plane1);
+						}
+						pos += length;
+					}
+					return null;
+				}
+			});
+		}
+		ParallelUtils.invokeAll(threadService, tasks);
+		return true;
+	}
+
+	/**
+	 * Combines the overlapping region of any Imgs with cursors. Matching cursors
+	 * are used when the Imgs share an iteration order; otherwise the inputs are
+	 * visited by random access.
+	 */
+	private <U extends RealType<U>, V extends RealType<V>, W extends RealType<W>>
+		void combinePixels(final Img<U> img1, final Img<V> img2,
+			final CalculatorOp<U, V> op, final Img<W> output, final long[] dims)
+	{
+		final boolean matching =
+			sameDimensions(img1, output) && sameDimensions(img2, output) &&
+				img1.equalIterationOrder(output) && img2.equalIterationOrder(output);
+		final IterableInterval<W> target =
+			matching ? output : Views.flatIterable(Views.interval(output,
+				new FinalInterval(dims)));
+		final W typeOut = output.firstElement();
+		final boolean integer = typeOut instanceof IntegerType;
+		final double min = typeOut.getMinValue();
+		final double max = typeOut.getMaxValue();
+
+		final long total = target.size();
+		final int taskCount = ParallelUtils.taskCount(total, MIN_CHUNK);
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < taskCount; t++) {
+			final long start = ParallelUtils.chunkStart(total, taskCount, t);
+			final long size = ParallelUtils.chunkSize(total, taskCount, t);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					final BinaryOperation<U, V, DoubleType> operation = op.copy();
+					final DoubleType result = new DoubleType();
+					final Cursor<W> out =
+						matching ? target.cursor() : target.localizingCursor();
+					out.jumpFwd(start);
+					if (matching) {
+						final Cursor<U> in1 = img1.cursor();
+						final Cursor<V> in2 = img2.cursor();
+						in1.jumpFwd(start);
+						in2.jumpFwd(start);
+						for (long i = 0; i < size; i++) {
+							operation.compute(in1.next(), in2.next(), result);
+							out.next().setReal(
+								clamp(result.getRealDouble(), integer, min, max));
+						}
+					}
+					else {
+						final RandomAccess<U> in1 = img1.randomAccess();
+						final RandomAccess<V> in2 = img2.randomAccess();
+						for (long i = 0; i < size; i++) {
+							out.fwd();
+							in1.setPosition(out);
+							in2.setPosition(out);
+							operation.compute(in1.get(), in2.get(), result);
+							out.get().setReal(
+								clamp(result.getRealDouble(), integer, min, max));
+						}
+					}
+					return null;
+				}
+			});
+		}
+		ParallelUtils.invokeAll(threadService, tasks);
+	}
+
+	/** Limits values destined for integer types as PrimitivePlane does. */
+	private static double clamp(final double value, final boolean integer,
+		final double min, final double max)
+	{
+		if (!integer) return value;
+		if (value != value) return 0; // NaN -> 0
+		if (value < min) return min;
+		if (value > max) return max;
+		return value;
+	}
+
 	private void buildDataStructures() {
 		operators = new HashMap<String, CalculatorOp<?, ?>>();
 		operatorNames = new ArrayList<String>();
@@ -200,6 +200,14 @@ public void doOperation(Operation op, Overlay o) {
 	public List<Overlay> getSubcomponents() {
 		return Collections.unmodifiableList(overlays);
 	}
+
+	/**
+	 * Gets the operation used to combine each subcomponent with the ones before
+	 * it. The list parallels {@link #getSubcomponents()}.
+	 */
+	public List<Operation> getOperations() {
+		return Collections.unmodifiableList(operations);
+	}
 	
 	// -- private helpers --
 	
@@ -0,0 +1,373 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.overlay;
+
+import java.util.Arrays;
+
+/**
+ * A rasterized two dimensional region stored as run-length scanline spans.
+ * Each row holds a sorted list of disjoint half open runs [start, end) of
+ * pixels that are within the region. Spans are immutable once built; new
+ * regions are derived from existing ones with the set operations.
+ * <p>
+ * Iterating the spans of a row visits exactly the pixels in the region
+ * without testing containment, which makes spans a cheap basis for filling,
+ * outlining and measuring {@link Overlay}s.
+ * 
+ * @author Barry DeZonia
+ */
+public class ScanlineSpans {
+
+	// -- constants --
+
+	/** A region containing no pixels. */
+	public static final ScanlineSpans EMPTY = new Builder().build();
+
+	private static final int AND = 0;
+	private static final int OR = 1;
+	private static final int XOR = 2;
+	private static final int SUBTRACT = 3;
+
+	// -- instance variables --
+
+	private final long minY;
+	private final int rows;
+
+	/** Index of the first span of each row (plus one trailing end index). */
+	private final int[] rowStart;
+
+	/** Span bounds: start at even indices, exclusive end at odd indices. */
+	private final long[] bounds;
+
+	private final long size;
+
+	// -- constructor --
+
+	private ScanlineSpans(final long minY, final int rows, final int[] rowStart,
+		final long[] bounds)
+	{
+		this.minY = minY;
+		this.rows = rows;
+		this.rowStart = rowStart;
+		this.bounds = bounds;
+		long count = 0;
+		for (int i = 0; i < rowStart[rows]; i++) {
+			count += bounds[2 * i + 1] - bounds[2 * i];
+		}
+		this.size = count;
+	}
+
+	// -- ScanlineSpans methods --
+
+	/** Returns true if the region contains no pixels. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Returns the number of pixels within the region. */
+	public long size() {
+		return size;
+	}
+
+	/** Returns the first row that may hold spans. */
+	public long minY() {
+		return minY;
+	}
+
+	/** Returns the last row that may hold spans. */
+	public long maxY() {
+		return minY + rows - 1;
+	}
+
+	/** Returns the number of spans in the given row. */
+	public int spanCount(final long y) {
+		final int r = row(y);
+		if (r < 0) return 0;
+		return rowStart[r + 1] - rowStart[r];
+	}
+
+	/** Returns the first x coordinate of the i'th span of the given row. */
+	public long spanStart(final long y, final int i) {
+		return bounds[2 * (rowStart[row(y)] + i)];
+	}
+
+	/**
+	 * Returns the x coordinate one past the last pixel of the i'th span of the
+	 * given row.
+	 */
+	public long spanEnd(final long y, final int i) {
+		return bounds[2 * (rowStart[row(y)] + i) + 1];
+	}
+
+	/** Returns true if the region contains pixel (x,y). */
+	public boolean contains(final long x, final long y) {
+		final int r = row(y);
+		if (r < 0) return false;
+		int lo = rowStart[r];
+		int hi = rowStart[r + 1] - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (x < bounds[2 * mid]) hi = mid - 1;
+			else if (x >= bounds[2 * mid + 1]) lo = mid + 1;
+			else return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a copy of this region whose spans are shifted by the given pixel
+	 * amounts.
+	 */
+	public ScanlineSpans translate(final long dx, final long dy) {
+		final long[] moved = bounds.clone();
+		for (int i = 0; i < moved.length; i++) {
+			moved[i] += dx;
+		}
+		return new ScanlineSpans(minY + dy, rows, rowStart, moved);
+	}
+
+	/** Returns the pixels within this region or the other region. */
+	public ScanlineSpans union(final ScanlineSpans other) {
+		return combine(this, other, OR);
+	}
+
+	/** Returns the pixels within both this region and the other region. */
+	public ScanlineSpans intersect(final ScanlineSpans other) {
+		return combine(this, other, AND);
+	}
+
+	/** Returns the pixels within exactly one of this and the other region. */
+	public ScanlineSpans xor(final ScanlineSpans other) {
+		return combine(this, other, XOR);
+	}
+
+	/** Returns the pixels within this region but not the other region. */
+	public ScanlineSpans subtract(final ScanlineSpans other) {
+		return combine(this, other, SUBTRACT);
+	}
+
+	/**
+	 * Returns the border pixels of this region: the pixels of the region that
+	 * have at least one of their four neighbors outside of it.
+	 */
+	public ScanlineSpans outline() {
+		final Builder builder = new Builder();
+		final long[] none = new long[0];
+		for (int r = 0; r < rows; r++) {
+			final long y = minY + r;
+			final long[] current = rowBounds(r);
+			if (current.length == 0) continue;
+			// interior = pixels whose horizontal neighbors are also in the row ...
+			final long[] eroded = new long[current.length];
+			int n = 0;
+			for (int i = 0; i < current.length; i += 2) {
+				final long start = current[i] + 1;
+				final long end = current[i + 1] - 1;
+				if (start >= end) continue;
+				eroded[n++] = start;
+				eroded[n++] = end;
+			}
+			long[] interior = Arrays.copyOf(eroded, n);
+			// ... and whose vertical neighbors are in the rows above and below
+			interior = combineRow(interior, r > 0 ? rowBounds(r - 1) : none, AND);
+			interior =
+				combineRow(interior, r < rows - 1 ? rowBounds(r + 1) : none, AND);
+			builder.addRow(y, combineRow(current, interior, SUBTRACT));
+		}
+		return builder.build();
+	}
+
+	// -- helpers --
+
+	private int row(final long y) {
+		final long r = y - minY;
+		if (r < 0 || r >= rows) return -1;
+		return (int) r;
+	}
+
+	private long[] rowBounds(final int r) {
+		return Arrays.copyOfRange(bounds, 2 * rowStart[r], 2 * rowStart[r + 1]);
+	}
+
+	private long[] rowBoundsAt(final long y) {
+		final int r = row(y);
+		if (r < 0) return new long[0];
+		return rowBounds(r);
+	}
+
+	private static ScanlineSpans combine(final ScanlineSpans a,
+		final ScanlineSpans b, final int op)
+	{
+		if (a.isEmpty()) return (op == OR || op == XOR) ? b : EMPTY;
+		if (b.isEmpty()) return (op == AND) ? EMPTY : a;
+		final long first = Math.min(a.minY, b.minY);
+		final long last = Math.max(a.maxY(), b.maxY());
+		final Builder builder = new Builder();
+		for (long y = first; y <= last; y++) {
+			builder.addRow(y, combineRow(a.rowBoundsAt(y), b.rowBoundsAt(y), op));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Combines two sorted lists of span bounds by sweeping across their
+	 * boundaries and emitting the runs where the operation holds.
+	 */
+	private static long[] combineRow(final long[] a, final long[] b,
+		final int op)
+	{
+		final long[] out = new long[a.length + b.length];
+		int n = 0;
+		int i = 0, j = 0;
+		boolean inA = false, inB = false, inOut = false;
+		while (i < a.length || j < b.length) {
+			final long x;
+			if (j >= b.length || (i < a.length && a[i] <= b[j])) x = a[i];
+			else x = b[j];
+			// consume every boundary at this coordinate
+			while (i < a.length && a[i] == x) {
+				inA = !inA;
+				i++;
+			}
+			while (j < b.length && b[j] == x) {
+				inB = !inB;
+				j++;
+			}
+			final boolean now = evaluate(inA, inB, op);
+			if (now != inOut) {
+				out[n++] = x;
+				inOut = now;
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	private static boolean evaluate(final boolean a, final boolean b,
+		final int op)
+	{
+		switch (op) {
+			case AND:
+				return a && b;
+			case OR:
+				return a || b;
+			case XOR:
+				return a != b;
+			case SUBTRACT:
+				return a && !b;
+			default:
+				throw new IllegalArgumentException("Unknown operation: " + op);
+		}
+	}
+
+	// -- helper classes --
+
+	/**
+	 * Accumulates spans row by row. Rows must be added in increasing order and
+	 * spans within a row in increasing, non overlapping order. Touching spans
+	 * are merged.
+	 */
+	public static class Builder {
+
+		private long minY;
+		private long lastY;
+		private int rows;
+		private int[] rowStart = new int[16];
+		private long[] bounds = new long[32];
+		private int spans;
+
+		/** Adds the span [start, end) to row y. Empty spans are ignored. */
+		public void add(final long y, final long start, final long end) {
+			if (start >= end) return;
+			advanceTo(y);
+			final int last = spans - 1;
+			if (last >= rowStart[rows - 1] && start < bounds[2 * last + 1]) {
+				throw new IllegalArgumentException("Spans must be added in order");
+			}
+			if (last >= rowStart[rows - 1] && start == bounds[2 * last + 1]) {
+				bounds[2 * last + 1] = end;
+				return;
+			}
+			if (2 * spans + 2 > bounds.length) {
+				bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+			}
+			bounds[2 * spans] = start;
+			bounds[2 * spans + 1] = end;
+			spans++;
+		}
+
+		/** Adds a row of sorted span bounds (start, end, start, end, ...). */
+		public void addRow(final long y, final long[] rowBounds) {
+			for (int i = 0; i < rowBounds.length; i += 2) {
+				add(y, rowBounds[i], rowBounds[i + 1]);
+			}
+		}
+
+		/** Creates the {@link ScanlineSpans} holding the spans added so far. */
+		public ScanlineSpans build() {
+			// NB - trim trailing empty rows
+			int used = rows;
+			while (used > 0 && rowStart[used - 1] == spans) {
+				used--;
+			}
+			final int[] starts = new int[used + 1];
+			System.arraycopy(rowStart, 0, starts, 0, used);
+			starts[used] = spans;
+			return new ScanlineSpans(minY, used, starts, Arrays.copyOf(bounds,
+				2 * spans));
+		}
+
+		private void advanceTo(final long y) {
+			if (rows == 0) {
+				minY = y;
+				lastY = y;
+				rowStart[0] = 0;
+				rows = 1;
+				return;
+			}
+			if (y < lastY) {
+				throw new IllegalArgumentException("Rows must be added in order");
+			}
+			while (lastY < y) {
+				if (rows + 1 > rowStart.length) {
+					rowStart = Arrays.copyOf(rowStart, 2 * rowStart.length);
+				}
+				rowStart[rows++] = spans;
+				lastY++;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,535 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.overlay;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.ops.pointset.PointSetIterator;
+import net.imglib2.ops.pointset.RoiPointSet;
+import net.imglib2.roi.GeneralPathRegionOfInterest;
+import net.imglib2.roi.GeneralPathSegmentHandler;
+import net.imglib2.roi.PolygonRegionOfInterest;
+import net.imglib2.roi.RegionOfInterest;
+import net.imglib2.type.logic.BitType;
+
+/**
+ * Turns {@link Overlay}s into {@link ScanlineSpans}. Rectangles, ellipses,
+ * polygons, general paths and composites of them are rasterized analytically
+ * one scanline at a time. Any other kind of overlay is rasterized by testing
+ * each point of its bounding box, as was done before spans existed.
+ * <p>
+ * A pixel belongs to an overlay when its integer coordinates fall within the
+ * overlay's region of interest: rectangles are half open, ellipses are closed
+ * and polygons and paths follow the even/odd rule with half open edges.
+ * </p>
+ * <p>
+ * Rasterized spans are cached per overlay along with a snapshot of the
+ * geometry they came from. The snapshot is compared on each request so that
+ * edited overlays are rasterized again without any explicit invalidation.
+ * Overlays that are rasterized by probing are not cached.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public class SpanRasterizer {
+
+	// -- constants --
+
+	/** Maximum distance between a flattened path and its curves, in pixels. */
+	private static final double FLATNESS = 0.25;
+
+	// -- instance variables --
+
+	private final Map<Overlay, CachedSpans> cache =
+		new WeakHashMap<Overlay, CachedSpans>();
+
+	// -- SpanRasterizer methods --
+
+	/**
+	 * Gets the spans of the given overlay in its X and Y dimensions, reusing the
+	 * spans computed by an earlier call when the overlay's geometry has not
+	 * changed since.
+	 */
+	public ScanlineSpans getSpans(final Overlay overlay) {
+		final double[] geometry = geometry(overlay);
+		if (geometry == null) return rasterize(overlay);
+		synchronized (cache) {
+			final CachedSpans cached = cache.get(overlay);
+			if (cached != null && Arrays.equals(cached.geometry, geometry)) {
+				return cached.spans;
+			}
+		}
+		final ScanlineSpans spans = rasterize(overlay);
+		synchronized (cache) {
+			cache.put(overlay, new CachedSpans(geometry, spans));
+		}
+		return spans;
+	}
+
+	/** Discards any cached spans of the given overlay. */
+	public void invalidate(final Overlay overlay) {
+		synchronized (cache) {
+			cache.remove(overlay);
+		}
+	}
+
+	/** Rasterizes the given overlay without consulting the cache. */
+	public ScanlineSpans rasterize(final Overlay overlay) {
+		if (overlay.numDimensions() == 2) {
+			if (overlay instanceof RectangleOverlay) {
+				return rectangle((RectangleOverlay) overlay);
+			}
+			if (overlay instanceof EllipseOverlay) {
+				return ellipse((EllipseOverlay) overlay);
+			}
+			if (overlay instanceof PolygonOverlay) {
+				return polygon((PolygonOverlay) overlay);
+			}
+			if (overlay instanceof GeneralPathOverlay) {
+				return path((GeneralPathOverlay) overlay);
+			}
+			if (overlay instanceof CompositeOverlay) {
+				return composite((CompositeOverlay) overlay);
+			}
+		}
+		return probe(overlay);
+	}
+
+	// -- helpers --
+
+	private ScanlineSpans rectangle(final RectangleOverlay overlay) {
+		final double ox = overlay.getOrigin(0);
+		final double oy = overlay.getOrigin(1);
+		final long x0 = (long) Math.ceil(ox);
+		final long x1 = (long) Math.ceil(ox + overlay.getExtent(0));
+		final long y0 = (long) Math.ceil(oy);
+		final long y1 = (long) Math.ceil(oy + overlay.getExtent(1));
+		final ScanlineSpans.Builder builder = new ScanlineSpans.Builder();
+		if (x0 >= x1) return builder.build();
+		for (long y = y0; y < y1; y++) {
+			builder.add(y, x0, x1);
+		}
+		return builder.build();
+	}
+
+	private ScanlineSpans ellipse(final EllipseOverlay overlay) {
+		final double cx = overlay.getOrigin(0);
+		final double cy = overlay.getOrigin(1);
+		final double rx = overlay.getRadius(0);
+		final double ry = overlay.getRadius(1);
+		final ScanlineSpans.Builder builder = new ScanlineSpans.Builder();
+		if (rx <= 0 || ry <= 0) return builder.build();
+		final long y0 = (long) Math.ceil(cy - ry);
+		final long y1 = (long) Math.floor(cy + ry);
+		for (long y = y0; y <= y1; y++) {
+			final double t = (y - cy) / ry;
+			final double half = rx * Math.sqrt(Math.max(0, 1 - t * t));
+			long x0 = (long) Math.ceil(cx - half);
+			long x1 = (long) Math.floor(cx + half) + 1;
+			// NB - the square root may round pixels on the boundary to either side
+			while (inEllipse(x0 - 1 - cx, y - cy, rx, ry)) x0--;
+			while (x0 < x1 && !inEllipse(x0 - cx, y - cy, rx, ry)) x0++;
+			while (inEllipse(x1 - cx, y - cy, rx, ry)) x1++;
+			while (x1 > x0 && !inEllipse(x1 - 1 - cx, y - cy, rx, ry)) x1--;
+			if (x0 < x1) builder.add(y, x0, x1);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns whether the offset (dx, dy) from an ellipse's center lies within
+	 * the ellipse. Unlike the square root, this is exact for pixels whose
+	 * offsets and radii are integers.
+	 */
+	private static boolean inEllipse(final double dx, final double dy,
+		final double rx, final double ry)
+	{
+		return dx * dx * ry * ry + dy * dy * rx * rx <= rx * rx * ry * ry;
+	}
+
+	private ScanlineSpans polygon(final PolygonOverlay overlay) {
+		final PolygonRegionOfInterest roi = overlay.getRegionOfInterest();
+		final int count = roi.getVertexCount();
+		final Edges edges = new Edges();
+		for (int i = 0; i < count; i++) {
+			final RealLocalizable a = roi.getVertex(i);
+			final RealLocalizable b = roi.getVertex((i + 1) % count);
+			edges.add(a.getDoublePosition(0), a.getDoublePosition(1), b
+				.getDoublePosition(0), b.getDoublePosition(1));
+		}
+		return edges.scan();
+	}
+
+	private ScanlineSpans path(final GeneralPathOverlay overlay) {
+		final Path2D.Double path = toPath(overlay.getRegionOfInterest());
+		final Edges edges = new Edges();
+		final PathIterator iter = path.getPathIterator(null, FLATNESS);
+		final double[] coords = new double[6];
+		double startX = 0, startY = 0, lastX = 0, lastY = 0;
+		boolean open = false;
+		while (!iter.isDone()) {
+			switch (iter.currentSegment(coords)) {
+				case PathIterator.SEG_MOVETO:
+					// NB - an unclosed subpath is filled as if it were closed
+					if (open) edges.add(lastX, lastY, startX, startY);
+					startX = lastX = coords[0];
+					startY = lastY = coords[1];
+					open = true;
+					break;
+				case PathIterator.SEG_LINETO:
+					edges.add(lastX, lastY, coords[0], coords[1]);
+					lastX = coords[0];
+					lastY = coords[1];
+					break;
+				case PathIterator.SEG_CLOSE:
+					edges.add(lastX, lastY, startX, startY);
+					lastX = startX;
+					lastY = startY;
+					open = false;
+					break;
+			}
+			iter.next();
+		}
+		if (open) edges.add(lastX, lastY, startX, startY);
+		return edges.scan();
+	}
+
+	private ScanlineSpans composite(final CompositeOverlay overlay) {
+		final List<Overlay> overlays = overlay.getSubcomponents();
+		final List<CompositeOverlay.Operation> operations =
+			overlay.getOperations();
+		ScanlineSpans spans = ScanlineSpans.EMPTY;
+		for (int i = 0; i < overlays.size(); i++) {
+			final ScanlineSpans next = getSpans(overlays.get(i));
+			switch (operations.get(i)) {
+				case AND:
+					spans = spans.intersect(next);
+					break;
+				case OR:
+					spans = spans.union(next);
+					break;
+				case XOR:
+					spans = spans.xor(next);
+					break;
+				case NOT:
+					spans = spans.subtract(next);
+					break;
+			}
+		}
+		return spans;
+	}
+
+	/**
+	 * Rasterizes any overlay by testing every point of its bounding box. Points
+	 * of regions with more than two dimensions are projected onto the XY plane.
+	 */
+	private ScanlineSpans probe(final Overlay overlay) {
+		final RegionOfInterest region = overlay.getRegionOfInterest();
+		final RoiPointSet pointSet = new RoiPointSet(region);
+		final long[] min = new long[pointSet.numDimensions()];
+		final long[] max = new long[pointSet.numDimensions()];
+		pointSet.min(min);
+		pointSet.max(max);
+		final long minX = min[0];
+		final long minY = min[1];
+		final int rows = (int) (max[1] - minY + 1);
+		final BitSet[] hits = new BitSet[Math.max(rows, 0)];
+		final RealRandomAccess<BitType> accessor = region.realRandomAccess();
+		final PointSetIterator iter = pointSet.iterator();
+		while (iter.hasNext()) {
+			final long[] pos = iter.next();
+			accessor.setPosition(pos);
+			if (!accessor.get().get()) continue;
+			final int r = (int) (pos[1] - minY);
+			if (hits[r] == null) hits[r] = new BitSet();
+			hits[r].set((int) (pos[0] - minX));
+		}
+		final ScanlineSpans.Builder builder = new ScanlineSpans.Builder();
+		for (int r = 0; r < hits.length; r++) {
+			final BitSet row = hits[r];
+			if (row == null) continue;
+			int start = row.nextSetBit(0);
+			while (start >= 0) {
+				final int end = row.nextClearBit(start);
+				builder.add(minY + r, minX + start, minX + end);
+				start = row.nextSetBit(end);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Takes a snapshot of the parameters that determine an overlay's spans.
+	 * Returns null for overlays whose geometry cannot be captured cheaply.
+	 */
+	private double[] geometry(final Overlay overlay) {
+		if (overlay.numDimensions() != 2) return null;
+		if (overlay instanceof RectangleOverlay) {
+			final RectangleOverlay rect = (RectangleOverlay) overlay;
+			return new double[] { 0, rect.getOrigin(0), rect.getOrigin(1),
+				rect.getExtent(0), rect.getExtent(1) };
+		}
+		if (overlay instanceof EllipseOverlay) {
+			final EllipseOverlay ellipse = (EllipseOverlay) overlay;
+			return new double[] { 1, ellipse.getOrigin(0), ellipse.getOrigin(1),
+				ellipse.getRadius(0), ellipse.getRadius(1) };
+		}
+		if (overlay instanceof PolygonOverlay) {
+			final PolygonRegionOfInterest roi =
+				((PolygonOverlay) overlay).getRegionOfInterest();
+			final int count = roi.getVertexCount();
+			final double[] geometry = new double[2 * count + 1];
+			geometry[0] = 2;
+			for (int i = 0; i < count; i++) {
+				final RealLocalizable vertex = roi.getVertex(i);
+				geometry[2 * i + 1] = vertex.getDoublePosition(0);
+				geometry[2 * i + 2] = vertex.getDoublePosition(1);
+			}
+			return geometry;
+		}
+		if (overlay instanceof GeneralPathOverlay) {
+			final DoubleList geometry = new DoubleList();
+			geometry.add(3);
+			((GeneralPathOverlay) overlay).getRegionOfInterest().iteratePath(
+				new GeneralPathSegmentHandler() {
+
+					@Override
+					public void moveTo(final double x, final double y) {
+						geometry.add(0, x, y);
+					}
+
+					@Override
+					public void lineTo(final double x, final double y) {
+						geometry.add(1, x, y);
+					}
+
+					@Override
+					public void quadTo(final double x1, final double y1,
+						final double x, final double y)
+					{
+						geometry.add(2, x1, y1, x, y);
+					}
+
+					@Override
+					public void cubicTo(final double x1, final double y1,
+						final double x2, final double y2, final double x, final double y)
+					{
+						geometry.add(3, x1, y1, x2, y2, x, y);
+					}
+
+					@Override
+					public void close() {
+						geometry.add(4);
+					}
+				});
+			return geometry.toArray();
+		}
+		if (overlay instanceof CompositeOverlay) {
+			final CompositeOverlay composite = (CompositeOverlay) overlay;
+			final List<Overlay> overlays = composite.getSubcomponents();
+			final List<CompositeOverlay.Operation> operations =
+				composite.getOperations();
+			final DoubleList geometry = new DoubleList();
+			geometry.add(4);
+			for (int i = 0; i < overlays.size(); i++) {
+				final double[] part = geometry(overlays.get(i));
+				if (part == null) return null;
+				geometry.add(operations.get(i).ordinal(), part.length);
+				geometry.add(part);
+			}
+			return geometry.toArray();
+		}
+		return null;
+	}
+
+	/** Rebuilds a general path region as an AWT path so it can be flattened. */
+	private Path2D.Double toPath(final GeneralPathRegionOfInterest roi) {
+		final Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+		roi.iteratePath(new GeneralPathSegmentHandler() {
+
+			@Override
+			public void moveTo(final double x, final double y) {
+				path.moveTo(x, y);
+			}
+
+			@Override
+			public void lineTo(final double x, final double y) {
+				path.lineTo(x, y);
+			}
+
+			@Override
+			public void quadTo(final double x1, final double y1, final double x,
+				final double y)
+			{
+				path.quadTo(x1, y1, x, y);
+			}
+
+			@Override
+			public void cubicTo(final double x1, final double y1, final double x2,
+				final double y2, final double x, final double y)
+			{
+				path.curveTo(x1, y1, x2, y2, x, y);
+			}
+
+			@Override
+			public void close() {
+				path.closePath();
+			}
+		});
+		return path;
+	}
+
+	// -- helper classes --
+
+	private static class CachedSpans {
+
+		private final double[] geometry;
+		private final ScanlineSpans spans;
+
+		public CachedSpans(final double[] geometry, final ScanlineSpans spans) {
+			this.geometry = geometry;
+			this.spans = spans;
+		}
+	}
+
+	/** A growable list of doubles. */
+	private static class DoubleList {
+
+		private double[] values = new double[16];
+		private int size;
+
+		public void add(final double... v) {
+			if (size + v.length > values.length) {
+				values = Arrays.copyOf(values, Math.max(2 * values.length, size +
+					v.length));
+			}
+			System.arraycopy(v, 0, values, size, v.length);
+			size += v.length;
+		}
+
+		public double[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * The non horizontal edges of one or more closed polygons, scan converted
+	 * with an active edge list. A pixel is inside when an odd number of edges
+	 * cross its row to its right; each edge covers the rows from its top
+	 * (inclusive) to its bottom (exclusive). Crossings are computed by dividing
+	 * last, so that they are exact where edges between integer vertices pass
+	 * through pixels.
+	 */
+	private static class Edges {
+
+		private final DoubleList data = new DoubleList();
+
+		/** Adds the edge from (x0,y0) to (x1,y1). */
+		public void add(final double x0, final double y0, final double x1,
+			final double y1)
+		{
+			if (y0 == y1) return;
+			if (y0 < y1) data.add(y0, y1, x0, x1 - x0, y1 - y0);
+			else data.add(y1, y0, x1, x0 - x1, y0 - y1);
+		}
+
+		public ScanlineSpans scan() {
+			final double[] e = data.toArray();
+			final int count = e.length / 5;
+			final ScanlineSpans.Builder builder = new ScanlineSpans.Builder();
+			if (count == 0) return builder.build();
+
+			// order the edges by their tops
+			final Integer[] order = new Integer[count];
+			double bottom = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+				bottom = Math.max(bottom, e[5 * i + 1]);
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(final Integer a, final Integer b) {
+					return Double.compare(e[5 * a], e[5 * b]);
+				}
+			});
+
+			final int[] active = new int[count];
+			final double[] crossings = new double[count];
+			int numActive = 0;
+			int next = 0;
+			final long firstRow = (long) Math.ceil(e[5 * order[0]]);
+			final long lastRow = (long) Math.ceil(bottom) - 1;
+			for (long y = firstRow; y <= lastRow; y++) {
+				// admit edges that have started and retire those that have ended
+				while (next < count && e[5 * order[next]] <= y) {
+					active[numActive++] = order[next++];
+				}
+				int kept = 0;
+				for (int i = 0; i < numActive; i++) {
+					if (e[5 * active[i] + 1] > y) active[kept++] = active[i];
+				}
+				numActive = kept;
+				if (numActive == 0) {
+					// NB - skip ahead over gaps between subpaths
+					if (next < count) y = (long) Math.ceil(e[5 * order[next]]) - 1;
+					continue;
+				}
+				for (int i = 0; i < numActive; i++) {
+					final int edge = 5 * active[i];
+					crossings[i] =
+						e[edge + 2] + (y - e[edge]) * e[edge + 3] / e[edge + 4];
+				}
+				Arrays.sort(crossings, 0, numActive);
+				for (int i = 0; i + 1 < numActive; i += 2) {
+					builder.add(y, (long) Math.ceil(crossings[i]), (long) Math
+						.ceil(crossings[i + 1]));
+				}
+			}
+			return builder.build();
+		}
+	}
+
+}
@@ -36,7 +36,9 @@
 package imagej.data.overlay;
 
 import imagej.data.Dataset;
+import imagej.data.RowAccess;
 import imagej.data.event.DatasetRestructuredEvent;
+import imagej.data.event.DatasetUpdatedEvent;
 import imagej.display.Displayable;
 import imagej.util.ColorRGB;
 import imagej.util.Colors;
@@ -68,6 +70,14 @@
 public class ThresholdOverlay extends AbstractOverlay
 {
 
+	// -- constants --
+
+	/**
+	 * The classification given to NaN data values by
+	 * {@link #classify(long[], byte[])}.
+	 */
+	public static final byte NAN_CLASS = Byte.MAX_VALUE;
+
 	// -- instance variables --
 
 	private final Dataset dataset;
@@ -87,6 +97,7 @@ public class ThresholdOverlay extends AbstractOverlay
 	private ColorRGB colorWithin;
 	private ColorRGB colorGreater;
 	private String defaultName;
+	private volatile long dataVersion;
 
 	// -- ThresholdOverlay methods --
 
@@ -329,6 +340,68 @@ public int classify(long[] point) {
 		return 0;
 	}
 
+	/**
+	 * Classifies every point of one XY plane of the underlying data in a single
+	 * pass. The results are stored in raster order (x varying fastest) using the
+	 * same values as {@link #classify(long[])} except that NaN data values are
+	 * classified as {@link #NAN_CLASS}. Planar data is read directly from its
+	 * primitive plane arrays, making this much faster than classifying each point
+	 * individually.
+	 * 
+	 * @param planePos The position of the plane in the dimensions beyond X and Y
+	 *          (can be empty for 2d data)
+	 * @param classes The array to fill. If null or too small a new one of size
+	 *          width * height is allocated.
+	 * @return The filled array of classifications
+	 * @throws IllegalArgumentException if the plane has more points than an
+	 *           array can hold (see {@link #canClassifyPlane()})
+	 */
+	public byte[] classify(long[] planePos, byte[] classes) {
+		if (!canClassifyPlane()) {
+			throw new IllegalArgumentException("plane too large to classify: " +
+				dataset.dimension(0) + " x " + dataset.dimension(1));
+		}
+		final RowAccess rows = RowAccess.createForReading(dataset, planePos);
+		final int width = rows.getWidth();
+		final int height = (int) dataset.dimension(1);
+		final int size = width * height;
+		byte[] result = classes;
+		if (result == null || result.length < size) result = new byte[size];
+		final double min = conditionWithin.getMin();
+		final double max = conditionWithin.getMax();
+		final double[] row = new double[width];
+		int i = 0;
+		for (int y = 0; y < height; y++) {
+			rows.read(y, row, 0);
+			for (int x = 0; x < width; x++) {
+				final double val = row[x];
+				if (val < min) result[i++] = -1;
+				else if (val > max) result[i++] = 1;
+				else if (val == val) result[i++] = 0;
+				else result[i++] = NAN_CLASS;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns true if the points of one XY plane fit in a single array, as
+	 * required by {@link #classify(long[], byte[])}.
+	 */
+	public boolean canClassifyPlane() {
+		final long size = dataset.dimension(0) * dataset.dimension(1);
+		return size <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Returns a number that changes whenever the data underlying this overlay is
+	 * updated or restructured. Renderers can use it to decide when cached
+	 * classifications are stale.
+	 */
+	public long getDataVersion() {
+		return dataVersion;
+	}
+
 	// -- Overlay methods --
 
 	@Override
@@ -449,11 +522,17 @@ public String getName() {
 	@EventHandler
 	protected void onEvent(DatasetRestructuredEvent evt) {
 		if (evt.getObject() == dataset) {
+			dataVersion++;
 			reinit();
 			rebuild();
 		}
 	}
 
+	@EventHandler
+	protected void onEvent(DatasetUpdatedEvent evt) {
+		if (evt.getObject() == dataset) dataVersion++;
+	}
+
 	// -- helpers --
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.pyramid;
+
+import imagej.data.Dataset;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.event.DatasetRestructuredEvent;
+import imagej.data.event.DatasetUpdatedEvent;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.scijava.event.EventHandler;
+import org.scijava.event.EventService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Default implementation of {@link PyramidService}. Each pyramid may keep a
+ * sixteenth of the heap worth of level planes in memory.
+ * 
+ * @author Barry DeZonia
+ */
+@Plugin(type = Service.class)
+public class DefaultPyramidService extends AbstractService implements
+	PyramidService
+{
+
+	// -- Parameters --
+
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter
+	private EventService eventService;
+
+	// -- instance variables --
+
+	// NB - guarded by itself
+	private final Map<Dataset, Pyramid> pyramids =
+		new WeakHashMap<Dataset, Pyramid>();
+
+	// -- PyramidService methods --
+
+	@Override
+	public Pyramid getPyramid(final Dataset dataset) {
+		synchronized (pyramids) {
+			Pyramid pyramid = pyramids.get(dataset);
+			if (pyramid != null && !pyramid.isCompatible()) {
+				pyramid.dispose();
+				pyramid = null;
+			}
+			if (pyramid == null) {
+				final long cacheBytes = Runtime.getRuntime().maxMemory() / 16;
+				pyramid =
+					new Pyramid(dataset, threadService, eventService, cacheBytes);
+				pyramids.put(dataset, pyramid);
+			}
+			return pyramid;
+		}
+	}
+
+	@Override
+	public void discard(final Dataset dataset) {
+		final Pyramid pyramid;
+		synchronized (pyramids) {
+			pyramid = pyramids.remove(dataset);
+		}
+		if (pyramid != null) pyramid.dispose();
+	}
+
+	// -- event handlers --
+
+	@EventHandler
+	protected void onEvent(final DatasetUpdatedEvent event) {
+		if (event.isMetaDataOnly()) return;
+		final Pyramid pyramid;
+		synchronized (pyramids) {
+			pyramid = pyramids.get(event.getObject());
+		}
+		if (pyramid != null) pyramid.invalidate(event.getPlaneIndex());
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetRestructuredEvent event) {
+		discard(event.getObject());
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		discard(event.getObject());
+	}
+
+}
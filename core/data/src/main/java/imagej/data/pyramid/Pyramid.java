@@ -0,0 +1,401 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.pyramid;
+
+import imagej.data.Dataset;
+import imagej.data.RowAccess;
+import imagej.data.disk.DiskPlanarImg;
+import imagej.data.disk.DiskPlanarImgFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.scijava.event.EventService;
+import org.scijava.thread.ThreadService;
+
+/**
+ * A multi-resolution pyramid of the planes of a {@link Dataset}. Level 0 is
+ * the Dataset itself; each further level halves the width and height of the
+ * level below it, each of its pixels being the mean of (up to) 2 x 2 pixels
+ * below. Levels stop once a plane fits within {@link #MIN_LEVEL_SIZE} pixels
+ * in both dimensions.
+ * <p>
+ * Planes of a level are built lazily, in the background, the first time they
+ * are requested. They are stored as float planes in disk-backed images, so
+ * only a bounded amount of memory is used per level. A plane marked as changed
+ * via {@link #invalidate(int)} is rebuilt when next requested. An
+ * {@link PyramidUpdatedEvent} is published whenever a plane has been built.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public class Pyramid {
+
+	// -- constants --
+
+	/** Levels are added until a plane is no larger than this. */
+	public static final int MIN_LEVEL_SIZE = 256;
+
+	// -- instance variables --
+
+	private final Dataset dataset;
+	private final ThreadService threadService;
+	private final EventService eventService;
+	private final long cacheBytes;
+	private final int planeCount;
+	private final long[] widths;
+	private final long[] heights;
+	private final List<DiskPlanarImg<FloatType, FloatArray>> levels;
+
+	/** The data version of each plane. */
+	private final long[] versions;
+
+	/** The data version each level plane was built from, or -1. */
+	private final long[][] builtVersions;
+
+	/** The level planes currently being built, as (level, plane) keys. */
+	private final Set<Long> pending = new HashSet<Long>();
+
+	private boolean disposed;
+
+	// -- constructor --
+
+	/**
+	 * Creates an empty pyramid for the given Dataset.
+	 * 
+	 * @param dataset The Dataset whose planes are reduced
+	 * @param threadService The service used to build planes in the background;
+	 *          if null planes are built on the calling thread
+	 * @param eventService The service used to announce built planes, or null
+	 * @param cacheBytes The number of bytes of level planes kept in memory
+	 */
+	public Pyramid(final Dataset dataset, final ThreadService threadService,
+		final EventService eventService, final long cacheBytes)
+	{
+		this.dataset = dataset;
+		this.threadService = threadService;
+		this.eventService = eventService;
+		this.cacheBytes = cacheBytes;
+		long count = 1;
+		for (int d = 2; d < dataset.numDimensions(); d++) {
+			count *= dataset.dimension(d);
+		}
+		planeCount = (int) count;
+
+		final List<Long> w = new ArrayList<Long>();
+		final List<Long> h = new ArrayList<Long>();
+		w.add(dataset.dimension(0));
+		h.add(dataset.dimension(1));
+		while (w.get(w.size() - 1) > MIN_LEVEL_SIZE ||
+			h.get(h.size() - 1) > MIN_LEVEL_SIZE)
+		{
+			w.add((w.get(w.size() - 1) + 1) / 2);
+			h.add((h.get(h.size() - 1) + 1) / 2);
+		}
+		widths = new long[w.size()];
+		heights = new long[h.size()];
+		for (int l = 0; l < widths.length; l++) {
+			widths[l] = w.get(l);
+			heights[l] = h.get(l);
+		}
+
+		levels = new ArrayList<DiskPlanarImg<FloatType, FloatArray>>();
+		for (int l = 0; l < widths.length; l++) {
+			levels.add(null);
+		}
+		versions = new long[planeCount];
+		builtVersions = new long[widths.length][];
+	}
+
+	// -- Pyramid methods --
+
+	/** Returns the Dataset whose planes are reduced. */
+	public Dataset getDataset() {
+		return dataset;
+	}
+
+	/**
+	 * Returns true if the pyramid still matches the dimensions of its Dataset.
+	 */
+	public boolean isCompatible() {
+		long count = 1;
+		for (int d = 2; d < dataset.numDimensions(); d++) {
+			count *= dataset.dimension(d);
+		}
+		return count == planeCount && dataset.dimension(0) == widths[0] &&
+			dataset.dimension(1) == heights[0];
+	}
+
+	/** Returns the number of levels, including level 0 (the Dataset). */
+	public int getLevelCount() {
+		return widths.length;
+	}
+
+	/** Returns the plane width of a level. */
+	public long getWidth(final int level) {
+		return widths[level];
+	}
+
+	/** Returns the plane height of a level. */
+	public long getHeight(final int level) {
+		return heights[level];
+	}
+
+	/**
+	 * Returns the coarsest level that still has at least one pixel per screen
+	 * pixel at the given zoom factor.
+	 */
+	public int getLevel(final double zoom) {
+		int level = 0;
+		double factor = 2;
+		while (level < widths.length - 1 && factor * zoom <= 1) {
+			level++;
+			factor *= 2;
+		}
+		return level;
+	}
+
+	/**
+	 * Returns a plane of a level (greater than 0) if it is built and up to date.
+	 * Otherwise schedules it to be built and returns null.
+	 */
+	public float[] getPlane(final int level, final int planeIndex) {
+		if (level <= 0 || level >= widths.length) {
+			throw new IllegalArgumentException("invalid level: " + level);
+		}
+		final DiskPlanarImg<FloatType, FloatArray> img;
+		synchronized (this) {
+			if (disposed) return null;
+			if (isCurrent(level, planeIndex)) {
+				img = levels.get(level);
+			}
+			else {
+				schedule(level, planeIndex);
+				return null;
+			}
+		}
+		return img.getPlane(planeIndex).getCurrentStorageArray();
+	}
+
+	/**
+	 * Marks a plane as changed so that its levels are rebuilt. An index of -1
+	 * marks every plane.
+	 */
+	public synchronized void invalidate(final int planeIndex) {
+		if (planeIndex >= 0 && planeIndex < versions.length) {
+			versions[planeIndex]++;
+		}
+		else {
+			for (int p = 0; p < versions.length; p++) {
+				versions[p]++;
+			}
+		}
+	}
+
+	/** Discards all levels and their backing files. */
+	public synchronized void dispose() {
+		if (disposed) return;
+		disposed = true;
+		for (final DiskPlanarImg<FloatType, FloatArray> img : levels) {
+			if (img != null) img.getStore().dispose();
+		}
+	}
+
+	// -- helpers --
+
+	private boolean isCurrent(final int level, final int planeIndex) {
+		final long[] built = builtVersions[level];
+		return built != null && built[planeIndex] == versions[planeIndex];
+	}
+
+	private void schedule(final int level, final int planeIndex) {
+		if (!pending.add(key(level, planeIndex))) return;
+		final long version = versions[planeIndex];
+		final Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					build(level, planeIndex, version);
+				}
+				finally {
+					synchronized (Pyramid.this) {
+						pending.remove(key(level, planeIndex));
+					}
+				}
+				if (eventService != null) {
+					eventService.publishLater(new PyramidUpdatedEvent(Pyramid.this,
+						planeIndex, level));
+				}
+			}
+		};
+		if (threadService == null) task.run();
+		else threadService.run(task);
+	}
+
+	/** Builds the given plane of every level up to the given one. */
+	private void build(final int level, final int planeIndex,
+		final long version)
+	{
+		for (int l = 1; l <= level; l++) {
+			final DiskPlanarImg<FloatType, FloatArray> img;
+			synchronized (this) {
+				if (disposed) return;
+				if (isBuilt(l, planeIndex, version)) continue;
+				img = level(l);
+			}
+			final float[] plane = reduce(l, planeIndex);
+			synchronized (this) {
+				if (disposed) return;
+				img.setPlane(planeIndex, new FloatArray(plane));
+				builtVersions[l][planeIndex] = version;
+			}
+		}
+	}
+
+	private boolean isBuilt(final int level, final int planeIndex,
+		final long version)
+	{
+		final long[] built = builtVersions[level];
+		return built != null && built[planeIndex] == version;
+	}
+
+	/** Returns the image of a level, creating it if needed. */
+	private DiskPlanarImg<FloatType, FloatArray> level(final int level) {
+		DiskPlanarImg<FloatType, FloatArray> img = levels.get(level);
+		if (img == null) {
+			final long levelBytes = cacheBytes / (widths.length - 1);
+			final DiskPlanarImgFactory<FloatType> factory =
+				new DiskPlanarImgFactory<FloatType>(null, levelBytes);
+			@SuppressWarnings("unchecked")
+			final DiskPlanarImg<FloatType, FloatArray> created =
+				(DiskPlanarImg<FloatType, FloatArray>) factory.create(new long[] {
+					widths[level], heights[level], planeCount }, new FloatType());
+			img = created;
+			levels.set(level, img);
+			final long[] built = new long[planeCount];
+			for (int p = 0; p < planeCount; p++) {
+				built[p] = -1;
+			}
+			builtVersions[level] = built;
+		}
+		return img;
+	}
+
+	/** Computes a plane of a level from the same plane of the level below. */
+	private float[] reduce(final int level, final int planeIndex) {
+		final int srcWidth = (int) widths[level - 1];
+		final int srcHeight = (int) heights[level - 1];
+		final int width = (int) widths[level];
+		final int height = (int) heights[level];
+		final RowSource source = rowSource(level - 1, planeIndex);
+		final float[] plane = new float[width * height];
+		final double[] row0 = new double[srcWidth];
+		final double[] row1 = new double[srcWidth];
+		for (int y = 0; y < height; y++) {
+			final int sy = 2 * y;
+			source.read(sy, row0);
+			final boolean twoRows = sy + 1 < srcHeight;
+			if (twoRows) source.read(sy + 1, row1);
+			for (int x = 0; x < width; x++) {
+				final int sx = 2 * x;
+				final boolean twoCols = sx + 1 < srcWidth;
+				double sum = 0;
+				int n = 0;
+				for (int i = 0; i < 4; i++) {
+					if ((i & 1) != 0 && !twoCols) continue;
+					if ((i & 2) != 0 && !twoRows) continue;
+					final double[] row = (i & 2) == 0 ? row0 : row1;
+					final double value = row[sx + (i & 1)];
+					if (Double.isNaN(value)) continue;
+					sum += value;
+					n++;
+				}
+				plane[y * width + x] = n == 0 ? Float.NaN : (float) (sum / n);
+			}
+		}
+		return plane;
+	}
+
+	/** Returns the rows of a plane of a level. */
+	private RowSource rowSource(final int level, final int planeIndex) {
+		if (level == 0) {
+			final RowAccess access =
+				RowAccess.createForReading(dataset, RowAccess.planePosition(
+					dataset, planeIndex));
+			return new RowSource() {
+
+				@Override
+				public void read(final int y, final double[] dest) {
+					access.read(y, dest, 0);
+				}
+			};
+		}
+		final DiskPlanarImg<FloatType, FloatArray> img;
+		synchronized (this) {
+			img = levels.get(level);
+		}
+		final float[] plane = img.getPlane(planeIndex).getCurrentStorageArray();
+		final int width = (int) widths[level];
+		return new RowSource() {
+
+			@Override
+			public void read(final int y, final double[] dest) {
+				final int offset = y * width;
+				for (int x = 0; x < width; x++) {
+					dest[x] = plane[offset + x];
+				}
+			}
+		};
+	}
+
+	private static long key(final int level, final int planeIndex) {
+		return ((long) level << 32) | (planeIndex & 0xffffffffL);
+	}
+
+	// -- helper classes --
+
+	private interface RowSource {
+
+		void read(int y, double[] dest);
+	}
+
+}
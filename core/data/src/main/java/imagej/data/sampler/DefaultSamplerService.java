@@ -41,6 +41,7 @@
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
 import imagej.data.display.OverlayService;
+import imagej.data.event.DatasetUpdatedEvent;
 import imagej.data.overlay.Overlay;
 import imagej.display.DisplayService;
 import imagej.util.RealRect;
@@ -48,16 +49,16 @@
 import java.util.ArrayList;
 import java.util.List;
 
-import net.imglib2.RandomAccess;
 import net.imglib2.display.ColorTable;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
-import net.imglib2.type.numeric.RealType;
 
+import org.scijava.event.EventService;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
 
 //TODO
 //1) Maintain metadata
@@ -101,6 +102,12 @@ public class DefaultSamplerService extends AbstractService implements
 	@Parameter
 	private ImageDisplayService imgDispService;
 
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter
+	private EventService eventService;
+
 	// -- public interface --
 
 	@Override
@@ -216,39 +223,14 @@ private ImageDisplay createOutputImage(final SamplingDefinition def) {
 	private void copyData(final SamplingDefinition def,
 		final ImageDisplay outputImage)
 	{
-		final PositionIterator iter1 = new SparsePositionIterator(def);
-		final PositionIterator iter2 = new DensePositionIterator(def);
 		// TODO - remove evil casts
 		final Dataset input = (Dataset) def.getDisplay().getActiveView().getData();
 		final Dataset output = (Dataset) outputImage.getActiveView().getData();
-		final long[] inputDims = input.getDims();
-		final long[] outputDims = output.getDims();
-		final RandomAccess<? extends RealType<?>> inputAccessor =
-			input.getImgPlus().randomAccess();
-		final RandomAccess<? extends RealType<?>> outputAccessor =
-			output.getImgPlus().randomAccess();
-		while (iter1.hasNext() && iter2.hasNext()) {
-
-			// determine data positions within datasets
-			final long[] inputPos = iter1.next();
-			final long[] outputPos = iter2.next();
-			inputAccessor.setPosition(inputPos);
-			outputAccessor.setPosition(outputPos);
-
-			// copy value
-			final double value = inputAccessor.get().getRealDouble();
-			outputAccessor.get().setReal(value);
-
-			// TODO - notice there is a lot of inefficiency following here.
-			// We are setting color tables once per pixel in image and do a lot of
-			// calculation to figure out what table. This should be done once per
-			// plane.
-			
-			// keep dataset color tables in sync
-			final int inputPlaneNumber = planeNum(inputDims, inputPos);
-			final ColorTable lut = input.getColorTable(inputPlaneNumber);
-			final int outputPlaneNumber = planeNum(outputDims, outputPos);
-			output.setColorTable(lut, outputPlaneNumber);
+
+		// copy the pixels and keep dataset color tables in sync
+		if (new SamplingCopier(def, input, output, threadService).copy()) {
+			// NB - the input's pixels are unchanged so it is not made dirty
+			eventService.publish(new DatasetUpdatedEvent(input, false));
 		}
 
 		// TODO - enable this code
@@ -269,18 +251,6 @@ private void copyData(final SamplingDefinition def,
 		setDisplayRanges(def, outputImage);
 	}
 
-	/** Calculates a plane number from a position within a dimensional space. */
-	private int planeNum(final long[] dims, final long[] pos) {
-		int plane = 0;
-		int inc = 1;
-		// TODO - assumes X & Y are 1st two dims
-		for (int i = 2; i < dims.length; i++) {
-			plane += pos[i] * inc;
-			inc *= dims[i];
-		}
-		return plane;
-	}
-
 	/**
 	 * Sets an output Dataset's composite channel count based upon an input
 	 * Dataset's composite channel characteristics.
@@ -0,0 +1,412 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.sampler;
+
+import imagej.data.Dataset;
+import imagej.data.PrimitivePlane;
+import imagej.data.cow.SharedPlanes;
+import imagej.data.disk.DiskPlane;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.display.ColorTable;
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.meta.Axes;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Copies the data selected by a {@link SamplingDefinition} from an input
+ * {@link Dataset} to an output Dataset. When X and Y are the first two axes of
+ * the input and both survive into the output, the copy proceeds a plane at a
+ * time: the selected X values are grouped into contiguous runs, each run of
+ * each selected row is copied with a single primitive array copy (or a moving
+ * accessor when either Dataset is not planar), wholly selected in-memory
+ * planes are shared copy-on-write, and planes are divided among
+ * threads. Color tables are set once per plane. Other samplings are copied a
+ * pixel at a time. It has package level sharing and access.
+ * 
+ * @author Barry DeZonia
+ */
+class SamplingCopier {
+
+	// -- constants --
+
+	/** Smallest number of pixels worth handing to a thread. */
+	private static final long MIN_CHUNK = 65536;
+
+	// -- instance variables --
+
+	private final SamplingDefinition def;
+	private final Dataset input;
+	private final Dataset output;
+	private final ThreadService threadService;
+	private final List<List<Long>> inputRanges;
+
+	// NB - set by the copying threads
+	private volatile boolean inputShared;
+
+	// -- constructor --
+
+	/**
+	 * Creates a SamplingCopier. The ThreadService may be null in which case all
+	 * planes are copied on the calling thread.
+	 */
+	SamplingCopier(final SamplingDefinition def, final Dataset input,
+		final Dataset output, final ThreadService threadService)
+	{
+		this.def = def;
+		this.input = input;
+		this.output = output;
+		this.threadService = threadService;
+		this.inputRanges = def.getInputRanges();
+	}
+
+	// -- public interface --
+
+	/**
+	 * Copies the sampled data and the color tables of the sampled planes.
+	 * Returns true if planes of the input were shared copy-on-write: planes of
+	 * the input handed out by reference before the copy then still point at the
+	 * shared arrays, so the input should be reported as updated to get them
+	 * handed out again.
+	 */
+	public boolean copy() {
+		if (isPlaneSampling()) copyPlanes();
+		else copyPixels();
+		return inputShared;
+	}
+
+	// -- private helpers --
+
+	/**
+	 * Returns true if X and Y lead the input axes and both are kept in the
+	 * output (so output planes correspond one to one with sampled input planes).
+	 */
+	private boolean isPlaneSampling() {
+		if (input.numDimensions() < 2) return false;
+		if (input.axis(0) != Axes.X || input.axis(1) != Axes.Y) return false;
+		return inputRanges.get(0).size() > 1 && inputRanges.get(1).size() > 1;
+	}
+
+	private void copyPlanes() {
+		final int numDims = inputRanges.size();
+		final int[] runIn = xRuns(true);
+		final int[] runOut = xRuns(false);
+		final int[] runLength = runLengths();
+		final long[] ys = values(inputRanges.get(1));
+		final long planeSize = runTotal(runLength) * ys.length;
+
+		// enumerate the input plane numbers in output plane order
+		int numPlanes = 1;
+		for (int d = 2; d < numDims; d++) {
+			numPlanes *= inputRanges.get(d).size();
+		}
+		final long[][] inputPlanePos = new long[numPlanes][];
+		final int[] inputPlanes = new int[numPlanes];
+		final int[] index = new int[numDims];
+		final long[] inputDims = input.getDims();
+		for (int p = 0; p < numPlanes; p++) {
+			final long[] pos = new long[numDims];
+			for (int d = 2; d < numDims; d++) {
+				pos[d] = inputRanges.get(d).get(index[d]);
+			}
+			inputPlanePos[p] = pos;
+			inputPlanes[p] = planeNum(inputDims, pos);
+			// advance to the next plane, first non XY axis fastest
+			for (int d = 2; d < numDims; d++) {
+				if (++index[d] < inputRanges.get(d).size()) break;
+				index[d] = 0;
+			}
+		}
+
+		final int numTasks = Math.min(numPlanes, ParallelUtils.taskCount(planeSize *
+			numPlanes, MIN_CHUNK));
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < numTasks; t++) {
+			final int first =
+				(int) ParallelUtils.chunkStart(numPlanes, numTasks, t);
+			final int count = (int) ParallelUtils.chunkSize(numPlanes, numTasks, t);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					final RandomAccess<? extends RealType<?>> inAccessor =
+						input.getImgPlus().randomAccess();
+					final RandomAccess<? extends RealType<?>> outAccessor =
+						output.getImgPlus().randomAccess();
+					for (int p = first; p < first + count; p++) {
+						if (!copyArrays(inputPlanes[p], p, runIn, runOut, runLength, ys))
+						{
+							copyRuns(inAccessor, outAccessor, inputPlanePos[p], p, runIn,
+								runOut, runLength, ys);
+						}
+					}
+					return null;
+				}
+			});
+		}
+		ParallelUtils.invokeAll(threadService, tasks);
+
+		// keep dataset color tables in sync, once per plane
+		for (int p = 0; p < numPlanes; p++) {
+			output.setColorTable(input.getColorTable(inputPlanes[p]), p);
+		}
+	}
+
+	/**
+	 * Copies the selected runs of a plane between the plane arrays of planar
+	 * Datasets. Returns false if either Dataset is not planar.
+	 */
+	private boolean copyArrays(final int inputPlane, final int outputPlane,
+		final int[] runIn, final int[] runOut, final int[] runLength,
+		final long[] ys)
+	{
+		if (input.getType().getClass() != output.getType().getClass()) {
+			return false;
+		}
+		// NB - whole in-memory planes are shared copy-on-write, not copied
+		if (isWholePlane(runIn, runLength, ys) &&
+			SharedPlanes.sharePlane(input.getImgPlus(), inputPlane, output
+				.getImgPlus(), outputPlane))
+		{
+			inputShared = true;
+			return true;
+		}
+		final Img<?> inImg = input.getImgPlus().getImg();
+		final Img<?> outImg = output.getImgPlus().getImg();
+		if (!(inImg instanceof PlanarImg) || !(outImg instanceof PlanarImg)) {
+			return false;
+		}
+		final ArrayDataAccess<?> srcPlane =
+			((PlanarImg<?, ?>) inImg).getPlane(inputPlane);
+		final ArrayDataAccess<?> destPlane =
+			((PlanarImg<?, ?>) outImg).getPlane(outputPlane);
+		// NB - disk-backed planes must stay resident while their arrays are held
+		pin(srcPlane);
+		pin(destPlane);
+		try {
+			final Object src = PrimitivePlane.readArray(srcPlane);
+			final Object dest = destPlane.getCurrentStorageArray();
+			if (src == null || dest == null) return false;
+			if (src.getClass() != dest.getClass()) return false;
+			final int inWidth = (int) input.dimension(0);
+			final int outWidth = (int) output.dimension(0);
+			if (isWholePlane(runIn, runLength, ys)) {
+				System.arraycopy(src, 0, dest, 0, inWidth * ys.length);
+			}
+			else {
+				for (int y = 0; y < ys.length; y++) {
+					final int inRow = (int) ys[y] * inWidth;
+					final int outRow = y * outWidth;
+					for (int r = 0; r < runIn.length; r++) {
+						System.arraycopy(src, inRow + runIn[r], dest, outRow + runOut[r],
+							runLength[r]);
+					}
+				}
+			}
+			// NB - mark disk-backed planes as changed
+			if (destPlane instanceof DiskPlane) ((DiskPlane) destPlane).assign(dest);
+			return true;
+		}
+		finally {
+			unpin(destPlane);
+			unpin(srcPlane);
+		}
+	}
+
+	/** Keeps a disk-backed plane in memory while its array is in use. */
+	private static void pin(final Object plane) {
+		if (plane instanceof DiskPlane) ((DiskPlane) plane).pin();
+	}
+
+	private static void unpin(final Object plane) {
+		if (plane instanceof DiskPlane) ((DiskPlane) plane).unpin();
+	}
+
+	/** Copies the selected runs of a plane by moving accessors along X. */
+	private void copyRuns(final RandomAccess<? extends RealType<?>> in,
+		final RandomAccess<? extends RealType<?>> out, final long[] inputPos,
+		final int outputPlane, final int[] runIn, final int[] runOut,
+		final int[] runLength, final long[] ys)
+	{
+		for (int d = 2; d < inputPos.length; d++) {
+			in.setPosition(inputPos[d], d);
+		}
+		// output plane number to output position (collapsed axes are gone)
+		long rem = outputPlane;
+		for (int d = 2; d < output.numDimensions(); d++) {
+			final long size = output.dimension(d);
+			out.setPosition(rem % size, d);
+			rem /= size;
+		}
+		for (int y = 0; y < ys.length; y++) {
+			in.setPosition(ys[y], 1);
+			out.setPosition(y, 1);
+			for (int r = 0; r < runIn.length; r++) {
+				in.setPosition(runIn[r], 0);
+				out.setPosition(runOut[r], 0);
+				for (int i = 0; i < runLength[r]; i++) {
+					out.get().setReal(in.get().getRealDouble());
+					in.fwd(0);
+					out.fwd(0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies a pixel at a time for samplings that do not keep whole XY planes.
+	 * Color tables are set only when the plane changes.
+	 */
+	private void copyPixels() {
+		final PositionIterator iter1 = new SparsePositionIterator(def);
+		final PositionIterator iter2 = new DensePositionIterator(def);
+		final long[] inputDims = input.getDims();
+		final long[] outputDims = output.getDims();
+		final RandomAccess<? extends RealType<?>> inputAccessor =
+			input.getImgPlus().randomAccess();
+		final RandomAccess<? extends RealType<?>> outputAccessor =
+			output.getImgPlus().randomAccess();
+		int lastInputPlane = -1;
+		int lastOutputPlane = -1;
+		while (iter1.hasNext() && iter2.hasNext()) {
+
+			// determine data positions within datasets
+			final long[] inputPos = iter1.next();
+			final long[] outputPos = iter2.next();
+			inputAccessor.setPosition(inputPos);
+			outputAccessor.setPosition(outputPos);
+
+			// copy value
+			final double value = inputAccessor.get().getRealDouble();
+			outputAccessor.get().setReal(value);
+
+			// keep dataset color tables in sync
+			final int inputPlane = planeNum(inputDims, inputPos);
+			final int outputPlane = planeNum(outputDims, outputPos);
+			if (inputPlane == lastInputPlane && outputPlane == lastOutputPlane) {
+				continue;
+			}
+			final ColorTable lut = input.getColorTable(inputPlane);
+			output.setColorTable(lut, outputPlane);
+			lastInputPlane = inputPlane;
+			lastOutputPlane = outputPlane;
+		}
+	}
+
+	/** Calculates a plane number from a position within a dimensional space. */
+	private int planeNum(final long[] dims, final long[] pos) {
+		int plane = 0;
+		int inc = 1;
+		// TODO - assumes X & Y are 1st two dims
+		for (int i = 2; i < dims.length; i++) {
+			plane += pos[i] * inc;
+			inc *= dims[i];
+		}
+		return plane;
+	}
+
+	/** Returns true if the runs and rows cover an entire input plane. */
+	private boolean isWholePlane(final int[] runIn, final int[] runLength,
+		final long[] ys)
+	{
+		if (runIn.length != 1 || runIn[0] != 0) return false;
+		if (runLength[0] != input.dimension(0)) return false;
+		if (ys.length != input.dimension(1)) return false;
+		for (int y = 0; y < ys.length; y++) {
+			if (ys[y] != y) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Groups the selected X values into runs of consecutive values and returns
+	 * the start of each run in input (or output) coordinates.
+	 */
+	private int[] xRuns(final boolean inputCoords) {
+		final long[] xs = values(inputRanges.get(0));
+		final List<Integer> starts = new ArrayList<Integer>();
+		for (int i = 0; i < xs.length; i++) {
+			if (i == 0 || xs[i] != xs[i - 1] + 1) {
+				starts.add(inputCoords ? (int) xs[i] : i);
+			}
+		}
+		final int[] result = new int[starts.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = starts.get(i);
+		}
+		return result;
+	}
+
+	/** Returns the lengths of the runs found by {@link #xRuns(boolean)}. */
+	private int[] runLengths() {
+		final long[] xs = values(inputRanges.get(0));
+		final List<Integer> lengths = new ArrayList<Integer>();
+		for (int i = 0; i < xs.length; i++) {
+			if (i == 0 || xs[i] != xs[i - 1] + 1) lengths.add(1);
+			else lengths.set(lengths.size() - 1, lengths.get(lengths.size() - 1) + 1);
+		}
+		final int[] result = new int[lengths.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = lengths.get(i);
+		}
+		return result;
+	}
+
+	private long runTotal(final int[] runLength) {
+		long total = 0;
+		for (final int length : runLength) {
+			total += length;
+		}
+		return total;
+	}
+
+	private long[] values(final List<Long> list) {
+		final long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i);
+		}
+		return result;
+	}
+}
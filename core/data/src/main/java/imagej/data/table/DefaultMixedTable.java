@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.table;
+
+/**
+ * Default implementation of {@link MixedTable}. Columns added by the
+ * {@link Table} methods are {@link GenericColumn}s.
+ * 
+ * @author Barry DeZonia
+ */
+public class DefaultMixedTable extends AbstractTable<Column<Object>, Object>
+	implements MixedTable
+{
+
+	/** Creates an empty table. */
+	public DefaultMixedTable() {
+		super();
+	}
+
+	/** Creates a table with the given row and column dimensions. */
+	public DefaultMixedTable(final int columnCount, final int rowCount) {
+		super(columnCount, rowCount);
+	}
+
+	// -- MixedTable methods --
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void appendColumn(final Column<?> column) {
+		if (column.size() != getRowCount()) {
+			throw new IllegalArgumentException("Column has " + column.size() +
+				" rows; table has " + getRowCount());
+		}
+		add((Column<Object>) column);
+	}
+
+	@Override
+	public <C extends Column<?>> C getColumn(final int col,
+		final Class<C> columnType)
+	{
+		return columnType.cast(get(col));
+	}
+
+	// -- Internal methods --
+
+	@Override
+	protected Column<Object> createColumn(final String header) {
+		return new GenericColumn(header);
+	}
+
+}
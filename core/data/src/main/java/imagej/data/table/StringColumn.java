@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.table;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.scijava.util.IntArray;
+
+/**
+ * Implementation of {@link Column} for {@link String}s that stores each
+ * distinct value once. Rows hold {@code int} codes into a dictionary of the
+ * distinct values, so columns of repeated labels (class names, file names,
+ * and the like) cost four bytes per row.
+ * 
+ * @author Barry DeZonia
+ */
+public class StringColumn extends AbstractList<String> implements
+	Column<String>
+{
+
+	/** The column header. */
+	private String header;
+
+	/** Per row dictionary codes; 0 means null, else the index + 1. */
+	private final IntArray codes = new IntArray();
+
+	/** The distinct values, in order of first use. */
+	private final List<String> dictionary = new ArrayList<String>();
+
+	/** The code of each distinct value. */
+	private final Map<String, Integer> lookup = new HashMap<String, Integer>();
+
+	public StringColumn() {}
+
+	public StringColumn(final String header) {
+		this.header = header;
+	}
+
+	// -- StringColumn methods --
+
+	/** Gets the dictionary code of a row: 0 for null, else index + 1. */
+	public int getCode(final int row) {
+		return codes.getValue(row);
+	}
+
+	/** Gets the distinct values of the column, indexed by code - 1. */
+	public List<String> getDictionary() {
+		return Collections.unmodifiableList(dictionary);
+	}
+
+	/** Appends a value to the end of the column. */
+	public void addValue(final String value) {
+		codes.addValue(encode(value));
+	}
+
+	// -- Column methods --
+
+	@Override
+	public String getHeader() {
+		return header;
+	}
+
+	@Override
+	public void setHeader(final String header) {
+		this.header = header;
+	}
+
+	@Override
+	public int size() {
+		return codes.size();
+	}
+
+	@Override
+	public void setSize(final int size) {
+		codes.setSize(size);
+	}
+
+	// -- List methods --
+
+	@Override
+	public String get(final int index) {
+		final int code = codes.getValue(index);
+		return code == 0 ? null : dictionary.get(code - 1);
+	}
+
+	@Override
+	public String set(final int index, final String value) {
+		final String old = get(index);
+		codes.setValue(index, encode(value));
+		return old;
+	}
+
+	@Override
+	public void add(final int index, final String value) {
+		codes.add(index, encode(value));
+	}
+
+	@Override
+	public String remove(final int index) {
+		final String old = get(index);
+		codes.remove(index);
+		return old;
+	}
+
+	// -- helpers --
+
+	private int encode(final String value) {
+		if (value == null) return 0;
+		Integer code = lookup.get(value);
+		if (code == null) {
+			dictionary.add(value);
+			code = dictionary.size();
+			lookup.put(value, code);
+		}
+		return code;
+	}
+
+}
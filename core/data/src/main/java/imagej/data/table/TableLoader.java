@@ -35,72 +35,78 @@
 
 package imagej.data.table;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 // note: adapted from Wayne Rasband's IJ1 TextReader class
 
 /**
- * Loads a text file containing comma separated values into a
- * {@link ResultsTable}.
+ * Loads text files of comma, tab or space separated values into tables. Files
+ * are read in a single pass, straight into growing primitive columns, so a
+ * table needs about as much memory as its values do. A first row with no
+ * numeric values is taken as the column headers.
  * 
  * @author Barry DeZonia
  * @author Wayne Rasband
  */
 public class TableLoader {
 
-	// -- instance variables --
+	// -- constants --
 
-	private int rows, cols;
+	/** Delimiter denoting runs of white space and commas (the IJ1 format). */
+	private static final char LEGACY = 0;
 
-	// -- private legacy text file support methods --
+	// -- ResultsTable loading methods --
 
 	/**
-	 * Loads the values of a table stored in a text file as a ResultsTable. Given
-	 * BufferedInputStream must be marked to hold entire contents in buffer. This
-	 * method rewinds the buggered stream so it can read it twice.
+	 * Loads the values of a table stored in a text file as a ResultsTable.
+	 * Values are separated by runs of white space or commas; cells that are not
+	 * numbers become NaN.
 	 * 
-	 * @param str The BufferedInputStream containing the data of the text table
-	 * @return A ResultsTable containing the values (and headers)
-	 * @throws IOException
+	 * @param str The InputStream containing the data of the text table
+	 * @return A ResultsTable containing the values (and headers), or null if
+	 *         the stream has no values
+	 * @throws IOException if the rows are not all the same length
 	 */
-	public ResultsTable valuesFromTextFile(BufferedInputStream str)
+	public ResultsTable valuesFromTextFile(final InputStream str)
 		throws IOException
 	{
-		countRowsAndCols(str);
-		if (rows == 0) return null;
-		ResultsTable values = new DefaultResultsTable(cols, rows);
-		str.reset();
-		read(str, values);
-		int firstRowNaNCount = 0;
-		for (int i = 0; i < cols; i++) {
-			if (Double.isNaN(values.getValue(i, 0))) firstRowNaNCount++;
-		}
-		if (firstRowNaNCount == cols) { // assume first row is header
-			// throw away first row of non-values
-			rows--;
-			ResultsTable oldValues = values;
-			values = new DefaultResultsTable(cols, rows);
-			for (int c = 0; c < cols; c++) {
-				String colHeader = oldValues.getColumnHeader(c);
-				values.setColumnHeader(c, colHeader);
-			}
-			for (int row = 0; row < rows; row++) {
-				for (int col = 0; col < cols; col++) {
-					double val = oldValues.getValue(col, row + 1);
-					values.setValue(col, row, val);
+		final BufferedReader reader =
+			new BufferedReader(new InputStreamReader(str));
+		final List<String> fields = new ArrayList<String>();
+		List<DoubleColumn> columns = null;
+		int rows = 0, lineNumber = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			split(line, LEGACY, fields);
+			if (fields.isEmpty()) continue; // ignore empty lines
+			if (columns == null) {
+				final boolean header = isHeader(fields);
+				columns = new ArrayList<DoubleColumn>(fields.size());
+				for (final String field : fields) {
+					columns.add(new DoubleColumn(header ? field : null));
 				}
+				if (header) continue;
 			}
+			checkLength(fields, columns.size(), lineNumber);
+			for (int c = 0; c < fields.size(); c++) {
+				columns.get(c).addValue(parseDouble(fields.get(c)));
+			}
+			rows++;
 		}
-		return values;
+		if (columns == null) return null;
+		final ResultsTable table = new DefaultResultsTable();
+		table.addAll(columns);
+		table.setRowCount(rows);
+		return table;
 	}
 
 	/**
@@ -111,7 +117,9 @@ public ResultsTable valuesFromTextFile(BufferedInputStream str)
 	 * @return A ResultsTable containing the values (and headers)
 	 * @throws IOException
 	 */
-	public ResultsTable valuesFromTextFile(String urlString) throws IOException {
+	public ResultsTable valuesFromTextFile(final String urlString)
+		throws IOException
+	{
 		return valuesFromTextFile(new URL(urlString));
 	}
 
@@ -122,11 +130,14 @@ public ResultsTable valuesFromTextFile(String urlString) throws IOException {
 	 * @return A ResultsTable containing the values (and headers)
 	 * @throws IOException
 	 */
-	public ResultsTable valuesFromTextFile(File file) throws IOException {
-		FileInputStream fstr = new FileInputStream(file);
-		BufferedInputStream stream = new BufferedInputStream(fstr);
-		stream.mark((int) file.length());
-		return valuesFromTextFile(stream);
+	public ResultsTable valuesFromTextFile(final File file) throws IOException {
+		final InputStream str = new FileInputStream(file);
+		try {
+			return valuesFromTextFile(str);
+		}
+		finally {
+			str.close();
+		}
 	}
 
 	/**
@@ -136,77 +147,372 @@ public ResultsTable valuesFromTextFile(File file) throws IOException {
 	 * @return A ResultsTable containing the values (and headers)
 	 * @throws IOException
 	 */
-	public ResultsTable valuesFromTextFile(URL url) throws IOException {
-		InputStream istr = url.openStream();
-		BufferedInputStream stream = new BufferedInputStream(istr);
-		stream.mark(8000000); // about 8 megabytes: FIXME HACK
-		return valuesFromTextFile(stream);
+	public ResultsTable valuesFromTextFile(final URL url) throws IOException {
+		final InputStream str = url.openStream();
+		try {
+			return valuesFromTextFile(str);
+		}
+		finally {
+			str.close();
+		}
+	}
+
+	// -- MixedTable loading methods --
+
+	/**
+	 * Loads a table stored in a text file as a MixedTable whose column types
+	 * are inferred from their values. Values are separated by tabs if the first
+	 * line has any, else by commas if it has any, else by runs of white space;
+	 * tab and comma separated values may be quoted. Each column becomes a
+	 * {@link BoolColumn}, {@link IntColumn}, {@link LongColumn},
+	 * {@link DoubleColumn} or {@link StringColumn}, whichever is the narrowest
+	 * to hold all of its values. Empty cells are NaN in numeric columns and
+	 * null in string columns.
+	 * 
+	 * @param str The InputStream containing the data of the text table
+	 * @return A MixedTable containing the values (and headers), or null if the
+	 *         stream has no values
+	 * @throws IOException if the rows are not all the same length
+	 */
+	public MixedTable tableFromTextFile(final InputStream str)
+		throws IOException
+	{
+		final BufferedReader reader =
+			new BufferedReader(new InputStreamReader(str));
+		final List<String> fields = new ArrayList<String>();
+		List<ColumnBuilder> columns = null;
+		char delimiter = LEGACY;
+		int rows = 0, lineNumber = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			if (columns == null) delimiter = delimiter(line);
+			split(line, delimiter, fields);
+			if (fields.isEmpty()) continue; // ignore empty lines
+			if (columns == null) {
+				final boolean header = isHeader(fields);
+				columns = new ArrayList<ColumnBuilder>(fields.size());
+				for (final String field : fields) {
+					columns.add(new ColumnBuilder(header ? field : null));
+				}
+				if (header) continue;
+			}
+			checkLength(fields, columns.size(), lineNumber);
+			for (int c = 0; c < fields.size(); c++) {
+				columns.get(c).add(fields.get(c));
+			}
+			rows++;
+		}
+		if (columns == null) return null;
+		final MixedTable table = new DefaultMixedTable(0, rows);
+		for (final ColumnBuilder column : columns) {
+			table.appendColumn(column.build(rows));
+		}
+		return table;
+	}
+
+	/**
+	 * Loads a table stored in a text file as a MixedTable.
+	 * 
+	 * @see #tableFromTextFile(InputStream)
+	 */
+	public MixedTable tableFromTextFile(final String urlString)
+		throws IOException
+	{
+		return tableFromTextFile(new URL(urlString));
+	}
+
+	/**
+	 * Loads a table stored in a text file as a MixedTable.
+	 * 
+	 * @see #tableFromTextFile(InputStream)
+	 */
+	public MixedTable tableFromTextFile(final File file) throws IOException {
+		final InputStream str = new FileInputStream(file);
+		try {
+			return tableFromTextFile(str);
+		}
+		finally {
+			str.close();
+		}
+	}
+
+	/**
+	 * Loads a table stored at a URL as a MixedTable.
+	 * 
+	 * @see #tableFromTextFile(InputStream)
+	 */
+	public MixedTable tableFromTextFile(final URL url) throws IOException {
+		final InputStream str = url.openStream();
+		try {
+			return tableFromTextFile(str);
+		}
+		finally {
+			str.close();
+		}
 	}
 
 	// -- private helpers -
 
-	private void countRowsAndCols(InputStream str) throws IOException {
-		Reader r = new BufferedReader(new InputStreamReader(str));
-		StreamTokenizer tok = new StreamTokenizer(r);
-		tok.resetSyntax();
-		tok.wordChars(43, 43);
-		tok.wordChars(45, 126);
-		tok.whitespaceChars(0, 42);
-		tok.whitespaceChars(44, 44);
-		tok.whitespaceChars(127, 255);
-		tok.eolIsSignificant(true);
-
-		int words = 0, wordsPrevLine = 0;
-		while (tok.nextToken() != StreamTokenizer.TT_EOF) {
-			switch (tok.ttype) {
-				case StreamTokenizer.TT_EOL:
-					rows++;
-					if (words == 0) rows--; // ignore empty lines
-					if (rows == 1 && words > 0) cols = words;
-					if (rows > 1 && words != 0 && words != wordsPrevLine) {
-						throw new IOException("Line " + rows +
-							" is not the same length as the first line.");
-					}
-					if (words != 0) wordsPrevLine = words;
-					words = 0;
+	/** Chooses the delimiter of a file from one of its lines. */
+	private char delimiter(final String line) {
+		if (line.indexOf('\t') >= 0) return '\t';
+		if (line.indexOf(',') >= 0) return ',';
+		return LEGACY;
+	}
+
+	/** Splits a line into its fields, trimmed of surrounding white space. */
+	private void split(final String line, final char delimiter,
+		final List<String> fields)
+	{
+		fields.clear();
+		if (delimiter == LEGACY) {
+			splitLegacy(line, fields);
+			return;
+		}
+		if (line.trim().length() == 0) return;
+		final StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			final char ch = line.charAt(i);
+			if (quoted) {
+				if (ch != '"') field.append(ch);
+				else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"'); // escaped quote
+					i++;
+				}
+				else quoted = false;
+			}
+			else if (ch == '"' && field.toString().trim().length() == 0) {
+				field.setLength(0);
+				quoted = true;
+			}
+			else if (ch == delimiter) {
+				fields.add(field.toString().trim());
+				field.setLength(0);
+			}
+			else field.append(ch);
+		}
+		fields.add(field.toString().trim());
+	}
+
+	/**
+	 * Splits a line the way IJ1 tokenizes tables: fields are separated by runs
+	 * of control characters, spaces, commas and the characters from '!' to '*'.
+	 */
+	private void splitLegacy(final String line, final List<String> fields) {
+		int start = -1;
+		for (int i = 0; i <= line.length(); i++) {
+			final boolean word = i < line.length() && isWordChar(line.charAt(i));
+			if (word && start < 0) start = i;
+			else if (!word && start >= 0) {
+				fields.add(line.substring(start, i));
+				start = -1;
+			}
+		}
+	}
+
+	private boolean isWordChar(final char ch) {
+		return ch == 43 || (ch >= 45 && ch <= 126);
+	}
+
+	/** Returns true if none of the given fields is a number. */
+	private boolean isHeader(final List<String> fields) {
+		for (final String field : fields) {
+			if (!Double.isNaN(parseDouble(field))) return false;
+		}
+		return true;
+	}
+
+	private void checkLength(final List<String> fields, final int columnCount,
+		final int lineNumber) throws IOException
+	{
+		if (fields.size() != columnCount) {
+			throw new IOException("Line " + lineNumber +
+				" is not the same length as the first line.");
+		}
+	}
+
+	/** Parses a number, returning NaN for anything else. */
+	private static double parseDouble(final String field) {
+		if (!maybeNumber(field)) return Double.NaN;
+		try {
+			return Double.parseDouble(field);
+		}
+		catch (final NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Returns false for fields that certainly are not numbers, to avoid the cost
+	 * of a failed parse for each cell of a text column.
+	 */
+	private static boolean maybeNumber(final String field) {
+		if (field.length() == 0) return false;
+		final char ch = field.charAt(0);
+		return (ch >= '0' && ch <= '9') || ch == '-' || ch == '+' || ch == '.' ||
+			ch == 'N' || ch == 'I';
+	}
+
+	/** Returns true for fields of an optional sign followed by digits. */
+	private static boolean isInteger(final String field) {
+		final int start =
+			field.length() > 0 && (field.charAt(0) == '-' || field.charAt(0) == '+')
+				? 1 : 0;
+		if (field.length() == start || field.length() - start > 18) return false;
+		for (int i = start; i < field.length(); i++) {
+			final char ch = field.charAt(i);
+			if (ch < '0' || ch > '9') return false;
+		}
+		return true;
+	}
+
+	// -- helper classes --
+
+	/** The kinds of column, from narrowest to widest. */
+	private enum Kind {
+		NONE, BOOL, INT, LONG, DOUBLE, STRING
+	}
+
+	/**
+	 * Builds one column from a stream of text values, widening its type as the
+	 * values require. Values already read are copied once per widening; those
+	 * widened to strings keep the text they were read from (so "007" stays
+	 * "007" if the column later turns out to hold text).
+	 */
+	private static class ColumnBuilder {
+
+		private final String header;
+		private Kind kind = Kind.NONE;
+		private Column<?> column;
+
+		/**
+		 * the original text of the fields while the column is not a text one, so
+		 * that widening to text keeps them exactly as written
+		 */
+		private List<String> fields = new ArrayList<String>();
+
+		// the value of the last classified field
+		private boolean boolValue;
+		private long longValue;
+		private double doubleValue;
+
+		public ColumnBuilder(final String header) {
+			this.header = header;
+		}
+
+		public void add(final String field) {
+			if (kind == Kind.STRING) {
+				((StringColumn) column).addValue(field.length() == 0 ? null : field);
+				return;
+			}
+			final Kind fieldKind = classify(field);
+			final Kind joined = join(kind, fieldKind);
+			if (joined != kind) widen(joined);
+			if (fields != null) fields.add(field);
+			switch (kind) {
+				case BOOL:
+					((BoolColumn) column).addValue(boolValue);
 					break;
-				case StreamTokenizer.TT_WORD:
-					// System.out.println("read word " + tok.sval);
-					words++;
+				case INT:
+					((IntColumn) column).addValue((int) longValue);
 					break;
+				case LONG:
+					((LongColumn) column).addValue(longValue);
+					break;
+				case DOUBLE:
+					final boolean integer =
+						fieldKind == Kind.INT || fieldKind == Kind.LONG;
+					((DoubleColumn) column).addValue(integer ? longValue : doubleValue);
+					break;
+				default:
+					((StringColumn) column).addValue(field.length() == 0 ? null : field);
 			}
 		}
-		if (words == cols) rows++; // last line does not end with EOL
-	}
 
-	private void read(InputStream str, ResultsTable values) throws IOException {
-		Reader r = new BufferedReader(new InputStreamReader(str));
-		StreamTokenizer tok = new StreamTokenizer(r);
-		tok.resetSyntax();
-		tok.wordChars(43, 43);
-		tok.wordChars(45, 126);
-		tok.whitespaceChars(0, 42);
-		tok.whitespaceChars(44, 44);
-		tok.whitespaceChars(127, 255);
+		public Column<?> build(final int rows) {
+			if (column == null) widen(Kind.DOUBLE);
+			column.setSize(rows);
+			fields = null;
+			return column;
+		}
 
-		int row = 0, col = 0;
-		while (tok.nextToken() != StreamTokenizer.TT_EOF) {
-			if (tok.ttype == StreamTokenizer.TT_WORD) {
-				double value;
+		/** Parses a field, returning its kind and storing its value. */
+		private Kind classify(final String field) {
+			if (field.length() == 0) {
+				doubleValue = Double.NaN;
+				return Kind.DOUBLE;
+			}
+			if (field.equalsIgnoreCase("true") || field.equalsIgnoreCase("false")) {
+				boolValue = field.equalsIgnoreCase("true");
+				return Kind.BOOL;
+			}
+			if (isInteger(field)) {
+				// NB - Long.parseLong does not accept a leading plus before Java 7
+				longValue =
+					Long.parseLong(field.charAt(0) == '+' ? field.substring(1) : field);
+				final boolean fitsInt =
+					longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE;
+				return fitsInt ? Kind.INT : Kind.LONG;
+			}
+			if (maybeNumber(field)) {
 				try {
-					value = Double.parseDouble(tok.sval);
+					doubleValue = Double.parseDouble(field);
+					return Kind.DOUBLE;
 				}
-				catch (NumberFormatException e) {
-					value = Double.NaN;
-					if (row == 0) values.setColumnHeader(col, tok.sval);
-				}
-				values.setValue(col, row, value);
-				col++;
-				if (col == cols) {
-					row++;
-					col = 0;
+				catch (final NumberFormatException e) {
+					// not a number after all
 				}
 			}
+			return Kind.STRING;
+		}
+
+		/** Returns the narrowest kind of column holding both kinds of value. */
+		private Kind join(final Kind a, final Kind b) {
+			if (a == Kind.NONE) return b;
+			if (a == b) return a;
+			if (a == Kind.BOOL || b == Kind.BOOL) return Kind.STRING;
+			return a.ordinal() > b.ordinal() ? a : b;
+		}
+
+		/** Replaces the column with a wider one holding the same values. */
+		private void widen(final Kind newKind) {
+			final int size = column == null ? 0 : column.size();
+			final Column<?> wider;
+			switch (newKind) {
+				case BOOL:
+					wider = new BoolColumn(header);
+					break;
+				case INT:
+					wider = new IntColumn(header);
+					break;
+				case LONG:
+					final LongColumn longs = new LongColumn(header);
+					for (int i = 0; i < size; i++) {
+						longs.addValue(((IntColumn) column).getValue(i));
+					}
+					wider = longs;
+					break;
+				case DOUBLE:
+					final DoubleColumn doubles = new DoubleColumn(header);
+					for (int i = 0; i < size; i++) {
+						doubles.addValue(((Number) column.get(i)).doubleValue());
+					}
+					wider = doubles;
+					break;
+				default:
+					final StringColumn strings = new StringColumn(header);
+					for (int i = 0; i < size; i++) {
+						final String field = fields.get(i);
+						strings.addValue(field.length() == 0 ? null : field);
+					}
+					wider = strings;
+					fields = null;
+			}
+			column = wider;
+			kind = newKind;
 		}
 	}
+
 }
@@ -35,6 +35,8 @@
 
 package imagej.data.threshold;
 
+import net.imglib2.algorithm.histogram.Histogram1d;
+
 import org.scijava.plugin.SortablePlugin;
 
 /**
@@ -45,5 +47,12 @@
 public abstract class AbstractThresholdMethod extends SortablePlugin implements
 	ThresholdMethod
 {
-	// NB: No implementation needed.
+
+	// -- ThresholdMethod methods --
+
+	@Override
+	public long getThreshold(final Histogram1d<?> histogram) {
+		return getThreshold(histogram.toLongArray());
+	}
+
 }
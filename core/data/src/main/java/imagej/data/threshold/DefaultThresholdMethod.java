@@ -35,8 +35,6 @@
 
 package imagej.data.threshold;
 
-import net.imglib2.algorithm.histogram.Histogram1d;
-
 import org.scijava.plugin.Plugin;
 
 // NB - this plugin adapted from Gabriel Landini's code of his AutoThreshold
@@ -54,8 +52,7 @@
 public class DefaultThresholdMethod extends AbstractThresholdMethod {
 
 	@Override
-	public long getThreshold(Histogram1d<?> hist) {
-		long[] histogram = hist.toLongArray();
+	public long getThreshold(long[] histogram) {
 		// Original IJ implementation for compatibility.
 		int level;
 		int maxValue = histogram.length - 1;
@@ -36,21 +36,28 @@
 package imagej.data.threshold;
 
 import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.RowAccess;
+import imagej.data.autoscale.DataRange;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
 import imagej.data.display.OverlayService;
 import imagej.data.event.OverlayDeletedEvent;
+import imagej.data.histogram.HistogramBins;
+import imagej.data.histogram.HistogramService;
 import imagej.data.overlay.Overlay;
 import imagej.data.overlay.ThresholdOverlay;
 import imagej.display.Display;
 import imagej.display.event.DisplayDeletedEvent;
 import imagej.plugin.AbstractSingletonService;
+import imagej.util.ParallelUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.scijava.event.EventHandler;
@@ -58,6 +65,7 @@
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
 
 /**
  * Default service for working with thresholds.
@@ -80,6 +88,23 @@ public class DefaultThresholdService extends
 	@Parameter
 	private LogService log;
 
+	@Parameter
+	private DatasetService datasetService;
+
+	@Parameter
+	private HistogramService histogramService;
+
+	@Parameter
+	private ThreadService threadService;
+
+	// -- constants --
+
+	/** The number of histogram bins used when none is specified. */
+	private static final int DEFAULT_BIN_COUNT = 256;
+
+	/** The value of set pixels in masks. */
+	private static final double MASK_ON = 255;
+
 	// -- instance variables --
 
 	private final ConcurrentHashMap<ImageDisplay, ThresholdOverlay> map =
@@ -145,6 +170,54 @@ public ThresholdMethod getThresholdMethod(String name) {
 		return methods.get(name);
 	}
 
+	@Override
+	public ThresholdTable getThresholds(Dataset dataset, int[] planeIndices,
+		List<String> names, double min, double max, int binCount)
+	{
+		ThresholdTable table =
+			new ThresholdTable(names, planeIndices, min, max, binCount);
+		evaluate(dataset, table, null, -1, false);
+		return table;
+	}
+
+	@Override
+	public ThresholdTable getThresholds(Dataset dataset, List<String> names) {
+		DataRange range = histogramService.getRange(dataset);
+		return getThresholds(dataset, allPlanes(dataset), names, range.getMin(),
+			range.getMax(), DEFAULT_BIN_COUNT);
+	}
+
+	@Override
+	public Dataset createMask(final Dataset dataset, final ThresholdTable table,
+		String methodName, final boolean darkBackground)
+	{
+		final int column = table.column(methodName);
+		final Dataset mask = createMaskDataset(dataset);
+		forEachPlane(table.getPlaneCount(), new PlaneTask() {
+
+			@Override
+			public void process(int row) {
+				applyThreshold(dataset, mask, table, row, column, darkBackground);
+			}
+		});
+		mask.update();
+		return mask;
+	}
+
+	@Override
+	public Dataset createMask(Dataset dataset, String methodName,
+		boolean darkBackground)
+	{
+		DataRange range = histogramService.getRange(dataset);
+		ThresholdTable table =
+			new ThresholdTable(Collections.singletonList(methodName),
+				allPlanes(dataset), range.getMin(), range.getMax(), DEFAULT_BIN_COUNT);
+		Dataset mask = createMaskDataset(dataset);
+		evaluate(dataset, table, mask, 0, darkBackground);
+		mask.update();
+		return mask;
+	}
+
 	// -- PTService methods --
 
 	@Override
@@ -182,6 +255,115 @@ protected void onEvent(OverlayDeletedEvent evt) {
 
 	// -- helpers --
 
+	/**
+	 * Fills in a threshold table, one task per chunk of planes. If a mask is
+	 * given each plane is also thresholded into it, in the same pass, using the
+	 * threshold of the given column.
+	 */
+	private void evaluate(final Dataset dataset, final ThresholdTable table,
+		final Dataset mask, final int maskColumn, final boolean darkBackground)
+	{
+		final List<String> names = table.getMethodNames();
+		final ThresholdMethod[] selected = new ThresholdMethod[names.size()];
+		for (int m = 0; m < selected.length; m++) {
+			selected[m] = methods.get(names.get(m));
+			if (selected[m] == null) {
+				throw new IllegalArgumentException("Unknown threshold method: " +
+					names.get(m));
+			}
+		}
+		final int[] planes = table.getPlaneIndices();
+		forEachPlane(planes.length, new PlaneTask() {
+
+			@Override
+			public void process(int row) {
+				long[] histogram =
+					histogramService.getPlaneHistogram(dataset, planes[row], table
+						.getMin(), table.getMax(), table.getBinCount());
+				for (int m = 0; m < selected.length; m++) {
+					// NB - methods never modify the histogram and keep no state besides
+					// their last message, so planes can share them concurrently
+					table.setThreshold(row, m, selected[m].getThreshold(histogram));
+				}
+				if (mask != null) {
+					applyThreshold(dataset, mask, table, row, maskColumn,
+						darkBackground);
+				}
+			}
+		});
+	}
+
+	/** Runs a task on each row of a table, dividing rows between cores. */
+	private void forEachPlane(final int planeCount, final PlaneTask task) {
+		int numTasks = ParallelUtils.taskCount(planeCount, 1);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < numTasks; t++) {
+			final int start = (int) ParallelUtils.chunkStart(planeCount, numTasks, t);
+			final int count = (int) ParallelUtils.chunkSize(planeCount, numTasks, t);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					for (int row = start; row < start + count; row++) {
+						task.process(row);
+					}
+					return null;
+				}
+			});
+		}
+		ParallelUtils.invokeAll(threadService, tasks);
+	}
+
+	/** Thresholds one plane of a Dataset into the same plane of a mask. */
+	private void applyThreshold(Dataset dataset, Dataset mask,
+		ThresholdTable table, int row, int column, boolean darkBackground)
+	{
+		long threshold = table.getThreshold(row, column);
+		if (threshold < 0) return;
+		long[] planePos =
+			RowAccess.planePosition(dataset, table.getPlaneIndices()[row]);
+		RowAccess source = RowAccess.createForReading(dataset, planePos);
+		RowAccess target = RowAccess.create(mask, planePos);
+		int width = source.getWidth();
+		int height = (int) dataset.dimension(1);
+		HistogramBins bins =
+			new HistogramBins(table.getMin(), table.getMax(), table.getBinCount());
+		double[] values = new double[width];
+		for (int y = 0; y < height; y++) {
+			source.read(y, values, 0);
+			for (int x = 0; x < width; x++) {
+				double value = values[x];
+				boolean on;
+				if (Double.isNaN(value)) on = false;
+				else {
+					int bin = bins.bin(value);
+					on = darkBackground ? bin > threshold : bin <= threshold;
+				}
+				values[x] = on ? MASK_ON : 0;
+			}
+			target.write(y, 0, values, width);
+		}
+	}
+
+	private Dataset createMaskDataset(Dataset dataset) {
+		long[] dims = new long[dataset.numDimensions()];
+		dataset.dimensions(dims);
+		return datasetService.create(dims, dataset.getName() + " mask", dataset
+			.getAxes(), 8, false, false);
+	}
+
+	private int[] allPlanes(Dataset dataset) {
+		long count = 1;
+		for (int d = 2; d < dataset.numDimensions(); d++) {
+			count *= dataset.dimension(d);
+		}
+		int[] planes = new int[(int) count];
+		for (int p = 0; p < planes.length; p++) {
+			planes[p] = p;
+		}
+		return planes;
+	}
+
 	private void buildDataStructures() {
 		methods = new ConcurrentHashMap<String, ThresholdMethod>();
 		methodNames = new ArrayList<String>();
@@ -192,4 +374,12 @@ private void buildDataStructures() {
 		}
 	}
 
+	// -- helper classes --
+
+	/** Work done on one row of a threshold table. */
+	private interface PlaneTask {
+
+		void process(int row);
+	}
+
 }
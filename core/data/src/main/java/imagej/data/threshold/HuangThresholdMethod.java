@@ -35,10 +35,7 @@
 
 package imagej.data.threshold;
 
-import net.imglib2.algorithm.histogram.Histogram1d;
-
 import org.scijava.plugin.Plugin;
-import org.scijava.plugin.SortablePlugin;
 
 //NB - this plugin adapted from Gabriel Landini's code of his AutoThreshold
 //plugin found in Fiji (version 1.14).
@@ -50,13 +47,10 @@
  * @author Gabriel Landini
  */
 @Plugin(type = ThresholdMethod.class, name = "Huang")
-public class HuangThresholdMethod extends SortablePlugin implements
-	ThresholdMethod
-{
+public class HuangThresholdMethod extends AbstractThresholdMethod {
 
 	@Override
-	public long getThreshold(Histogram1d<?> hist) {
-		long[] histogram = hist.toLongArray();
+	public long getThreshold(long[] histogram) {
 		// Implements Huang's fuzzy thresholding method
 		// Uses Shannon's entropy function (one can also use Yager's entropy
 		// function) Huang L.-K. and Wang M.-J.J. (1995) "Image Thresholding by
@@ -35,8 +35,6 @@
 
 package imagej.data.threshold;
 
-import net.imglib2.algorithm.histogram.Histogram1d;
-
 import org.scijava.plugin.Plugin;
 
 // NB - this plugin adapted from Gabriel Landini's code of his AutoThreshold
@@ -54,8 +52,7 @@ public class IntermodesThresholdMethod extends AbstractThresholdMethod {
 	private String errMsg = null;
 
 	@Override
-	public long getThreshold(Histogram1d<?> hist) {
-		long[] histogram = hist.toLongArray();
+	public long getThreshold(long[] histogram) {
 		// J. M. S. Prewitt and M. L. Mendelsohn, "The analysis of cell images," in
 		// Annals of the New York Academy of Sciences, vol. 128, pp. 1035-1053,
 		// 1966.
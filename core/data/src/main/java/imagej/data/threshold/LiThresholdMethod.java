@@ -35,8 +35,6 @@
 
 package imagej.data.threshold;
 
-import net.imglib2.algorithm.histogram.Histogram1d;
-
 import org.scijava.plugin.Plugin;
 
 // NB - this plugin adapted from Gabriel Landini's code of his AutoThreshold
@@ -53,8 +51,7 @@
 public class LiThresholdMethod extends AbstractThresholdMethod {
 
 	@Override
-	public long getThreshold(Histogram1d<?> hist) {
-		long[] histogram = hist.toLongArray();
+	public long getThreshold(long[] histogram) {
 		// Implements Li's Minimum Cross Entropy thresholding method
 		// This implementation is based on the iterative version (Ref. 2) of the
 		// algorithm
@@ -35,8 +35,6 @@
 
 package imagej.data.threshold;
 
-import net.imglib2.algorithm.histogram.Histogram1d;
-
 import org.scijava.plugin.Plugin;
 
 // This plugin code ported from the original MatLab code of the max likelihood
@@ -57,8 +55,7 @@ public class MaxLikelihoodThresholdMethod extends AbstractThresholdMethod {
 	private String errMessage;
 
 	@Override
-	public long getThreshold(Histogram1d<?> hist) {
-		long[] histogram = hist.toLongArray();
+	public long getThreshold(long[] histogram) {
 		/*
 			T =  th_maxlik(I,n)
 			
@@ -96,7 +93,7 @@ n    maximum graylevel (defaults to 255)
 		// % The initial estimate for the threshold is found with the MINIMUM
 		// % algorithm.
 		MinimumThresholdMethod method = new MinimumThresholdMethod();
-		int T = (int) method.getThreshold(hist);
+		int T = (int) method.getThreshold(histogram);
 
 		double eps = 0.0000001;
 
@@ -58,6 +58,13 @@ public interface ThresholdMethod extends Contextual, Prioritized,
 	 */
 	long getThreshold(Histogram1d<?> histogram);
 
+	/**
+	 * Calculates the threshold index from an unnormalized histogram of data
+	 * given as an array of bin counts. The array is not modified. Returns -1 if
+	 * the threshold index cannot be found.
+	 */
+	long getThreshold(long[] histogram);
+
 	/**
 	 * Returns any message associated with the last call to getThreshold(). If
 	 * getThreshold() last returned -1 the internal message may shed light on the
@@ -35,6 +35,7 @@
 
 package imagej.data.threshold;
 
+import imagej.data.Dataset;
 import imagej.data.display.ImageDisplay;
 import imagej.data.overlay.ThresholdOverlay;
 import imagej.plugin.SingletonService;
@@ -80,4 +81,42 @@ public interface ThresholdService extends SingletonService<ThresholdMethod>
 	 */
 	ThresholdMethod getThresholdMethod(String name);
 
+	/**
+	 * Evaluates the named {@link ThresholdMethod}s on each of the given planes
+	 * of a {@link Dataset}. The histogram of each plane (evenly dividing
+	 * [min, max] into binCount bins) is computed once and shared by all the
+	 * methods. Planes are processed in parallel.
+	 * 
+	 * @throws IllegalArgumentException if a method name is unknown
+	 */
+	ThresholdTable getThresholds(Dataset dataset, int[] planeIndices,
+		List<String> methodNames, double min, double max, int binCount);
+
+	/**
+	 * Evaluates the named {@link ThresholdMethod}s on every plane of a
+	 * {@link Dataset}, using 256 bin histograms spanning the range of the whole
+	 * Dataset.
+	 */
+	ThresholdTable getThresholds(Dataset dataset, List<String> methodNames);
+
+	/**
+	 * Creates an unsigned 8-bit binary (0/255) {@link Dataset} the size of the
+	 * given one. Each plane of the table is thresholded with its own threshold
+	 * found by the named method: pixels falling in bins up to the threshold
+	 * are set or, given a dark background, pixels above it. Planes missing from
+	 * the table, or on which the method failed, are left 0.
+	 */
+	Dataset createMask(Dataset dataset, ThresholdTable table, String methodName,
+		boolean darkBackground);
+
+	/**
+	 * Thresholds every plane of a {@link Dataset} with its own threshold found
+	 * by the named method, finding and applying the thresholds in a single
+	 * parallel pass over the planes. Thresholds are found as by
+	 * {@link #getThresholds(Dataset, List)} and applied as by
+	 * {@link #createMask(Dataset, ThresholdTable, String, boolean)}.
+	 */
+	Dataset createMask(Dataset dataset, String methodName,
+		boolean darkBackground);
+
 }
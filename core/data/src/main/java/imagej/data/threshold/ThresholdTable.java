@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.threshold;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The thresholds found by a set of {@link ThresholdMethod}s on each of a set
+ * of planes of a Dataset. Thresholds are histogram bin indices; the histogram
+ * of every plane evenly divides the same [min, max] range into the same number
+ * of bins. A threshold of -1 means the method failed on that plane.
+ * 
+ * @author Barry DeZonia
+ * @see ThresholdService#getThresholds(imagej.data.Dataset, int[], List,
+ *      double, double, int)
+ */
+public class ThresholdTable {
+
+	// -- instance variables --
+
+	private final List<String> methodNames;
+	private final int[] planeIndices;
+	private final long[][] thresholds;
+	private final double min, max;
+	private final int binCount;
+
+	// -- constructor --
+
+	/**
+	 * Creates a table of thresholds, all initially -1.
+	 * 
+	 * @param methodNames The names of the methods (the columns of the table)
+	 * @param planeIndices The raster indices of the planes (the rows)
+	 * @param min The low end of the histogram range
+	 * @param max The high end of the histogram range
+	 * @param binCount The number of histogram bins
+	 */
+	public ThresholdTable(final List<String> methodNames,
+		final int[] planeIndices, final double min, final double max,
+		final int binCount)
+	{
+		this.methodNames =
+			Collections.unmodifiableList(new ArrayList<String>(methodNames));
+		this.planeIndices = planeIndices.clone();
+		this.min = min;
+		this.max = max;
+		this.binCount = binCount;
+		thresholds = new long[planeIndices.length][methodNames.size()];
+		for (final long[] row : thresholds) {
+			for (int m = 0; m < row.length; m++) {
+				row[m] = -1;
+			}
+		}
+	}
+
+	// -- ThresholdTable methods --
+
+	/** Returns the names of the methods, in column order. */
+	public List<String> getMethodNames() {
+		return methodNames;
+	}
+
+	/** Returns the raster indices of the planes, in row order. */
+	public int[] getPlaneIndices() {
+		return planeIndices.clone();
+	}
+
+	/** Returns the number of planes (rows) in the table. */
+	public int getPlaneCount() {
+		return planeIndices.length;
+	}
+
+	/** Returns the low end of the histogram range. */
+	public double getMin() {
+		return min;
+	}
+
+	/** Returns the high end of the histogram range. */
+	public double getMax() {
+		return max;
+	}
+
+	/** Returns the number of histogram bins. */
+	public int getBinCount() {
+		return binCount;
+	}
+
+	/** Returns the threshold bin found on a plane (row) by a method (column). */
+	public long getThreshold(final int row, final int column) {
+		return thresholds[row][column];
+	}
+
+	/** Returns the threshold bin found on a plane (row) by the named method. */
+	public long getThreshold(final int row, final String methodName) {
+		return getThreshold(row, column(methodName));
+	}
+
+	/**
+	 * Returns the data value at the top of the threshold bin found on a plane
+	 * (row) by the named method, or NaN if the method failed on that plane.
+	 */
+	public double getThresholdValue(final int row, final String methodName) {
+		final long bin = getThreshold(row, methodName);
+		if (bin < 0) return Double.NaN;
+		return min + (bin + 1) * (max - min) / binCount;
+	}
+
+	/** Sets the threshold bin of a plane (row) and method (column). */
+	public void setThreshold(final int row, final int column,
+		final long threshold)
+	{
+		thresholds[row][column] = threshold;
+	}
+
+	/**
+	 * Returns the column of the named method.
+	 * 
+	 * @throws IllegalArgumentException if the method is not in the table
+	 */
+	public int column(final String methodName) {
+		final int column = methodNames.indexOf(methodName);
+		if (column < 0) {
+			throw new IllegalArgumentException("Method not in table: " + methodName);
+		}
+		return column;
+	}
+
+}
@@ -36,8 +36,10 @@
 package imagej.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
@@ -176,4 +178,31 @@ public void testGetPlane() {
 		testPlanarCase();
 		testNonplanarCase();
 	}
+
+	@Test
+	public void testDuplicateHandsOutPlanesAgain() {
+		final Dataset ds = createPlanarDataset();
+		final int[] handedOut = (int[]) ds.getPlane(0, false);
+		handedOut[0] = 7;
+		final Dataset copy = ds.duplicate();
+
+		// the source's plane is handed out again apart from the copy's
+		final int[] plane = (int[]) ds.getPlane(0, false);
+		assertNotSame(handedOut, plane);
+		plane[0] = 8;
+		assertEquals(7, ((int[]) copy.getPlane(0, false))[0]);
+	}
+
+	@Test
+	public void testSetSharedPlaneIsAChange() {
+		final Dataset ds = createPlanarDataset();
+		final int[] handedOut = (int[]) ds.getPlane(0, false);
+		final Dataset copy = ds.duplicate();
+
+		// the holder of the shared array may have written to it
+		assertTrue(ds.setPlaneSilently(0, handedOut));
+		assertFalse(ds.setPlaneSilently(0, ds.getPlane(0, false)));
+		((int[]) ds.getPlane(0, false))[0] = 9;
+		assertEquals(0, ((int[]) copy.getPlane(0, false))[0]);
+	}
 }
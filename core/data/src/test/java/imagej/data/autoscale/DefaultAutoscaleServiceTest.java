@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.autoscale;
+
+import static org.junit.Assert.assertEquals;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import net.imglib2.Cursor;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests the sampled channel ranges of {@link DefaultAutoscaleService}.
+ * 
+ * @author Barry DeZonia
+ */
+public class DefaultAutoscaleServiceTest {
+
+	@Test
+	public void testSmallChannelsAreExact() {
+		final Context context = new Context();
+		final AutoscaleService service = context.getService(AutoscaleService.class);
+		final Dataset ds = createDataset(context);
+
+		DataRange range = service.estimateChannelRange(ds, 0, 0, 0);
+		assertEquals(0, range.getMin(), 0);
+		assertEquals(98, range.getMax(), 0);
+		range = service.estimateChannelRange(ds, 1, 0, 0);
+		assertEquals(1, range.getMin(), 0);
+		assertEquals(99, range.getMax(), 0);
+
+		// NB - trims one of the fifty values from each end
+		range = service.estimateChannelRange(ds, 1, 0.02, 0.02);
+		assertEquals(3, range.getMin(), 0);
+		assertEquals(97, range.getMax(), 0);
+	}
+
+	@Test
+	public void testRefinedRange() throws Exception {
+		final Context context = new Context();
+		final AutoscaleService service = context.getService(AutoscaleService.class);
+		final Dataset ds = createDataset(context);
+
+		final DataRange range = service.refineChannelRange(ds, 1).get();
+		assertEquals(1, range.getMin(), 0);
+		assertEquals(99, range.getMax(), 0);
+		assertEquals(1, ds.getImgPlus().getChannelMinimum(1), 0);
+		assertEquals(99, ds.getImgPlus().getChannelMaximum(1), 0);
+	}
+
+	// -- helpers --
+
+	/**
+	 * Creates a 5 x 10 x 2 dataset holding 2 * (5y + x) + c, so channel 0 holds
+	 * the even values 0 to 98 and channel 1 the odd values 1 to 99.
+	 */
+	private Dataset createDataset(final Context context) {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Dataset ds =
+			datasetService.create(new long[] { 5, 10, 2 }, "test", new AxisType[] {
+				Axes.X, Axes.Y, Axes.CHANNEL }, 8, false, false);
+		final Cursor<? extends RealType<?>> cursor = ds.getImgPlus().cursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			final long x = cursor.getLongPosition(0);
+			final long y = cursor.getLongPosition(1);
+			final long c = cursor.getLongPosition(2);
+			cursor.get().setReal(2 * (y * 5 + x) + c);
+		}
+		return ds;
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.cow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import imagej.data.PrimitivePlane;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SharedPlanes}.
+ * 
+ * @author Barry DeZonia
+ */
+public class SharedPlanesTest {
+
+	@Test
+	public void testDuplicateSharesPlanes() {
+		final ImgPlus<UnsignedShortType> source = makeImg();
+		final Object original = SharedPlanes.peek(source, 0);
+		assertNull(original);
+		final ImgPlus<UnsignedShortType> copy = SharedPlanes.duplicate(source);
+		assertNotNull(copy);
+		for (int no = 0; no < 3; no++) {
+			assertNotNull(SharedPlanes.peek(source, no));
+			assertSame(SharedPlanes.peek(source, no), SharedPlanes.peek(copy, no));
+		}
+		assertSameValues(source, copy);
+	}
+
+	@Test
+	public void testWriteDetaches() {
+		final ImgPlus<UnsignedShortType> source = makeImg();
+		final ImgPlus<UnsignedShortType> copy = SharedPlanes.duplicate(source);
+		final Object shared = SharedPlanes.peek(source, 1);
+
+		// writing the copy gives it a private plane ...
+		final RandomAccess<UnsignedShortType> ra = copy.randomAccess();
+		ra.setPosition(new long[] { 2, 3, 1 });
+		ra.get().set(999);
+		assertNull(SharedPlanes.peek(copy, 1));
+		ra.setPosition(new long[] { 2, 3, 1 });
+		assertEquals(999, ra.get().get());
+
+		// ... leaving the source untouched and sole owner of the shared array
+		final RandomAccess<UnsignedShortType> sra = source.randomAccess();
+		sra.setPosition(new long[] { 2, 3, 1 });
+		assertTrue(sra.get().get() != 999);
+		sra.get().set(7);
+		assertNull(SharedPlanes.peek(source, 1));
+		assertSame(shared, storage(source, 1));
+
+		// planes that were never written remain shared
+		assertSame(SharedPlanes.peek(source, 0), SharedPlanes.peek(copy, 0));
+	}
+
+	@Test
+	public void testSharePlane() {
+		final ImgPlus<UnsignedShortType> source = makeImg();
+		final ImgPlus<UnsignedShortType> target = makeImg();
+		assertTrue(SharedPlanes.sharePlane(source, 2, target, 0));
+		assertSame(SharedPlanes.peek(source, 2), SharedPlanes.peek(target, 0));
+		final Object before = SharedPlanes.peek(target, 0);
+		assertNotSame(before, storage(target, 0));
+	}
+
+	@Test
+	public void testReleaseAvoidsCopy() {
+		final ImgPlus<UnsignedShortType> source = makeImg();
+		final ImgPlus<UnsignedShortType> copy = SharedPlanes.duplicate(source);
+		final Object shared = SharedPlanes.peek(copy, 1);
+
+		// once the source is discarded the copy owns the arrays outright
+		SharedPlanes.release(source);
+		assertSame(shared, storage(copy, 1));
+	}
+
+	@Test
+	public void testReadArrayKeepsPlaneShared() {
+		final ImgPlus<UnsignedShortType> source = makeImg();
+		final ImgPlus<UnsignedShortType> copy = SharedPlanes.duplicate(source);
+		final Object shared = SharedPlanes.peek(copy, 2);
+		final PlanarImg<?, ?> planar = (PlanarImg<?, ?>) copy.getImg();
+		assertSame(shared, PrimitivePlane.readArray(planar.getPlane(2)));
+		assertSame(shared, SharedPlanes.peek(copy, 2));
+	}
+
+	// -- helpers --
+
+	private ImgPlus<UnsignedShortType> makeImg() {
+		final Img<UnsignedShortType> img =
+			new PlanarImgFactory<UnsignedShortType>().create(new long[] { 5, 4, 3 },
+				new UnsignedShortType());
+		int i = 0;
+		for (final UnsignedShortType value : img) {
+			value.set(i++);
+		}
+		return new ImgPlus<UnsignedShortType>(img);
+	}
+
+	private Object storage(final ImgPlus<?> img, final int no) {
+		return ((PlanarImg<?, ?>) img.getImg()).getPlane(no)
+			.getCurrentStorageArray();
+	}
+
+	private void assertSameValues(final Img<UnsignedShortType> a,
+		final Img<UnsignedShortType> b)
+	{
+		final Cursor<UnsignedShortType> ca = a.cursor();
+		final Cursor<UnsignedShortType> cb = b.cursor();
+		while (ca.hasNext()) {
+			assertEquals(ca.next().get(), cb.next().get());
+		}
+	}
+
+}
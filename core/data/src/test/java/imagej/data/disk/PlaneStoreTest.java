@@ -0,0 +1,222 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.disk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PlaneStore}.
+ * 
+ * @author Barry DeZonia
+ */
+public class PlaneStoreTest {
+
+	@Test
+	public void testWriteBackAndReload() throws IOException {
+		final int numPlanes = PlaneStore.MIN_RESIDENT_PLANES * 3;
+		final PlaneStore store = new PlaneStore(PlaneStore.Kind.SHORT, 0, null);
+		final DiskShortArray prototype = new DiskShortArray(store);
+		final DiskShortArray[] planes = new DiskShortArray[numPlanes];
+		for (int p = 0; p < numPlanes; p++) {
+			planes[p] = prototype.createArray(100);
+		}
+		assertEquals(numPlanes, store.getPlaneCount());
+		for (int p = 0; p < numPlanes; p++) {
+			assertEquals(0, planes[p].getValue(50));
+			for (int i = 0; i < 100; i++) {
+				planes[p].setValue(i, (short) (p * 100 + i));
+			}
+			assertTrue(store.getResidentPlaneCount() <=
+				PlaneStore.MIN_RESIDENT_PLANES);
+		}
+		for (int p = 0; p < numPlanes; p++) {
+			for (int i = 0; i < 100; i++) {
+				assertEquals(p * 100 + i, planes[p].getValue(i));
+			}
+		}
+		store.dispose();
+	}
+
+	@Test
+	public void testConcurrentWritesSurviveEviction() throws Exception {
+		final int numPlanes = PlaneStore.MIN_RESIDENT_PLANES * 4;
+		final PlaneStore store = new PlaneStore(PlaneStore.Kind.INT, 0, null);
+		final DiskIntArray prototype = new DiskIntArray(store);
+		final DiskIntArray[] planes = new DiskIntArray[numPlanes];
+		for (int p = 0; p < numPlanes; p++) {
+			planes[p] = prototype.createArray(1000);
+		}
+		// each thread fills every plane's share of the pixels, round robin, so
+		// planes are evicted while other threads write to them
+		final int numThreads = 4;
+		final Thread[] threads = new Thread[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			final int first = t;
+			threads[t] = new Thread() {
+
+				@Override
+				public void run() {
+					for (int i = first; i < 1000; i += numThreads) {
+						for (int p = 0; p < numPlanes; p++) {
+							planes[p].setValue(i, p * 1000 + i);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		for (int p = 0; p < numPlanes; p++) {
+			for (int i = 0; i < 1000; i++) {
+				assertEquals(p * 1000 + i, planes[p].getValue(i));
+			}
+		}
+		store.dispose();
+	}
+
+	@Test
+	public void testAssign() throws IOException {
+		final PlaneStore store = new PlaneStore(PlaneStore.Kind.FLOAT, 0, null);
+		final DiskFloatArray prototype = new DiskFloatArray(store);
+		final DiskFloatArray[] planes =
+			new DiskFloatArray[PlaneStore.MIN_RESIDENT_PLANES + 1];
+		for (int p = 0; p < planes.length; p++) {
+			planes[p] = prototype.createArray(3);
+		}
+		final float[] data = { 1, 2, 3 };
+		planes[0].assign(data);
+		assertArrayEquals(data, planes[0].getCurrentStorageArray(), 0);
+		// push plane 0 out of memory and back in
+		for (int p = 1; p < planes.length; p++) {
+			planes[p].getValue(0);
+		}
+		for (int p = 1; p < planes.length; p++) {
+			planes[p].getValue(0);
+		}
+		assertArrayEquals(data, planes[0].getCurrentStorageArray(), 0);
+		store.dispose();
+	}
+
+	@Test
+	public void testPin() throws IOException {
+		final PlaneStore store = new PlaneStore(PlaneStore.Kind.INT, 0, null);
+		final DiskIntArray prototype = new DiskIntArray(store);
+		final DiskIntArray[] planes =
+			new DiskIntArray[PlaneStore.MIN_RESIDENT_PLANES * 2];
+		for (int p = 0; p < planes.length; p++) {
+			planes[p] = prototype.createArray(4);
+		}
+		planes[0].pin();
+		final int[] array = planes[0].getCurrentStorageArray();
+		for (int p = 1; p < planes.length; p++) {
+			planes[p].getValue(0);
+		}
+		// a pinned plane stays resident, so writes to its array are kept
+		assertTrue(store.isResident(0));
+		array[3] = 42;
+		planes[0].assign(array);
+		planes[0].unpin();
+		for (int p = 1; p < planes.length; p++) {
+			planes[p].getValue(0);
+		}
+		for (int p = 1; p < planes.length; p++) {
+			planes[p].getValue(0);
+		}
+		assertFalse(store.isResident(0));
+		assertEquals(42, planes[0].getValue(3));
+		store.dispose();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnpinUnpinned() throws IOException {
+		final PlaneStore store = new PlaneStore(PlaneStore.Kind.BYTE, 0, null);
+		try {
+			new DiskByteArray(store).createArray(4).unpin();
+		}
+		finally {
+			store.dispose();
+		}
+	}
+
+	@Test
+	public void testLoader() throws IOException {
+		final int numPlanes = PlaneStore.MIN_RESIDENT_PLANES * 2;
+		final PlaneStore store = new PlaneStore(PlaneStore.Kind.BYTE, 0, null);
+		final int[] loads = new int[numPlanes];
+		store.setLoader(new PlaneStore.Loader() {
+
+			@Override
+			public void loadPlane(final int planeIndex, final Object array) {
+				loads[planeIndex]++;
+				Arrays.fill((byte[]) array, (byte) planeIndex);
+			}
+		});
+		final DiskByteArray prototype = new DiskByteArray(store);
+		final DiskByteArray[] planes = new DiskByteArray[numPlanes];
+		for (int p = 0; p < numPlanes; p++) {
+			planes[p] = prototype.createArray(10);
+		}
+		// nothing is read until accessed
+		assertEquals(0, loads[0]);
+		planes[0].setValue(0, (byte) 100);
+		store.prefetch(1);
+		assertTrue(store.isResident(1));
+		assertEquals(1, loads[1]);
+		for (int p = 1; p < numPlanes; p++) {
+			assertEquals(p, planes[p].getValue(9));
+		}
+		assertEquals(1, loads[1]);
+		// evicted planes come back: modified ones from the file, others reread
+		for (int p = 0; p < numPlanes; p++) {
+			assertEquals(p, planes[p].getValue(9));
+		}
+		assertEquals(100, planes[0].getValue(0));
+		assertEquals(1, loads[0]);
+		assertEquals(2, loads[1]);
+		store.dispose();
+	}
+
+}
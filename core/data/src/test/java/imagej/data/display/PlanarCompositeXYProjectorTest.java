@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.PrimitivePlane;
+
+import java.util.ArrayList;
+
+import net.imglib2.Cursor;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.ColorTable8;
+import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests that {@link PlanarCompositeXYProjector} paints the same screen image
+ * as {@link CompositeXYProjector}.
+ */
+public class PlanarCompositeXYProjectorTest {
+
+	private static final int WIDTH = 37, HEIGHT = 150, CHANNELS = 3,
+			SLICES = 2;
+
+	private static final ColorTable8[] LUTS = { ColorTables.RED,
+		ColorTables.GREEN, ColorTables.FIRE };
+
+	private Context context;
+
+	@Before
+	public void setUp() {
+		context = new Context(DatasetService.class, ThreadService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+		context = null;
+	}
+
+	@Test
+	public void testUnsignedByte() {
+		// ranges matching, within and beyond the data
+		assertSameProjection(new UnsignedByteType(), 0, 255, new double[][] {
+			{ 0, 255 }, { 20, 90 }, { 200, 260 } });
+	}
+
+	@Test
+	public void testUnsignedShort() {
+		assertSameProjection(new UnsignedShortType(), 0, 65535, new double[][] {
+			{ 0, 65535 }, { 1000, 4000 }, { -500, 70000 } });
+	}
+
+	@Test
+	public void testShort() {
+		assertSameProjection(new ShortType(), -32768, 32767, new double[][] {
+			{ -32768, 32767 }, { -100, 100 }, { 0, 30000 } });
+	}
+
+	@Test
+	public void testFloat() {
+		assertSameProjection(new FloatType(), -2, 2, new double[][] { { -1, 1 },
+			{ 0, 0.25 }, { -1e6, 1e6 } });
+	}
+
+	// -- helpers --
+
+	/**
+	 * Projects a composite Dataset with both projectors, in composite and single
+	 * channel modes, on more than one plane and after a range change. The data
+	 * spans [min, max]; ranges holds the display range of each channel.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private <T extends RealType<T> & NativeType<T>> void assertSameProjection(
+		final T type, final double min, final double max, final double[][] ranges)
+	{
+		final Dataset ds = dataset(type, min, max);
+		assertTrue(PrimitivePlane.isSupported(ds));
+
+		final ArrayList<Converter<T, ARGBType>> converters =
+			new ArrayList<Converter<T, ARGBType>>();
+		for (int c = 0; c < CHANNELS; c++) {
+			converters.add(new RealLUTConverter<T>(ranges[c][0], ranges[c][1],
+				LUTS[c]));
+		}
+		final ARGBScreenImage expected = new ARGBScreenImage(WIDTH, HEIGHT);
+		final ARGBScreenImage actual = new ARGBScreenImage(WIDTH, HEIGHT);
+		final CompositeXYProjector<T> reference =
+			new CompositeXYProjector<T>((ImgPlus) ds.getImgPlus(), expected,
+				converters, 2);
+		final PlanarCompositeXYProjector<T> projector =
+			new PlanarCompositeXYProjector<T>(ds, actual, converters, 2, context
+				.getService(ThreadService.class));
+
+		for (final boolean composite : new boolean[] { true, false }) {
+			reference.setComposite(composite);
+			projector.setComposite(composite);
+			for (int z = 0; z < SLICES; z++) {
+				for (int c = 0; c < CHANNELS; c++) {
+					reference.setPosition(c, 2);
+					projector.setPosition(c, 2);
+					reference.setPosition(z, 3);
+					projector.setPosition(z, 3);
+					assertSameMap(reference, expected, projector, actual);
+				}
+			}
+		}
+
+		// cached tables follow range changes
+		final RealLUTConverter<T> first = (RealLUTConverter<T>) converters.get(0);
+		first.setMin(ranges[0][0] + (ranges[0][1] - ranges[0][0]) / 3);
+		assertSameMap(reference, expected, projector, actual);
+		first.setLUT(ColorTables.ICE);
+		assertSameMap(reference, expected, projector, actual);
+	}
+
+	private void assertSameMap(final CompositeXYProjector<?> reference,
+		final ARGBScreenImage expected,
+		final PlanarCompositeXYProjector<?> projector,
+		final ARGBScreenImage actual)
+	{
+		reference.map();
+		projector.map();
+		assertArrayEquals(expected.getData(), actual.getData());
+	}
+
+	/** Creates a planar XYCZ Dataset filled across [min, max]. */
+	private <T extends RealType<T> & NativeType<T>> Dataset dataset(
+		final T type, final double min, final double max)
+	{
+		final Dataset ds =
+			context.getService(DatasetService.class).create(
+				new PlanarImgFactory<T>(), type,
+				new long[] { WIDTH, HEIGHT, CHANNELS, SLICES }, "composite",
+				new AxisType[] { Axes.X, Axes.Y, Axes.CHANNEL, Axes.Z });
+		final Cursor<? extends RealType<?>> cursor = ds.getImgPlus().cursor();
+		long i = 0;
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			// NB - an irregular walk through the whole range, ends included
+			final double fraction = (i * 7919 % 1009) / 1008.0;
+			final double value = min + fraction * (max - min);
+			cursor.get().setReal(ds.isInteger() ? Math.floor(value) : value);
+			i++;
+		}
+		return ds;
+	}
+
+}
@@ -0,0 +1,262 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import static org.junit.Assert.assertEquals;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.pyramid.Pyramid;
+import imagej.data.pyramid.PyramidService;
+import imagej.util.RealRect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.Binning;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.ColorTable8;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.service.AbstractService;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests {@link ViewportRenderer}.
+ */
+public class ViewportRendererTest {
+
+	private static final int TILE = ViewportRenderer.TILE_SIZE;
+
+	private static final long TILE_BYTES = 4L * TILE * TILE;
+
+	private static final double MIN = 0, MAX = 1000;
+
+	private static final ColorTable8 LUT = ColorTables.FIRE;
+
+	private Context context;
+
+	@Before
+	public void setUp() {
+		context = new Context(DatasetService.class, ThreadService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+		context = null;
+	}
+
+	@Test
+	public void testNegativeOrigin() {
+		final Dataset ds = createDataset(100, 60);
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		for (int y = 0; y < 60; y++) {
+			access.setPosition(y, 1);
+			for (int x = 0; x < 100; x++) {
+				access.setPosition(x, 0);
+				access.get().setReal(x * 7 + y * 11);
+			}
+		}
+		final ViewportRenderer renderer =
+			new ViewportRenderer(ds, converters(), -1, context
+				.getService(ThreadService.class), null, 64 * TILE_BYTES);
+
+		// the viewport spans tiles on both sides of the plane's origin
+		for (final double zoom : new double[] { 2, 2.5, 0.75 }) {
+			final ARGBScreenImage dest = new ARGBScreenImage(300, 200);
+			final RealRect bounds =
+				renderer.render(dest, zoom, -10.3, -5, new long[2], false);
+			final long originX = (long) Math.floor(-10.3 * zoom);
+			final long originY = (long) Math.floor(-5 * zoom);
+			assertEquals(originX / zoom, bounds.x, 0);
+			assertEquals(originY / zoom, bounds.y, 0);
+			assertEquals(300 / zoom, bounds.width, 0);
+			assertEquals(200 / zoom, bounds.height, 0);
+			final int[] argb = dest.getData();
+			for (int sy = 0; sy < 200; sy++) {
+				final long y = (long) Math.floor((originY + sy) / zoom);
+				for (int sx = 0; sx < 300; sx++) {
+					final long x = (long) Math.floor((originX + sx) / zoom);
+					// outside the plane stays transparent
+					final int expected =
+						x < 0 || x >= 100 || y < 0 || y >= 60 ? 0 : color(x * 7 + y * 11);
+					assertEquals("(" + sx + ", " + sy + ") at " + zoom, expected,
+						argb[sy * 300 + sx]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedTilesAreDiscarded() {
+		final Dataset ds = createDataset(3 * TILE, TILE);
+		fill(ds, 10);
+		final ViewportRenderer renderer =
+			new ViewportRenderer(ds, converters(), -1, null, null, 2 * TILE_BYTES);
+		final ARGBScreenImage dest = new ARGBScreenImage(TILE, TILE);
+		renderer.render(dest, 1, 0, 0, new long[2], false);
+		renderer.render(dest, 1, TILE, 0, new long[2], false);
+		renderer.render(dest, 1, 2 * TILE, 0, new long[2], false);
+
+		// NB - tiles still cached show the old data, rendered ones the new data
+		fill(ds, 200);
+		assertTile(renderer, dest, 2, 10);
+		// tile 1 was used less recently than tile 2, so it makes way for tile 0
+		assertTile(renderer, dest, 0, 200);
+		assertTile(renderer, dest, 2, 10);
+		assertTile(renderer, dest, 1, 200);
+
+		renderer.invalidate();
+		assertTile(renderer, dest, 2, 200);
+	}
+
+	@Test
+	public void testPyramidLevel() {
+		// alternate columns of 0 and MAX: their 2 x 2 means are all MAX / 2
+		final Dataset ds = createDataset(600, 300);
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		for (int y = 0; y < 300; y++) {
+			access.setPosition(y, 1);
+			for (int x = 0; x < 600; x++) {
+				access.setPosition(x, 0);
+				access.get().setReal(x % 2 == 0 ? 0 : MAX);
+			}
+		}
+		final Pyramid pyramid = new Pyramid(ds, null, null, 1024 * 1024);
+		try {
+			final ViewportRenderer renderer =
+				new ViewportRenderer(ds, converters(), -1, null,
+					new FixedPyramidService(pyramid), 64 * TILE_BYTES);
+			final ARGBScreenImage dest = new ARGBScreenImage(200, 100);
+
+			// until level 1 is built, even columns of the full data are sampled
+			renderer.render(dest, 0.5, 0, 0, new long[2], false);
+			assertAll(dest, color(0));
+
+			// NB - without a thread service the level was built on request
+			renderer.render(dest, 0.5, 0, 0, new long[2], false);
+			assertAll(dest, color(MAX / 2));
+
+			// at full zoom the data itself is sampled
+			renderer.render(dest, 1, 0, 0, new long[2], false);
+			final int[] argb = dest.getData();
+			for (int x = 0; x < 200; x++) {
+				assertEquals(color(x % 2 == 0 ? 0 : MAX), argb[x]);
+			}
+		}
+		finally {
+			pyramid.dispose();
+		}
+	}
+
+	// -- helpers --
+
+	private Dataset createDataset(final int w, final int h) {
+		return context.getService(DatasetService.class).create(
+			new long[] { w, h }, "test", new AxisType[] { Axes.X, Axes.Y }, 16,
+			false, false);
+	}
+
+	private void fill(final Dataset ds, final double value) {
+		final Cursor<? extends RealType<?>> cursor = ds.getImgPlus().cursor();
+		while (cursor.hasNext()) {
+			cursor.next().setReal(value);
+		}
+	}
+
+	private List<RealLUTConverter<UnsignedShortType>> converters() {
+		final List<RealLUTConverter<UnsignedShortType>> converters =
+			new ArrayList<RealLUTConverter<UnsignedShortType>>();
+		converters.add(new RealLUTConverter<UnsignedShortType>(MIN, MAX, LUT));
+		return converters;
+	}
+
+	private int color(final double value) {
+		return LUT.argb(Binning.valueToBin(LUT.getLength(), MIN, MAX, value));
+	}
+
+	/** Renders the tile at the given column and checks its color. */
+	private void assertTile(final ViewportRenderer renderer,
+		final ARGBScreenImage dest, final int tx, final double value)
+	{
+		renderer.render(dest, 1, tx * TILE, 0, new long[2], false);
+		assertAll(dest, color(value));
+	}
+
+	private void assertAll(final ARGBScreenImage dest, final int expected) {
+		final int[] argb = dest.getData();
+		for (int i = 0; i < argb.length; i++) {
+			assertEquals(expected, argb[i]);
+		}
+	}
+
+	// -- helper classes --
+
+	/** Provides a given pyramid. */
+	private static class FixedPyramidService extends AbstractService implements
+		PyramidService
+	{
+
+		private final Pyramid pyramid;
+
+		public FixedPyramidService(final Pyramid pyramid) {
+			this.pyramid = pyramid;
+		}
+
+		@Override
+		public Pyramid getPyramid(final Dataset dataset) {
+			return pyramid;
+		}
+
+		@Override
+		public void discard(final Dataset dataset) {
+			// NB - the test disposes the pyramid
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.histogram;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.autoscale.DataRange;
+import net.imglib2.RandomAccess;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.event.EventService;
+
+/**
+ * Tests {@link DefaultHistogramService}.
+ * 
+ * @author Barry DeZonia
+ */
+public class DefaultHistogramServiceTest {
+
+	@Test
+	public void testRangesAndHistograms() {
+		final Context context =
+			new Context(EventService.class, DatasetService.class,
+				HistogramService.class);
+		final HistogramService service = context.getService(HistogramService.class);
+		final Dataset ds = createDataset(context);
+
+		final DataRange range = service.getRange(ds);
+		assertEquals(10, range.getMin(), 0);
+		assertEquals(30, range.getMax(), 0);
+		final DataRange planeRange = service.getPlaneRange(ds, 1);
+		assertEquals(20, planeRange.getMin(), 0);
+		assertEquals(20, planeRange.getMax(), 0);
+
+		assertArrayEquals(new long[] { 0, 8, 8, 8 }, service.getHistogram(ds, 0,
+			40, 4));
+		assertArrayEquals(new long[] { 0, 0, 8, 0 }, service.getPlaneHistogram(ds,
+			1, 0, 40, 4));
+		assertArrayEquals(new int[] { 2 }, service.getPlaneIndices(ds, 2, 2));
+
+		// only the updated plane changes
+		fillPlane(ds, 1, 0);
+		ds.update(1);
+		assertArrayEquals(new long[] { 8, 8, 0, 8 }, service.getHistogram(ds, 0,
+			40, 4));
+		assertEquals(0, service.getRange(ds).getMin(), 0);
+	}
+
+	// -- helpers --
+
+	private Dataset createDataset(final Context context) {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Dataset ds =
+			datasetService.create(new long[] { 4, 2, 3 }, "test", new AxisType[] {
+				Axes.X, Axes.Y, Axes.Z }, 8, false, false);
+		for (int p = 0; p < 3; p++) {
+			fillPlane(ds, p, 10 * (p + 1));
+		}
+		return ds;
+	}
+
+	private void fillPlane(final Dataset ds, final int z, final double value) {
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		access.setPosition(z, 2);
+		for (int y = 0; y < 2; y++) {
+			access.setPosition(y, 1);
+			for (int x = 0; x < 4; x++) {
+				access.setPosition(x, 0);
+				access.get().setReal(value);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.histogram;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link HistogramBins}.
+ */
+public class HistogramBinsTest {
+
+	@Test
+	public void testBins() {
+		final HistogramBins bins = new HistogramBins(-1, 3, 4);
+		assertEquals(4, bins.getBinCount());
+		assertEquals(0, bins.bin(-1));
+		assertEquals(0, bins.bin(-0.5));
+		assertEquals(1, bins.bin(0));
+		assertEquals(2, bins.bin(1.999));
+		// the maximum falls into the last bin
+		assertEquals(3, bins.bin(3));
+	}
+
+	@Test
+	public void testOutOfRange() {
+		final HistogramBins bins = new HistogramBins(0, 1, 10);
+		assertEquals(-1, bins.bin(-1e-9));
+		assertEquals(10, bins.bin(1 + 1e-9));
+		assertEquals(-1, bins.bin(Double.NaN));
+		assertEquals(-1, bins.bin(Double.NEGATIVE_INFINITY));
+		assertEquals(10, bins.bin(Double.POSITIVE_INFINITY));
+	}
+
+	@Test
+	public void testEmptyRange() {
+		final HistogramBins bins = new HistogramBins(5, 5, 16);
+		assertEquals(0, bins.bin(5));
+		assertEquals(-1, bins.bin(4));
+		assertEquals(16, bins.bin(6));
+	}
+
+}
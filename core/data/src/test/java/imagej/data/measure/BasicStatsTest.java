@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link BasicStats}.
+ */
+public class BasicStatsTest {
+
+	@Test
+	public void testMedianOnlyWhenAsked() {
+		final double[] data = { 5, 1, 4, 2, 3 };
+		final BasicStats stats = new BasicStats();
+		stats.calcStats(data);
+		assertEquals(3, stats.getXBar(), 0);
+		assertTrue(Double.isNaN(stats.getMedian()));
+		// the sample is left untouched
+		assertEquals(5, data[0], 0);
+		assertEquals(1, data[1], 0);
+	}
+
+	@Test
+	public void testMedianBySelection() {
+		final Random random = new Random(3);
+		final BasicStats stats = new BasicStats();
+		for (int n = 1; n < 60; n++) {
+			final double[] data = new double[n];
+			for (int i = 0; i < n; i++) {
+				// NB - few distinct values, so there are many ties
+				data[i] = random.nextInt(n / 3 + 2);
+			}
+			final double[] sorted = data.clone();
+			Arrays.sort(sorted);
+			final double expected =
+				(n % 2 == 1) ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+			stats.calcStats(data, true);
+			assertEquals(expected, stats.getMedian(), 0);
+		}
+	}
+
+	@Test
+	public void testEmptySample() {
+		final BasicStats stats = new BasicStats();
+		stats.calcStats(new double[0], true);
+		assertEquals(0, stats.getXBar(), 0);
+		assertEquals(0, stats.getMedian(), 0);
+	}
+
+}
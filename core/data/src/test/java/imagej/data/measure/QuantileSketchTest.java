@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link QuantileSketch}.
+ * 
+ * @author Barry DeZonia
+ */
+public class QuantileSketchTest {
+
+	@Test
+	public void testExactForFewValues() {
+		final QuantileSketch sketch = new QuantileSketch(0.5);
+		assertEquals(0, sketch.getEstimate(), 0);
+		sketch.add(7);
+		assertEquals(7, sketch.getEstimate(), 0);
+		sketch.add(1);
+		sketch.add(4);
+		assertEquals(4, sketch.getEstimate(), 0);
+		sketch.add(10);
+		assertEquals(5.5, sketch.getEstimate(), 0);
+	}
+
+	@Test
+	public void testInterpolatesFewValues() {
+		final QuantileSketch sketch = new QuantileSketch(0.25);
+		sketch.add(10);
+		sketch.add(0);
+		// rank 0.25 of the way from 0 to 10
+		assertEquals(2.5, sketch.getEstimate(), 0);
+		sketch.add(20);
+		sketch.add(30);
+		// rank 0.75: three quarters of the way from 0 to 10
+		assertEquals(7.5, sketch.getEstimate(), 0);
+	}
+
+	@Test
+	public void testMedianEstimate() {
+		final Random rng = new Random(42);
+		final int n = 100001;
+		final double[] values = new double[n];
+		final QuantileSketch sketch = new QuantileSketch(0.5);
+		for (int i = 0; i < n; i++) {
+			values[i] = rng.nextGaussian() * 10 + 100;
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+		assertEquals(n, sketch.getCount());
+		assertEquals(values[n / 2], sketch.getEstimate(), 0.25);
+	}
+
+	@Test
+	public void testOtherQuantile() {
+		final QuantileSketch sketch = new QuantileSketch(0.9);
+		for (int i = 0; i < 10000; i++) {
+			sketch.add(i % 1000);
+		}
+		assertEquals(900, sketch.getEstimate(), 10);
+	}
+
+}
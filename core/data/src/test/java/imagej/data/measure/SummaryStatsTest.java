@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SummaryStats}.
+ * 
+ * @author Barry DeZonia
+ */
+public class SummaryStatsTest {
+
+	private static final double TOL = 1e-9;
+
+	@Test
+	public void testMomentsMatchTwoPassValues() {
+		final double[] data = data(5001);
+		final SummaryStats stats = new SummaryStats();
+		for (final double v : data) stats.add(v);
+
+		final int n = data.length;
+		double mean = 0;
+		for (final double v : data) mean += v;
+		mean /= n;
+		double m2 = 0, m3 = 0, m4 = 0;
+		for (final double v : data) {
+			final double dev = v - mean;
+			m2 += dev * dev;
+			m3 += dev * dev * dev;
+			m4 += dev * dev * dev * dev;
+		}
+		assertEquals(n, stats.getCount());
+		assertEquals(mean, stats.getArithmeticMean(), TOL);
+		assertEquals(m2, stats.getSumOfSquaredDeviations(), 1e-6);
+		assertEquals(m2 / n, stats.getPopulationVariance(), TOL);
+		assertEquals(m2 / (n - 1), stats.getSampleVariance(), TOL);
+		assertEquals((m3 / n) / Math.pow(m2 / n, 1.5), stats.getPopulationSkew(),
+			TOL);
+		assertEquals((m4 / n) / Math.pow(m2 / n, 2), stats
+			.getPopulationKurtosis(), TOL);
+	}
+
+	@Test
+	public void testMergeMatchesSingleAccumulator() {
+		final double[] data = data(1000);
+		final SummaryStats whole = new SummaryStats(new ValueHistogram(0, 255));
+		final SummaryStats part1 = whole.blankCopy();
+		final SummaryStats part2 = whole.blankCopy();
+		for (int i = 0; i < data.length; i++) {
+			whole.add(data[i]);
+			(i < 317 ? part1 : part2).add(data[i]);
+		}
+		part1.merge(part2);
+		assertEquals(whole.getCount(), part1.getCount());
+		assertEquals(whole.getMinimum(), part1.getMinimum(), 0);
+		assertEquals(whole.getMaximum(), part1.getMaximum(), 0);
+		assertEquals(whole.getArithmeticMean(), part1.getArithmeticMean(), TOL);
+		assertEquals(whole.getSampleVariance(), part1.getSampleVariance(), TOL);
+		assertEquals(whole.getSampleSkew(), part1.getSampleSkew(), TOL);
+		assertEquals(whole.getSampleKurtosis(), part1.getSampleKurtosis(), TOL);
+		assertEquals(whole.getMedian(), part1.getMedian(), 0);
+	}
+
+	@Test
+	public void testExactRankStatistics() {
+		final double[] data = data(2000);
+		final SummaryStats stats = new SummaryStats(new ValueHistogram(0, 255));
+		for (final double v : data) stats.add(v);
+		final double[] sorted = data.clone();
+		Arrays.sort(sorted);
+		final int n = sorted.length;
+		assertEquals((sorted[n / 2 - 1] + sorted[n / 2]) / 2, stats.getMedian(), 0);
+		double sum = 0;
+		for (int i = 25; i < n - 25; i++) sum += sorted[i];
+		assertEquals(sum / (n - 50), stats.getTrimmedMean(25), TOL);
+		assertEquals(sum / (n - 50), stats.getAlphaTrimmedMean(25.0 / n), TOL);
+	}
+
+	@Test
+	public void testEstimatedRankStatistics() {
+		final double[] data = data(2001);
+		final double width = 255.0 / 1024;
+		final SummaryStats stats =
+			new SummaryStats(new ValueHistogram(0.0, 255.0, 1024));
+		for (final double v : data) stats.add(v);
+		final double[] sorted = data.clone();
+		Arrays.sort(sorted);
+		assertEquals(sorted[1000], stats.getMedian(), width);
+	}
+
+	@Test
+	public void testBinningSecondPass() {
+		final double[] data = data(2001);
+		final SummaryStats moments = new SummaryStats();
+		for (final double v : data) moments.add(v);
+		final SummaryStats binned =
+			SummaryStats.binning(new ValueHistogram(moments.getMinimum(), moments
+				.getMaximum(), 1024));
+		final SummaryStats part = binned.blankCopy();
+		for (int i = 0; i < data.length; i++) {
+			(i < 700 ? binned : part).add(data[i]);
+		}
+		binned.merge(part);
+		final SummaryStats stats = moments.withRanks(binned);
+
+		final SummaryStats onePass =
+			new SummaryStats(new ValueHistogram(moments.getMinimum(), moments
+				.getMaximum(), 1024));
+		for (final double v : data) onePass.add(v);
+		assertEquals(onePass.getCount(), stats.getCount());
+		assertEquals(onePass.getArithmeticMean(), stats.getArithmeticMean(), 0);
+		assertEquals(onePass.getSampleKurtosis(), stats.getSampleKurtosis(), 0);
+		assertEquals(onePass.getMedian(), stats.getMedian(), 0);
+		assertEquals(onePass.getTrimmedMean(100), stats.getTrimmedMean(100), 0);
+	}
+
+	// -- helpers --
+
+	private double[] data(final int n) {
+		final Random rng = new Random(1234);
+		final double[] data = new double[n];
+		for (int i = 0; i < n; i++) {
+			data[i] = rng.nextInt(200) + 1;
+		}
+		return data;
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.operator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests the typed combine methods of {@link DefaultCalculatorService}.
+ * 
+ * @author Barry DeZonia
+ */
+public class DefaultCalculatorServiceTest {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testPlanarInPlace() {
+		final Context context = new Context();
+		final CalculatorService service =
+			context.getService(CalculatorService.class);
+		final Img<UnsignedByteType> img1 =
+			create(new PlanarImgFactory<UnsignedByteType>(), 4, 3, 2);
+		final Img<UnsignedByteType> img2 =
+			create(new PlanarImgFactory<UnsignedByteType>(), 4, 3, 2);
+		fill(img1, 100, 2, 40);
+		fill(img2, 10, 6, 100);
+
+		final CalculatorOp<UnsignedByteType, UnsignedByteType> add =
+			(CalculatorOp<UnsignedByteType, UnsignedByteType>) service
+				.getOperator("Add");
+		service.combine(img1, img2, add, img1);
+
+		// NB - integer results are clamped to the range of the type
+		assertEquals(100 + 10, value(img1, 0, 0, 0), 0);
+		assertEquals(101 + 11, value(img1, 1, 0, 0), 0);
+		assertEquals(255, value(img1, 3, 2, 1), 0);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testMixedLayoutsOverlap() {
+		final Context context = new Context();
+		final CalculatorService service =
+			context.getService(CalculatorService.class);
+		final Img<UnsignedByteType> img1 =
+			create(new PlanarImgFactory<UnsignedByteType>(), 4, 3, 2);
+		final Img<UnsignedByteType> img2 =
+			create(new ArrayImgFactory<UnsignedByteType>(), 3, 5, 1);
+		fill(img1, 100, 2, 40);
+		fill(img2, 10, 6, 0);
+
+		final CalculatorOp<UnsignedByteType, UnsignedByteType> subtract =
+			(CalculatorOp<UnsignedByteType, UnsignedByteType>) service
+				.getOperator("Subtract");
+		final Img<FloatType> result =
+			service.combine(img1, img2, subtract, new PlanarImgFactory<FloatType>(),
+				new FloatType());
+
+		final long[] dims = new long[result.numDimensions()];
+		result.dimensions(dims);
+		assertArrayEquals(new long[] { 3, 3, 1 }, dims);
+		assertEquals(100 - 10, value(result, 0, 0, 0), 0);
+		assertEquals(106 - 24, value(result, 2, 2, 0), 0);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testDifferentIterationOrders() {
+		final Context context = new Context();
+		final CalculatorService service =
+			context.getService(CalculatorService.class);
+		// NB - 2 x 2 x 2 cells are iterated cell by cell, not in raster order
+		final Img<UnsignedByteType> img1 =
+			create(new CellImgFactory<UnsignedByteType>(2), 5, 3, 2);
+		final Img<UnsignedByteType> img2 =
+			create(new ArrayImgFactory<UnsignedByteType>(), 5, 3, 2);
+		fill(img1, 100, 5, 50);
+		fill(img2, 10, 3, 20);
+
+		final CalculatorOp<UnsignedByteType, UnsignedByteType> subtract =
+			(CalculatorOp<UnsignedByteType, UnsignedByteType>) service
+				.getOperator("Subtract");
+		final Img<FloatType> result =
+			service.combine(img1, img2, subtract, new ArrayImgFactory<FloatType>(),
+				new FloatType());
+
+		final RandomAccess<UnsignedByteType> access1 = img1.randomAccess();
+		final RandomAccess<UnsignedByteType> access2 = img2.randomAccess();
+		final Cursor<FloatType> cursor = result.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			access1.setPosition(cursor);
+			access2.setPosition(cursor);
+			assertEquals(access1.get().getRealDouble() -
+				access2.get().getRealDouble(), cursor.get().getRealDouble(), 0);
+		}
+		assertEquals(150 + 4 + 5 - (30 + 4 + 3), value(result, 4, 1, 1), 0);
+	}
+
+	// -- helpers --
+
+	private Img<UnsignedByteType> create(
+		final ImgFactory<UnsignedByteType> factory, final long... dims)
+	{
+		return factory.create(dims, new UnsignedByteType());
+	}
+
+	/** Sets each pixel to base + x + yStep * y + zStep * z. */
+	private void fill(final Img<UnsignedByteType> img, final int base,
+		final int yStep, final int zStep)
+	{
+		final Cursor<UnsignedByteType> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.get().setReal(
+				base + cursor.getLongPosition(0) + yStep * cursor.getLongPosition(1) +
+					zStep * cursor.getLongPosition(2));
+		}
+	}
+
+	private double value(final Img<? extends RealType<?>> img,
+		final long... pos)
+	{
+		final RandomAccess<? extends RealType<?>> access = img.randomAccess();
+		access.setPosition(pos);
+		return access.get().getRealDouble();
+	}
+
+}
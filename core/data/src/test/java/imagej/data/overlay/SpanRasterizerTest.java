@@ -0,0 +1,263 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.overlay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import net.imglib2.RealPoint;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.roi.GeneralPathRegionOfInterest;
+import net.imglib2.roi.PolygonRegionOfInterest;
+import net.imglib2.type.logic.BitType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link SpanRasterizer} and {@link ScanlineSpans}.
+ * 
+ * @author Barry DeZonia
+ */
+public class SpanRasterizerTest {
+
+	// NB - the first shapes are placed on half pixel coordinates so that no
+	// pixel lies exactly on a boundary; those on integer coordinates check that
+	// pixels on boundaries are treated as the regions of interest treat them.
+
+	@Test
+	public void testRectangle() {
+		final RectangleOverlay rect = new RectangleOverlay(new Context());
+		rect.setOrigin(2.5, 0);
+		rect.setOrigin(3.5, 1);
+		rect.setExtent(10, 0);
+		rect.setExtent(4, 1);
+		final ScanlineSpans spans = new SpanRasterizer().rasterize(rect);
+		assertEquals(40, spans.size());
+		assertMatchesRegion(rect, spans);
+	}
+
+	@Test
+	public void testEllipse() {
+		final EllipseOverlay ellipse = new EllipseOverlay(new Context());
+		ellipse.setOrigin(20.5, 0);
+		ellipse.setOrigin(15.5, 1);
+		ellipse.setRadius(12.25, 0);
+		ellipse.setRadius(7.25, 1);
+		assertMatchesRegion(ellipse, new SpanRasterizer().rasterize(ellipse));
+	}
+
+	@Test
+	public void testPolygon() {
+		final PolygonOverlay polygon = new PolygonOverlay(new Context());
+		final PolygonRegionOfInterest roi = polygon.getRegionOfInterest();
+		// a concave arrow head
+		roi.addVertex(0, new RealPoint(1.5, 1.5));
+		roi.addVertex(1, new RealPoint(30.5, 12.5));
+		roi.addVertex(2, new RealPoint(1.5, 25.5));
+		roi.addVertex(3, new RealPoint(10.5, 12.5));
+		assertMatchesRegion(polygon, new SpanRasterizer().rasterize(polygon));
+	}
+
+	@Test
+	public void testIntegerRectangle() {
+		final RectangleOverlay rect = new RectangleOverlay(new Context());
+		rect.setOrigin(2, 0);
+		rect.setOrigin(3, 1);
+		rect.setExtent(10, 0);
+		rect.setExtent(4, 1);
+		final ScanlineSpans spans = new SpanRasterizer().rasterize(rect);
+		assertEquals(40, spans.size());
+		assertMatchesRegion(rect, spans);
+	}
+
+	@Test
+	public void testIntegerEllipse() {
+		final EllipseOverlay ellipse = new EllipseOverlay(new Context());
+		ellipse.setOrigin(20, 0);
+		ellipse.setOrigin(15, 1);
+		// NB - passes through pixels such as (26, 19) and (28, 18)
+		ellipse.setRadius(10, 0);
+		ellipse.setRadius(5, 1);
+		final ScanlineSpans spans = new SpanRasterizer().rasterize(ellipse);
+		assertTrue(spans.contains(26, 19));
+		assertTrue(spans.contains(28, 18));
+		assertMatchesRegion(ellipse, spans);
+	}
+
+	@Test
+	public void testIntegerPolygon() {
+		final PolygonOverlay arrow = new PolygonOverlay(new Context());
+		final PolygonRegionOfInterest arrowRoi = arrow.getRegionOfInterest();
+		// edges passing through pixels every other row
+		arrowRoi.addVertex(0, new RealPoint(1, 1));
+		arrowRoi.addVertex(1, new RealPoint(31, 13));
+		arrowRoi.addVertex(2, new RealPoint(1, 25));
+		arrowRoi.addVertex(3, new RealPoint(10, 13));
+		assertMatchesRegion(arrow, new SpanRasterizer().rasterize(arrow));
+
+		final PolygonOverlay ell = new PolygonOverlay(new Context());
+		final PolygonRegionOfInterest ellRoi = ell.getRegionOfInterest();
+		// horizontal and vertical edges along rows and columns of pixels
+		ellRoi.addVertex(0, new RealPoint(2, 2));
+		ellRoi.addVertex(1, new RealPoint(20, 2));
+		ellRoi.addVertex(2, new RealPoint(20, 10));
+		ellRoi.addVertex(3, new RealPoint(10, 10));
+		ellRoi.addVertex(4, new RealPoint(10, 30));
+		ellRoi.addVertex(5, new RealPoint(2, 30));
+		assertMatchesRegion(ell, new SpanRasterizer().rasterize(ell));
+	}
+
+	@Test
+	public void testPath() {
+		final GeneralPathOverlay path = new GeneralPathOverlay(new Context());
+		final GeneralPathRegionOfInterest roi = path.getRegionOfInterest();
+		roi.moveTo(2, 2);
+		roi.lineTo(36, 2);
+		roi.lineTo(36, 30);
+		roi.lineTo(2, 30);
+		roi.close();
+		// a triangular hole, wound the other way so that any fill rule agrees
+		roi.moveTo(10, 8);
+		roi.lineTo(10, 24);
+		roi.lineTo(28, 16);
+		roi.close();
+		final ScanlineSpans spans = new SpanRasterizer().rasterize(path);
+		assertFalse(spans.contains(12, 16));
+		assertMatchesRegion(path, spans);
+	}
+
+	@Test
+	public void testComposite() {
+		final EllipseOverlay ellipse = new EllipseOverlay(new Context());
+		ellipse.setOrigin(20, 0);
+		ellipse.setOrigin(15, 1);
+		ellipse.setRadius(12, 0);
+		ellipse.setRadius(8, 1);
+		final RectangleOverlay hole = new RectangleOverlay(new Context());
+		hole.setOrigin(16, 0);
+		hole.setOrigin(12, 1);
+		hole.setExtent(8, 0);
+		hole.setExtent(6, 1);
+		final RectangleOverlay corner = new RectangleOverlay(new Context());
+		corner.setOrigin(2, 0);
+		corner.setOrigin(2, 1);
+		corner.setExtent(10, 0);
+		corner.setExtent(10, 1);
+		final CompositeOverlay composite = new CompositeOverlay(new Context());
+		composite.startWith(ellipse);
+		composite.not(hole);
+		composite.xor(corner);
+		final ScanlineSpans spans = new SpanRasterizer().rasterize(composite);
+		assertFalse(spans.contains(18, 14));
+		assertMatchesRegion(composite, spans);
+	}
+
+	@Test
+	public void testCaching() {
+		final SpanRasterizer rasterizer = new SpanRasterizer();
+		final RectangleOverlay rect = new RectangleOverlay(new Context());
+		rect.setOrigin(0, 0);
+		rect.setOrigin(0, 1);
+		rect.setExtent(5, 0);
+		rect.setExtent(5, 1);
+		final ScanlineSpans first = rasterizer.getSpans(rect);
+		assertSame(first, rasterizer.getSpans(rect));
+		rect.setExtent(6, 0);
+		final ScanlineSpans second = rasterizer.getSpans(rect);
+		assertEquals(30, second.size());
+	}
+
+	@Test
+	public void testSetOperations() {
+		final ScanlineSpans a = box(0, 0, 10, 10);
+		final ScanlineSpans b = box(5, 5, 15, 15);
+		assertEquals(25, a.intersect(b).size());
+		assertEquals(175, a.union(b).size());
+		assertEquals(150, a.xor(b).size());
+		assertEquals(75, a.subtract(b).size());
+		assertTrue(a.subtract(b).contains(4, 9));
+		assertFalse(a.subtract(b).contains(5, 5));
+		assertEquals(100, a.union(ScanlineSpans.EMPTY).size());
+		assertTrue(a.intersect(box(20, 20, 30, 30)).isEmpty());
+	}
+
+	@Test
+	public void testOutline() {
+		final ScanlineSpans outline = box(0, 0, 10, 10).outline();
+		// everything but the 8x8 interior
+		assertEquals(36, outline.size());
+		assertTrue(outline.contains(0, 5));
+		assertTrue(outline.contains(9, 5));
+		assertTrue(outline.contains(5, 0));
+		assertFalse(outline.contains(5, 5));
+		assertEquals(2, outline.spanCount(5));
+	}
+
+	// -- helpers --
+
+	/** Creates a box covering [x0, x1) by [y0, y1). */
+	private ScanlineSpans box(final long x0, final long y0, final long x1,
+		final long y1)
+	{
+		final ScanlineSpans.Builder builder = new ScanlineSpans.Builder();
+		for (long y = y0; y < y1; y++) {
+			builder.add(y, x0, x1);
+		}
+		return builder.build();
+	}
+
+	/** Checks the spans against containment tests over a generous window. */
+	private void assertMatchesRegion(final Overlay overlay,
+		final ScanlineSpans spans)
+	{
+		final RealRandomAccess<BitType> accessor =
+			overlay.getRegionOfInterest().realRandomAccess();
+		long count = 0;
+		for (long y = -2; y < 40; y++) {
+			for (long x = -2; x < 40; x++) {
+				accessor.setPosition(x, 0);
+				accessor.setPosition(y, 1);
+				final boolean inside = accessor.get().get();
+				assertEquals("pixel " + x + "," + y, inside, spans.contains(x, y));
+				if (inside) count++;
+			}
+		}
+		assertEquals(count, spans.size());
+	}
+
+}
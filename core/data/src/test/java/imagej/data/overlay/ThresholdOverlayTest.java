@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.overlay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests the classification methods of {@link ThresholdOverlay}.
+ * 
+ * @author Barry DeZonia
+ */
+public class ThresholdOverlayTest {
+
+	@Test
+	public void testClassifyPlaneMatchesPoints() {
+		final Context context = new Context(DatasetService.class);
+		final Dataset ds = createDataset(context);
+		final ThresholdOverlay overlay = new ThresholdOverlay(context, ds, 20, 60);
+		assertTrue(overlay.canClassifyPlane());
+		final long[] point = new long[3];
+		for (int z = 0; z < 2; z++) {
+			final byte[] classes = overlay.classify(new long[] { z }, null);
+			assertEquals(5 * 4, classes.length);
+			point[2] = z;
+			for (int y = 0; y < 4; y++) {
+				point[1] = y;
+				for (int x = 0; x < 5; x++) {
+					point[0] = x;
+					final int expected = overlay.classify(point);
+					final byte actual = classes[y * 5 + x];
+					if (expected == Integer.MAX_VALUE) {
+						assertEquals(ThresholdOverlay.NAN_CLASS, actual);
+					}
+					else assertEquals(expected, actual);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testClassifyPlaneReusesArray() {
+		final Context context = new Context(DatasetService.class);
+		final Dataset ds = createDataset(context);
+		final ThresholdOverlay overlay = new ThresholdOverlay(context, ds, 20, 60);
+		final byte[] classes = new byte[5 * 4];
+		assertSame(classes, overlay.classify(new long[] { 1 }, classes));
+		assertEquals(5 * 4, overlay.classify(new long[] { 1 }, new byte[3]).length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testClassifyPlaneTooLarge() {
+		final Context context = new Context(DatasetService.class);
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		// NB - the backing array is never read beyond its first pixel
+		final ArrayImg<UnsignedByteType, ByteArray> img =
+			new ArrayImg<UnsignedByteType, ByteArray>(new ByteArray(1), new long[] {
+				65536, 65537 }, 1);
+		img.setLinkedType(new UnsignedByteType(img));
+		final Dataset ds =
+			datasetService.create(new ImgPlus<UnsignedByteType>(img));
+		final ThresholdOverlay overlay = new ThresholdOverlay(context, ds, 20, 60);
+		assertFalse(overlay.canClassifyPlane());
+		overlay.classify(new long[0], null);
+	}
+
+	// -- helpers --
+
+	/**
+	 * Creates a 5 x 4 x 2 float dataset whose values step through the threshold
+	 * range, with a NaN in each plane.
+	 */
+	private Dataset createDataset(final Context context) {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Dataset ds =
+			datasetService.create(new long[] { 5, 4, 2 }, "test", new AxisType[] {
+				Axes.X, Axes.Y, Axes.Z }, 32, true, true);
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		for (int z = 0; z < 2; z++) {
+			access.setPosition(z, 2);
+			for (int y = 0; y < 4; y++) {
+				access.setPosition(y, 1);
+				for (int x = 0; x < 5; x++) {
+					access.setPosition(x, 0);
+					final double value =
+						x == z && y == 2 ? Double.NaN : 10 * (x + y) + 5 * z;
+					access.get().setReal(value);
+				}
+			}
+		}
+		return ds;
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.pyramid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import net.imglib2.RandomAccess;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link Pyramid}.
+ * 
+ * @author Barry DeZonia
+ */
+public class PyramidTest {
+
+	@Test
+	public void testLevels() {
+		final Context context = new Context(DatasetService.class);
+		final Dataset ds = createDataset(context, 600, 300);
+		final Pyramid pyramid = new Pyramid(ds, null, null, 1024 * 1024);
+		try {
+			assertEquals(3, pyramid.getLevelCount());
+			assertEquals(300, pyramid.getWidth(1));
+			assertEquals(150, pyramid.getHeight(1));
+			assertEquals(150, pyramid.getWidth(2));
+			assertEquals(75, pyramid.getHeight(2));
+
+			assertEquals(0, pyramid.getLevel(1));
+			assertEquals(0, pyramid.getLevel(0.75));
+			assertEquals(1, pyramid.getLevel(0.5));
+			assertEquals(2, pyramid.getLevel(0.25));
+			assertEquals(2, pyramid.getLevel(0.01));
+		}
+		finally {
+			pyramid.dispose();
+		}
+	}
+
+	@Test
+	public void testBuildAndInvalidate() {
+		final Context context = new Context(DatasetService.class);
+		final Dataset ds = createDataset(context, 600, 300);
+		final Pyramid pyramid = new Pyramid(ds, null, null, 1024 * 1024);
+		try {
+			// NB - without a thread service the plane is built on request
+			assertNull(pyramid.getPlane(2, 0));
+			final float[] level1 = pyramid.getPlane(1, 0);
+			final float[] level2 = pyramid.getPlane(2, 0);
+			assertNotNull(level1);
+			assertNotNull(level2);
+			// each pixel is the mean of 2 x 2 pixels below it
+			assertEquals(2 * 10 + 0.5, level1[3 * 300 + 10], 0);
+			assertEquals(4 * 10 + 1.5, level2[3 * 150 + 10], 0);
+
+			pyramid.invalidate(0);
+			assertNull(pyramid.getPlane(1, 0));
+			assertNotNull(pyramid.getPlane(1, 0));
+		}
+		finally {
+			pyramid.dispose();
+		}
+	}
+
+	// -- helpers --
+
+	/** Creates a plane whose pixels equal their x coordinate. */
+	private Dataset createDataset(final Context context, final int w,
+		final int h)
+	{
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Dataset ds =
+			datasetService.create(new long[] { w, h }, "test", new AxisType[] {
+				Axes.X, Axes.Y }, 16, false, false);
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		for (int y = 0; y < h; y++) {
+			access.setPosition(y, 1);
+			for (int x = 0; x < w; x++) {
+				access.setPosition(x, 0);
+				access.get().setReal(x);
+			}
+		}
+		return ds;
+	}
+
+}
@@ -0,0 +1,221 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.display.ImageDisplay;
+import imagej.display.DisplayService;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests {@link SamplingCopier} against a pixel at a time copy of the same
+ * {@link SamplingDefinition}.
+ */
+public class SamplingCopierTest {
+
+	private static final long[] DIMS = { 20, 15, 3, 2 };
+	private static final AxisType[] AXES = { Axes.X, Axes.Y, Axes.Z,
+		Axes.CHANNEL };
+
+	private Context context;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+		context = null;
+	}
+
+	@Test
+	public void testCrop() {
+		final ImageDisplay display =
+			display(new PlanarImgFactory<UnsignedByteType>());
+		final SamplingDefinition def =
+			SamplingDefinition.sampleAllPlanes(display);
+		def.constrain(Axes.X, new AxisSubrange(4, 15));
+		def.constrain(Axes.Y, new AxisSubrange(3, 11));
+		assertCopied(def);
+	}
+
+	@Test
+	public void testSparseX() {
+		final ImageDisplay display =
+			display(new PlanarImgFactory<UnsignedByteType>());
+		final SamplingDefinition def =
+			SamplingDefinition.sampleAllPlanes(display);
+		// runs of several lengths, including single columns at both edges
+		def.constrain(Axes.X, new AxisSubrange(display, Axes.X,
+			"0,2-4,7,9-15,19", false));
+		def.constrain(Axes.Y, new AxisSubrange(1, 13, 3));
+		def.constrain(Axes.Z, new AxisSubrange(2, 0));
+		assertCopied(def);
+	}
+
+	@Test
+	public void testSparseXNonPlanar() {
+		final ImageDisplay display =
+			display(new ArrayImgFactory<UnsignedByteType>());
+		final SamplingDefinition def =
+			SamplingDefinition.sampleAllPlanes(display);
+		def.constrain(Axes.X, new AxisSubrange(display, Axes.X, "1-5,8,12-18",
+			false));
+		assertCopied(def);
+	}
+
+	@Test
+	public void testDuplicateSelectedPlanes() {
+		final ImageDisplay display =
+			display(new PlanarImgFactory<UnsignedByteType>());
+		final SamplingDefinition def =
+			SamplingDefinition.sampleAllPlanes(display);
+		def.constrain(Axes.X, new AxisSubrange(0, DIMS[0] - 1));
+		def.constrain(Axes.Y, new AxisSubrange(0, DIMS[1] - 1));
+		final Dataset output = assertCopied(def);
+
+		// whole planes may be shared; writing the copy must leave the input be
+		final Dataset input = (Dataset) display.getActiveView().getData();
+		final RandomAccess<? extends RealType<?>> out =
+			output.getImgPlus().randomAccess();
+		final RandomAccess<? extends RealType<?>> in =
+			input.getImgPlus().randomAccess();
+		final long[] pos = { 3, 4, 1, 1 };
+		out.setPosition(pos);
+		in.setPosition(pos);
+		final double original = in.get().getRealDouble();
+		out.get().setReal(original + 1);
+		assertEquals(original, in.get().getRealDouble(), 0);
+		assertEquals(original + 1, out.get().getRealDouble(), 0);
+	}
+
+	@Test
+	public void testPixelSampling() {
+		// Y collapses, so this copies a pixel at a time
+		final ImageDisplay display =
+			display(new PlanarImgFactory<UnsignedByteType>());
+		final SamplingDefinition def =
+			SamplingDefinition.sampleUVPlane(display, Axes.X, Axes.Z);
+		assertCopied(def);
+	}
+
+	// -- helpers --
+
+	private ImageDisplay display(final ImgFactory<UnsignedByteType> factory) {
+		final Dataset ds =
+			context.getService(DatasetService.class).create(factory,
+				new UnsignedByteType(), DIMS, "input", AXES);
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		final long[] pos = new long[DIMS.length];
+		for (pos[3] = 0; pos[3] < DIMS[3]; pos[3]++) {
+			for (pos[2] = 0; pos[2] < DIMS[2]; pos[2]++) {
+				for (pos[1] = 0; pos[1] < DIMS[1]; pos[1]++) {
+					for (pos[0] = 0; pos[0] < DIMS[0]; pos[0]++) {
+						access.setPosition(pos);
+						access.get().setReal(
+							(pos[0] * 7 + pos[1] * 31 + pos[2] * 67 + pos[3] * 101) % 256);
+					}
+				}
+			}
+		}
+		return (ImageDisplay) context.getService(DisplayService.class)
+			.createDisplay("input", ds);
+	}
+
+	/**
+	 * Copies the sampled data and checks each output pixel against the input
+	 * pixel the pixel at a time copy would have read.
+	 */
+	private Dataset assertCopied(final SamplingDefinition def) {
+		assertEquals(null, def.getError());
+		final Dataset input = (Dataset) def.getDisplay().getActiveView().getData();
+		final long[] dims = def.getOutputDims();
+		final Dataset output =
+			context.getService(DatasetService.class).create(dims, "output",
+				def.getOutputAxes(), 8, false, false);
+		long numPlanes = 1;
+		for (int d = 2; d < dims.length; d++) {
+			numPlanes *= dims[d];
+		}
+		output.getImgPlus().initializeColorTables((int) numPlanes);
+		new SamplingCopier(def, input, output, context
+			.getService(ThreadService.class)).copy();
+
+		final PositionIterator inputIter = new SparsePositionIterator(def);
+		final PositionIterator outputIter = new DensePositionIterator(def);
+		final RandomAccess<? extends RealType<?>> in =
+			input.getImgPlus().randomAccess();
+		final RandomAccess<? extends RealType<?>> out =
+			output.getImgPlus().randomAccess();
+		long count = 0;
+		while (inputIter.hasNext()) {
+			in.setPosition(inputIter.next());
+			out.setPosition(outputIter.next());
+			assertEquals(in.get().getRealDouble(), out.get().getRealDouble(), 0);
+			count++;
+		}
+		assertFalse(outputIter.hasNext());
+
+		// every output pixel was checked
+		long size = 1;
+		for (final long dim : dims) {
+			size *= dim;
+		}
+		assertEquals(size, count);
+		return output;
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link TableLoader}.
+ * 
+ * @author Barry DeZonia
+ */
+public class TableLoaderTest {
+
+	@Test
+	public void testResultsTable() throws IOException {
+		final ResultsTable table =
+			new TableLoader().valuesFromTextFile(stream("X Y\n1 2.5\n\n3,4\n"));
+		assertEquals(2, table.getColumnCount());
+		assertEquals(2, table.getRowCount());
+		assertEquals("Y", table.getColumnHeader(1));
+		assertEquals(2.5, table.getValue(1, 0), 0);
+		assertEquals(3, table.getValue(0, 1), 0);
+	}
+
+	@Test
+	public void testInferredColumns() throws IOException {
+		final MixedTable table =
+			new TableLoader().tableFromTextFile(stream(
+				"Id\tSize\tArea\tLabel\tValid\tMixed\n" +
+				"1\t5000000000\t2.5\tcell\ttrue\t7\n" +
+				"2\t3\t\t\"nucleus, large\"\tFALSE\tseven\n" +
+				"3\t4\t1\tcell\ttrue\t\n"));
+		assertEquals(6, table.getColumnCount());
+		assertEquals(3, table.getRowCount());
+
+		assertEquals(2, table.getColumn(0, IntColumn.class).getValue(1));
+		assertEquals(5000000000L, table.getColumn(1, LongColumn.class).getValue(0));
+		final DoubleColumn area = table.getColumn(2, DoubleColumn.class);
+		assertTrue(Double.isNaN(area.getValue(1)));
+		assertEquals(1, area.getValue(2), 0);
+
+		final StringColumn label = table.getColumn(3, StringColumn.class);
+		assertEquals("nucleus, large", label.get(1));
+		assertEquals(2, label.getDictionary().size());
+		assertEquals(label.getCode(0), label.getCode(2));
+
+		assertEquals(false, table.getColumn(4, BoolColumn.class).getValue(1));
+
+		final StringColumn mixed = table.getColumn(5, StringColumn.class);
+		assertEquals("7", mixed.get(0));
+		assertEquals("seven", mixed.get(1));
+		assertNull(mixed.get(2));
+		assertEquals("Mixed", mixed.getHeader());
+	}
+
+	@Test
+	public void testNumbersThenTextKeepOriginalText() throws IOException {
+		final MixedTable table =
+			new TableLoader().tableFromTextFile(stream("Code\n007\n1e3\n1.50\n" +
+				"+4\n\nn/a\n"));
+		final StringColumn code = table.getColumn(0, StringColumn.class);
+		assertEquals("007", code.get(0));
+		assertEquals("1e3", code.get(1));
+		assertEquals("1.50", code.get(2));
+		assertEquals("+4", code.get(3));
+		assertNull(code.get(4));
+		assertEquals("n/a", code.get(5));
+	}
+
+	// -- helpers --
+
+	private InputStream stream(final String text) {
+		return new ByteArrayInputStream(text.getBytes());
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.threshold;
+
+import static org.junit.Assert.assertEquals;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import java.util.Arrays;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests the batch methods of {@link DefaultThresholdService}.
+ * 
+ * @author Barry DeZonia
+ */
+public class DefaultThresholdServiceTest {
+
+	@Test
+	public void testThresholdTable() {
+		final Context context = new Context();
+		final ThresholdService service = context.getService(ThresholdService.class);
+		final Dataset ds = createDataset(context);
+
+		final ThresholdTable table =
+			service.getThresholds(ds, new int[] { 0, 1 }, Arrays.asList("Mean",
+				"Default"), 0, 256, 256);
+		assertEquals(2, table.getPlaneCount());
+		assertEquals(1, table.column("Default"));
+		assertEquals(105, table.getThreshold(0, "Mean"));
+		assertEquals(75, table.getThreshold(1, "Mean"));
+		assertEquals(76, table.getThresholdValue(1, "Mean"), 0);
+	}
+
+	@Test
+	public void testCreateMask() {
+		final Context context = new Context();
+		final ThresholdService service = context.getService(ThresholdService.class);
+		final Dataset ds = createDataset(context);
+
+		final Dataset mask = service.createMask(ds, "Mean", false);
+		assertEquals(255, value(mask, 0, 0, 0), 0);
+		assertEquals(0, value(mask, 3, 1, 0), 0);
+		assertEquals(255, value(mask, 0, 0, 1), 0);
+		assertEquals(0, value(mask, 3, 1, 1), 0);
+
+		final Dataset inverse = service.createMask(ds, "Mean", true);
+		assertEquals(0, value(inverse, 0, 0, 0), 0);
+		assertEquals(255, value(inverse, 3, 1, 0), 0);
+	}
+
+	// -- helpers --
+
+	/**
+	 * Creates a 4 x 2 x 2 dataset. The left half of plane 0 is 10 and its right
+	 * half 200; plane 1 holds 50 and 100.
+	 */
+	private Dataset createDataset(final Context context) {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Dataset ds =
+			datasetService.create(new long[] { 4, 2, 2 }, "test", new AxisType[] {
+				Axes.X, Axes.Y, Axes.Z }, 8, false, false);
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		final double[][] values = { { 10, 200 }, { 50, 100 } };
+		for (int z = 0; z < 2; z++) {
+			access.setPosition(z, 2);
+			for (int y = 0; y < 2; y++) {
+				access.setPosition(y, 1);
+				for (int x = 0; x < 4; x++) {
+					access.setPosition(x, 0);
+					access.get().setReal(values[z][x / 2]);
+				}
+			}
+		}
+		return ds;
+	}
+
+	private double value(final Dataset ds, final int x, final int y,
+		final int z)
+	{
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		access.setPosition(new long[] { x, y, z });
+		return access.get().getRealDouble();
+	}
+
+}
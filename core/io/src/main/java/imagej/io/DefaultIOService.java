@@ -37,10 +37,14 @@
 
 import imagej.data.Dataset;
 import imagej.data.DatasetService;
+import imagej.data.disk.DiskPlanarImg;
+import imagej.data.disk.DiskPlanarImgFactory;
 import imagej.io.event.FileOpenedEvent;
 import imagej.module.ModuleService;
 import imagej.text.TextService;
+import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.Reader;
 import io.scif.io.img.ImgIOException;
 import io.scif.io.img.ImgOpener;
 import io.scif.services.FormatService;
@@ -48,7 +52,10 @@
 import java.io.File;
 import java.io.IOException;
 
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
 import net.imglib2.img.ImgPlus;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
@@ -172,13 +179,103 @@ public Dataset loadDataset(final String source) throws ImgIOException,
 		return dataset;
 	}
 
+	@Override
+	public Dataset loadDataset(final String source, final boolean diskBacked)
+		throws ImgIOException, IncompatibleTypeException
+	{
+		if (!diskBacked) return loadDataset(source);
+		if (source == null) return null;
+		return loadDiskBacked(source, DiskPlanarImgFactory.defaultCacheBytes());
+	}
+
+	@Override
+	public Dataset loadDatasetLazily(final String source, final long cacheBytes,
+		final boolean prefetch) throws ImgIOException, IncompatibleTypeException
+	{
+		if (source == null) return null;
+		final Reader reader;
+		try {
+			final Format format = formatService.getFormat(source, true);
+			if (format == null) {
+				throw new ImgIOException("Unsupported format: " + source);
+			}
+			reader = format.createReader();
+			reader.setSource(source);
+		}
+		catch (final FormatException e) {
+			throw new ImgIOException(e);
+		}
+		catch (final IOException e) {
+			throw new ImgIOException(e);
+		}
+		if (!LazyPlaneLoader.isSupported(reader)) {
+			// planes cannot be read one at a time; read them all up front
+			close(reader);
+			return loadDiskBacked(source, cacheBytes);
+		}
+		final LazyPlaneLoader loader =
+			new LazyPlaneLoader(getContext(), reader, prefetch);
+		final ImgPlus<T> imgPlus =
+			loader.createImgPlus(new File(source).getName(), cacheBytes);
+		final Dataset dataset = datasetService.create(imgPlus);
+		dataset.setSource(source);
+		loader.setDataset(dataset);
+		eventService.publish(new FileOpenedEvent(source));
+		return dataset;
+	}
+
 	@Override
 	public void revertDataset(final Dataset dataset) throws IncompatibleTypeException, ImgIOException
 	{
 		final String source = dataset.getSource();
 		if (source == null) return; // no way to revert
-		final Dataset revertedDataset = loadDataset(source);
+		final boolean diskBacked =
+			dataset.getImgPlus().getImg() instanceof DiskPlanarImg;
+		final Dataset revertedDataset = loadDataset(source, diskBacked);
 		revertedDataset.copyInto(dataset);
 	}
 
+	// -- helpers --
+
+	private Dataset loadDiskBacked(final String source, final long cacheBytes)
+		throws ImgIOException, IncompatibleTypeException
+	{
+		final ImgOpener imageOpener = new ImgOpener(getContext());
+		// NB - open with the same options as loadDataset(String)
+		final ImgPlus<T> imgPlus = imageOpener.openImg(source, 0, true, false);
+		final Dataset dataset =
+			datasetService.create(diskBackedCopy(imgPlus, cacheBytes));
+		dataset.setSource(source);
+		eventService.publish(new FileOpenedEvent(source));
+		return dataset;
+	}
+
+	/** Copies the pixels of an opened image into a disk-backed image. */
+	private ImgPlus<T> diskBackedCopy(final ImgPlus<T> imgPlus,
+		final long cacheBytes)
+	{
+		final long[] dims = new long[imgPlus.numDimensions()];
+		imgPlus.dimensions(dims);
+		final Img<T> img =
+			new DiskPlanarImgFactory<T>(null, cacheBytes).create(dims, imgPlus
+				.firstElement());
+		final Cursor<T> cursor = img.localizingCursor();
+		final RandomAccess<T> accessor = imgPlus.randomAccess();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			accessor.setPosition(cursor);
+			cursor.get().set(accessor.get());
+		}
+		return new ImgPlus<T>(img, imgPlus);
+	}
+
+	private void close(final Reader reader) {
+		try {
+			reader.close();
+		}
+		catch (final IOException e) {
+			log.warn(e);
+		}
+	}
+
 }
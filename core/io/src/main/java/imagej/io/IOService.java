@@ -94,6 +94,32 @@ public interface IOService extends Service {
 	Dataset loadDataset(String source) throws ImgIOException,
 		IncompatibleTypeException;
 
+	/**
+	 * Loads a dataset from a source (such as a file on disk). If diskBacked is
+	 * true the dataset's planes are kept in a disk-backed store with a bounded
+	 * in-memory cache (see {@link DatasetService#createDiskBacked}). The pixels
+	 * are opened as by {@link #loadDataset(String)} and then moved into the
+	 * store; see {@link #loadDatasetLazily} for images larger than memory.
+	 */
+	Dataset loadDataset(String source, boolean diskBacked)
+		throws ImgIOException, IncompatibleTypeException;
+
+	/**
+	 * Opens a dataset from a source (such as a file on disk) without reading any
+	 * of its pixels. Dimensions, axes and other metadata are available at once;
+	 * each plane is read from the source the first time it is accessed and kept
+	 * in a disk-backed store with a bounded in-memory cache. Sources whose
+	 * planes cannot be read individually are loaded up front into such a store
+	 * instead.
+	 * 
+	 * @param source The source of the image
+	 * @param cacheBytes The number of bytes of planes to keep in memory
+	 * @param prefetch Whether to read the planes adjacent to each plane read
+	 *          along the active axis in the background
+	 */
+	Dataset loadDatasetLazily(String source, long cacheBytes, boolean prefetch)
+		throws ImgIOException, IncompatibleTypeException;
+
 	/** Reverts the given dataset to its original source. */
 	void revertDataset(Dataset dataset) throws ImgIOException,
 		IncompatibleTypeException;
@@ -0,0 +1,359 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.io;
+
+import imagej.data.Dataset;
+import imagej.data.disk.DiskPlanarImg;
+import imagej.data.disk.DiskPlanarImgFactory;
+import imagej.data.disk.PlaneStore;
+import imagej.data.display.DataView;
+import imagej.data.display.event.AxisPositionEvent;
+import imagej.data.event.DatasetDeletedEvent;
+import io.scif.FormatException;
+import io.scif.Metadata;
+import io.scif.Reader;
+import io.scif.util.FormatTools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.scijava.AbstractContextual;
+import org.scijava.Context;
+import org.scijava.event.EventHandler;
+import org.scijava.log.LogService;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Reads the planes of a disk-backed image from its source file on demand. The
+ * image is created up front from the file's metadata alone; each plane is
+ * read through the format {@link Reader} the first time it is accessed.
+ * Optionally the planes adjacent to each plane read along the active axis are
+ * prefetched in the background.
+ * <p>
+ * The active axis is the one most recently moved along in a display of the
+ * dataset or, without a display, the one along which planes were last
+ * accessed in sequence.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public class LazyPlaneLoader extends AbstractContextual implements
+	PlaneStore.Loader
+{
+
+	// -- instance variables --
+
+	private final Reader reader;
+	private final Metadata meta;
+	private final boolean prefetch;
+	private final ThreadService threadService;
+	private final LogService log;
+	private final long[] planeDims;
+	private final long[] planeStrides;
+	private final long[] lastPos;
+	private final long[] currPos;
+	private PlaneStore store;
+	private Dataset dataset;
+	private volatile int activeAxis;
+	private boolean prefetching;
+
+	// -- constructor --
+
+	/**
+	 * Creates a loader for the image of the given reader.
+	 * 
+	 * @param context The context providing threads and events
+	 * @param reader The initialized reader of the source; it is closed when the
+	 *          dataset wrapping the image is deleted
+	 * @param prefetch Whether to read neighboring planes in the background
+	 */
+	public LazyPlaneLoader(final Context context, final Reader reader,
+		final boolean prefetch)
+	{
+		setContext(context);
+		this.reader = reader;
+		this.meta = reader.getMetadata();
+		this.prefetch = prefetch;
+		threadService = context.getService(ThreadService.class);
+		log = context.getService(LogService.class);
+		planeDims = new long[meta.getAxisCount(0) - 2];
+		planeStrides = new long[planeDims.length];
+		long stride = 1;
+		for (int i = 0; i < planeDims.length; i++) {
+			planeDims[i] = meta.getAxisLength(0, i + 2);
+			planeStrides[i] = stride;
+			stride *= planeDims[i];
+		}
+		lastPos = new long[planeDims.length];
+		currPos = new long[planeDims.length];
+	}
+
+	// -- static methods --
+
+	/**
+	 * Returns true if the planes of the given reader's image can be read
+	 * individually into a planar image: X and Y are the first two axes, each
+	 * plane holds a single channel and the pixel type maps onto an ImgLib type.
+	 */
+	public static boolean isSupported(final Reader reader) {
+		final Metadata meta = reader.getMetadata();
+		final int axisCount = meta.getAxisCount(0);
+		if (axisCount < 2) return false;
+		if (meta.getAxisType(0, 0) != Axes.X) return false;
+		if (meta.getAxisType(0, 1) != Axes.Y) return false;
+		if (meta.getRGBChannelCount(0) != 1) return false;
+		if (type(meta.getPixelType(0)) == null) return false;
+		long planeCount = 1;
+		for (int i = 2; i < axisCount; i++) {
+			planeCount *= meta.getAxisLength(0, i);
+		}
+		return planeCount == meta.getPlaneCount(0);
+	}
+
+	// -- LazyPlaneLoader methods --
+
+	/**
+	 * Creates the image whose planes this loader reads on demand. No pixel data
+	 * is read by this method. The reader's image must be
+	 * {@link #isSupported(Reader) supported}.
+	 * 
+	 * @param name The name of the image
+	 * @param cacheBytes The number of bytes of planes kept in memory
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public <T extends RealType<T> & NativeType<T>> ImgPlus<T> createImgPlus(
+		final String name, final long cacheBytes)
+	{
+		if (store != null) {
+			throw new IllegalStateException("Image has already been created");
+		}
+		final long[] dims = new long[meta.getAxisCount(0)];
+		final AxisType[] axes = new AxisType[dims.length];
+		for (int i = 0; i < dims.length; i++) {
+			dims[i] = meta.getAxisLength(0, i);
+			axes[i] = meta.getAxisType(0, i);
+		}
+		final T type = (T) type(meta.getPixelType(0));
+		final PlanarImg<T, ?> img =
+			new DiskPlanarImgFactory<T>(null, cacheBytes).create(dims, type);
+		store = ((DiskPlanarImg) img).getStore();
+		store.setLoader(this);
+		return new ImgPlus<T>(img, name, axes, calibration());
+	}
+
+	/**
+	 * Sets the dataset wrapping the image, so that its displays can determine
+	 * the prefetch axis and its deletion closes the reader.
+	 */
+	public void setDataset(final Dataset dataset) {
+		this.dataset = dataset;
+	}
+
+	// -- PlaneStore.Loader methods --
+
+	/** NB - always called by the store with its lock held. */
+	@Override
+	public void loadPlane(final int planeIndex, final Object array)
+		throws IOException
+	{
+		final byte[] bytes;
+		try {
+			bytes = reader.openPlane(0, planeIndex).getBytes();
+		}
+		catch (final FormatException e) {
+			throw new IOException(e);
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.order(meta.isLittleEndian(0) ? ByteOrder.LITTLE_ENDIAN
+			: ByteOrder.BIG_ENDIAN);
+		if (array instanceof byte[]) buffer.get((byte[]) array);
+		else if (array instanceof short[]) {
+			buffer.asShortBuffer().get((short[]) array);
+		}
+		else if (array instanceof int[]) buffer.asIntBuffer().get((int[]) array);
+		else if (array instanceof float[]) {
+			buffer.asFloatBuffer().get((float[]) array);
+		}
+		else buffer.asDoubleBuffer().get((double[]) array);
+		if (prefetch && !prefetching) schedulePrefetch(planeIndex);
+	}
+
+	// -- event handlers --
+
+	@EventHandler
+	protected void onEvent(final AxisPositionEvent event) {
+		if (dataset == null) return;
+		for (final DataView view : event.getDisplay()) {
+			if (view.getData() != dataset) continue;
+			final int axis = dataset.getAxisIndex(event.getAxis()) - 2;
+			if (axis >= 0) activeAxis = axis;
+			return;
+		}
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		if (dataset == null || event.getObject() != dataset) return;
+		synchronized (store) {
+			store.setLoader(null);
+			try {
+				reader.close();
+			}
+			catch (final IOException e) {
+				log.warn("Cannot close " + dataset.getSource(), e);
+			}
+		}
+	}
+
+	// -- helpers --
+
+	/** Returns the ImgLib type of a SCIFIO pixel type, or null if none. */
+	private static RealType<?> type(final int pixelType) {
+		switch (pixelType) {
+			case FormatTools.INT8:
+				return new ByteType();
+			case FormatTools.UINT8:
+				return new UnsignedByteType();
+			case FormatTools.INT16:
+				return new ShortType();
+			case FormatTools.UINT16:
+				return new UnsignedShortType();
+			case FormatTools.INT32:
+				return new IntType();
+			case FormatTools.UINT32:
+				return new UnsignedIntType();
+			case FormatTools.FLOAT:
+				return new FloatType();
+			case FormatTools.DOUBLE:
+				return new DoubleType();
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Returns the spatial calibration of each axis of the reader's image, as
+	 * SCIFIO's ImgOpener does when it reads the whole image.
+	 */
+	private double[] calibration() {
+		final double[] cal = new double[meta.getAxisCount(0)];
+		for (int i = 0; i < cal.length; i++) {
+			cal[i] = FormatTools.getScale(meta, 0, meta.getAxisType(0, i));
+		}
+		return cal;
+	}
+
+	/**
+	 * Queues reading the planes on either side of the given one along the
+	 * active axis. If the given plane is a step away from the previously read
+	 * plane along a single axis then that axis becomes the active axis.
+	 */
+	private void schedulePrefetch(final int planeIndex) {
+		if (planeDims.length == 0) return;
+		position(planeIndex, currPos);
+		int moved = -1;
+		for (int i = 0; i < currPos.length; i++) {
+			if (currPos[i] == lastPos[i]) continue;
+			if (moved >= 0 || Math.abs(currPos[i] - lastPos[i]) != 1) {
+				moved = -1;
+				break;
+			}
+			moved = i;
+		}
+		if (moved >= 0) activeAxis = moved;
+		System.arraycopy(currPos, 0, lastPos, 0, currPos.length);
+		final int axis = activeAxis;
+		if (currPos[axis] > 0) {
+			prefetch((int) (planeIndex - planeStrides[axis]));
+		}
+		if (currPos[axis] < planeDims[axis] - 1) {
+			prefetch((int) (planeIndex + planeStrides[axis]));
+		}
+	}
+
+	/**
+	 * Reads a plane in the background. This may evict other planes, but never
+	 * pinned ones, so callers holding plane arrays are unaffected; see
+	 * {@link imagej.data.disk.DiskPlane#pin()}.
+	 */
+	private void prefetch(final int planeIndex) {
+		if (store.isResident(planeIndex)) return;
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (store) {
+					if (store.getLoader() == null) return;
+					prefetching = true;
+					try {
+						store.prefetch(planeIndex);
+					}
+					catch (final IllegalStateException e) {
+						log.warn("Cannot prefetch plane " + planeIndex, e);
+					}
+					finally {
+						prefetching = false;
+					}
+				}
+			}
+		});
+	}
+
+	private void position(final int planeIndex, final long[] pos) {
+		long index = planeIndex;
+		for (int i = 0; i < pos.length; i++) {
+			pos[i] = index % planeDims[i];
+			index /= planeDims[i];
+		}
+	}
+
+}
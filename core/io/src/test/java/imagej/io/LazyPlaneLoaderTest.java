@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import imagej.data.Dataset;
+import imagej.data.disk.DiskPlanarImg;
+import imagej.data.disk.PlaneStore;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.meta.Axes;
+import net.imglib2.type.numeric.RealType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link IOService#loadDatasetLazily(String, long, boolean)}, which
+ * reads planes through {@link LazyPlaneLoader}.
+ */
+public class LazyPlaneLoaderTest {
+
+	/** A SCIFIO fake image of four 16x8 planes; it does not exist on disk. */
+	private static final String SOURCE =
+		"lazy&pixelType=uint8&sizeX=16&sizeY=8&sizeZ=4.fake";
+
+	private Context context;
+	private IOService ioService;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+		ioService = context.getService(IOService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testPlanesReadOnFirstAccess() throws Exception {
+		final Dataset dataset =
+			ioService.loadDatasetLazily(SOURCE, 1024 * 1024, false);
+		final PlaneStore store = store(dataset);
+		assertEquals(4, store.getPlaneCount());
+
+		// nothing is read up front
+		for (int p = 0; p < 4; p++) {
+			assertFalse(store.isResident(p));
+		}
+
+		// touching a pixel reads its plane and no other
+		final RandomAccess<? extends RealType<?>> access =
+			dataset.getImgPlus().randomAccess();
+		final long[] pos = new long[dataset.numDimensions()];
+		pos[0] = 3;
+		pos[1] = 2;
+		pos[dataset.getAxisIndex(Axes.Z)] = 2;
+		access.setPosition(pos);
+		access.get().getRealDouble();
+		assertTrue(store.isResident(2));
+		assertFalse(store.isResident(0));
+		assertFalse(store.isResident(1));
+		assertFalse(store.isResident(3));
+	}
+
+	@Test
+	public void testSameAsEagerLoad() throws Exception {
+		final Dataset lazy =
+			ioService.loadDatasetLazily(SOURCE, 1024 * 1024, false);
+		final Dataset eager = ioService.loadDataset(SOURCE);
+		assertEquals(eager.numDimensions(), lazy.numDimensions());
+		for (int d = 0; d < eager.numDimensions(); d++) {
+			assertEquals(eager.dimension(d), lazy.dimension(d));
+			assertEquals(eager.axis(d), lazy.axis(d));
+			assertEquals(eager.calibration(d), lazy.calibration(d), 0);
+		}
+		final Cursor<? extends RealType<?>> c = eager.getImgPlus().cursor();
+		final RandomAccess<? extends RealType<?>> access =
+			lazy.getImgPlus().randomAccess();
+		while (c.hasNext()) {
+			c.fwd();
+			access.setPosition(c);
+			assertEquals(c.get().getRealDouble(), access.get().getRealDouble(), 0);
+		}
+	}
+
+	// -- helpers --
+
+	private PlaneStore store(final Dataset dataset) {
+		return ((DiskPlanarImg<?, ?>) dataset.getImgPlus().getImg()).getStore();
+	}
+
+}
@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.legacy;
+
+import ij.ImagePlus;
+import ij.process.ImageProcessor;
+import imagej.data.Dataset;
+import imagej.data.display.ImageDisplay;
+import imagej.data.event.DatasetRestructuredEvent;
+import imagej.data.event.DatasetUpdatedEvent;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.scijava.AbstractContextual;
+import org.scijava.Context;
+import org.scijava.event.EventHandler;
+
+/**
+ * Tracks which images have changed since they were last harmonized between
+ * modern ImageJ and legacy ImageJ, so that unchanged images need not have their
+ * pixels copied around every legacy command.
+ * <p>
+ * On the modern side a {@link Dataset} is considered changed once a
+ * {@link DatasetUpdatedEvent} (other than a metadata only one) or a
+ * {@link DatasetRestructuredEvent} is published for it. On the legacy side an
+ * {@link ImagePlus} is considered changed when its processor, pixel or
+ * snapshot arrays, shape or type differ from those recorded at the last
+ * harmonization, or when its changes flag has been raised since then. When
+ * the flag was already raised at the last harmonization it cannot signal
+ * further edits, so the pixels of the current processor are then compared
+ * with a copy taken at that harmonization. Only the current plane is read:
+ * in-place edits of other planes while the flag stays raised go unnoticed.
+ * (Images IJ1 reports as changed via updateAndDraw() are also tracked as
+ * outputs by {@link LegacyOutputTracker}.)
+ * </p>
+ * <p>
+ * The tracker also counts how many pixel harmonizations were done and how many
+ * were skipped in each direction.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public class LegacyChangeTracker extends AbstractContextual {
+
+	// -- instance variables --
+
+	/** Datasets changed since they were last harmonized. */
+	private final Set<Dataset> changedDatasets =
+		Collections.synchronizedSet(Collections
+			.newSetFromMap(new WeakHashMap<Dataset, Boolean>()));
+
+	/** The Dataset each display showed when it was last harmonized. */
+	private final Map<ImageDisplay, Dataset> syncedDatasets =
+		Collections.synchronizedMap(new WeakHashMap<ImageDisplay, Dataset>());
+
+	/** The state of each ImagePlus when it was last harmonized. */
+	private final Map<ImagePlus, ImageState> syncedImages =
+		Collections.synchronizedMap(new WeakHashMap<ImagePlus, ImageState>());
+
+	private final AtomicLong displaysHarmonized = new AtomicLong();
+	private final AtomicLong displaysSkipped = new AtomicLong();
+	private final AtomicLong imagesHarmonized = new AtomicLong();
+	private final AtomicLong imagesSkipped = new AtomicLong();
+
+	// -- constructor --
+
+	public LegacyChangeTracker(final Context context) {
+		setContext(context);
+	}
+
+	// -- LegacyChangeTracker methods --
+
+	/**
+	 * Returns true if the pixels of the given {@link ImageDisplay}'s
+	 * {@link Dataset} may have changed since they were last harmonized.
+	 */
+	public boolean isDisplayChanged(final ImageDisplay display,
+		final Dataset ds)
+	{
+		if (ds == null) return true;
+		if (syncedDatasets.get(display) != ds) return true;
+		return changedDatasets.contains(ds);
+	}
+
+	/**
+	 * Records that the given {@link ImageDisplay}'s {@link Dataset} is in sync
+	 * with its legacy image.
+	 */
+	public void setDisplaySynced(final ImageDisplay display, final Dataset ds) {
+		if (ds == null) return;
+		syncedDatasets.put(display, ds);
+		changedDatasets.remove(ds);
+	}
+
+	/**
+	 * Returns true if the pixels of the given {@link ImagePlus} may have changed
+	 * since they were last harmonized.
+	 */
+	public boolean isLegacyImageChanged(final ImagePlus imp) {
+		final ImageState state = syncedImages.get(imp);
+		return state == null || !state.matches(imp);
+	}
+
+	/**
+	 * Records that the given {@link ImagePlus} is in sync with its display.
+	 */
+	public void setLegacyImageSynced(final ImagePlus imp) {
+		if (imp == null) return;
+		syncedImages.put(imp, new ImageState(imp));
+	}
+
+	/**
+	 * Counts the harmonization of a display from its legacy image, noting
+	 * whether the pixel copy was skipped.
+	 */
+	public void countDisplayHarmonized(final boolean skipped) {
+		if (skipped) displaysSkipped.incrementAndGet();
+		else displaysHarmonized.incrementAndGet();
+	}
+
+	/**
+	 * Counts the harmonization of a legacy image from its display, noting
+	 * whether the pixel copy was skipped.
+	 */
+	public void countImageHarmonized(final boolean skipped) {
+		if (skipped) imagesSkipped.incrementAndGet();
+		else imagesHarmonized.incrementAndGet();
+	}
+
+	/** Returns the number of displays whose pixels were copied from IJ1. */
+	public long getDisplaysHarmonized() {
+		return displaysHarmonized.get();
+	}
+
+	/** Returns the number of displays whose IJ1 pixel copy was skipped. */
+	public long getDisplaysSkipped() {
+		return displaysSkipped.get();
+	}
+
+	/** Returns the number of legacy images whose pixels were copied to IJ1. */
+	public long getImagesHarmonized() {
+		return imagesHarmonized.get();
+	}
+
+	/** Returns the number of legacy images whose pixel copy was skipped. */
+	public long getImagesSkipped() {
+		return imagesSkipped.get();
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final DatasetUpdatedEvent event) {
+		if (!event.isMetaDataOnly()) changedDatasets.add(event.getObject());
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetRestructuredEvent event) {
+		changedDatasets.add(event.getObject());
+	}
+
+	// -- helper class --
+
+	/** The identity based state of an ImagePlus' pixel data. */
+	private static class ImageState {
+
+		private final ImageProcessor processor;
+		private final Object pixels;
+		private final Object snapshotPixels;
+		private final int width, height, stackSize, type;
+		private final boolean changes;
+		private final Object pixelsCopy;
+
+		public ImageState(final ImagePlus imp) {
+			processor = imp.getProcessor();
+			pixels = processor == null ? null : processor.getPixels();
+			snapshotPixels = processor == null ? null : processor.getSnapshotPixels();
+			width = imp.getWidth();
+			height = imp.getHeight();
+			stackSize = imp.getStackSize();
+			type = imp.getType();
+			changes = imp.changes;
+			pixelsCopy = changes ? copy(pixels) : null;
+		}
+
+		public boolean matches(final ImagePlus imp) {
+			if (imp.changes && !changes) return false;
+			final ImageProcessor proc = imp.getProcessor();
+			if (proc != processor) return false;
+			if (proc != null) {
+				if (proc.getPixels() != pixels) return false;
+				if (proc.getSnapshotPixels() != snapshotPixels) return false;
+			}
+			if (imp.getWidth() != width || imp.getHeight() != height ||
+				imp.getStackSize() != stackSize || imp.getType() != type)
+			{
+				return false;
+			}
+			return !changes || same(pixels, pixelsCopy);
+		}
+
+		private static Object copy(final Object pixels) {
+			if (pixels instanceof byte[]) return ((byte[]) pixels).clone();
+			if (pixels instanceof short[]) return ((short[]) pixels).clone();
+			if (pixels instanceof int[]) return ((int[]) pixels).clone();
+			if (pixels instanceof float[]) return ((float[]) pixels).clone();
+			// NB - unknown storage is only compared by identity
+			return pixels;
+		}
+
+		private static boolean same(final Object pixels, final Object copy) {
+			if (pixels instanceof byte[]) {
+				return Arrays.equals((byte[]) pixels, (byte[]) copy);
+			}
+			if (pixels instanceof short[]) {
+				return Arrays.equals((short[]) pixels, (short[]) copy);
+			}
+			if (pixels instanceof int[]) {
+				return Arrays.equals((int[]) pixels, (int[]) copy);
+			}
+			if (pixels instanceof float[]) {
+				return Arrays.equals((float[]) pixels, (float[]) copy);
+			}
+			return pixels == copy;
+		}
+	}
+
+}
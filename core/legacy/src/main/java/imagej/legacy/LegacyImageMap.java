@@ -129,6 +129,11 @@ public class LegacyImageMap extends AbstractContextual {
 	 */
 	private final DefaultLegacyService legacyService;
 
+	/**
+	 * Tracks which images have changed since they were last harmonized.
+	 */
+	private final LegacyChangeTracker changeTracker;
+
 	// -- Constructor --
 
 	public LegacyImageMap(final DefaultLegacyService legacyService) {
@@ -137,6 +142,7 @@ public LegacyImageMap(final DefaultLegacyService legacyService) {
 		imagePlusTable = new ConcurrentHashMap<ImageDisplay, ImagePlus>();
 		displayTable = new ConcurrentHashMap<ImagePlus, ImageDisplay>();
 		imageTranslator = new DefaultImageTranslator(legacyService);
+		changeTracker = new LegacyChangeTracker(legacyService.getContext());
 	}
 
 	// -- LegacyImageMap methods --
@@ -159,6 +165,14 @@ public ImagePlus lookupImagePlus(final ImageDisplay display) {
 		return imagePlusTable.get(display);
 	}
 
+	/**
+	 * Gets the {@link LegacyChangeTracker} that records which images need their
+	 * pixels harmonized.
+	 */
+	public LegacyChangeTracker getChangeTracker() {
+		return changeTracker;
+	}
+
 	/**
 	 * Ensures that the given {@link ImageDisplay} has a corresponding legacy
 	 * image.
@@ -43,6 +43,7 @@
 import imagej.data.Dataset;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
+import imagej.legacy.LegacyChangeTracker;
 import imagej.legacy.LegacyImageMap;
 import imagej.legacy.LegacyOutputTracker;
 import imagej.legacy.LegacyService;
@@ -154,7 +155,8 @@ private class LegacyCommandThread extends Thread {
 		final private ThreadGroup group;
 		final private LegacyImageMap map;
 		final private Harmonizer harmonizer;
-		
+		final private LegacyChangeTracker tracker;
+
 
 		// NB - BDZ
 		// In order to keep threads from waiting on each other unnecessarily when
@@ -166,6 +168,7 @@ public LegacyCommandThread() {
 			super(new LegacyThreadGroup(legacyService), THREAD_NAME);
 			this.group = getThreadGroup();
 			this.map = legacyService.getImageMap();
+			this.tracker = map.getChangeTracker();
 			final ImageTranslator imageTranslator =
 				new DefaultImageTranslator(legacyService);
 			this.harmonizer = new Harmonizer(legacyService, imageTranslator);
@@ -243,6 +246,8 @@ public void run() {
 			}
 			
 			rtHarmonizer.setModernImageJResultsTable();
+
+			reportHarmonization();
 		}
 
 		private void waitForPluginThreads() {
@@ -333,11 +338,12 @@ private boolean whitelisted(final Thread thread) {
 		// rather than having harmonization or something else fail.
 
 		private void updateImagePlusesFromDisplays() {
-			// TODO - track events and keep a dirty bit, then only harmonize those
-			// displays that have changed. See ticket #546.
+			// NB - only copy the pixels of displays that have changed since they were
+			// last harmonized. See ticket #546.
 			final List<ImageDisplay> imageDisplays =
 				imageDisplayService.getImageDisplays();
 			for (final ImageDisplay display : imageDisplays) {
+				final Dataset ds = imageDisplayService.getActiveDataset(display);
 				ImagePlus imp = map.lookupImagePlus(display);
 				if (imp == null) {
 					if (!isLegacyCompatible(display)) {
@@ -349,17 +355,25 @@ private void updateImagePlusesFromDisplays() {
 					// NB - it is possible a runtime exception in an IJ1 plugin left the
 					// ImagePlus in a locked state. Make sure its unlocked going forward.
 					imp.unlock();
-					harmonizer.updateLegacyImage(display, imp);
+					// NB - changes made on the legacy side that were never harmonized
+					// back are overwritten as before
+					final boolean changed =
+						tracker.isDisplayChanged(display, ds) ||
+							tracker.isLegacyImageChanged(imp);
+					harmonizer.updateLegacyImage(display, imp, changed);
+					tracker.countImageHarmonized(!changed);
 				}
+				tracker.setDisplaySynced(display, ds);
+				tracker.setLegacyImageSynced(imp);
 				harmonizer.registerType(imp);
 			}
 		}
 
 		private List<ImageDisplay> updateDisplaysFromImagePluses() {
-			// TODO - check the changes flag for each ImagePlus that already has a
-			// ImageDisplay and only harmonize those that have changed. Maybe changes
-			// flag does not track everything (such as metadata changes?) and thus
-			// we might still have to do some minor harmonization. Investigate.
+			// NB - outputs are ImagePluses that IJ1 reported as changed so their
+			// pixels are always harmonized. The current ImagePlus may have been
+			// changed without being reported, so it is checked with the change
+			// tracker. Metadata is always harmonized.
 
 			final ImagePlus[] imps = LegacyOutputTracker.getOutputs();
 			final ImagePlus currImp = WindowManager.getCurrentImage();
@@ -373,12 +387,16 @@ private List<ImageDisplay> updateDisplaysFromImagePluses() {
 			if (currImp != null) {
 				ImageDisplay display = map.lookupDisplay(currImp);
 				if (display != null) {
-					harmonizer.updateDisplay(display, currImp);
+					final boolean changed =
+						contains(imps, currImp) || tracker.isLegacyImageChanged(currImp);
+					harmonizer.updateDisplay(display, currImp, changed);
+					tracker.countDisplayHarmonized(!changed);
 				}
 				else {
 					display = map.registerLegacyImage(currImp);
 					displays.add(display);
 				}
+				setSynced(display, currImp);
 			}
 
 			// also harmonize any outputs
@@ -401,8 +419,12 @@ private List<ImageDisplay> updateDisplaysFromImagePluses() {
 						if (imp == currImp) {
 							// we harmonized this earlier
 						}
-						else harmonizer.updateDisplay(display, imp);
+						else {
+							harmonizer.updateDisplay(display, imp);
+							tracker.countDisplayHarmonized(false);
+						}
 					}
+					setSynced(display, imp);
 					displays.add(display);
 				}
 			}
@@ -410,6 +432,32 @@ private List<ImageDisplay> updateDisplaysFromImagePluses() {
 			return displays;
 		}
 
+		private boolean contains(final ImagePlus[] imps, final ImagePlus imp) {
+			for (final ImagePlus candidate : imps) {
+				if (candidate == imp) return true;
+			}
+			return false;
+		}
+
+		// Records that a display and ImagePlus now hold the same pixels. The
+		// Dataset's own update event from the harmonization may still arrive later
+		// in which case the display is harmonized again next time; that is safe.
+
+		private void setSynced(final ImageDisplay display, final ImagePlus imp) {
+			if (display == null) return;
+			tracker.setDisplaySynced(display,
+				imageDisplayService.getActiveDataset(display));
+			tracker.setLegacyImageSynced(imp);
+		}
+
+		private void reportHarmonization() {
+			if (!log.isDebug()) return;
+			log.debug("LegacyCommand: pixel harmonizations to IJ1 done/skipped = " +
+				tracker.getImagesHarmonized() + "/" + tracker.getImagesSkipped() +
+				", from IJ1 done/skipped = " + tracker.getDisplaysHarmonized() + "/" +
+				tracker.getDisplaysSkipped());
+		}
+
 		// SAVE - useful
 		/*
 		private void reportThreadInfo(Thread thread, List<Thread> allThreads, List<Thread> threadsToIgnore) {
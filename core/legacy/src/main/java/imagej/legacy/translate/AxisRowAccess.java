@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.legacy.translate;
+
+import imagej.data.Dataset;
+import imagej.data.RowAccess;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A {@link RowAccess} for {@link Dataset}s whose X and Y axes are not the
+ * first two dimensions. Rows are walked in order along the X axis with a
+ * {@link RandomAccess}.
+ * 
+ * @author Barry DeZonia
+ */
+class AxisRowAccess extends RowAccess {
+
+	// -- instance variables --
+
+	private final RandomAccess<? extends RealType<?>> access;
+	private final long[] position;
+	private final int xIndex;
+	private final int yIndex;
+
+	// -- constructor --
+
+	/**
+	 * @param ds The Dataset to access
+	 * @param pos The position of the plane. Its X and Y entries are ignored.
+	 */
+	public AxisRowAccess(final Dataset ds, final long[] pos, final int xIndex,
+		final int yIndex)
+	{
+		super(xIndex < 0 ? 1 : (int) ds.dimension(xIndex));
+		this.access = ds.getImgPlus().randomAccess();
+		this.position = pos.clone();
+		this.xIndex = xIndex;
+		this.yIndex = yIndex;
+	}
+
+	// -- RowAccess methods --
+
+	@Override
+	public void read(final int y, final double[] dest, final int destOffset) {
+		moveTo(0, y);
+		for (int x = 0; x < width; x++) {
+			dest[destOffset + x] = access.get().getRealDouble();
+			if (xIndex >= 0) access.fwd(xIndex);
+		}
+	}
+
+	@Override
+	public void write(final int y, final int x0, final double[] src,
+		final int count)
+	{
+		moveTo(x0, y);
+		for (int x = x0; x < x0 + count; x++) {
+			access.get().setReal(src[x]);
+			if (xIndex >= 0) access.fwd(xIndex);
+		}
+	}
+
+	// -- helpers --
+
+	private void moveTo(final int x, final int y) {
+		if (xIndex >= 0) position[xIndex] = x;
+		if (yIndex >= 0) position[yIndex] = y;
+		access.setPosition(position);
+	}
+
+}
@@ -37,11 +37,13 @@
 
 import ij.ImagePlus;
 import ij.ImageStack;
-import ij.process.ImageProcessor;
 import imagej.data.Dataset;
-import net.imglib2.RandomAccess;
+import imagej.data.RowAccess;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import net.imglib2.meta.Axes;
-import net.imglib2.type.numeric.RealType;
 
 /**
  * Supports bidirectional synchronization between color {@link ImagePlus}es and
@@ -77,63 +79,45 @@ public void savePlane(int pos, double[] plane) {
 	/**
 	 * Assigns the data values of a color {@link Dataset} from a paired
 	 * {@link ImagePlus}. Assumes the Dataset and ImagePlus have compatible
-	 * dimensions and are both of type color. Gets values via
-	 * {@link ImageProcessor}::get(). Does not change the Dataset's metadata.
+	 * dimensions and are both of type color. Gets values directly from the
+	 * ImagePlus' int pixel arrays. Does not change the Dataset's metadata.
 	 */
 	@Override
 	public void updateDataset(final Dataset ds, final ImagePlus imp) {
-		final int xIndex = ds.getAxisIndex(Axes.X);
-		final int yIndex = ds.getAxisIndex(Axes.Y);
-		final int cIndex = ds.getAxisIndex(Axes.CHANNEL);
-		final int zIndex = ds.getAxisIndex(Axes.Z);
-		final int tIndex = ds.getAxisIndex(Axes.TIME);
+		final ImageStack stack = imp.getStack();
 		final int xSize = imp.getWidth();
 		final int ySize = imp.getHeight();
-		final int cSize = imp.getNChannels();
-		final int zSize = imp.getNSlices();
-		final int tSize = imp.getNFrames();
-		final ImageStack stack = imp.getStack();
-		int imagejPlaneNumber = 1;
-		final RandomAccess<? extends RealType<?>> accessor =
-			ds.getImgPlus().randomAccess();
-		int slice = imp.getCurrentSlice();
-		for (int t = 0; t < tSize; t++) {
-			if (tIndex >= 0) accessor.setPosition(t, tIndex);
-			for (int z = 0; z < zSize; z++) {
-				if (zIndex >= 0) accessor.setPosition(z, zIndex);
-				for (int c = 0; c < cSize; c++) {
-					final ImageProcessor proc = stack.getProcessor(imagejPlaneNumber++);
-					// TEMP HACK THAT FIXES VIRT STACK PROB BUT SLOW
-					// imp.setPosition(planeNum - 1);
-					for (int y = 0; y < ySize; y++) {
-						accessor.setPosition(y, yIndex);
-						for (int x = 0; x < xSize; x++) {
-							accessor.setPosition(x, xIndex);
-							// NOTE: to propagate a VirtualStack's first plane pixel changes
-							// we save it early in the harmonization process and refer to it
-							// later. This code is part of that process
-							final int value;
-							if (savedPos == imagejPlaneNumber - 1) {
-								int index = xSize * y + x;
-								value = (int) savedPlane[index];
-							}
-							else {
-								value = proc.get(x, y);
-							}
-							final int rValue = (value >> 16) & 0xff;
-							final int gValue = (value >> 8) & 0xff;
-							final int bValue = (value >> 0) & 0xff;
-							accessor.setPosition(c * 3, cIndex);
-							accessor.get().setReal(rValue);
-							accessor.fwd(cIndex);
-							accessor.get().setReal(gValue);
-							accessor.fwd(cIndex);
-							accessor.get().setReal(bValue);
-						}
+		final int slice = imp.getCurrentSlice();
+		final LegacyUtils.PlaneCopier copier = new LegacyUtils.PlaneCopier() {
+
+			@Override
+			public void copy(final int planeNum, final long[] pos) {
+				final int[] pixels = (int[]) stack.getProcessor(planeNum).getPixels();
+				final RowAccess[] rows = channelRows(ds, pos, false);
+				final double[] r = new double[xSize];
+				final double[] g = new double[xSize];
+				final double[] b = new double[xSize];
+				// NOTE: to propagate a VirtualStack's first plane pixel changes we
+				// save it early in the harmonization process and refer to it later.
+				// This code is part of that process
+				final boolean useSaved = savedPos == planeNum;
+				for (int y = 0; y < ySize; y++) {
+					final int offset = y * xSize;
+					for (int x = 0; x < xSize; x++) {
+						final int value;
+						if (useSaved) value = (int) savedPlane[offset + x];
+						else value = pixels[offset + x];
+						r[x] = (value >> 16) & 0xff;
+						g[x] = (value >> 8) & 0xff;
+						b[x] = (value >> 0) & 0xff;
 					}
+					rows[0].write(y, 0, r, xSize);
+					rows[1].write(y, 0, g, xSize);
+					rows[2].write(y, 0, b, xSize);
 				}
 			}
-		}
+		};
+		LegacyUtils.copyPlanes(ds, imp, planePositions(ds, imp), copier);
 		// NOTE: the stack.getProcessor() calls that have been called so far have
 		// changed the current plane's pixels for virtual stacks. So reset pixels
 		// to correct plane's values
@@ -146,61 +130,91 @@ public void updateDataset(final Dataset ds, final ImagePlus imp) {
 	 * Assigns the data values of a color {@link ImagePlus} from a paired
 	 * {@link Dataset}. Assumes the Dataset and ImagePlus have compatible
 	 * dimensions and that the data planes are not directly mapped. Also assumes
-	 * that the Dataset has isRGBMerged() true. Sets values via
-	 * {@link ImageProcessor}::set(). Does not change the ImagePlus' metadata.
+	 * that the Dataset has isRGBMerged() true. Sets values directly into the
+	 * ImagePlus' int pixel arrays. Does not change the ImagePlus' metadata.
 	 */
 	@Override
 	public void updateLegacyImage(final Dataset ds, final ImagePlus imp) {
-		final int xIndex = ds.getAxisIndex(Axes.X);
-		final int yIndex = ds.getAxisIndex(Axes.Y);
+		final ImageStack stack = imp.getStack();
+		final int xSize = imp.getWidth();
+		final int ySize = imp.getHeight();
+		final int slice = imp.getCurrentSlice();
+		final LegacyUtils.PlaneCopier copier = new LegacyUtils.PlaneCopier() {
+
+			@Override
+			public void copy(final int planeNum, final long[] pos) {
+				final int[] pixels = (int[]) stack.getProcessor(planeNum).getPixels();
+				final RowAccess[] rows = channelRows(ds, pos, true);
+				final double[] r = new double[xSize];
+				final double[] g = new double[xSize];
+				final double[] b = new double[xSize];
+				for (int y = 0; y < ySize; y++) {
+					rows[0].read(y, r, 0);
+					rows[1].read(y, g, 0);
+					rows[2].read(y, b, 0);
+					final int offset = y * xSize;
+					for (int x = 0; x < xSize; x++) {
+						final int rValue = ((int) r[x]) & 0xff;
+						final int gValue = ((int) g[x]) & 0xff;
+						final int bValue = ((int) b[x]) & 0xff;
+						pixels[offset + x] =
+							(0xff << 24) | (rValue << 16) | (gValue << 8) | (bValue);
+					}
+				}
+			}
+		};
+		LegacyUtils.copyPlanes(ds, imp, planePositions(ds, imp), copier);
+		// NOTE: the stack.getProcessor() calls that have been called so far have
+		// changed the current plane's pixels for virtual stacks. So reset pixels
+		// to correct plane's values
+		stack.getProcessor(slice);
+	}
+
+	// -- helpers --
+
+	/**
+	 * Returns the Dataset positions of the ImagePlus' planes in the ImagePlus'
+	 * (c, z, t) plane order. The channel entry is that of the red channel.
+	 */
+	private List<long[]> planePositions(final Dataset ds, final ImagePlus imp) {
 		final int cIndex = ds.getAxisIndex(Axes.CHANNEL);
 		final int zIndex = ds.getAxisIndex(Axes.Z);
 		final int tIndex = ds.getAxisIndex(Axes.TIME);
-		final int xSize = imp.getWidth();
-		final int ySize = imp.getHeight();
 		final int cSize = imp.getNChannels();
 		final int zSize = imp.getNSlices();
 		final int tSize = imp.getNFrames();
-		final ImageStack stack = imp.getStack();
-		int imagejPlaneNumber = 1;
-		final RandomAccess<? extends RealType<?>> accessor =
-			ds.getImgPlus().randomAccess();
-		int slice = imp.getCurrentSlice();
+		final List<long[]> positions = new ArrayList<long[]>();
 		for (int t = 0; t < tSize; t++) {
-			if (tIndex >= 0) accessor.setPosition(t, tIndex);
 			for (int z = 0; z < zSize; z++) {
-				if (zIndex >= 0) accessor.setPosition(z, zIndex);
 				for (int c = 0; c < cSize; c++) {
-					final ImageProcessor proc = stack.getProcessor(imagejPlaneNumber++);
-					// TEMP HACK THAT FIXES VIRT STACK PROB BUT SLOW
-					// imp.setPosition(planeNum - 1);
-					for (int y = 0; y < ySize; y++) {
-						accessor.setPosition(y, yIndex);
-						for (int x = 0; x < xSize; x++) {
-							accessor.setPosition(x, xIndex);
-
-							accessor.setPosition(3 * c, cIndex);
-							final int rValue = ((int) accessor.get().getRealDouble()) & 0xff;
-
-							accessor.fwd(cIndex);
-							final int gValue = ((int) accessor.get().getRealDouble()) & 0xff;
-
-							accessor.fwd(cIndex);
-							final int bValue = ((int) accessor.get().getRealDouble()) & 0xff;
-
-							final int intValue =
-								(0xff << 24) | (rValue << 16) | (gValue << 8) | (bValue);
-
-							proc.set(x, y, intValue);
-						}
-					}
+					final long[] pos = new long[ds.numDimensions()];
+					if (tIndex >= 0) pos[tIndex] = t;
+					if (zIndex >= 0) pos[zIndex] = z;
+					pos[cIndex] = 3 * c;
+					positions.add(pos);
 				}
 			}
 		}
-		// NOTE: the stack.getProcessor() calls that have been called so far have
-		// changed the current plane's pixels for virtual stacks. So reset pixels
-		// to correct plane's values
-		stack.getProcessor(slice);
+		return positions;
+	}
+
+	/**
+	 * Returns row accesses for the red, green and blue planes at a position.
+	 * Row accesses for reading leave planes that are shared copy-on-write shared.
+	 */
+	private RowAccess[] channelRows(final Dataset ds, final long[] pos,
+		final boolean forReading)
+	{
+		final int cIndex = ds.getAxisIndex(Axes.CHANNEL);
+		final RowAccess[] rows = new RowAccess[3];
+		final long[] channelPos = pos.clone();
+		for (int i = 0; i < 3; i++) {
+			channelPos[cIndex] = pos[cIndex] + i;
+			rows[i] =
+				forReading ? LegacyUtils.rowAccessForReading(ds, channelPos)
+					: LegacyUtils.rowAccess(ds, channelPos);
+		}
+		return rows;
 	}
 
 }
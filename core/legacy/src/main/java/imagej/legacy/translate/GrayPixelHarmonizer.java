@@ -39,12 +39,20 @@
 import ij.ImageStack;
 import ij.process.ImageProcessor;
 import imagej.data.Dataset;
-import net.imglib2.RandomAccess;
+import imagej.data.PrimitivePlane;
+import imagej.data.RowAccess;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
 
 /**
  * Supports bidirectional synchronization between {@link ImagePlus}es and gray
@@ -83,9 +91,9 @@ public void savePlane(int pos, double[] plane) {
 	 * Assigns the data values of a {@link Dataset} from a paired
 	 * {@link ImagePlus}. Assumes the Dataset and ImagePlus have compatible
 	 * dimensions and that the data planes are not directly mapped. Gets values
-	 * via {@link ImageProcessor}::getf(). In cases where there is a narrowing of
-	 * data into modern ImageJ types the data is range clamped. Does not change
-	 * the Dataset's metadata.
+	 * via {@link ImageProcessor}::getf() (or directly from the primitive pixel
+	 * arrays). In cases where there is a narrowing of data into modern ImageJ
+	 * types the data is range clamped. Does not change the Dataset's metadata.
 	 */
 	@Override
 	public void updateDataset(final Dataset ds, final ImagePlus imp) {
@@ -93,57 +101,44 @@ public void updateDataset(final Dataset ds, final ImagePlus imp) {
 		final double typeMin = type.getMinValue();
 		final double typeMax = type.getMaxValue();
 		final boolean signed16BitData = type instanceof ShortType;
-		final RandomAccess<? extends RealType<?>> accessor =
-			ds.getImgPlus().randomAccess();
-		final long[] dims = ds.getDims();
-		final AxisType[] axes = ds.getAxes();
-		final int xIndex = ds.getAxisIndex(Axes.X);
-		final int yIndex = ds.getAxisIndex(Axes.Y);
-		final int zIndex = ds.getAxisIndex(Axes.Z);
-		final int tIndex = ds.getAxisIndex(Axes.TIME);
+		final boolean sameStorage = sameStorage(ds, imp);
+		final ImageStack stack = imp.getStack();
 		final int xSize = imp.getWidth();
 		final int ySize = imp.getHeight();
-		final int zSize = imp.getNSlices();
-		final int tSize = imp.getNFrames();
-		final int cSize = imp.getNChannels();
-		final ImageStack stack = imp.getStack();
-		int planeNum = 1;
-		final long[] pos = new long[dims.length];
-		int slice = imp.getCurrentSlice();
-		for (int t = 0; t < tSize; t++) {
-			if (tIndex >= 0) pos[tIndex] = t;
-			for (int z = 0; z < zSize; z++) {
-				if (zIndex >= 0) pos[zIndex] = z;
-				for (int c = 0; c < cSize; c++) {
-					LegacyUtils.fillChannelIndices(dims, axes, c, pos);
-					ImageProcessor proc = stack.getProcessor(planeNum++);
-					// TEMP HACK THAT FIXES VIRT STACK PROB BUT SLOW
-					// imp.setPosition(planeNum - 1);
+		final int slice = imp.getCurrentSlice();
+		final List<long[]> positions = planePositions(ds, imp);
+		final LegacyUtils.PlaneCopier copier = new LegacyUtils.PlaneCopier() {
+
+			@Override
+			public void copy(final int planeNum, final long[] pos) {
+				final ImageProcessor proc = stack.getProcessor(planeNum);
+				// NOTE: to propagate a VirtualStack's first plane pixel changes we
+				// save it early in the harmonization process and refer to it later.
+				// This code is part of that process
+				final boolean useSaved = savedPos == planeNum;
+				if (sameStorage && !useSaved) {
+					final Object pixels = proc.getPixels();
+					final Object plane = LegacyUtils.planeArray(ds, pos);
+					System.arraycopy(pixels, 0, plane, 0, xSize * ySize);
+					return;
+				}
+				final RowAccess rows = LegacyUtils.rowAccess(ds, pos);
+				final double[] row = new double[xSize];
+				for (int y = 0; y < ySize; y++) {
+					if (useSaved) System.arraycopy(savedPlane, y * xSize, row, 0, xSize);
+					else readRow(proc, y, row);
 					for (int x = 0; x < xSize; x++) {
-						if (xIndex >= 0) pos[xIndex] = x;
-						for (int y = 0; y < ySize; y++) {
-							if (yIndex >= 0) pos[yIndex] = y;
-							accessor.setPosition(pos);
-							// NOTE: to propagate a VirtualStack's first plane pixel changes
-							// we save it early in the harmonization process and refer to it
-							// later. This code is part of that process
-							double value;
-							if (savedPos == planeNum - 1) {
-								int index = xSize * y + x;
-								value = savedPlane[index];
-							}
-							else {
-								value = proc.getf(x, y);
-							}
-							if (signed16BitData) value -= 32768.0;
-							if (value < typeMin) value = typeMin;
-							else if (value > typeMax) value = typeMax;
-							accessor.get().setReal(value);
-						}
+						double value = row[x];
+						if (signed16BitData) value -= 32768.0;
+						if (value < typeMin) value = typeMin;
+						else if (value > typeMax) value = typeMax;
+						row[x] = value;
 					}
+					rows.write(y, 0, row, xSize);
 				}
 			}
-		}
+		};
+		LegacyUtils.copyPlanes(ds, imp, positions, copier);
 		// NOTE: the stack.getProcessor() calls that have been called so far have
 		// changed the current plane's pixels for virtual stacks. So reset pixels
 		// to correct plane's values
@@ -157,59 +152,165 @@ public void updateDataset(final Dataset ds, final ImagePlus imp) {
 	 * {@link Dataset}. Assumes the Dataset and ImagePlus are not directly mapped.
 	 * It is possible that multiple modern ImageJ axes are encoded as a single set
 	 * of channels in the ImagePlus. Sets values via {@link ImageProcessor}
-	 * ::setf(). Some special case code is in place to assure that BitType images
-	 * go to legacy ImageJ as 0/255 value images. Does not change the ImagePlus'
-	 * metadata.
+	 * ::setf() (or directly into the primitive pixel arrays). Some special case
+	 * code is in place to assure that BitType images go to legacy ImageJ as 0/255
+	 * value images. Does not change the ImagePlus' metadata.
 	 */
 	@Override
 	public void updateLegacyImage(final Dataset ds, final ImagePlus imp) {
 		final RealType<?> type = ds.getType();
 		final boolean signed16BitData = type instanceof ShortType;
 		final boolean bitData = type instanceof BitType;
-		final RandomAccess<? extends RealType<?>> accessor =
-			ds.getImgPlus().randomAccess();
+		final boolean sameStorage = sameStorage(ds, imp);
+		final ImageStack stack = imp.getStack();
+		final int xSize = imp.getWidth();
+		final int ySize = imp.getHeight();
+		final int slice = imp.getCurrentSlice();
+		final List<long[]> positions = planePositions(ds, imp);
+		final LegacyUtils.PlaneCopier copier = new LegacyUtils.PlaneCopier() {
+
+			@Override
+			public void copy(final int planeNum, final long[] pos) {
+				final ImageProcessor proc = stack.getProcessor(planeNum);
+				if (sameStorage) {
+					final Object pixels = proc.getPixels();
+					final Object plane = LegacyUtils.planeArrayForReading(ds, pos);
+					System.arraycopy(plane, 0, pixels, 0, xSize * ySize);
+					return;
+				}
+				final RowAccess rows = LegacyUtils.rowAccessForReading(ds, pos);
+				final double[] row = new double[xSize];
+				for (int y = 0; y < ySize; y++) {
+					rows.read(y, row, 0);
+					for (int x = 0; x < xSize; x++) {
+						double value = row[x];
+						if (signed16BitData) value += 32768.0;
+						else if (bitData) if (value > 0) value = 255;
+						row[x] = value;
+					}
+					writeRow(proc, y, row);
+				}
+			}
+		};
+		LegacyUtils.copyPlanes(ds, imp, positions, copier);
+		// NOTE: the stack.getProcessor() calls that have been called so far have
+		// changed the current plane's pixels for virtual stacks. So reset pixels
+		// to correct plane's values
+		stack.getProcessor(slice);
+	}
+
+	// -- helpers --
+
+	/**
+	 * Returns the Dataset positions of the ImagePlus' planes in the ImagePlus'
+	 * (c, z, t) plane order. X and Y entries are 0.
+	 */
+	private List<long[]> planePositions(final Dataset ds, final ImagePlus imp) {
 		final long[] dims = ds.getDims();
 		final AxisType[] axes = ds.getAxes();
-		final int xIndex = ds.getAxisIndex(Axes.X);
-		final int yIndex = ds.getAxisIndex(Axes.Y);
 		final int zIndex = ds.getAxisIndex(Axes.Z);
 		final int tIndex = ds.getAxisIndex(Axes.TIME);
-		final int xSize = imp.getWidth();
-		final int ySize = imp.getHeight();
 		final int zSize = imp.getNSlices();
 		final int tSize = imp.getNFrames();
 		final int cSize = imp.getNChannels();
-		final ImageStack stack = imp.getStack();
-		int planeNum = 1;
-		final long[] pos = new long[dims.length];
-		int slice = imp.getCurrentSlice();
+		final List<long[]> positions = new ArrayList<long[]>();
 		for (int t = 0; t < tSize; t++) {
-			if (tIndex >= 0) pos[tIndex] = t;
 			for (int z = 0; z < zSize; z++) {
-				if (zIndex >= 0) pos[zIndex] = z;
 				for (int c = 0; c < cSize; c++) {
+					final long[] pos = new long[dims.length];
+					if (tIndex >= 0) pos[tIndex] = t;
+					if (zIndex >= 0) pos[zIndex] = z;
 					LegacyUtils.fillChannelIndices(dims, axes, c, pos);
-					final ImageProcessor proc = stack.getProcessor(planeNum++);
-					// TEMP HACK THAT FIXES VIRT STACK PROB BUT SLOW
-					// imp.setPosition(planeNum - 1);
-					for (int x = 0; x < xSize; x++) {
-						if (xIndex >= 0) pos[xIndex] = x;
-						for (int y = 0; y < ySize; y++) {
-							if (yIndex >= 0) pos[yIndex] = y;
-							accessor.setPosition(pos);
-							double value = accessor.get().getRealDouble();
-							if (signed16BitData) value += 32768.0;
-							else if (bitData) if (value > 0) value = 255;
-							proc.setf(x, y, (float)value);
-						}
-					}
+					positions.add(pos);
 				}
 			}
 		}
-		// NOTE: the stack.getProcessor() calls that have been called so far have
-		// changed the current plane's pixels for virtual stacks. So reset pixels
-		// to correct plane's values
-		stack.getProcessor(slice);
+		return positions;
+	}
+
+	/**
+	 * Returns true if the Dataset's planes are primitive arrays holding values
+	 * exactly as the ImagePlus' pixel arrays do, so planes can be copied whole.
+	 */
+	private boolean sameStorage(final Dataset ds, final ImagePlus imp) {
+		if (!LegacyUtils.planesAreIndependent(ds, imp)) return false;
+		final RealType<?> type = ds.getType();
+		final Object plane = PrimitivePlane.readPlane(ds, 0);
+		switch (imp.getType()) {
+			case ImagePlus.GRAY8:
+			case ImagePlus.COLOR_256:
+				return type instanceof UnsignedByteType && plane instanceof byte[];
+			case ImagePlus.GRAY16:
+				return type instanceof UnsignedShortType && plane instanceof short[];
+			case ImagePlus.GRAY32:
+				return type instanceof FloatType && plane instanceof float[];
+			default:
+				return false;
+		}
+	}
+
+	/** Reads row y of an ImageProcessor as ImageProcessor::getf() would. */
+	private void readRow(final ImageProcessor proc, final int y,
+		final double[] row)
+	{
+		final int width = row.length;
+		final int offset = y * width;
+		final Object pixels = proc.getPixels();
+		if (pixels instanceof byte[]) {
+			final byte[] p = (byte[]) pixels;
+			for (int x = 0; x < width; x++) {
+				row[x] = p[offset + x] & 0xff;
+			}
+		}
+		else if (pixels instanceof short[]) {
+			final short[] p = (short[]) pixels;
+			for (int x = 0; x < width; x++) {
+				row[x] = p[offset + x] & 0xffff;
+			}
+		}
+		else if (pixels instanceof float[]) {
+			final float[] p = (float[]) pixels;
+			for (int x = 0; x < width; x++) {
+				row[x] = p[offset + x];
+			}
+		}
+		else {
+			for (int x = 0; x < width; x++) {
+				row[x] = proc.getf(offset + x);
+			}
+		}
+	}
+
+	/** Writes row y of an ImageProcessor as ImageProcessor::setf() would. */
+	private void writeRow(final ImageProcessor proc, final int y,
+		final double[] row)
+	{
+		final int width = row.length;
+		final int offset = y * width;
+		final Object pixels = proc.getPixels();
+		if (pixels instanceof byte[]) {
+			final byte[] p = (byte[]) pixels;
+			for (int x = 0; x < width; x++) {
+				p[offset + x] = (byte) (float) row[x];
+			}
+		}
+		else if (pixels instanceof short[]) {
+			final short[] p = (short[]) pixels;
+			for (int x = 0; x < width; x++) {
+				p[offset + x] = (short) (float) row[x];
+			}
+		}
+		else if (pixels instanceof float[]) {
+			final float[] p = (float[]) pixels;
+			for (int x = 0; x < width; x++) {
+				p[offset + x] = (float) row[x];
+			}
+		}
+		else {
+			for (int x = 0; x < width; x++) {
+				proc.setf(offset + x, (float) row[x]);
+			}
+		}
 	}
 
 }
@@ -102,6 +102,19 @@ public Harmonizer(final LegacyService legSrv, final ImageTranslator trans) {
 	 */
 	public void
 		updateLegacyImage(final ImageDisplay display, final ImagePlus imp)
+	{
+		updateLegacyImage(display, imp, true);
+	}
+
+	/**
+	 * Changes the data within an {@link ImagePlus} to match data in a
+	 * {@link ImageDisplay}. Pixels are only copied if pixelsChanged is true or if
+	 * the ImagePlus must be rebuilt because its type or shape no longer fits the
+	 * Dataset. Metadata, color tables, overlays, position and name are always
+	 * harmonized.
+	 */
+	public void updateLegacyImage(final ImageDisplay display,
+		final ImagePlus imp, final boolean pixelsChanged)
 	{
 		final ImageDisplayService imageDisplayService =
 			legSrv.getImageDisplayService();
@@ -126,6 +139,9 @@ else if (ds.getType() instanceof UnsignedByteType) {
 			{
 				rebuildImagePlusData(display, imp);
 			}
+			else if (!pixelsChanged) {
+				// pixels already match
+			}
 			else if (imp.getType() == ImagePlus.COLOR_RGB) {
 				if (!imp.getStack().isVirtual()) {
 					colorPixelHarmonizer.updateLegacyImage(ds, imp);
@@ -155,6 +171,20 @@ else if (LegacyUtils.datasetIsIJ1Compatible(ds)) {
 	 * data (an empty stack).
 	 */
 	public void updateDisplay(final ImageDisplay display, final ImagePlus imp) {
+		updateDisplay(display, imp, true);
+	}
+
+	/**
+	 * Changes the data within a {@link ImageDisplay} to match data in an
+	 * {@link ImagePlus}. Pixels are only copied if pixelsChanged is true or if
+	 * the Dataset must be rebuilt because the ImagePlus' type or shape changed.
+	 * Metadata, color tables, overlays, position and name are always harmonized.
+	 * Assumes the given ImagePlus is not a degenerate set of data (an empty
+	 * stack).
+	 */
+	public void updateDisplay(final ImageDisplay display, final ImagePlus imp,
+		final boolean pixelsChanged)
+	{
 
 		// NB - if ImagePlus is degenerate the following code can fail. This is
 		// because imglib cannot represent an empty data container. So we catch
@@ -195,7 +225,7 @@ public void updateDisplay(final ImageDisplay display, final ImagePlus imp) {
 		if ((typeChanged) || (!dimensionsCompatible(ds, imp))) {
 			rebuildDatasetData(ds, imp);
 		}
-		else { // ImagePlus type and shape unchanged
+		else if (pixelsChanged) { // ImagePlus type and shape unchanged
 			if (imp.getType() == ImagePlus.COLOR_RGB) {
 				colorPixelHarmonizer.updateDataset(ds, imp);
 			}
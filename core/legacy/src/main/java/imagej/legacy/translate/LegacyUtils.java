@@ -40,11 +40,23 @@
 import ij.gui.ImageWindow;
 import ij.macro.Interpreter;
 import imagej.data.Dataset;
+import imagej.data.PrimitivePlane;
+import imagej.data.RowAccess;
+import imagej.data.disk.DiskPlanarImg;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import net.imglib2.img.Img;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
 import net.imglib2.type.numeric.RealType;
 
+import org.scijava.thread.ThreadService;
+
 /**
  * A bag of static methods used throughout the translation layer
  * 
@@ -313,6 +325,102 @@ static boolean datasetIsIJ1Compatible(final Dataset ds) {
 		return ij1StorageCompatible(ds) && ij1TypeCompatible(ds);
 	}
 
+	/**
+	 * Returns a {@link RowAccess} on the XY plane of a {@link Dataset} that
+	 * contains the given position. The X and Y entries of the position are
+	 * ignored.
+	 */
+	static RowAccess rowAccess(final Dataset ds, final long[] pos) {
+		return rowAccess(ds, pos, false);
+	}
+
+	/**
+	 * As {@link #rowAccess(Dataset, long[])}, but for reading only: planes that
+	 * are shared copy-on-write stay shared, so the result must not be written.
+	 */
+	static RowAccess rowAccessForReading(final Dataset ds, final long[] pos) {
+		return rowAccess(ds, pos, true);
+	}
+
+	/**
+	 * Returns the primitive array backing the XY plane of a {@link Dataset} that
+	 * contains the given position, or null if the Dataset is not planar or its
+	 * X and Y axes are not its first two.
+	 */
+	static Object planeArray(final Dataset ds, final long[] pos) {
+		return planeArray(ds, pos, false);
+	}
+
+	/**
+	 * As {@link #planeArray(Dataset, long[])}, but for reading only: planes that
+	 * are shared copy-on-write stay shared, so the result must not be written.
+	 */
+	static Object planeArrayForReading(final Dataset ds, final long[] pos) {
+		return planeArray(ds, pos, true);
+	}
+
+	/**
+	 * Returns true if different planes of a {@link Dataset} and an
+	 * {@link ImagePlus} can be harmonized at the same time. This requires the
+	 * Dataset planes to be separate primitive arrays and the ImagePlus to not be
+	 * virtual (a virtual stack only holds one plane at a time).
+	 */
+	static boolean planesAreIndependent(final Dataset ds, final ImagePlus imp) {
+		if (imp.getStack().isVirtual()) return false;
+		if (ds.getAxisIndex(Axes.X) != 0 || ds.getAxisIndex(Axes.Y) != 1) {
+			return false;
+		}
+		return PrimitivePlane.isSupported(ds);
+	}
+
+	/** Copies one plane between a {@link Dataset} and an {@link ImagePlus}. */
+	interface PlaneCopier {
+
+		/**
+		 * @param planeNum The one based ImagePlus stack index of the plane
+		 * @param pos The Dataset position of the plane (X and Y entries are 0)
+		 */
+		void copy(int planeNum, long[] pos);
+	}
+
+	/**
+	 * Copies the planes at the given Dataset positions (listed in ImagePlus
+	 * stack order). Planes are copied in parallel when they are independent of
+	 * each other (see {@link #planesAreIndependent(Dataset, ImagePlus)}).
+	 */
+	static void copyPlanes(final Dataset ds, final ImagePlus imp,
+		final List<long[]> positions, final PlaneCopier copier)
+	{
+		final int numPlanes = positions.size();
+		if (!planesAreIndependent(ds, imp)) {
+			for (int p = 0; p < numPlanes; p++) {
+				copier.copy(p + 1, positions.get(p));
+			}
+			return;
+		}
+		final int numTasks = ParallelUtils.taskCount(numPlanes, 1);
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int t = 0; t < numTasks; t++) {
+			final int first = (int) ParallelUtils.chunkStart(numPlanes, numTasks, t);
+			final int last =
+				(int) ParallelUtils.chunkStart(numPlanes, numTasks, t + 1);
+			tasks.add(new Callable<Object>() {
+
+				@Override
+				public Object call() {
+					for (int p = first; p < last; p++) {
+						copier.copy(p + 1, positions.get(p));
+					}
+					return null;
+				}
+			});
+		}
+		final ThreadService threadService =
+			ds.getContext() == null ? null : ds.getContext().getService(
+				ThreadService.class);
+		ParallelUtils.invokeAll(threadService, tasks);
+	}
+
 	/**
 	 * Fills legacy ImageJ incompatible indices of a position array. The channel
 	 * from legacy ImageJ is rasterized into potentially multiple indices in the
@@ -376,9 +484,41 @@ else throw new IllegalArgumentException(
 			"incompatible dimension type specified");
 	}
 
-	/** Returns true if a {@link Dataset} is backed by {@link PlanarAccess}. */
+	private static RowAccess rowAccess(final Dataset ds, final long[] pos,
+		final boolean forReading)
+	{
+		final int xIndex = ds.getAxisIndex(Axes.X);
+		final int yIndex = ds.getAxisIndex(Axes.Y);
+		if (xIndex == 0 && yIndex == 1) {
+			final long[] planePos = new long[pos.length - 2];
+			System.arraycopy(pos, 2, planePos, 0, planePos.length);
+			if (forReading) return RowAccess.createForReading(ds, planePos);
+			return RowAccess.create(ds, planePos);
+		}
+		return new AxisRowAccess(ds, pos, xIndex, yIndex);
+	}
+
+	private static Object planeArray(final Dataset ds, final long[] pos,
+		final boolean forReading)
+	{
+		if (ds.getAxisIndex(Axes.X) != 0 || ds.getAxisIndex(Axes.Y) != 1) {
+			return null;
+		}
+		final long[] planePos = new long[pos.length - 2];
+		System.arraycopy(pos, 2, planePos, 0, planePos.length);
+		final int planeIndex = RowAccess.planeIndex(ds, planePos);
+		if (forReading) return PrimitivePlane.readPlane(ds, planeIndex);
+		return ds.getPlane(planeIndex, false);
+	}
+
+	/**
+	 * Returns true if a {@link Dataset} is backed by {@link PlanarAccess} whose
+	 * planes can be shared by reference. Disk-backed planes cannot: their arrays
+	 * go stale once evicted, so they are copied instead.
+	 */
 	private static boolean ij1StorageCompatible(final Dataset ds) {
-		return ds.getImgPlus().getImg() instanceof PlanarAccess<?>;
+		final Img<?> img = ds.getImgPlus().getImg();
+		return img instanceof PlanarAccess<?> && !(img instanceof DiskPlanarImg);
 	}
 
 	/**
@@ -393,15 +533,15 @@ private static boolean ij1TypeCompatible(final Dataset ds) {
 
 		Object plane;
 		if ((bitsPerPix == 8) && !signed && integer) {
-			plane = ds.getPlane(0, false);
+			plane = PrimitivePlane.readPlane(ds, 0);
 			if (plane != null && plane instanceof byte[]) return true;
 		}
 		else if ((bitsPerPix == 16) && !signed && integer) {
-			plane = ds.getPlane(0, false);
+			plane = PrimitivePlane.readPlane(ds, 0);
 			if (plane != null && plane instanceof short[]) return true;
 		}
 		else if ((bitsPerPix == 32) && signed && !integer) {
-			plane = ds.getPlane(0, false);
+			plane = PrimitivePlane.readPlane(ds, 0);
 			if (plane != null && plane instanceof float[]) return true;
 		}
 		return false;
@@ -40,6 +40,7 @@
 import imagej.data.Dataset;
 import imagej.data.Extents;
 import imagej.data.Position;
+import imagej.data.disk.DiskPlanarImg;
 import net.imglib2.meta.Axes;
 
 import org.scijava.log.LogService;
@@ -140,6 +141,8 @@ public void updateLegacyImage(final Dataset ds, final ImagePlus imp) {
 		final Position planePos = extents.createPosition();
 
 		// copy planes by reference
+		// NB - disk-backed planes go stale once evicted, so they are copied
+		final boolean copy = ds.getImgPlus().getImg() instanceof DiskPlanarImg;
 
 		int currSlice = imp.getCurrentSlice();
 		Object plane = null;
@@ -151,7 +154,7 @@ public void updateLegacyImage(final Dataset ds, final ImagePlus imp) {
 				for (int c = 0; c < cCount; c++) {
 					if (cIndex >= 0) planePos.setPosition(c, cIndex - 2);
 					final int planeNum = (int) planePos.getIndex();
-					plane = ds.getPlane(planeNum, false);
+					plane = ds.getPlane(planeNum, copy);
 					if (plane == null) {
 						log.error(message("Can't extract plane from Dataset ", c, z, t));
 					}
@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.legacy;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+
+import java.awt.GraphicsEnvironment;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.event.EventService;
+
+/**
+ * Tests {@link LegacyChangeTracker}.
+ */
+public class LegacyChangeTrackerTest {
+
+	static {
+		DefaultLegacyService.preinit();
+	}
+
+	private Context context;
+
+	@Before
+	public void beforeMethod() {
+		// NB: Skip these tests when in headless mode!
+		Assume.assumeTrue(!GraphicsEnvironment.isHeadless());
+		context = new Context(EventService.class);
+	}
+
+	@After
+	public void afterMethod() {
+		if (context != null) context.dispose();
+		context = null;
+	}
+
+	@Test
+	public void testChangesFlag() {
+		final LegacyChangeTracker tracker = new LegacyChangeTracker(context);
+		final ImagePlus imp = new ImagePlus("test", new ByteProcessor(8, 6));
+		assertTrue(tracker.isLegacyImageChanged(imp));
+		tracker.setLegacyImageSynced(imp);
+		assertFalse(tracker.isLegacyImageChanged(imp));
+		imp.changes = true;
+		assertTrue(tracker.isLegacyImageChanged(imp));
+	}
+
+	@Test
+	public void testInPlaceEditWithChangesRaised() {
+		final LegacyChangeTracker tracker = new LegacyChangeTracker(context);
+		final ImagePlus imp = new ImagePlus("test", new ByteProcessor(8, 6));
+		imp.changes = true;
+		tracker.setLegacyImageSynced(imp);
+		assertFalse(tracker.isLegacyImageChanged(imp));
+
+		// same arrays, same flag: only the content tells
+		imp.getProcessor().set(3, 2, 99);
+		assertTrue(tracker.isLegacyImageChanged(imp));
+		tracker.setLegacyImageSynced(imp);
+		assertFalse(tracker.isLegacyImageChanged(imp));
+	}
+
+	@Test
+	public void testInPlaceEditOfCurrentSlice() {
+		final LegacyChangeTracker tracker = new LegacyChangeTracker(context);
+		final ImageStack stack = new ImageStack(8, 6);
+		for (int z = 0; z < 3; z++) {
+			stack.addSlice("" + z, new ByteProcessor(8, 6));
+		}
+		final ImagePlus imp = new ImagePlus("test", stack);
+		imp.setSlice(2);
+		imp.changes = true;
+		tracker.setLegacyImageSynced(imp);
+		assertFalse(tracker.isLegacyImageChanged(imp));
+
+		imp.getProcessor().set(1, 1, 7);
+		assertTrue(tracker.isLegacyImageChanged(imp));
+	}
+
+	@Test
+	public void testSliceChange() {
+		final LegacyChangeTracker tracker = new LegacyChangeTracker(context);
+		final ImageStack stack = new ImageStack(8, 6);
+		for (int z = 0; z < 3; z++) {
+			stack.addSlice("" + z, new ByteProcessor(8, 6));
+		}
+		final ImagePlus imp = new ImagePlus("test", stack);
+		tracker.setLegacyImageSynced(imp);
+
+		// the processor now shows other pixels
+		imp.setSlice(3);
+		assertTrue(tracker.isLegacyImageChanged(imp));
+	}
+
+}
@@ -0,0 +1,398 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.legacy.translate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.RowAccess;
+import imagej.legacy.DefaultLegacyService;
+
+import java.awt.GraphicsEnvironment;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests the row-wise copying of {@link GrayPixelHarmonizer} and
+ * {@link ColorPixelHarmonizer}, and the plane helpers of {@link LegacyUtils}
+ * they use, both for planar Datasets and for those that fall back to generic
+ * access.
+ */
+public class PixelHarmonizerTest {
+
+	static {
+		// NB: patch ImageJ 1.x before its classes are used here
+		DefaultLegacyService.preinit();
+	}
+
+	private static final int WIDTH = 13, HEIGHT = 7, PLANES = 4;
+
+	private Context context;
+
+	@Before
+	public void beforeMethod() {
+		// NB: Skip these tests when in headless mode!
+		Assume.assumeTrue(!GraphicsEnvironment.isHeadless());
+		context = new Context(DatasetService.class);
+	}
+
+	@After
+	public void afterMethod() {
+		if (context != null) context.dispose();
+		context = null;
+	}
+
+	@Test
+	public void testGrayPlanar() {
+		// planes are copied whole
+		final Dataset ds =
+			gray(new PlanarImgFactory<UnsignedByteType>(), new UnsignedByteType(),
+				false);
+		assertGrayRoundTrip(ds, byteStack(), 0);
+	}
+
+	@Test
+	public void testGraySigned() {
+		// values are shifted between signed and unsigned 16 bits
+		final Dataset ds =
+			gray(new PlanarImgFactory<ShortType>(), new ShortType(), false);
+		assertGrayRoundTrip(ds, shortStack(), -32768);
+	}
+
+	@Test
+	public void testGrayNonPlanar() {
+		final Dataset ds =
+			gray(new ArrayImgFactory<FloatType>(), new FloatType(), false);
+		final ImagePlus imp = new ImagePlus("gray", floatStack());
+		assertFalse(LegacyUtils.planesAreIndependent(ds, imp));
+		assertGrayRoundTrip(ds, floatStack(), 0);
+	}
+
+	@Test
+	public void testGrayAxesNotFirst() {
+		// rows are walked along X wherever it is
+		final Dataset ds =
+			gray(new PlanarImgFactory<UnsignedByteType>(), new UnsignedByteType(),
+				true);
+		assertGrayRoundTrip(ds, byteStack(), 0);
+	}
+
+	@Test
+	public void testColorPlanar() {
+		assertColorRoundTrip(color(new PlanarImgFactory<UnsignedByteType>()));
+	}
+
+	@Test
+	public void testColorNonPlanar() {
+		assertColorRoundTrip(color(new ArrayImgFactory<UnsignedByteType>()));
+	}
+
+	@Test
+	public void testCopyPlanes() {
+		final Dataset planar =
+			gray(new PlanarImgFactory<UnsignedByteType>(), new UnsignedByteType(),
+				false);
+		final Dataset array =
+			gray(new ArrayImgFactory<UnsignedByteType>(), new UnsignedByteType(),
+				false);
+		final ImagePlus imp = new ImagePlus("gray", byteStack());
+		assertTrue(LegacyUtils.planesAreIndependent(planar, imp));
+		assertFalse(LegacyUtils.planesAreIndependent(array, imp));
+		for (final Dataset ds : new Dataset[] { planar, array }) {
+			final List<long[]> positions = new ArrayList<long[]>();
+			for (int z = 0; z < PLANES; z++) {
+				positions.add(new long[] { 0, 0, z });
+			}
+			// every plane is copied once, with its own position
+			// NB: record the calls; failures in copying threads would be lost
+			final List<Long> copied =
+				Collections.synchronizedList(new ArrayList<Long>());
+			LegacyUtils.copyPlanes(ds, imp, positions,
+				new LegacyUtils.PlaneCopier() {
+
+					@Override
+					public void copy(final int planeNum, final long[] pos) {
+						copied.add(PLANES * (long) planeNum + pos[2]);
+					}
+				});
+			Collections.sort(copied);
+			assertEquals(PLANES, copied.size());
+			for (int p = 0; p < PLANES; p++) {
+				assertEquals(PLANES * (p + 1L) + p, copied.get(p).longValue());
+			}
+		}
+	}
+
+	@Test
+	public void testRowAccess() {
+		final Dataset planar =
+			gray(new PlanarImgFactory<FloatType>(), new FloatType(), false);
+		final Dataset array =
+			gray(new ArrayImgFactory<FloatType>(), new FloatType(), false);
+		final Dataset permuted =
+			gray(new PlanarImgFactory<FloatType>(), new FloatType(), true);
+		for (final Dataset ds : new Dataset[] { planar, array, permuted }) {
+			final long[] pos = new long[3];
+			pos[ds.getAxisIndex(Axes.Z)] = 2;
+			final double[] row = new double[WIDTH];
+			for (int x = 0; x < WIDTH; x++) {
+				row[x] = 10 * x + 0.5;
+			}
+			LegacyUtils.rowAccess(ds, pos).write(3, 0, row, WIDTH);
+			final double[] back = new double[WIDTH];
+			final RowAccess reader = LegacyUtils.rowAccessForReading(ds, pos);
+			reader.read(3, back, 0);
+			for (int x = 0; x < WIDTH; x++) {
+				assertEquals(row[x], back[x], 0);
+				assertEquals(row[x], value(ds, x, 3, 2, -1), 0);
+			}
+		}
+		assertEquals(null, LegacyUtils.planeArray(array, new long[3]));
+		assertEquals(null, LegacyUtils.planeArray(permuted, new long[3]));
+	}
+
+	// -- helpers --
+
+	/** Creates an XYZ Dataset, or a ZXY one if permuted. */
+	private <T extends RealType<T> & NativeType<T>> Dataset gray(
+		final ImgFactory<T> factory, final T type, final boolean permuted)
+	{
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		if (permuted) {
+			return datasetService.create(factory, type, new long[] { PLANES, WIDTH,
+				HEIGHT }, "gray", new AxisType[] { Axes.Z, Axes.X, Axes.Y });
+		}
+		return datasetService.create(factory, type, new long[] { WIDTH, HEIGHT,
+			PLANES }, "gray", new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+	}
+
+	private Dataset color(final ImgFactory<UnsignedByteType> factory) {
+		final Dataset ds =
+			context.getService(DatasetService.class).create(factory,
+				new UnsignedByteType(), new long[] { WIDTH, HEIGHT, 3, PLANES },
+				"color", new AxisType[] { Axes.X, Axes.Y, Axes.CHANNEL, Axes.Z });
+		ds.setRGBMerged(true);
+		return ds;
+	}
+
+	private ImageStack byteStack() {
+		final ImageStack stack = new ImageStack(WIDTH, HEIGHT);
+		for (int z = 0; z < PLANES; z++) {
+			final ImageProcessor proc = new ByteProcessor(WIDTH, HEIGHT);
+			fill(proc, z, 251);
+			stack.addSlice("" + z, proc);
+		}
+		return stack;
+	}
+
+	private ImageStack shortStack() {
+		final ImageStack stack = new ImageStack(WIDTH, HEIGHT);
+		for (int z = 0; z < PLANES; z++) {
+			final ImageProcessor proc = new ShortProcessor(WIDTH, HEIGHT);
+			fill(proc, z, 65536);
+			stack.addSlice("" + z, proc);
+		}
+		return stack;
+	}
+
+	private ImageStack floatStack() {
+		final ImageStack stack = new ImageStack(WIDTH, HEIGHT);
+		for (int z = 0; z < PLANES; z++) {
+			final ImageProcessor proc = new FloatProcessor(WIDTH, HEIGHT);
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					proc.setf(x, y, x * 0.5f - y * 1.25f + z);
+				}
+			}
+			stack.addSlice("" + z, proc);
+		}
+		return stack;
+	}
+
+	/** Fills a processor with a pattern spread over [0, modulus). */
+	private void fill(final ImageProcessor proc, final int z, final int modulus)
+	{
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				proc.setf(x, y, (x * 4099 + y * 257 + z * 16411) % modulus);
+			}
+		}
+	}
+
+	/**
+	 * Copies an ImagePlus to a Dataset and back after changing the Dataset. The
+	 * Dataset holds the ImagePlus values plus the given offset.
+	 */
+	private void assertGrayRoundTrip(final Dataset ds, final ImageStack stack,
+		final double offset)
+	{
+		final ImagePlus imp = new ImagePlus("gray", stack);
+		final GrayPixelHarmonizer harmonizer = new GrayPixelHarmonizer();
+		harmonizer.updateDataset(ds, imp);
+		for (int z = 0; z < PLANES; z++) {
+			final ImageProcessor proc = stack.getProcessor(z + 1);
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					assertEquals(proc.getf(x, y) + offset, value(ds, x, y, z, -1), 0);
+				}
+			}
+		}
+
+		// change the Dataset and copy it back
+		for (int z = 0; z < PLANES; z++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					setValue(ds, x, y, z, -1, (WIDTH - x + y + z) + offset);
+				}
+			}
+		}
+		harmonizer.updateLegacyImage(ds, imp);
+		for (int z = 0; z < PLANES; z++) {
+			final ImageProcessor proc = imp.getStack().getProcessor(z + 1);
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					assertEquals(WIDTH - x + y + z, proc.getf(x, y), 0);
+				}
+			}
+		}
+	}
+
+	/** Copies a color ImagePlus to a Dataset and back after changing it. */
+	private void assertColorRoundTrip(final Dataset ds) {
+		final ImageStack stack = new ImageStack(WIDTH, HEIGHT);
+		for (int z = 0; z < PLANES; z++) {
+			final ColorProcessor proc = new ColorProcessor(WIDTH, HEIGHT);
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					proc.set(x, y, rgb(x * 19, y * 31, z * 61 + x));
+				}
+			}
+			stack.addSlice("" + z, proc);
+		}
+		final ImagePlus imp = new ImagePlus("color", stack);
+		final ColorPixelHarmonizer harmonizer = new ColorPixelHarmonizer();
+		harmonizer.updateDataset(ds, imp);
+		for (int z = 0; z < PLANES; z++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					assertEquals(x * 19 & 0xff, value(ds, x, y, z, 0), 0);
+					assertEquals(y * 31 & 0xff, value(ds, x, y, z, 1), 0);
+					assertEquals(z * 61 + x & 0xff, value(ds, x, y, z, 2), 0);
+				}
+			}
+		}
+
+		// change the Dataset and copy it back
+		for (int z = 0; z < PLANES; z++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					setValue(ds, x, y, z, 0, 255 - x);
+					setValue(ds, x, y, z, 1, 255 - y);
+					setValue(ds, x, y, z, 2, 255 - z);
+				}
+			}
+		}
+		harmonizer.updateLegacyImage(ds, imp);
+		for (int z = 0; z < PLANES; z++) {
+			final ImageProcessor proc = imp.getStack().getProcessor(z + 1);
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					assertEquals(rgb(255 - x, 255 - y, 255 - z) & 0xffffff, proc.get(x,
+						y) & 0xffffff);
+				}
+			}
+		}
+	}
+
+	private int rgb(final int r, final int g, final int b) {
+		return 0xff000000 | (r & 0xff) << 16 | (g & 0xff) << 8 | (b & 0xff);
+	}
+
+	private double value(final Dataset ds, final int x, final int y,
+		final int z, final int c)
+	{
+		return access(ds, x, y, z, c).get().getRealDouble();
+	}
+
+	private void setValue(final Dataset ds, final int x, final int y,
+		final int z, final int c, final double value)
+	{
+		access(ds, x, y, z, c).get().setReal(value);
+	}
+
+	/** Returns an access positioned at a pixel of a plane (and channel). */
+	private RandomAccess<? extends RealType<?>> access(final Dataset ds,
+		final int x, final int y, final int z, final int c)
+	{
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		access.setPosition(x, ds.getAxisIndex(Axes.X));
+		access.setPosition(y, ds.getAxisIndex(Axes.Y));
+		access.setPosition(z, ds.getAxisIndex(Axes.Z));
+		if (c >= 0) access.setPosition(c, ds.getAxisIndex(Axes.CHANNEL));
+		return access;
+	}
+
+}
@@ -106,20 +106,53 @@ public enum NeighborhoodType {RADIAL, RECTANGULAR}
 	public abstract Function<PointSet,DoubleType> getFunction(
 		Function<long[],DoubleType> otherFunc);
 
+	/**
+	 * Returns the {@link SlidingWindowFilter} mode that computes the same result
+	 * as {@link #getFunction(Function)}, or null if there is none. When non-null
+	 * the sliding window filter is used whenever the neighborhood and data allow
+	 * it.
+	 */
+	protected SlidingWindowFilter.Mode getSlidingWindowMode() {
+		return null;
+	}
+
 	@Override
 	public void run() {
-		Neighborhood neighborhood = determineNeighborhood(input.numDimensions());
+		final Neighborhood neighborhood =
+			determineNeighborhood(input.numDimensions());
 		if (neighborhood == null) return;
+		final SlidingWindowFilter.Mode mode = getSlidingWindowMode();
+		if (mode != null &&
+			SlidingWindowFilter.canFilter(input, neighborhood, mode))
+		{
+			final SlidingWindowFilter filter =
+				new SlidingWindowFilter(context, input, neighborhood, mode);
+			output = filter.filter(neighborhood.getDescription());
+			if (output == null) cancelReason = "Noise reduction canceled";
+			return;
+		}
 		@SuppressWarnings("unchecked")
-		ImgPlus<U> inputImg = (ImgPlus<U>) input.getImgPlus();
-		OutOfBoundsMirrorFactory<U, RandomAccessibleInterval<U>> oobFactory =
-				new OutOfBoundsMirrorFactory<U,RandomAccessibleInterval<U>>(Boundary.DOUBLE);
-		Function<long[],DoubleType> otherFunc =
-				new RealImageFunction<U,DoubleType>(inputImg, oobFactory, new DoubleType());
-		PointSet ps = neighborhood.getPoints();
+		final ImgPlus<U> inputImg = (ImgPlus<U>) input.getImgPlus();
+		final ReductionFactory<DoubleType> factory =
+			new ReductionFactory<DoubleType>()
+		{
+
+			@Override
+			public PointSet createNeighborhood() {
+				return neighborhood.copy().getPoints();
+			}
+
+			@Override
+			public Function<PointSet, DoubleType> createFunction(
+				final PointSet neigh)
+			{
+				return getFunction(imageFunction(inputImg));
+			}
+		};
 		Reducer<U,DoubleType> reducer =
-				new Reducer<U,DoubleType>(context, inputImg, getFunction(otherFunc), ps);
+				new Reducer<U,DoubleType>(context, inputImg, factory);
 		output = reducer.reduceNoise(neighborhood.getDescription());
+		if (output == null) cancelReason = "Noise reduction canceled";
 	}
 
 	public void setInput(Dataset ds) {
@@ -159,6 +192,12 @@ public String getCancelReason() {
 
 	// -- private helpers --
 	
+	private Function<long[], DoubleType> imageFunction(final ImgPlus<U> img) {
+		OutOfBoundsMirrorFactory<U, RandomAccessibleInterval<U>> oobFactory =
+				new OutOfBoundsMirrorFactory<U,RandomAccessibleInterval<U>>(Boundary.DOUBLE);
+		return new RealImageFunction<U,DoubleType>(img, oobFactory, new DoubleType());
+	}
+
 	private Neighborhood determineNeighborhood(int numDims) {
 		if (userProvidedNeighborhood != null) return userProvidedNeighborhood;
 		setNeighType();
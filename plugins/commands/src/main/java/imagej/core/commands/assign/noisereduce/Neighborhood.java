@@ -45,4 +45,10 @@
 public interface Neighborhood {
 	public PointSet getPoints();
 	public String getDescription();
+
+	/**
+	 * Creates a neighborhood of the same shape whose points are independent of
+	 * this one's. Used to give each worker thread its own neighborhood.
+	 */
+	public Neighborhood copy();
 }
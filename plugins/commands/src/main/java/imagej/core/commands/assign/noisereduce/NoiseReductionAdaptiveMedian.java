@@ -109,21 +109,48 @@
 	public void run() {
 		@SuppressWarnings("unchecked")
 		final ImgPlus<U> inputImg = (ImgPlus<U>) input.getImgPlus();
-		final OutOfBoundsMirrorFactory<U, RandomAccessibleInterval<U>> oobFactory =
-			new OutOfBoundsMirrorFactory<U, RandomAccessibleInterval<U>>(
-				Boundary.DOUBLE);
-		final Function<long[], DoubleType> otherFunc =
-			new RealImageFunction<U, DoubleType>(inputImg, oobFactory,
-				new DoubleType());
-		final List<PointSet> pointSets = getNeighborhoods(input.numDimensions());
+		final ReductionFactory<DoubleType> factory = createFactory(inputImg);
 		final Reducer<U, DoubleType> reducer =
-			new Reducer<U, DoubleType>(context, inputImg, getFunction(otherFunc,
-				pointSets), pointSets.get(0));
+			new Reducer<U, DoubleType>(context, inputImg, factory);
 		output = reducer.reduceNoise("Adaptive window neighborhood");
+		if (output == null) cancel("Noise reduction canceled");
+	}
+
+	// -- package access methods --
+
+	/** Creates the per slab functions and neighborhoods of the reduction. */
+	ReductionFactory<DoubleType> createFactory(final ImgPlus<U> inputImg) {
+		final int numDims = inputImg.numDimensions();
+		return new ReductionFactory<DoubleType>() {
+
+			@Override
+			public PointSet createNeighborhood() {
+				return getNeighborhoods(numDims).get(0);
+			}
+
+			@Override
+			public Function<PointSet, DoubleType> createFunction(
+				final PointSet neighborhood)
+			{
+				// NB - the function must expand from the very neighborhood that is
+				// moved over the image, as it did before slabs were introduced
+				final List<PointSet> neighs = getNeighborhoods(numDims);
+				neighs.set(0, neighborhood);
+				return getFunction(imageFunction(inputImg), neighs);
+			}
+		};
 	}
 
 	// -- private helpers --
 
+	private Function<long[], DoubleType> imageFunction(final ImgPlus<U> img) {
+		final OutOfBoundsMirrorFactory<U, RandomAccessibleInterval<U>> oobFactory =
+			new OutOfBoundsMirrorFactory<U, RandomAccessibleInterval<U>>(
+				Boundary.DOUBLE);
+		return new RealImageFunction<U, DoubleType>(img, oobFactory,
+			new DoubleType());
+	}
+
 	private Function<PointSet, DoubleType> getFunction(
 		final Function<long[], DoubleType> otherFunc, final List<PointSet> neighs)
 	{
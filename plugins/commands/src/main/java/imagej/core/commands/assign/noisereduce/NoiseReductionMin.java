@@ -68,4 +68,9 @@ public Function<PointSet, DoubleType> getFunction(
 		return new RealMinFunction<DoubleType>(otherFunc);
 	}
 
+	@Override
+	protected SlidingWindowFilter.Mode getSlidingWindowMode() {
+		return SlidingWindowFilter.Mode.MINIMUM;
+	}
+
 }
@@ -77,4 +77,10 @@ public String getDescription() {
 			" pixel radial neighborhood";
 	}
 
+	@Override
+	public RadialNeigh copy() {
+		// NB - the radius condition refers to its own space so rebuild from scratch
+		return new RadialNeigh(numDims, radius);
+	}
+
 }
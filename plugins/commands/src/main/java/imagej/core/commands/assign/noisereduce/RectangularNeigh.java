@@ -74,4 +74,9 @@ public String getDescription() {
 		return builder.toString();
 	}
 
+	@Override
+	public RectangularNeigh copy() {
+		return new RectangularNeigh(posOffsets.clone(), negOffsets.clone());
+	}
+
 }
@@ -37,6 +37,14 @@
 
 import imagej.data.Dataset;
 import imagej.data.DefaultDataset;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.imglib2.img.ImgPlus;
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.img.SerialImageAssignment;
@@ -47,27 +55,54 @@
 
 import org.scijava.Context;
 import org.scijava.app.StatusService;
+import org.scijava.thread.ThreadService;
 
 /**
- * TODO
+ * Reduces noise in an image by replacing each value with a function of the
+ * values of its neighborhood.
+ * <p>
+ * When constructed with a {@link ReductionFactory} the output space is split
+ * into slabs along one dimension. Slabs are reduced concurrently on the
+ * {@link ThreadService} pool, each one with its own function and neighborhood
+ * from the factory. Progress is reported through the {@link StatusService} as
+ * slabs complete and the reduction stops early if the calling thread is
+ * interrupted.
+ * </p>
  * 
  * @author Barry DeZonia
  */
 public class Reducer<U extends RealType<U>,V extends RealType<V>>
 {
+	// -- constants --
+
+	/** Smallest number of pixels worth handing to a thread. */
+	private static final long MIN_CHUNK = 16384;
+
+	/** Slabs per thread; more slabs give smoother progress and load balance. */
+	private static final int SLABS_PER_TASK = 4;
+
+	// -- instance variables --
+
 	private final Context context;
 	
 	private final Function<PointSet,V> inputFunction;
 	
 	private final PointSet neighborhood;
 	
+	private final ReductionFactory<V> factory;
+
 	private final ImgPlus<U> input;
 
 	private final StatusService statusService; 
 	
+	private final ThreadService threadService;
+
 	// -- public interface --
 
-	
+	/**
+	 * Creates a Reducer that runs on a single thread using the given function
+	 * and neighborhood.
+	 */
 	public Reducer(Context context, ImgPlus<U> input, Function<PointSet,V> func,
 		PointSet neighborhood)
 	{
@@ -75,43 +110,152 @@ public Reducer(Context context, ImgPlus<U> input, Function<PointSet,V> func,
 		this.input = input;
 		this.inputFunction = func;
 		this.neighborhood = neighborhood;
+		this.factory = null;
 		this.statusService = context.getService(StatusService.class);
+		this.threadService = context.getService(ThreadService.class);
+	}
+
+	/**
+	 * Creates a Reducer that reduces slabs of the image in parallel using
+	 * functions and neighborhoods from the given factory.
+	 */
+	public Reducer(Context context, ImgPlus<U> input,
+		ReductionFactory<V> factory)
+	{
+		this.context = context;
+		this.input = input;
+		this.inputFunction = null;
+		this.neighborhood = null;
+		this.factory = factory;
+		this.statusService = context.getService(StatusService.class);
+		this.threadService = context.getService(ThreadService.class);
 	}
 
 	// NOTE - because the neighborhood could be a spherical neighborhood that
-	// relies on a WithinRadiusOfPointCondition we cannot parallelize this
-	// algorithm. If we did we'd get one point per Thread with only one being
-	// updated correctly. One can see by trial that using a regular
-	// ImageAssignment here results in only a portion of the image getting noise
-	// reduced.
+	// relies on a WithinRadiusOfPointCondition we cannot hand copies of one
+	// neighborhood to several threads. If we did we'd get one point per Thread
+	// with only one being updated correctly. One can see by trial that using a
+	// regular ImageAssignment here results in only a portion of the image
+	// getting noise reduced. Instead each slab gets a freshly built neighborhood
+	// from the ReductionFactory.
 	
+	/**
+	 * Returns a new Dataset containing the noise reduced image, or null if the
+	 * reduction was canceled.
+	 */
 	public Dataset reduceNoise(String neighDescrip) {
 		notifyUserAtStart(neighDescrip);
 		ImgPlus<U> newImg = input.copy();
 		long[] dims = new long[newImg.numDimensions()];
 		newImg.dimensions(dims);
-		PointSet space = new HyperVolumePointSet(dims);
+		if (factory == null) {
+			PointSet space = new HyperVolumePointSet(dims);
+			reduce(newImg, space, inputFunction, neighborhood);
+		}
+		else if (!reduceSlabs(newImg, dims)) {
+			notifyUserOfCancel(neighDescrip);
+			return null;
+		}
+		notifyUserAtEnd(neighDescrip);
+		return new DefaultDataset(context, newImg);
+	}
+
+	// -- private interface --
+
+	private void reduce(ImgPlus<U> output, PointSet space,
+		Function<PointSet, V> func, PointSet neigh)
+	{
 		PointSetInputIterator inputIterator =
-				new PointSetInputIterator(space, neighborhood);
-		long[] outputOrigin = new long[input.numDimensions()];
-		long[] outputSpan = outputOrigin.clone();
-		input.dimensions(outputSpan);
+				new PointSetInputIterator(space, neigh);
 		// NB - regular ImageAssignement won't work here for radial neighborhood due
 		// to the duplication of neighborhoods for parallelization and its
 		// interference with the WithinRadiusOfPointSetOriginCondition.
 		SerialImageAssignment<U,V,PointSet> assigner =
 				new SerialImageAssignment<U,V,PointSet>(
-					newImg,
-					inputFunction,
+					output,
+					func,
 					inputIterator,
 					null);
 		assigner.assign();
-		notifyUserAtEnd(neighDescrip);
-		return new DefaultDataset(context, newImg);
 	}
 
-	// -- private interface --
-	
+	/**
+	 * Reduces the image slab by slab on the thread pool. Returns false if the
+	 * work was canceled.
+	 */
+	private boolean reduceSlabs(final ImgPlus<U> output, final long[] dims) {
+		long totalPixels = 1;
+		for (long dim : dims) totalPixels *= dim;
+		final int numTasks = ParallelUtils.taskCount(totalPixels, MIN_CHUNK);
+		final int splitDim = splitDimension(dims, numTasks * SLABS_PER_TASK);
+		final int numSlabs =
+			(int) Math.min(dims[splitDim], numTasks * SLABS_PER_TASK);
+
+		final AtomicInteger nextSlab = new AtomicInteger();
+		final AtomicInteger slabsDone = new AtomicInteger();
+		final AtomicBoolean canceled = new AtomicBoolean();
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int t = 0; t < numTasks; t++) {
+			tasks.add(new Callable<Object>() {
+
+				@Override
+				public Object call() {
+					int slab;
+					while ((slab = nextSlab.getAndIncrement()) < numSlabs) {
+						if (canceled.get() || Thread.currentThread().isInterrupted()) {
+							canceled.set(true);
+							break;
+						}
+						final PointSet space = slab(dims, splitDim, slab, numSlabs);
+						final PointSet neighborhood = factory.createNeighborhood();
+						reduce(output, space, factory.createFunction(neighborhood),
+							neighborhood);
+						if (statusService != null) {
+							statusService.showProgress(slabsDone.incrementAndGet(), numSlabs);
+						}
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			ParallelUtils.invokeAll(threadService, tasks);
+		}
+		catch (final IllegalStateException e) {
+			// thrown when this thread is interrupted while waiting
+			if (!Thread.currentThread().isInterrupted()) throw e;
+			canceled.set(true);
+		}
+		return !canceled.get();
+	}
+
+	/**
+	 * Picks the outermost dimension that can be split into the given number of
+	 * slabs, or the largest dimension if none can.
+	 */
+	private int splitDimension(final long[] dims, final int slabs) {
+		int largest = 0;
+		for (int d = dims.length - 1; d >= 0; d--) {
+			if (dims[d] >= slabs) return d;
+			if (dims[d] > dims[largest]) largest = d;
+		}
+		return largest;
+	}
+
+	private PointSet slab(final long[] dims, final int splitDim,
+		final int slab, final int numSlabs)
+	{
+		final long[] pt1 = new long[dims.length];
+		final long[] pt2 = new long[dims.length];
+		for (int d = 0; d < dims.length; d++) {
+			pt2[d] = dims[d] - 1;
+		}
+		pt1[splitDim] = ParallelUtils.chunkStart(dims[splitDim], numSlabs, slab);
+		pt2[splitDim] =
+			ParallelUtils.chunkStart(dims[splitDim], numSlabs, slab + 1) - 1;
+		return new HyperVolumePointSet(pt1, pt2);
+	}
+
 	private void notifyUserAtStart(String neighDescrip) {
 		if (statusService != null)
 			statusService.showStatus(neighDescrip + " ... beginning processing");
@@ -121,4 +265,9 @@ private void notifyUserAtEnd(String neighDescrip) {
 		if (statusService != null)
 			statusService.showStatus(neighDescrip + " ... completed processing");
 	}
+
+	private void notifyUserOfCancel(String neighDescrip) {
+		if (statusService != null)
+			statusService.showStatus(neighDescrip + " ... canceled");
+	}
 }
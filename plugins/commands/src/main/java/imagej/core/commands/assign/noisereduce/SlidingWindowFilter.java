@@ -0,0 +1,449 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign.noisereduce;
+
+import imagej.data.Dataset;
+import imagej.data.DefaultDataset;
+import imagej.data.Extents;
+import imagej.data.Position;
+import imagej.data.RowAccess;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.ops.pointset.PointSetIterator;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.Context;
+import org.scijava.app.StatusService;
+import org.scijava.thread.ThreadService;
+
+/**
+ * SlidingWindowFilter computes median, minimum and maximum filters over a
+ * {@link RectangularNeigh} without revisiting the whole neighborhood at every
+ * pixel. Image edges are handled by mirroring (with the edge pixel repeated)
+ * just as the general {@link Reducer} path does.
+ * <ul>
+ * <li>The median keeps a histogram of the window that is updated as the
+ * window slides along a row (Huang's algorithm) and tracks the median bin
+ * incrementally. Only the columns entering and leaving the window are read, so
+ * the cost per pixel grows with the window height but not its width. This
+ * requires an integer type with at most 65536 values.</li>
+ * <li>The minimum and maximum are separable: a monotonic deque computes the
+ * running extreme along each row and then down each column, for a cost per
+ * pixel that does not depend on the window size at all.</li>
+ * </ul>
+ * Planes (or bands of rows) are filtered in parallel on the
+ * {@link ThreadService} pool.
+ * 
+ * @author Barry DeZonia
+ */
+public class SlidingWindowFilter {
+
+	// -- constants --
+
+	/** The supported filters. */
+	public enum Mode {
+		MEDIAN, MINIMUM, MAXIMUM
+	}
+
+	/** Largest number of histogram bins used by the median filter. */
+	private static final long MAX_BINS = 65536;
+
+	/** Smallest number of rows worth handing to a thread. */
+	private static final int MIN_BAND_ROWS = 32;
+
+	// -- instance variables --
+
+	private final Context context;
+	private final Dataset input;
+	private final Mode mode;
+	private final StatusService statusService;
+	private final ThreadService threadService;
+
+	/** window extents: columns x-left..x+right and rows y-up..y+down */
+	private final int left, right, up, down;
+
+	// -- constructor --
+
+	/**
+	 * Creates a filter of the given Dataset. Only call this after checking the
+	 * combination with {@link #canFilter(Dataset, Neighborhood, Mode)}.
+	 */
+	public SlidingWindowFilter(final Context context, final Dataset input,
+		final Neighborhood neighborhood, final Mode mode)
+	{
+		this.context = context;
+		this.input = input;
+		this.mode = mode;
+		this.statusService = context.getService(StatusService.class);
+		this.threadService = context.getService(ThreadService.class);
+		final long[] window = window(neighborhood, input.numDimensions());
+		if (window == null) {
+			throw new IllegalArgumentException(
+				"Neighborhood is not an XY rectangle");
+		}
+		left = (int) -window[0];
+		right = (int) window[1];
+		up = (int) -window[2];
+		down = (int) window[3];
+	}
+
+	// -- static helpers --
+
+	/**
+	 * Returns true if a SlidingWindowFilter can compute the given filter of the
+	 * given Dataset over the given neighborhood.
+	 */
+	public static boolean canFilter(final Dataset ds,
+		final Neighborhood neighborhood, final Mode mode)
+	{
+		if (!(neighborhood instanceof RectangularNeigh)) return false;
+		if (ds.numDimensions() < 2) return false;
+		if (mode == Mode.MEDIAN) {
+			if (!ds.isInteger()) return false;
+			final RealType<?> type = ds.getType();
+			if (type.getMaxValue() - type.getMinValue() >= MAX_BINS) return false;
+		}
+		return window(neighborhood, ds.numDimensions()) != null;
+	}
+
+	// -- SlidingWindowFilter methods --
+
+	/**
+	 * Returns a new Dataset containing the filtered image, or null if the work
+	 * was canceled.
+	 */
+	public Dataset filter(final String description) {
+		notifyUser(description + " ... beginning processing");
+		final Dataset output =
+			new DefaultDataset(context, input.getImgPlus().copy());
+
+		final int width = (int) input.dimension(0);
+		final int height = (int) input.dimension(1);
+		final long[] planeDims = new long[input.numDimensions() - 2];
+		for (int i = 0; i < planeDims.length; i++) {
+			planeDims[i] = input.dimension(i + 2);
+		}
+		final Extents extents = new Extents(planeDims);
+		final long numPlanes = (planeDims.length == 0) ? 1 : extents.numElements();
+
+		final int numTasks =
+			ParallelUtils.taskCount(numPlanes * height, MIN_BAND_ROWS);
+		int bandsPerPlane = 1;
+		if (numPlanes < numTasks) {
+			final int wanted = (int) ((numTasks + numPlanes - 1) / numPlanes);
+			bandsPerPlane =
+				Math.min(wanted, Math.max(1, height / MIN_BAND_ROWS));
+		}
+
+		final List<long[]> planes = new ArrayList<long[]>();
+		final Position planePos = extents.createPosition();
+		for (long p = 0; p < numPlanes; p++) {
+			if (planeDims.length > 0) planePos.fwd();
+			final long[] pos = new long[planeDims.length];
+			planePos.localize(pos);
+			planes.add(pos);
+		}
+
+		final int numUnits = planes.size() * bandsPerPlane;
+		final int bands = bandsPerPlane;
+		final AtomicInteger nextUnit = new AtomicInteger();
+		final AtomicInteger unitsDone = new AtomicInteger();
+		final AtomicBoolean canceled = new AtomicBoolean();
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int t = 0; t < numTasks; t++) {
+			tasks.add(new Callable<Object>() {
+
+				@Override
+				public Object call() {
+					int unit;
+					while ((unit = nextUnit.getAndIncrement()) < numUnits) {
+						if (canceled.get() || Thread.currentThread().isInterrupted()) {
+							canceled.set(true);
+							break;
+						}
+						final long[] pos = planes.get(unit / bands);
+						final int band = unit % bands;
+						final int y0 = (int) ParallelUtils.chunkStart(height, bands, band);
+						final int y1 =
+							(int) ParallelUtils.chunkStart(height, bands, band + 1);
+						filterBand(output, pos, width, height, y0, y1);
+						if (statusService != null) {
+							statusService.showProgress(unitsDone.incrementAndGet(), numUnits);
+						}
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			ParallelUtils.invokeAll(threadService, tasks);
+		}
+		catch (final IllegalStateException e) {
+			// thrown when this thread is interrupted while waiting
+			if (!Thread.currentThread().isInterrupted()) throw e;
+			canceled.set(true);
+		}
+		if (canceled.get()) {
+			notifyUser(description + " ... canceled");
+			return null;
+		}
+		notifyUser(description + " ... completed processing");
+		return output;
+	}
+
+	// -- private helpers --
+
+	/** Filters rows [y0, y1) of one plane. */
+	private void filterBand(final Dataset output, final long[] planePos,
+		final int width, final int height, final int y0, final int y1)
+	{
+		final RowAccess src = RowAccess.createForReading(input, planePos);
+		final RowAccess dst = RowAccess.create(output, planePos);
+
+		// read the (mirrored) source rows the band's windows cover
+		final int numRows = (y1 - y0) + up + down;
+		final double[][] rows = new double[numRows][width];
+		for (int k = 0; k < numRows; k++) {
+			src.read(mirror(y0 - up + k, height), rows[k], 0);
+		}
+
+		// columns of the mirrored extension of a row; window x covers x..x+l+r
+		final int[] cols = new int[width + left + right];
+		for (int i = 0; i < cols.length; i++) {
+			cols[i] = mirror(i - left, width);
+		}
+
+		final double[] out = new double[width];
+		if (mode == Mode.MEDIAN) {
+			medianRows(rows, cols, width, y0, y1, dst, out);
+		}
+		else extremeRows(rows, cols, width, y0, y1, dst, out);
+	}
+
+	/** Huang's sliding histogram median. */
+	private void medianRows(final double[][] rows, final int[] cols,
+		final int width, final int y0, final int y1, final RowAccess dst,
+		final double[] out)
+	{
+		final RealType<?> type = input.getType();
+		final long typeMin = (long) type.getMinValue();
+		final int[] hist = new int[(int) ((long) type.getMaxValue() - typeMin + 1)];
+		final int winW = left + right + 1;
+		final int winH = up + down + 1;
+		final int n = winW * winH;
+		final int lowRank = (n - 1) / 2;
+		final int highRank = n / 2;
+
+		// convert the source rows to bin numbers once
+		final int[][] bins = new int[rows.length][width];
+		for (int k = 0; k < rows.length; k++) {
+			for (int x = 0; x < width; x++) {
+				bins[k][x] = (int) (Math.round(rows[k][x]) - typeMin);
+			}
+		}
+
+		for (int y = y0; y < y1; y++) {
+			final int k0 = y - y0;
+			Arrays.fill(hist, 0);
+			for (int k = k0; k < k0 + winH; k++) {
+				final int[] row = bins[k];
+				for (int i = 0; i < winW; i++) {
+					hist[row[cols[i]]]++;
+				}
+			}
+
+			// find the bin holding the low median and the count below it
+			int m = 0;
+			int below = 0;
+			while (below + hist[m] <= lowRank) {
+				below += hist[m++];
+			}
+			out[0] = median(hist, m, below, highRank) + typeMin;
+
+			for (int x = 1; x < width; x++) {
+				final int leaving = cols[x - 1];
+				final int entering = cols[x + winW - 1];
+				for (int k = k0; k < k0 + winH; k++) {
+					final int[] row = bins[k];
+					final int oldBin = row[leaving];
+					final int newBin = row[entering];
+					hist[oldBin]--;
+					if (oldBin < m) below--;
+					hist[newBin]++;
+					if (newBin < m) below++;
+				}
+				// move the median bin to where the low rank now lies
+				while (below > lowRank) {
+					below -= hist[--m];
+				}
+				while (below + hist[m] <= lowRank) {
+					below += hist[m++];
+				}
+				out[x] = median(hist, m, below, highRank) + typeMin;
+			}
+			dst.write(y, 0, out, width);
+		}
+	}
+
+	/**
+	 * Returns the median given the bin m of the low median and the number of
+	 * values below it. For an even count the low and high medians are averaged.
+	 */
+	private double median(final int[] hist, final int m, final int below,
+		final int highRank)
+	{
+		if (below + hist[m] > highRank) return m;
+		int high = m + 1;
+		while (hist[high] == 0) {
+			high++;
+		}
+		return (m + high) / 2.0;
+	}
+
+	/** Separable running minimum or maximum using monotonic deques. */
+	private void extremeRows(final double[][] rows, final int[] cols,
+		final int width, final int y0, final int y1, final RowAccess dst,
+		final double[] out)
+	{
+		final boolean max = (mode == Mode.MAXIMUM);
+		final int winW = left + right + 1;
+		final int winH = up + down + 1;
+
+		// running extremes along each row
+		final double[] extended = new double[cols.length];
+		final int[] deque = new int[Math.max(cols.length, rows.length)];
+		final double[][] horizontal = new double[rows.length][width];
+		for (int k = 0; k < rows.length; k++) {
+			for (int i = 0; i < cols.length; i++) {
+				extended[i] = rows[k][cols[i]];
+			}
+			slidingExtreme(extended, cols.length, winW, horizontal[k], deque, max);
+		}
+
+		// running extremes down each column
+		final double[] column = new double[rows.length];
+		final double[] result = new double[y1 - y0];
+		final double[][] outRows = new double[y1 - y0][width];
+		for (int x = 0; x < width; x++) {
+			for (int k = 0; k < rows.length; k++) {
+				column[k] = horizontal[k][x];
+			}
+			slidingExtreme(column, rows.length, winH, result, deque, max);
+			for (int y = 0; y < result.length; y++) {
+				outRows[y][x] = result[y];
+			}
+		}
+		for (int y = y0; y < y1; y++) {
+			System.arraycopy(outRows[y - y0], 0, out, 0, width);
+			dst.write(y, 0, out, width);
+		}
+	}
+
+	/**
+	 * Sets dst[j] to the extreme of src[j..j+win-1] for every j in
+	 * [0, len-win]. Each element enters and leaves the deque once.
+	 */
+	private static void slidingExtreme(final double[] src, final int len,
+		final int win, final double[] dst, final int[] deque, final boolean max)
+	{
+		int head = 0, tail = 0;
+		for (int i = 0; i < len; i++) {
+			final double v = src[i];
+			while (tail > head &&
+				(max ? src[deque[tail - 1]] <= v : src[deque[tail - 1]] >= v))
+			{
+				tail--;
+			}
+			deque[tail++] = i;
+			if (deque[head] <= i - win) head++;
+			final int j = i - win + 1;
+			if (j >= 0) dst[j] = src[deque[head]];
+		}
+	}
+
+	/**
+	 * Returns {minX, maxX, minY, maxY} of the neighborhood's points about its
+	 * origin, or null if the points do not form a full XY rectangle.
+	 */
+	private static long[] window(final Neighborhood neighborhood,
+		final int numDims)
+	{
+		final PointSet points = neighborhood.copy().getPoints();
+		if (points.numDimensions() != numDims) return null;
+		final long[] bounds =
+			{ Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+		long count = 0;
+		final PointSetIterator iter = points.iterator();
+		while (iter.hasNext()) {
+			final long[] pt = iter.next();
+			for (int d = 2; d < pt.length; d++) {
+				if (pt[d] != 0) return null;
+			}
+			bounds[0] = Math.min(bounds[0], pt[0]);
+			bounds[1] = Math.max(bounds[1], pt[0]);
+			bounds[2] = Math.min(bounds[2], pt[1]);
+			bounds[3] = Math.max(bounds[3], pt[1]);
+			count++;
+		}
+		if (count == 0) return null;
+		final long area = (bounds[1] - bounds[0] + 1) * (bounds[3] - bounds[2] + 1);
+		if (count != area || bounds[0] > 0 || bounds[1] < 0 || bounds[2] > 0 ||
+			bounds[3] < 0) return null;
+		return bounds;
+	}
+
+	/** Mirrors an index into [0, n) repeating the edge values. */
+	private static int mirror(final long i, final int n) {
+		if (n == 1) return 0;
+		final long period = 2L * n;
+		long m = i % period;
+		if (m < 0) m += period;
+		return (int) (m < n ? m : period - 1 - m);
+	}
+
+	private void notifyUser(final String message) {
+		if (statusService != null) statusService.showStatus(message);
+	}
+
+}
@@ -46,12 +46,8 @@
 
 import java.util.List;
 
-import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
-import net.imglib2.ops.pointset.HyperVolumePointSet;
-import net.imglib2.ops.pointset.PointSetIterator;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.type.numeric.real.DoubleType;
 
 import org.scijava.ItemIO;
 import org.scijava.plugin.Menu;
@@ -118,26 +114,24 @@ public void run() {
 		if (operator == null) {
 			operator = (CalculatorOp<U, V>) calculatorService.getOperator(opName);
 		}
-		Img<DoubleType> img = null;
-		try {
-			final Img<U> img1 = (Img<U>) input1.getImgPlus();
-			final Img<V> img2 = (Img<V>) input2.getImgPlus();
-			img = calculatorService.combine(img1, img2, operator);
-		}
-		catch (final IllegalArgumentException e) {
-			cancel(e.toString());
+		final Img<U> img1 = (Img<U>) input1.getImgPlus();
+		final Img<V> img2 = (Img<V>) input2.getImgPlus();
+		if (img1.numDimensions() != img2.numDimensions()) {
+			cancel("Input images must have the same number of dimensions");
 			return;
 		}
-		final long[] span = new long[img.numDimensions()];
-		img.dimensions(span);
 
 		// replace original data if desired by user
 		if (!wantDoubles && !newWindow) {
 			output = null;
-			copyDataInto(input1.getImgPlus(), img, span);
+			combineInto(img1, img2, input1);
 			input1.update();
 		}
 		else { // write into output
+			final long[] span = new long[img1.numDimensions()];
+			for (int d = 0; d < span.length; d++) {
+				span[d] = Math.min(img1.dimension(d), img2.dimension(d));
+			}
 			int bits = input1.getType().getBitsPerPixel();
 			boolean floating = !input1.isInteger();
 			boolean signed = input1.isSigned();
@@ -150,7 +144,7 @@ public void run() {
 			output =
 				datasetService.create(span, "Result of operation", input1.getAxes(),
 					bits, signed, floating);
-			copyDataInto(output.getImgPlus(), img, span);
+			combineInto(img1, img2, output);
 			output.update(); // TODO - probably unnecessary
 		}
 	}
@@ -250,21 +244,15 @@ protected void initCalculator() {
 
 	// -- private helpers --
 
-	private void copyDataInto(final Img<? extends RealType<?>> out,
-		final Img<? extends RealType<?>> in, final long[] span)
+	/**
+	 * Writes the combination of the inputs into the given Dataset, in place,
+	 * with no intermediate image.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void combineInto(final Img<U> img1, final Img<V> img2,
+		final Dataset target)
 	{
-		final RandomAccess<? extends RealType<?>> src = in.randomAccess();
-		final RandomAccess<? extends RealType<?>> dst = out.randomAccess();
-		final HyperVolumePointSet ps = new HyperVolumePointSet(span);
-		final PointSetIterator iter = ps.iterator();
-		long[] pos = null;
-		while (iter.hasNext()) {
-			pos = iter.next();
-			src.setPosition(pos);
-			dst.setPosition(pos);
-			final double value = src.get().getRealDouble();
-			dst.get().setReal(value);
-		}
+		calculatorService.combine(img1, img2, operator, (Img) target.getImgPlus());
 	}
 
 }
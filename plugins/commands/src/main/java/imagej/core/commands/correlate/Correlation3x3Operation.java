@@ -35,6 +35,7 @@
 
 package imagej.core.commands.correlate;
 
+import imagej.core.commands.neigh.CopyableNeighborhood3x3Watcher;
 import imagej.core.commands.neigh.Neighborhood3x3Operation;
 import imagej.core.commands.neigh.Neighborhood3x3Watcher;
 import imagej.data.Dataset;
@@ -100,8 +101,9 @@ public void run() {
 	 * CorrelateWatcher tallies that information and returns appropriate values as
 	 * necessary.
 	 */
-	private class CorrelateWatcher implements Neighborhood3x3Watcher {
+	private class CorrelateWatcher implements CopyableNeighborhood3x3Watcher {
 
+		private final Dataset ds;
 		private double scale;
 		private double sum;
 		private final boolean integerDataset;
@@ -109,11 +111,18 @@ private class CorrelateWatcher implements Neighborhood3x3Watcher {
 		private final double typeMaxValue;
 
 		public CorrelateWatcher(final Dataset ds) {
+			this.ds = ds;
 			integerDataset = ds.isInteger();
 			typeMinValue = ds.getType().getMinValue();
 			typeMaxValue = ds.getType().getMaxValue();
 		}
 
+		/** Creates an independent watcher for use by another thread. */
+		@Override
+		public Neighborhood3x3Watcher copy() {
+			return new CorrelateWatcher(ds);
+		}
+
 		/** Precalculates the kernel scale for use later. */
 		@Override
 		public void setup() {
@@ -36,16 +36,16 @@
 package imagej.core.commands.display.interactive;
 
 import imagej.command.Command;
-import imagej.data.autoscale.AutoscaleService;
+import imagej.data.Dataset;
+import imagej.data.RowAccess;
 import imagej.data.autoscale.DataRange;
 import imagej.data.command.InteractiveImageCommand;
 import imagej.data.display.DatasetView;
+import imagej.data.histogram.HistogramService;
 import imagej.menu.MenuConstants;
 import imagej.widget.Button;
 import imagej.widget.ChoiceWidget;
 import imagej.widget.NumberWidget;
-import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.type.numeric.RealType;
 
 import org.scijava.ItemIO;
 import org.scijava.plugin.Menu;
@@ -82,7 +82,7 @@ public class BrightnessContrast extends InteractiveImageCommand {
 	private static final int MAX_POWER = 4;
 
 	@Parameter
-	private AutoscaleService autoscaleService;
+	private HistogramService histogramService;
 
 	@Parameter(type = ItemIO.BOTH, callback = "viewChanged")
 	private DatasetView view;
@@ -177,12 +177,7 @@ protected void initValues() {
 
 	/** Called when view changes. Updates everything to match. */
 	protected void viewChanged() {
-		RandomAccessibleInterval<? extends RealType<?>> interval;
-		
-		if (rangeChoice.equals("Plane")) interval = view.xyPlane();
-		else interval = view.getData().getImgPlus();
-		
-		computeDataMinMax(interval);
+		computeDataMinMax(rangeChoice.equals("Plane"));
 		computeInitialMinMax();
 		if (Double.isNaN(min)) min = initialMin;
 		if (Double.isNaN(max)) max = initialMax;
@@ -208,14 +203,21 @@ protected void setDefault() {
 
 	// -- Helper methods --
 
-	private void computeDataMinMax(final RandomAccessibleInterval<? extends RealType<?>> img) {
-		// FIXME: Reconcile this with DefaultDatasetView.autoscale(int). There is
-		// no reason to hardcode the usage of ComputeMinMax twice. Rather, there
-		// should be a single entry point for obtain the channel min/maxes from
-		// the metadata, and if they aren't there, then compute them. Probably
-		// Dataset (not DatasetView) is a good place for it, because it is metadata
-		// independent of the visualization settings.
-		DataRange range = autoscaleService.getDefaultRandomAccessRange(img);
+	private void computeDataMinMax(final boolean planeOnly) {
+		// NB - the histogram service caches the ranges of each plane, so there is
+		// no need to store them in the metadata like DatasetView.autoscale(int).
+		final Dataset dataset = view.getData();
+		final DataRange range;
+		if (planeOnly) {
+			final long[] planePos = new long[dataset.numDimensions() - 2];
+			for (int i = 0; i < planePos.length; i++) {
+				planePos[i] = view.getLongPosition(i + 2);
+			}
+			range =
+				histogramService.getPlaneRange(dataset, RowAccess.planeIndex(dataset,
+					planePos));
+		}
+		else range = histogramService.getRange(dataset);
 		dataMin = range.getMin();
 		dataMax = range.getMax();
 		log.debug("computeDataMinMax: dataMin=" + dataMin + ", dataMax=" + dataMax);
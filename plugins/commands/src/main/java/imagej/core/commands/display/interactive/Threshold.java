@@ -37,12 +37,12 @@
 
 import imagej.command.Command;
 import imagej.data.Dataset;
-import imagej.data.autoscale.AutoscaleService;
 import imagej.data.autoscale.DataRange;
+import imagej.data.RowAccess;
 import imagej.data.command.InteractiveImageCommand;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
-import imagej.data.display.event.AxisPositionEvent;
+import imagej.data.histogram.HistogramService;
 import imagej.data.overlay.ThresholdOverlay;
 import imagej.data.threshold.ThresholdMethod;
 import imagej.data.threshold.ThresholdService;
@@ -53,18 +53,10 @@
 import imagej.util.Colors;
 import imagej.widget.Button;
 import net.imglib2.Cursor;
-import net.imglib2.IterableInterval;
-import net.imglib2.algorithm.histogram.Histogram1d;
-import net.imglib2.algorithm.histogram.Real1dBinMapper;
-import net.imglib2.img.Img;
 import net.imglib2.img.ImgPlus;
-import net.imglib2.meta.AxisType;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.view.IntervalView;
-import net.imglib2.view.Views;
 
 import org.scijava.ItemIO;
-import org.scijava.event.EventHandler;
 import org.scijava.plugin.Menu;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
@@ -100,12 +92,6 @@
 //  - fix code that determines histogram table size. The existing code is just
 //     a simple approach
 //  - make min and max fields into sliders. There is a related TODO below.
-//  - note that as designed the stacked histogram is always generated at start.
-//     We could try different approach to speed dialog appearence. But if we do
-//     we need to calc at some point. BTW the design as is will be invalid if
-//     someone opens thresh command, then uses other plugin to change data
-//     values because the stacked (and other) histograms will not be updated.
-//     Maybe handle dataset updated events to recalc hist as needed.
 
 /**
  * @author Barry DeZonia
@@ -169,19 +155,13 @@
 	private ImageDisplayService imgDispSrv;
 
 	@Parameter
-	private AutoscaleService autoscaleService;
+	private HistogramService histogramService;
 
 	@Parameter
 	private UIService uiSrv;
 
 	// -- instance variables --
 
-	private Histogram1d<T> fullHistogram;
-
-	private Histogram1d<T> planeHistogram;
-
-	private boolean invalidPlaneHist = true;
-
 	private DataRange minMax;
 
 	// -- accessors --
@@ -214,10 +194,6 @@ protected void initValues() {
 
 		minMax = calcDataRange();
 
-		fullHistogram = buildHistogram(true, null);
-		planeHistogram = null;
-		invalidPlaneHist = true;
-
 		if (!alreadyHadOne) {
 			// default the thresh to something sensible: 85/170 is IJ1's default
 			double min = 85 * minMax.getExtent() / 255;
@@ -253,7 +229,7 @@ protected void initValues() {
 
 	protected void autoThreshold() {
 		ThresholdMethod method = threshSrv.getThresholdMethod(methodName);
-		Histogram1d<T> hist = histogram();
+		long[] hist = histogram();
 		long cutoff = method.getThreshold(hist);
 		if (cutoff < 0) {
 			DialogPrompt dialog =
@@ -266,7 +242,7 @@ protected void autoThreshold() {
 		else if (method.getMessage() != null) {
 			log.warn(method.getMessage());
 		}
-		double maxRange = hist.max();
+		double maxRange = hist.length - 1;
 		// TODO : what is best increment? To avoid roundoff errs use a teeny inc
 		// (like 0.0001 instead of 1). But then result does not match IJ1. With
 		// teeny inc dark bckgrnd bounces from (0,cutoff) to (cutoff,255) rather
@@ -334,14 +310,6 @@ protected void stackHistogram() {
 		autoThreshold();
 	}
 
-	// -- EventHandlers --
-
-	@EventHandler
-	protected void onEvent(AxisPositionEvent evt) {
-		if (evt.getDisplay() != display) return;
-		invalidPlaneHist = true;
-	}
-
 	// -- helpers --
 
 	private ThresholdOverlay getThreshold() {
@@ -350,13 +318,23 @@ private ThresholdOverlay getThreshold() {
 		return overlay;
 	}
 
-	private Histogram1d<T> histogram() {
-		if (stackHistogram) return fullHistogram;
-		if (invalidPlaneHist) {
-			planeHistogram = buildHistogram(false, planeHistogram);
-			invalidPlaneHist = false;
+	// NB - the histogram service caches histograms per plane and keeps them up
+	// to date so there is no need to hold on to them here
+
+	private long[] histogram() {
+		Dataset ds = imgDispSrv.getActiveDataset(display);
+		int binCount = binCount(ds.isInteger(), minMax);
+		if (stackHistogram) {
+			return histogramService.getHistogram(ds, minMax.getMin(), minMax
+				.getMax(), binCount);
 		}
-		return planeHistogram;
+		long[] planePos = new long[ds.numDimensions() - 2];
+		for (int i = 0; i < planePos.length; i++) {
+			planePos[i] = display.getLongPosition(ds.axis(i + 2));
+		}
+		int planeIndex = RowAccess.planeIndex(ds, planePos);
+		return histogramService.getPlaneHistogram(ds, planeIndex, minMax.getMin(),
+			minMax.getMax(), binCount);
 	}
 
 	private void colorize(ThresholdOverlay overlay) {
@@ -387,80 +365,22 @@ private void setThresholdMethodNames() {
 
 	private DataRange calcDataRange() {
 		Dataset ds = imgDispSrv.getActiveDataset(display);
-		return autoscaleService.getDefaultIntervalRange(ds.getImgPlus());
-	}
-
-	// builds the histogram from either the whole data range or the currently
-	// viewed plane
-
-	private Histogram1d<T> buildHistogram(boolean allData,
-		Histogram1d<T> existingHist)
-	{
-		// return buildHistogramFromPointSets(allData, existingHist);
-		return buildHistogramFromViews(allData, existingHist);
+		return histogramService.getRange(ds);
 	}
 
-	private Histogram1d<T> buildHistogramFromViews(boolean allData,
-		Histogram1d<T> existingHist)
-	{
-		Dataset ds = imgDispSrv.getActiveDataset(display);
-		long[] min = new long[ds.numDimensions()];
-		long[] max = min.clone();
-		max[0] = ds.dimension(0) - 1;
-		max[1] = ds.dimension(1) - 1;
-		for (int d = 2; d < ds.numDimensions(); d++) {
-			if (allData) {
-				min[d] = 0;
-				max[d] = ds.dimension(d) - 1;
-			}
-			else { // viewed data only
-				AxisType axisType = ds.axis(d);
-				long pos = display.getLongPosition(axisType);
-				min[d] = pos;
-				max[d] = pos;
-			}
-		}
-		@SuppressWarnings("unchecked")
-		Img<T> img = (Img<T>) ds.getImgPlus();
-		IntervalView<T> view = Views.interval(img, min, max);
-		IterableInterval<T> data = Views.iterable(view);
-		final Histogram1d<T> histogram;
-		if (existingHist == null) {
-			// +1 needed for int but maybe not float
-			histogram = allocateHistogram(ds.isInteger(), minMax);
-		}
-		else {
-			existingHist.resetCounters();
-			histogram = existingHist;
-		}
-		histogram.countData(data);
-		return histogram;
-	}
+	// calcs the number of histogram bins used for the given data range
 
-	private Histogram1d<T> allocateHistogram(boolean dataIsIntegral,
-		DataRange dataRange)
-	{
+	private int binCount(boolean dataIsIntegral, DataRange dataRange) {
 		double range = dataRange.getExtent();
 		if (dataIsIntegral) range++;
-		Real1dBinMapper<T> binMapper = null;
 		// TODO - size of histogram affects speed of all autothresh methods
 		// What is the best way to determine size?
 		// Do we want some power of two as size? For now yes.
 		final int MaxBinCount = 16384;
 		for (int binCount = 256; binCount <= MaxBinCount; binCount *= 2) {
-			if (range <= binCount) {
-				binMapper =
-					new Real1dBinMapper<T>(minMax.getMin(), minMax.getMax(), binCount,
-						false);
-				break;
-			}
-		}
-		if (binMapper == null) {
-			binMapper =
-				new Real1dBinMapper<T>(minMax.getMin(), minMax.getMax(), MaxBinCount,
-					false);
+			if (range <= binCount) return binCount;
 		}
-		return new Histogram1d<T>(binMapper);
+		return MaxBinCount;
 	}
 
 }
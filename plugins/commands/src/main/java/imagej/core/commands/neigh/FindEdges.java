@@ -97,22 +97,32 @@ public ImageDisplay getDisplay() {
 
 	// -- private interface --
 
-	private class FindEdgesWatcher implements Neighborhood3x3Watcher {
+	private class FindEdgesWatcher implements CopyableNeighborhood3x3Watcher {
 
 		/**
 		 * n - contains a local copy of the 9 values of a 3x3 neighborhood
 		 */
 		private double[] n;
+		private final Dataset dataset;
 		private final boolean integerDataset;
 		private final double typeMinValue;
 		private final double typeMaxValue;
 
 		public FindEdgesWatcher(final Dataset input) {
+			dataset = input;
 			integerDataset = input.isInteger();
 			typeMinValue = input.getType().getMinValue();
 			typeMaxValue = input.getType().getMaxValue();
 		}
 
+		/**
+		 * Creates an independent watcher for use by another thread
+		 */
+		@Override
+		public Neighborhood3x3Watcher copy() {
+			return new FindEdgesWatcher(dataset);
+		}
+
 		/**
 		 * Create the local neighborhood variables
 		 */
@@ -38,28 +38,47 @@
 import imagej.data.Dataset;
 import imagej.data.Extents;
 import imagej.data.Position;
+import imagej.data.RowAccess;
+import imagej.util.ParallelUtils;
 import imagej.util.RealRect;
-import net.imglib2.Cursor;
-import net.imglib2.RandomAccess;
-import net.imglib2.RandomAccessible;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import net.imglib2.img.Img;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.view.Views;
+
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
 
 /**
  * Neighborhood3x3Operation - a helper class for 3x3 neighborhood operation
  * plugins such as SmoothDataValues, SharpenDataValues, and FindEdges. Does the
  * work of communicating with a Neighborhood3x3Watcher.
+ * <p>
+ * The data is changed in place. Each plane is walked a row at a time keeping
+ * copies of the original previous, current and next rows (mirrored at the
+ * image edges) so there is no need to duplicate the whole image up front. Rows
+ * are read from and written to the primitive plane arrays directly when the
+ * Dataset is planar. If the watcher is a {@link CopyableNeighborhood3x3Watcher}
+ * the planes (or bands of rows when there are fewer planes than processors)
+ * are processed in parallel, each thread using its own copy of the watcher.
+ * </p>
  * 
  * @author Barry DeZonia
  */
 public class Neighborhood3x3Operation {
 
+	// -- constants --
+
+	/** Smallest number of rows worth handing to a thread. */
+	private static final int MIN_BAND_ROWS = 64;
+
 	// -- instance variables --
 
 	private final Dataset input;
 	private Img<? extends RealType<?>> inputImage;
-	private Img<? extends RealType<?>> inputImageCopy;
 	private final RealRect selection;
 	private final Neighborhood3x3Watcher watcher;
 
@@ -103,112 +122,228 @@ private void checkInput() {
 
 	private void setupWorkingData() {
 		inputImage = input.getImgPlus();
-		inputImageCopy = cloneImage(inputImage);
 	}
 
 	private void runAssignment() {
+		final int width = (int) inputImage.dimension(0);
+		final int height = (int) inputImage.dimension(1);
+		if (selection.width == 0) selection.width = width;
+		if (selection.height == 0) selection.height = height;
+		final int minX = (int) selection.x;
+		final int minY = (int) selection.y;
+		final int maxX = minX + (int) selection.width; // exclusive
+		final int maxY = minY + (int) selection.height; // exclusive
+
 		final long[] planeDims = new long[inputImage.numDimensions() - 2];
 		for (int i = 0; i < planeDims.length; i++)
 			planeDims[i] = inputImage.dimension(i + 2);
 		final Extents extents = new Extents(planeDims);
+		final long numPlanes =
+			(planeDims.length == 0) ? 1 : extents.numElements(); // 2d is one plane
+
+		// decide how to divide the work
+		final boolean parallel = watcher instanceof CopyableNeighborhood3x3Watcher;
+		final int numTasks =
+			parallel ? ParallelUtils.taskCount(numPlanes * (maxY - minY),
+				MIN_BAND_ROWS) : 1;
+		int bandsPerPlane = 1;
+		if (numPlanes < numTasks) {
+			final int wanted = (int) ((numTasks + numPlanes - 1) / numPlanes);
+			final int possible = Math.max(1, (maxY - minY) / MIN_BAND_ROWS);
+			bandsPerPlane = Math.min(wanted, possible);
+		}
+
+		// define the bands, capturing the original rows that border other bands
+		final List<Band> bands = new ArrayList<Band>();
 		final Position planePos = extents.createPosition();
-		if (planeDims.length == 0) { // dataset is 2d only
-			applyOperationToPlane(planePos);
+		for (long p = 0; p < numPlanes; p++) {
+			if (planeDims.length > 0) planePos.fwd();
+			final long[] pos = new long[planeDims.length];
+			planePos.localize(pos);
+			// NB - the snapshots only read, so shared planes stay shared here
+			final PlaneRows rows =
+				new PlaneRows(RowAccess.createForReading(input, pos));
+			for (int b = 0; b < bandsPerPlane; b++) {
+				final int y0 =
+					minY + (int) ParallelUtils.chunkStart(maxY - minY, bandsPerPlane, b);
+				final int y1 =
+					minY +
+						(int) ParallelUtils.chunkStart(maxY - minY, bandsPerPlane, b + 1);
+				final double[] above = (b == 0) ? null : rows.snapshot(y0 - 1);
+				final double[] below =
+					(b == bandsPerPlane - 1) ? null : rows.snapshot(y1);
+				bands.add(new Band(pos, y0, y1, above, below));
+			}
 		}
-		else { // 3 or more dimensions
-			while (planePos.hasNext()) {
-				planePos.fwd();
-				applyOperationToPlane(planePos);
+
+		// hand out the bands
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int t = 0; t < numTasks; t++) {
+			final Neighborhood3x3Watcher taskWatcher =
+				(t == 0) ? watcher : ((CopyableNeighborhood3x3Watcher) watcher)
+					.copy();
+			final List<Band> taskBands = new ArrayList<Band>();
+			for (int b = t; b < bands.size(); b += numTasks) {
+				taskBands.add(bands.get(b));
 			}
+			tasks.add(new BandTask(taskBands, taskWatcher, width, height, minX,
+				maxX));
 		}
+		ParallelUtils.invokeAll(threadService(), tasks);
+
 		input.update();
 	}
 
-	private void applyOperationToPlane(final Position planePos) {
+	/**
+	 * Applies the watcher to the rows of one band of a plane. The original
+	 * values of the rows above, at and below the current row are kept in
+	 * rolling buffers so the results can be written in place.
+	 */
+	private void applyOperationToBand(final Band band,
+		final Neighborhood3x3Watcher w, final int width, final int height,
+		final int minX, final int maxX)
+	{
+		final PlaneRows rows = planeRows(band.planePos);
+		double[] prev = new double[width + 2];
+		double[] curr = new double[width + 2];
+		double[] next = new double[width + 2];
+		final double[] out = new double[width];
+
+		final long[] position = new long[band.planePos.length + 2];
+		for (int i = 0; i < band.planePos.length; i++) {
+			position[i + 2] = band.planePos[i];
+		}
 
-		final long[] imageDims = new long[inputImage.numDimensions()];
-		inputImage.dimensions(imageDims);
+		// initialize the watcher
+		w.setup();
+
+		rows.read(band.y0, curr);
+		if (band.above != null) System.arraycopy(band.above, 0, prev, 0,
+			prev.length);
+		else if (band.y0 > 0) rows.read(band.y0 - 1, prev);
+		else if (height > 1) rows.read(1, prev); // mirror
+		else System.arraycopy(curr, 0, prev, 0, prev.length);
+
+		for (int y = band.y0; y < band.y1; y++) {
+			if (y + 1 >= height) {
+				// mirror: the row after the last one is the row before it
+				System.arraycopy(height > 1 ? prev : curr, 0, next, 0, next.length);
+			}
+			else if (y + 1 == band.y1 && band.below != null) {
+				System.arraycopy(band.below, 0, next, 0, next.length);
+			}
+			else rows.read(y + 1, next);
+
+			position[1] = y;
+			for (int x = minX; x < maxX; x++) {
+				position[0] = x;
+				w.initializeNeighborhood(position);
+				w.visitLocation(-1, -1, prev[x]);
+				w.visitLocation(0, -1, prev[x + 1]);
+				w.visitLocation(1, -1, prev[x + 2]);
+				w.visitLocation(-1, 0, curr[x]);
+				w.visitLocation(0, 0, curr[x + 1]);
+				w.visitLocation(1, 0, curr[x + 2]);
+				w.visitLocation(-1, 1, next[x]);
+				w.visitLocation(0, 1, next[x + 1]);
+				w.visitLocation(1, 1, next[x + 2]);
+				out[x] = w.calcOutputValue();
+			}
+			rows.write(y, out, minX, maxX - minX);
 
-		if (selection.width == 0) selection.width = (int) imageDims[0];
+			final double[] tmp = prev;
+			prev = curr;
+			curr = next;
+			next = tmp;
+		}
+	}
 
-		if (selection.height == 0) selection.height = (int) imageDims[1];
+	private PlaneRows planeRows(final long[] planePos) {
+		return new PlaneRows(RowAccess.create(input, planePos));
+	}
 
-		// output is done by changin input image in place
-		final RandomAccess<? extends RealType<?>> outputAccessor =
-			inputImage.randomAccess();
+	private ThreadService threadService() {
+		final Context context = input.getContext();
+		return context == null ? null : context.getService(ThreadService.class);
+	}
 
-		// input is a copy of the original data with out of bounds access enabled
-		final RandomAccessible<? extends RealType<?>> inputInterval =
-			Views.extendMirrorSingle(inputImageCopy);
+	// -- helper classes --
 
-		final RandomAccess<? extends RealType<?>> extendedInput =
-			inputInterval.randomAccess();
+	/** A range of rows [y0, y1) of one plane. */
+	private static class Band {
 
-		// initialize the watcher
-		watcher.setup();
+		private final long[] planePos;
+		private final int y0, y1;
+		private final double[] above, below;
 
-		final long[] inputPosition = new long[imageDims.length];
-		final long[] localInputPosition = new long[imageDims.length];
+		public Band(final long[] planePos, final int y0,
+			final int y1, final double[] above, final double[] below)
+		{
+			this.planePos = planePos;
+			this.y0 = y0;
+			this.y1 = y1;
+			this.above = above;
+			this.below = below;
+		}
+	}
 
-		for (int i = 2; i < inputPosition.length; i++) {
-			inputPosition[i] = planePos.getLongPosition(i - 2);
-			localInputPosition[i] = planePos.getLongPosition(i - 2);
+	/** Processes a list of bands with one watcher. */
+	private class BandTask implements Callable<Object> {
+
+		private final List<Band> bands;
+		private final Neighborhood3x3Watcher w;
+		private final int width, height, minX, maxX;
+
+		public BandTask(final List<Band> bands, final Neighborhood3x3Watcher w,
+			final int width, final int height, final int minX, final int maxX)
+		{
+			this.bands = bands;
+			this.w = w;
+			this.width = width;
+			this.height = height;
+			this.minX = minX;
+			this.maxX = maxX;
 		}
 
-		final long minX = (long) selection.x;
-		final long minY = (long) selection.y;
-		final long width = (long) selection.width;
-		final long height = (long) selection.height;
-		for (long y = minY; y < minY + height; y++) {
-			inputPosition[1] = y;
-			for (long x = minX; x < minX + width; x++) {
-				inputPosition[0] = x;
-				watcher.initializeNeighborhood(inputPosition);
-
-				for (int dy = -1; dy <= 1; dy++) {
-					localInputPosition[1] = inputPosition[1] + dy;
-					for (int dx = -1; dx <= 1; dx++) {
-						localInputPosition[0] = inputPosition[0] + dx;
-						extendedInput.setPosition(localInputPosition);
-						final double localValue = extendedInput.get().getRealDouble();
-						watcher.visitLocation(dx, dy, localValue);
-					}
-				}
-				// assign output
-				outputAccessor.setPosition(inputPosition);
-				outputAccessor.get().setReal(watcher.calcOutputValue());
+		@Override
+		public Object call() {
+			for (final Band band : bands) {
+				applyOperationToBand(band, w, width, height, minX, maxX);
 			}
+			return null;
 		}
 	}
 
-	// TODO - eliminate when ImgLib allows ability to duplicate/clone an Img
-	// TODO - find a way to eliminate use of raw types here
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private Img<? extends RealType<?>> cloneImage(final Img image) {
-		// TODO - used to be able to call Image::clone()
-		// For now copy data by hand
-
-		final long[] dimensions = new long[image.numDimensions()];
-		image.dimensions(dimensions);
-
-		final Img<? extends RealType<?>> copyOfImg =
-			image.factory().create(dimensions, image.firstElement());
+	/**
+	 * Reads and writes whole rows of a plane. Rows are read into buffers with
+	 * one extra (mirrored) element at each end.
+	 */
+	private static class PlaneRows {
 
-		final long[] position = new long[dimensions.length];
+		private final RowAccess access;
+		private final int width;
 
-		final Cursor<? extends RealType<?>> cursor = image.localizingCursor();
+		public PlaneRows(final RowAccess access) {
+			this.access = access;
+			this.width = access.getWidth();
+		}
 
-		final RandomAccess<? extends RealType<?>> access =
-			copyOfImg.randomAccess();
+		public void read(final int y, final double[] row) {
+			access.read(y, row, 1);
+			row[0] = (width > 1) ? row[2] : row[1];
+			row[width + 1] = (width > 1) ? row[width - 1] : row[width];
+		}
 
-		while (cursor.hasNext()) {
-			cursor.next();
-			final double currValue = cursor.get().getRealDouble();
-			cursor.localize(position);
-			access.setPosition(position);
-			access.get().setReal(currValue);
+		public void write(final int y, final double[] src, final int x0,
+			final int count)
+		{
+			access.write(y, x0, src, count);
 		}
 
-		return copyOfImg;
+		public double[] snapshot(final int y) {
+			final double[] row = new double[width + 2];
+			read(y, row);
+			return row;
+		}
 	}
 }
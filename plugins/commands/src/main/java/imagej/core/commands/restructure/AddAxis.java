@@ -52,6 +52,7 @@
 import org.scijava.plugin.Menu;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * Adds a new axis to an input Dataset.
@@ -72,6 +73,9 @@ public class AddAxis extends DynamicCommand {
 
 	// -- Parameters --
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset dataset;
 
@@ -120,9 +124,14 @@ public void run() {
 		if (inputBad(axis)) return;
 		final AxisType[] newAxes = getNewAxes(dataset, axis);
 		final long[] newDimensions = getNewDimensions(dataset, axisSize);
-		final ImgPlus<? extends RealType<?>> dstImgPlus =
-			RestructureUtils.createNewImgPlus(dataset, newDimensions, newAxes);
-		fillNewImgPlus(dataset.getImgPlus(), dstImgPlus);
+		ImgPlus<? extends RealType<?>> dstImgPlus =
+			PlanarRestructurer.restructure(dataset, newDimensions, newAxes,
+				new RemapAlgorithm());
+		if (dstImgPlus == null) {
+			dstImgPlus =
+				RestructureUtils.createNewImgPlus(dataset, newDimensions, newAxes);
+			fillNewImgPlus(dataset.getImgPlus(), dstImgPlus);
+		}
 		dstImgPlus.setCompositeChannelCount(dataset.getCompositeChannelCount());
 		RestructureUtils.allocateColorTables(dstImgPlus);
 		final ColorTableRemapper remapper =
@@ -213,7 +222,7 @@ private void fillNewImgPlus(final ImgPlus<? extends RealType<?>> srcImgPlus,
 		dstSpan[dstSpan.length - 1] = 1;
 
 		RestructureUtils.copyHyperVolume(srcImgPlus, srcOrigin, srcSpan,
-			dstImgPlus, dstOrigin, dstSpan);
+			dstImgPlus, dstOrigin, dstSpan, threadService);
 	}
 
 	private class RemapAlgorithm implements ColorTableRemapper.RemapAlgorithm {
@@ -52,6 +52,7 @@
 import org.scijava.plugin.Menu;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * Adds hyperplanes of data to an input Dataset along a user specified axis.
@@ -73,6 +74,9 @@ public class AddData extends DynamicCommand {
 
 	// -- Parameters --
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset dataset;
 
@@ -135,9 +139,14 @@ public void run() {
 		final AxisType[] axes = dataset.getAxes();
 		final long[] newDimensions =
 			RestructureUtils.getDimensions(dataset, axis, quantity);
-		final ImgPlus<? extends RealType<?>> dstImgPlus =
-			RestructureUtils.createNewImgPlus(dataset, newDimensions, axes);
-		fillNewImgPlus(dataset.getImgPlus(), dstImgPlus, axis);
+		ImgPlus<? extends RealType<?>> dstImgPlus =
+			PlanarRestructurer.restructure(dataset, newDimensions, axes,
+				new RemapAlgorithm());
+		if (dstImgPlus == null) {
+			dstImgPlus =
+				RestructureUtils.createNewImgPlus(dataset, newDimensions, axes);
+			fillNewImgPlus(dataset.getImgPlus(), dstImgPlus, axis);
+		}
 		final int compositeChannelCount =
 			compositeStatus(dataset, dstImgPlus, axis);
 		dstImgPlus.setCompositeChannelCount(compositeChannelCount);
@@ -226,9 +235,10 @@ private boolean inputBad(final AxisType axis) {
 		final long numAfterInsertion = axisSize - numBeforeInsert;
 
 		RestructureUtils.copyData(srcImgPlus, dstImgPlus, modifiedAxis, 0, 0,
-			numBeforeInsert);
+			numBeforeInsert, threadService);
 		RestructureUtils.copyData(srcImgPlus, dstImgPlus, modifiedAxis,
-			numBeforeInsert, numBeforeInsert + numInInsertion, numAfterInsertion);
+			numBeforeInsert, numBeforeInsert + numInInsertion, numAfterInsertion,
+			threadService);
 	}
 
 	private int compositeStatus(final Dataset origData,
@@ -53,6 +53,7 @@
 import org.scijava.plugin.Menu;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * Deletes an axis from an input Dataset.
@@ -76,6 +77,9 @@ public class DeleteAxis extends DynamicCommand {
 	@Parameter
 	private ImageDisplay display;
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset dataset;
 
@@ -130,23 +134,28 @@ public void run() {
 		if (inputBad(axis)) return;
 		final AxisType[] newAxes = getNewAxes(dataset, axis);
 		final long[] newDimensions = getNewDimensions(dataset, axis);
-		final ImgPlus<? extends RealType<?>> dstImgPlus =
-			RestructureUtils.createNewImgPlus(dataset, newDimensions, newAxes);
+		ImgPlus<? extends RealType<?>> dstImgPlus = null;
+		if (!axis.isXY()) {
+			dstImgPlus =
+				PlanarRestructurer.restructure(dataset, newDimensions, newAxes,
+					new RemapAlgorithm(planeDims(dataset.getDims())));
+		}
+		if (dstImgPlus == null) {
+			dstImgPlus =
+				RestructureUtils.createNewImgPlus(dataset, newDimensions, newAxes);
+			fillNewImgPlus(dataset.getImgPlus(), dstImgPlus);
+		}
 		final int compositeCount =
 			compositeStatus(dataset.getCompositeChannelCount(), dstImgPlus);
-		fillNewImgPlus(dataset.getImgPlus(), dstImgPlus);
 		dstImgPlus.setCompositeChannelCount(compositeCount);
 		RestructureUtils.allocateColorTables(dstImgPlus);
 		if (axis.isXY()) {
 			RestructureUtils.copyColorTables(dataset.getImgPlus(), dstImgPlus);
 		}
 		else {
-			final long[] origDims = dataset.getDims();
-			final long[] origPlaneDims = new long[origDims.length - 2];
-			for (int i = 0; i < origPlaneDims.length; i++)
-				origPlaneDims[i] = origDims[i + 2];
 			final ColorTableRemapper remapper =
-				new ColorTableRemapper(new RemapAlgorithm(origPlaneDims));
+				new ColorTableRemapper(new RemapAlgorithm(planeDims(dataset
+					.getDims())));
 			remapper.remapColorTables(dataset.getImgPlus(), dstImgPlus);
 		}
 		// TODO - metadata, etc.?
@@ -263,7 +272,15 @@ private void fillNewImgPlus(final ImgPlus<? extends RealType<?>> srcImgPlus,
 		srcSpan[axisIndex] = 1;
 
 		RestructureUtils.copyHyperVolume(srcImgPlus, srcOrigin, srcSpan,
-			dstImgPlus, dstOrigin, dstSpan);
+			dstImgPlus, dstOrigin, dstSpan, threadService);
+	}
+
+	/** Returns the dimensions of the non-XY axes of the given dimensions. */
+	private long[] planeDims(final long[] origDims) {
+		final long[] origPlaneDims = new long[origDims.length - 2];
+		for (int i = 0; i < origPlaneDims.length; i++)
+			origPlaneDims[i] = origDims[i + 2];
+		return origPlaneDims;
 	}
 
 	private int
@@ -52,6 +52,7 @@
 import org.scijava.plugin.Menu;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * Deletes hyperplanes of data from an input Dataset along a user specified
@@ -75,6 +76,9 @@ public class DeleteData extends DynamicCommand {
 
 	// -- Parameters --
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset dataset;
 
@@ -137,11 +141,16 @@ public void run() {
 		final AxisType[] axes = dataset.getAxes();
 		final long[] newDimensions =
 			RestructureUtils.getDimensions(dataset, axis, -quantity);
-		final ImgPlus<? extends RealType<?>> dstImgPlus =
-			RestructureUtils.createNewImgPlus(dataset, newDimensions, axes);
+		ImgPlus<? extends RealType<?>> dstImgPlus =
+			PlanarRestructurer.restructure(dataset, newDimensions, axes,
+				new RemapAlgorithm(dataset.getDims(), dataset.getAxisIndex(axis)));
+		if (dstImgPlus == null) {
+			dstImgPlus =
+				RestructureUtils.createNewImgPlus(dataset, newDimensions, axes);
+			fillNewImgPlus(dataset.getImgPlus(), dstImgPlus, axis);
+		}
 		final int compositeChannelCount =
 			compositeStatus(dataset.getCompositeChannelCount(), dstImgPlus, axis);
-		fillNewImgPlus(dataset.getImgPlus(), dstImgPlus, axis);
 		dstImgPlus.setCompositeChannelCount(compositeChannelCount);
 		RestructureUtils.allocateColorTables(dstImgPlus);
 		if (Axes.isXY(axis)) {
@@ -233,9 +242,9 @@ private void fillNewImgPlus(final ImgPlus<? extends RealType<?>> srcImgPlus,
 		final long numAfterCut = axisSize - (numBeforeCut + numInCut);
 
 		RestructureUtils.copyData(srcImgPlus, dstImgPlus, modifiedAxis, 0, 0,
-			numBeforeCut);
+			numBeforeCut, threadService);
 		RestructureUtils.copyData(srcImgPlus, dstImgPlus, modifiedAxis,
-			numBeforeCut + numInCut, numBeforeCut, numAfterCut);
+			numBeforeCut + numInCut, numBeforeCut, numAfterCut, threadService);
 	}
 
 	private int compositeStatus(final int compositeCount,
@@ -0,0 +1,294 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.restructure;
+
+import imagej.data.Dataset;
+import imagej.data.cow.SharedPlane;
+import imagej.data.cow.SharedPlanes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Restructures planar images along their non-XY axes by moving plane
+ * references rather than copying pixels. Reordering, deleting or inserting
+ * hyperplanes along a plane axis, and adding or removing such an axis, only
+ * changes where each plane ends up; the new image is built out of the plane
+ * objects of the old one in time proportional to the number of planes.
+ * <p>
+ * Where the planes go is given by the same
+ * {@link ColorTableRemapper.RemapAlgorithm} the restructure commands use to
+ * carry over color tables. Planes are moved rather than copied, so the input
+ * image must not be used afterwards. Planes without a source are newly
+ * allocated and hence zero filled.
+ * </p>
+ * <p>
+ * Every method returns null when the image is not suitable (not an in-memory
+ * planar image, of a type without array planes such as 1-bit, or with its X
+ * or Y axis affected), in which case the caller should fall back to copying
+ * pixels.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public final class PlanarRestructurer {
+
+	private PlanarRestructurer() {
+		// prevent instantiation of utility class
+	}
+
+	// -- PlanarRestructurer methods --
+
+	/**
+	 * Creates an ImgPlus with the given dimensions and axes out of the planes of
+	 * the given Dataset. Each plane accepted by the remap algorithm is placed
+	 * where the algorithm places its color table. The first two axes and their
+	 * sizes must be unchanged and no two planes may be placed at the same
+	 * position. Maintains type, name, and calibration values as
+	 * {@link RestructureUtils#createNewImgPlus} does.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static ImgPlus<? extends RealType<?>> restructure(final Dataset ds,
+		final long[] newDims, final AxisType[] newAxes,
+		final ColorTableRemapper.RemapAlgorithm remapper)
+	{
+		final ImgPlus<? extends RealType<?>> imgPlus = ds.getImgPlus();
+		if (!SharedPlanes.isSupported(imgPlus.getImg())) return null;
+		if (!sameXY(ds, newDims, newAxes)) return null;
+		final PlanarImg<?, ?> input = planar(imgPlus.getImg());
+
+		final long[] origPlaneDims = planeDims(ds.getDims());
+		final long[] newPlaneDims = planeDims(newDims);
+		long newCount = 1;
+		for (final long dim : newPlaneDims) {
+			newCount *= dim;
+		}
+		if (newCount > Integer.MAX_VALUE) return null;
+
+		// place the existing planes
+		final List<ArrayDataAccess<?>> planes =
+			new ArrayList<ArrayDataAccess<?>>((int) newCount);
+		for (int i = 0; i < newCount; i++) {
+			planes.add(null);
+		}
+		final long[] origPlanePos = new long[origPlaneDims.length];
+		final long[] newPlanePos = new long[newPlaneDims.length];
+		final boolean[] moved = new boolean[input.numSlices()];
+		for (int no = 0; no < input.numSlices(); no++) {
+			if (!remapper.isValidSourcePlane(no)) continue;
+			ColorTableRemapper.toND(origPlaneDims, no, origPlanePos);
+			remapper.remapPlanePosition(origPlaneDims, origPlanePos, newPlanePos);
+			final long index = ColorTableRemapper.to1D(newPlaneDims, newPlanePos);
+			if (index < 0 || index >= newCount) return null;
+			// NB - a plane can only be moved once
+			if (planes.get((int) index) != null) return null;
+			planes.set((int) index, input.getPlane(no));
+			moved[no] = true;
+		}
+
+		final Img img =
+			new PlaneMovingFactory(planes).create(newDims, (NativeType) imgPlus
+				.firstElement());
+		final PlanarImg<?, ?> output = planar(img);
+		// NB - types whose planes are not made by the factory methods below get
+		// planes of their own; nothing has been moved so the caller can still copy
+		for (int no = 0; no < planes.size(); no++) {
+			final Object plane = planes.get(no);
+			if (plane != null && output.getPlane(no) != plane) return null;
+		}
+		// NB - dropped planes that are shared copy-on-write stop sharing, so the
+		// images still sharing them need not copy them when written to
+		for (int no = 0; no < moved.length; no++) {
+			final Object plane = input.getPlane(no);
+			if (!moved[no] && plane instanceof SharedPlane) {
+				((SharedPlane) plane).release();
+			}
+		}
+		return RestructureUtils.createNewImgPlus(ds, img, newAxes);
+	}
+
+	// -- helpers --
+
+	/** Returns the given image as a PlanarImg, or null if it is not one. */
+	private static PlanarImg<?, ?> planar(final Img<?> img) {
+		Img<?> result = img;
+		while (result instanceof ImgPlus) {
+			result = ((ImgPlus<?>) result).getImg();
+		}
+		return result instanceof PlanarImg ? (PlanarImg<?, ?>) result : null;
+	}
+
+	/**
+	 * Returns true if the first two axes of the Dataset and their sizes are the
+	 * same as those given.
+	 */
+	private static boolean sameXY(final Dataset ds, final long[] newDims,
+		final AxisType[] newAxes)
+	{
+		if (ds.numDimensions() < 2 || newDims.length < 2) return false;
+		for (int d = 0; d < 2; d++) {
+			if (ds.axis(d) != newAxes[d]) return false;
+			if (ds.dimension(d) != newDims[d]) return false;
+		}
+		return true;
+	}
+
+	private static long[] planeDims(final long[] dims) {
+		final long[] planeDims = new long[dims.length - 2];
+		for (int i = 0; i < planeDims.length; i++) {
+			planeDims[i] = dims[i + 2];
+		}
+		return planeDims;
+	}
+
+	// -- helper classes --
+
+	/**
+	 * Creates planar images whose planes are the given plane objects, in order.
+	 * A null entry gets a newly allocated plane.
+	 */
+	private static class PlaneMovingFactory<T extends NativeType<T>> extends
+		PlanarImgFactory<T>
+	{
+
+		private final List<ArrayDataAccess<?>> planes;
+		private int next;
+
+		public PlaneMovingFactory(final List<ArrayDataAccess<?>> planes) {
+			this.planes = planes;
+		}
+
+		@Override
+		public PlanarImg<T, ByteArray> createByteInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, ByteArray>(new ByteArray(0) {
+
+				@Override
+				public ByteArray createArray(final int numEntities) {
+					final ByteArray plane = (ByteArray) planes.get(next++);
+					return plane == null ? new ByteArray(numEntities) : plane;
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, ShortArray> createShortInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, ShortArray>(new ShortArray(0) {
+
+				@Override
+				public ShortArray createArray(final int numEntities) {
+					final ShortArray plane = (ShortArray) planes.get(next++);
+					return plane == null ? new ShortArray(numEntities) : plane;
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, IntArray> createIntInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, IntArray>(new IntArray(0) {
+
+				@Override
+				public IntArray createArray(final int numEntities) {
+					final IntArray plane = (IntArray) planes.get(next++);
+					return plane == null ? new IntArray(numEntities) : plane;
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, LongArray> createLongInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, LongArray>(new LongArray(0) {
+
+				@Override
+				public LongArray createArray(final int numEntities) {
+					final LongArray plane = (LongArray) planes.get(next++);
+					return plane == null ? new LongArray(numEntities) : plane;
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, FloatArray> createFloatInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, FloatArray>(new FloatArray(0) {
+
+				@Override
+				public FloatArray createArray(final int numEntities) {
+					final FloatArray plane = (FloatArray) planes.get(next++);
+					return plane == null ? new FloatArray(numEntities) : plane;
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, DoubleArray> createDoubleInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, DoubleArray>(new DoubleArray(0) {
+
+				@Override
+				public DoubleArray createArray(final int numEntities) {
+					final DoubleArray plane = (DoubleArray) planes.get(next++);
+					return plane == null ? new DoubleArray(numEntities) : plane;
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+	}
+
+}
@@ -44,12 +44,9 @@
 import java.util.ArrayList;
 import java.util.Map;
 
-import net.imglib2.RandomAccess;
 import net.imglib2.img.ImgPlus;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
-import net.imglib2.ops.pointset.HyperVolumePointSet;
-import net.imglib2.ops.pointset.PointSetIterator;
 import net.imglib2.type.numeric.RealType;
 
 import org.scijava.ItemIO;
@@ -57,6 +54,7 @@
 import org.scijava.plugin.Menu;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 // TODO
 // - can reorder X & Y out of 1st two positions. This could be useful in future
@@ -83,6 +81,9 @@ public class ReorderData extends DynamicCommand {
 	@Parameter
 	private LogService log;
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset dataset;
 
@@ -238,34 +239,21 @@ private void setupPermutationVars() {
 
 	/**
 	 * Returns an ImgPlus that has same data values as the input Dataset but which
-	 * has them stored in a different axis order
+	 * has them stored in a different axis order. When X and Y keep their places
+	 * the planes are simply rearranged; otherwise the pixels are copied.
 	 */
 	private ImgPlus<? extends RealType<?>> getReorganizedData() {
-		final RandomAccess<? extends RealType<?>> inputAccessor =
-			dataset.getImgPlus().randomAccess();
-		final long[] inputSpan = new long[dataset.getImgPlus().numDimensions()];
-		dataset.getImgPlus().dimensions(inputSpan);
-		final HyperVolumePointSet volume = new HyperVolumePointSet(inputSpan);
-		final PointSetIterator iter = volume.iterator();
-		final long[] origDims = dataset.getDims();
-		final AxisType[] origAxes = dataset.getAxes();
-		final long[] newDims = getNewDims(origDims);
-		final AxisType[] newAxes = getNewAxes(origAxes);
-		final ImgPlus<? extends RealType<?>> newImgPlus =
-			RestructureUtils.createNewImgPlus(dataset, newDims, newAxes);
-		newImgPlus.setCompositeChannelCount(dataset.getCompositeChannelCount());
-		final RandomAccess<? extends RealType<?>> outputAccessor =
-			newImgPlus.randomAccess();
-		final long[] permutedPos = new long[inputSpan.length];
-		long[] currPos;
-		while (iter.hasNext()) {
-			currPos = iter.next();
-			inputAccessor.setPosition(currPos);
-			final double value = inputAccessor.get().getRealDouble();
-			permute(currPos, permutedPos);
-			outputAccessor.setPosition(permutedPos);
-			outputAccessor.get().setReal(value);
+		final long[] newDims = getNewDims(dataset.getDims());
+		final AxisType[] newAxes = getNewAxes(dataset.getAxes());
+		ImgPlus<? extends RealType<?>> newImgPlus =
+			PlanarRestructurer.restructure(dataset, newDims, newAxes,
+				new RemapAlgorithm());
+		if (newImgPlus == null) {
+			newImgPlus = RestructureUtils.createNewImgPlus(dataset, newDims, newAxes);
+			RestructureUtils.copyPermuted(dataset.getImgPlus(), newImgPlus,
+				permutationAxisIndices, threadService);
 		}
+		newImgPlus.setCompositeChannelCount(dataset.getCompositeChannelCount());
 		return newImgPlus;
 	}
 
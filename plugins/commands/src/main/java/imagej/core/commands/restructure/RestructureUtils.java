@@ -37,16 +37,22 @@
 
 import imagej.data.Dataset;
 import imagej.data.Extents;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import net.imglib2.RandomAccess;
 import net.imglib2.display.ColorTable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.ImgPlus;
 import net.imglib2.meta.AxisType;
-import net.imglib2.ops.pointset.HyperVolumePointSet;
-import net.imglib2.ops.pointset.PointSetIterator;
 import net.imglib2.type.numeric.RealType;
 
+import org.scijava.thread.ThreadService;
+
 /**
  * Utility class used by the restructure plugins
  * 
@@ -54,6 +60,11 @@
  */
 public class RestructureUtils {
 
+	// -- constants --
+
+	/** The smallest number of pixels worth handing to a copy task. */
+	private static final long MIN_CHUNK = 65536;
+
 	private RestructureUtils() {
 		// utility class : uninstantiable
 	}
@@ -82,6 +93,18 @@ public static ImgPlus<? extends RealType<?>> createNewImgPlus(
 		final ImgFactory factory = ds.getImgPlus().factory();
 		final Img<? extends RealType<?>> img =
 			factory.create(dimensions, ds.getType());
+		return createNewImgPlus(ds, img, axes);
+	}
+
+	/**
+	 * Wraps an existing Img in a new ImgPlus with the specified axes. Maintains
+	 * name and calibration values of the input Dataset.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static ImgPlus<? extends RealType<?>> createNewImgPlus(
+		final Dataset ds, final Img<? extends RealType<?>> img,
+		final AxisType[] axes)
+	{
 		final String name = ds.getName();
 		final double[] calibration = new double[axes.length];
 		for (int i = 0; i < axes.length; i++) {
@@ -100,6 +123,20 @@ public static ImgPlus<? extends RealType<?>> createNewImgPlus(
 	public static void copyData(final ImgPlus<? extends RealType<?>> srcImgPlus,
 		final ImgPlus<? extends RealType<?>> dstImgPlus, final AxisType axis,
 		final long srcStartPos, final long dstStartPos, final long numHyperplanes)
+	{
+		copyData(srcImgPlus, dstImgPlus, axis, srcStartPos, dstStartPos,
+			numHyperplanes, null);
+	}
+
+	/**
+	 * Copies a region of data from a srcImgPlus to a dstImgPlus as
+	 * {@link #copyData(ImgPlus, ImgPlus, AxisType, long, long, long)} does,
+	 * splitting the work between threads of the given {@link ThreadService}.
+	 */
+	public static void copyData(final ImgPlus<? extends RealType<?>> srcImgPlus,
+		final ImgPlus<? extends RealType<?>> dstImgPlus, final AxisType axis,
+		final long srcStartPos, final long dstStartPos, final long numHyperplanes,
+		final ThreadService threadService)
 	{
 		if (numHyperplanes == 0) return;
 		final long[] srcOrigin = calcOrigin(srcImgPlus, axis, srcStartPos);
@@ -109,7 +146,7 @@ public static void copyData(final ImgPlus<? extends RealType<?>> srcImgPlus,
 		final long[] dstSpan = calcSpan(dstImgPlus, axis, numHyperplanes);
 
 		copyHyperVolume(srcImgPlus, srcOrigin, srcSpan, dstImgPlus, dstOrigin,
-			dstSpan);
+			dstSpan, threadService);
 	}
 
 	/**
@@ -121,34 +158,115 @@ public static void copyHyperVolume(
 		final ImgPlus<? extends RealType<?>> srcImgPlus, final long[] srcOrigin,
 		final long[] srcSpan, final ImgPlus<? extends RealType<?>> dstImgPlus,
 		final long[] dstOrigin, final long[] dstSpan)
+	{
+		copyHyperVolume(srcImgPlus, srcOrigin, srcSpan, dstImgPlus, dstOrigin,
+			dstSpan, null);
+	}
+
+	/**
+	 * Copies a hypervolume as
+	 * {@link #copyHyperVolume(ImgPlus, long[], long[], ImgPlus, long[], long[])}
+	 * does, splitting the work between threads of the given
+	 * {@link ThreadService}. Each thread copies a contiguous run of the
+	 * hypervolume, stepping its accessors rather than repositioning them.
+	 */
+	public static void copyHyperVolume(
+		final ImgPlus<? extends RealType<?>> srcImgPlus, final long[] srcOrigin,
+		final long[] srcSpan, final ImgPlus<? extends RealType<?>> dstImgPlus,
+		final long[] dstOrigin, final long[] dstSpan,
+		final ThreadService threadService)
 	{
 		checkSpanShapes(srcSpan, dstSpan);
-		final RandomAccess<? extends RealType<?>> srcAccessor =
-			srcImgPlus.randomAccess();
-		final RandomAccess<? extends RealType<?>> dstAccessor =
-			dstImgPlus.randomAccess();
-		final long[] srcMax = new long[srcOrigin.length];
-		for (int i = 0; i < srcMax.length; i++)
-			srcMax[i] = srcOrigin[i] + srcSpan[i] - 1;
-		final long[] dstMax = new long[dstOrigin.length];
-		for (int i = 0; i < dstMax.length; i++)
-			dstMax[i] = dstOrigin[i] + dstSpan[i] - 1;
-		final HyperVolumePointSet srcPointSet =
-				new HyperVolumePointSet(srcOrigin, srcMax);
-		final HyperVolumePointSet dstPointSet =
-				new HyperVolumePointSet(dstOrigin, dstMax);
-		final PointSetIterator iterS = srcPointSet.iterator();
-		final PointSetIterator iterD = dstPointSet.iterator();
-		long[] srcPos = null;
-		long[] dstPos = null;
-		while (iterS.hasNext() && iterD.hasNext()) {
-			srcPos = iterS.next();
-			dstPos = iterD.next();
-			srcAccessor.setPosition(srcPos);
-			dstAccessor.setPosition(dstPos);
-			final double value = srcAccessor.get().getRealDouble();
-			dstAccessor.get().setReal(value);
+		final long total = new Extents(srcSpan).numElements();
+		if (total == 0) return;
+		final int numTasks = numTasks(total, dstImgPlus);
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < numTasks; t++) {
+			final long start = ParallelUtils.chunkStart(total, numTasks, t);
+			final long count = ParallelUtils.chunkSize(total, numTasks, t);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					final long[] srcPos = position(srcOrigin, srcSpan, start);
+					final long[] dstPos = position(dstOrigin, dstSpan, start);
+					final RandomAccess<? extends RealType<?>> srcAccessor =
+						srcImgPlus.randomAccess();
+					final RandomAccess<? extends RealType<?>> dstAccessor =
+						dstImgPlus.randomAccess();
+					srcAccessor.setPosition(srcPos);
+					dstAccessor.setPosition(dstPos);
+					for (long i = 0; i < count; i++) {
+						if (i > 0) {
+							step(srcAccessor, srcPos, srcOrigin, srcSpan);
+							step(dstAccessor, dstPos, dstOrigin, dstSpan);
+						}
+						dstAccessor.get().setReal(srcAccessor.get().getRealDouble());
+					}
+					return null;
+				}
+			});
 		}
+		ParallelUtils.invokeAll(threadService, tasks);
+	}
+
+	/**
+	 * Copies all of a source {@link ImgPlus} into a destination {@link ImgPlus}
+	 * whose axes are a permutation of the source's. Source axis i becomes
+	 * destination axis permutation[i]. The work is split between threads of the
+	 * given {@link ThreadService}.
+	 */
+	public static void copyPermuted(
+		final ImgPlus<? extends RealType<?>> srcImgPlus,
+		final ImgPlus<? extends RealType<?>> dstImgPlus, final int[] permutation,
+		final ThreadService threadService)
+	{
+		final long[] span = new long[srcImgPlus.numDimensions()];
+		srcImgPlus.dimensions(span);
+		final long[] origin = new long[span.length];
+		final long total = new Extents(span).numElements();
+		if (total == 0) return;
+		final int numTasks = numTasks(total, dstImgPlus);
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < numTasks; t++) {
+			final long start = ParallelUtils.chunkStart(total, numTasks, t);
+			final long count = ParallelUtils.chunkSize(total, numTasks, t);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					final long[] srcPos = position(origin, span, start);
+					final long[] dstPos = new long[srcPos.length];
+					for (int d = 0; d < srcPos.length; d++) {
+						dstPos[permutation[d]] = srcPos[d];
+					}
+					final RandomAccess<? extends RealType<?>> srcAccessor =
+						srcImgPlus.randomAccess();
+					final RandomAccess<? extends RealType<?>> dstAccessor =
+						dstImgPlus.randomAccess();
+					srcAccessor.setPosition(srcPos);
+					dstAccessor.setPosition(dstPos);
+					for (long i = 0; i < count; i++) {
+						if (i > 0) {
+							// step the source; the destination follows along the same axes
+							for (int d = 0; d < srcPos.length; d++) {
+								if (++srcPos[d] < span[d]) {
+									srcAccessor.fwd(d);
+									dstAccessor.fwd(permutation[d]);
+									break;
+								}
+								srcPos[d] = 0;
+								srcAccessor.setPosition(0, d);
+								dstAccessor.setPosition(0, permutation[d]);
+							}
+						}
+						dstAccessor.get().setReal(srcAccessor.get().getRealDouble());
+					}
+					return null;
+				}
+			});
+		}
+		ParallelUtils.invokeAll(threadService, tasks);
 	}
 
 	/**
@@ -220,6 +338,51 @@ private static long[] calcOrigin(final ImgPlus<?> imgPlus, final AxisType axis,
 		return origin;
 	}
 
+	/**
+	 * Returns the number of tasks to split a copy of the given number of pixels
+	 * into. Pixels of types that are not a whole number of bytes share storage
+	 * with their neighbors, so copies into them are not split.
+	 */
+	private static int numTasks(final long total,
+		final ImgPlus<? extends RealType<?>> dstImgPlus)
+	{
+		if (dstImgPlus.firstElement().getBitsPerPixel() % 8 != 0) return 1;
+		return ParallelUtils.taskCount(total, MIN_CHUNK);
+	}
+
+	/**
+	 * Returns the position of the pixel at the given raster index within a
+	 * hypervolume.
+	 */
+	private static long[] position(final long[] origin, final long[] span,
+		final long index)
+	{
+		final long[] pos = new long[span.length];
+		long rest = index;
+		for (int d = 0; d < span.length; d++) {
+			pos[d] = origin[d] + rest % span[d];
+			rest /= span[d];
+		}
+		return pos;
+	}
+
+	/**
+	 * Moves an accessor and its position to the next pixel of a hypervolume in
+	 * raster order.
+	 */
+	private static void step(final RandomAccess<?> accessor, final long[] pos,
+		final long[] origin, final long[] span)
+	{
+		for (int d = 0; d < pos.length; d++) {
+			if (++pos[d] < origin[d] + span[d]) {
+				accessor.fwd(d);
+				return;
+			}
+			pos[d] = origin[d];
+			accessor.setPosition(origin[d], d);
+		}
+	}
+
 	/**
 	 * Throws an exception if the number of elements in two spans differ. Currently
 	 * does not reason about span shapes.
@@ -0,0 +1,537 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.typechange;
+
+import imagej.data.PrimitivePlane;
+import imagej.data.disk.DiskPlanarImg;
+import imagej.data.disk.DiskPlane;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.Axes;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Converts planar images between types a plane at a time, working directly on
+ * the primitive plane arrays and converting planes concurrently. Values are
+ * range clamped as {@link TypeChanger} requires. Common conversions have
+ * dedicated kernels; others go through {@link PrimitivePlane} in blocks.
+ * <p>
+ * Every method returns null when the image is not suitable (not planar, or of
+ * a type without primitive plane support such as 1-bit or 12-bit), in which
+ * case the caller should fall back to a pixel by pixel copy.
+ * </p>
+ * 
+ * @author Barry DeZonia
+ */
+public final class PlanarTypeConverter {
+
+	// -- constants --
+
+	/** The number of values converted per pass over the block buffer. */
+	private static final int BLOCK_SIZE = 4096;
+
+	private PlanarTypeConverter() {
+		// prevent instantiation of utility class
+	}
+
+	// -- PlanarTypeConverter methods --
+
+	/**
+	 * Creates a copy of the input image converted to the given type. The output
+	 * is created by the given factory and must be planar as well.
+	 */
+	public static <T extends RealType<T>> Img<T> convert(
+		final ImgPlus<? extends RealType<?>> inputImg, final T newType,
+		final ImgFactory<T> imgFactory, final ThreadService threadService)
+	{
+		final PlanarImg<?, ?> input = planar(inputImg.getImg());
+		if (input == null || !supported(input, inputImg.firstElement()) ||
+			!(imgFactory instanceof PlanarImgFactory))
+		{
+			return null;
+		}
+		final long[] dims = new long[inputImg.numDimensions()];
+		inputImg.dimensions(dims);
+		final Img<T> outputImg = imgFactory.create(dims, newType);
+		final PlanarImg<?, ?> output = planar(outputImg);
+		if (output == null || !supported(output, newType)) return null;
+
+		final RealType<?> inType = inputImg.firstElement();
+		final int planeCount = input.numSlices();
+		runPlanes(planeCount, threadService, new PlaneTask() {
+
+			@Override
+			public void convert(final int no, final double[] buffer) {
+				final ArrayDataAccess<?> srcPlane = input.getPlane(no);
+				final ArrayDataAccess<?> dstPlane = output.getPlane(no);
+				pin(srcPlane);
+				pin(dstPlane);
+				try {
+					final Object src = PrimitivePlane.readArray(srcPlane);
+					final Object dst = dstPlane.getCurrentStorageArray();
+					if (!convertDirect(src, inType, dst, newType)) {
+						convertBlocks(PrimitivePlane.wrap(src, inType), PrimitivePlane
+							.wrap(dst, newType), newType instanceof FloatType, buffer);
+					}
+					markChanged(dstPlane, dst);
+				}
+				finally {
+					unpin(dstPlane);
+					unpin(srcPlane);
+				}
+			}
+		});
+		return outputImg;
+	}
+
+	/**
+	 * Converts the input image to the given type by reusing its plane arrays.
+	 * This is only possible between the signed and unsigned integer types of
+	 * the same width, whose planes share an array type; the values of the input
+	 * image are clamped in place, so the input image must not be used
+	 * afterwards. No memory is allocated for the output planes.
+	 */
+	public static <T extends RealType<T>> Img<T> convertInPlace(
+		final ImgPlus<? extends RealType<?>> inputImg, final T newType,
+		final ThreadService threadService)
+	{
+		final RealType<?> inType = inputImg.firstElement();
+		final PlanarImg<?, ?> input = planar(inputImg.getImg());
+		// NB - disk-backed planes may be evicted while they are reused
+		if (input == null || input instanceof DiskPlanarImg ||
+			!sharesStorage(inType, newType))
+		{
+			return null;
+		}
+
+		// clamp values into the range of the new type
+		final boolean toUnsigned = isUnsigned(newType);
+		final int planeCount = input.numSlices();
+		final List<Object> planes = new ArrayList<Object>(planeCount);
+		for (int no = 0; no < planeCount; no++) {
+			planes.add(input.getPlane(no).getCurrentStorageArray());
+		}
+		runPlanes(planeCount, threadService, new PlaneTask() {
+
+			@Override
+			public void convert(final int no, final double[] buffer) {
+				clampSign(planes.get(no), toUnsigned);
+			}
+		});
+
+		// wrap the same arrays in an image of the new type
+		final long[] dims = new long[inputImg.numDimensions()];
+		inputImg.dimensions(dims);
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		final Img<T> outputImg =
+			new PlaneReusingFactory(planes).create(dims, (NativeType) newType);
+		return outputImg;
+	}
+
+	/**
+	 * Creates an image of the given type and dimensions by averaging the
+	 * channels of the input image. The channel axis must be a plane axis (not X
+	 * or Y), and the output dimensions those of the input without it.
+	 */
+	public static <T extends RealType<T>> Img<T> averageChannels(
+		final ImgPlus<? extends RealType<?>> inputImg, final T newType,
+		final ImgFactory<T> imgFactory, final long[] outputDims,
+		final ThreadService threadService)
+	{
+		final int chIndex = inputImg.getAxisIndex(Axes.CHANNEL);
+		final PlanarImg<?, ?> input = planar(inputImg.getImg());
+		if (chIndex < 2 || input == null ||
+			!supported(input, inputImg.firstElement()) ||
+			!(imgFactory instanceof PlanarImgFactory))
+		{
+			return null;
+		}
+		final Img<T> outputImg = imgFactory.create(outputDims, newType);
+		final PlanarImg<?, ?> output = planar(outputImg);
+		if (output == null || !supported(output, newType)) return null;
+
+		// the stride between the planes of successive channels
+		long stride = 1;
+		for (int d = 2; d < chIndex; d++) {
+			stride *= inputImg.dimension(d);
+		}
+		final int chStride = (int) stride;
+		final int channels = (int) inputImg.dimension(chIndex);
+
+		final RealType<?> inType = inputImg.firstElement();
+		final boolean toFloat = newType instanceof FloatType;
+		final int planeCount = output.numSlices();
+		runPlanes(planeCount, threadService, new PlaneTask() {
+
+			@Override
+			public void convert(final int no, final double[] buffer) {
+				// NB - planes below the channel axis keep their index
+				final int below = no % chStride;
+				final int above = no / chStride;
+				final int first = above * chStride * channels + below;
+				final ArrayDataAccess<?> dstPlane = output.getPlane(no);
+				final ArrayDataAccess<?>[] srcPlanes = new ArrayDataAccess<?>[channels];
+				pin(dstPlane);
+				int pinned = 0;
+				try {
+					final PrimitivePlane[] ins = new PrimitivePlane[channels];
+					for (int c = 0; c < channels; c++) {
+						srcPlanes[c] = input.getPlane(first + c * chStride);
+						pin(srcPlanes[c]);
+						pinned++;
+						ins[c] =
+							PrimitivePlane.wrap(PrimitivePlane.readArray(srcPlanes[c]), inType);
+					}
+					final Object dst = dstPlane.getCurrentStorageArray();
+					final PrimitivePlane out = PrimitivePlane.wrap(dst, newType);
+					final double[] sum = new double[BLOCK_SIZE];
+					final int size = out.size();
+					for (int off = 0; off < size; off += BLOCK_SIZE) {
+						final int len = Math.min(BLOCK_SIZE, size - off);
+						for (int i = 0; i < len; i++) {
+							sum[i] = 0;
+						}
+						for (int c = 0; c < channels; c++) {
+							ins[c].get(off, buffer, 0, len);
+							for (int i = 0; i < len; i++) {
+								sum[i] += buffer[i];
+							}
+						}
+						for (int i = 0; i < len; i++) {
+							sum[i] /= channels;
+						}
+						if (toFloat) clampToFloat(sum, len);
+						out.set(off, sum, 0, len);
+					}
+					markChanged(dstPlane, dst);
+				}
+				finally {
+					for (int c = 0; c < pinned; c++) {
+						unpin(srcPlanes[c]);
+					}
+					unpin(dstPlane);
+				}
+			}
+		});
+		return outputImg;
+	}
+
+	// -- helpers --
+
+	/** Returns the given image as a PlanarImg, or null if it is not one. */
+	private static PlanarImg<?, ?> planar(final Img<?> img) {
+		Img<?> result = img;
+		while (result instanceof ImgPlus) {
+			result = ((ImgPlus<?>) result).getImg();
+		}
+		return result instanceof PlanarImg ? (PlanarImg<?, ?>) result : null;
+	}
+
+	private static boolean supported(final PlanarImg<?, ?> img,
+		final RealType<?> type)
+	{
+		if (img.numSlices() == 0) return false;
+		return PrimitivePlane.wrap(PrimitivePlane.readArray(img.getPlane(0)),
+			type) != null;
+	}
+
+	/** Marks a plane of a disk-backed image as changed. */
+	private static void markChanged(final Object plane, final Object array) {
+		if (plane instanceof DiskPlane) ((DiskPlane) plane).assign(array);
+	}
+
+	/** Keeps a disk-backed plane in memory while its array is in use. */
+	private static void pin(final Object plane) {
+		if (plane instanceof DiskPlane) ((DiskPlane) plane).pin();
+	}
+
+	private static void unpin(final Object plane) {
+		if (plane instanceof DiskPlane) ((DiskPlane) plane).unpin();
+	}
+
+	private static boolean isUnsigned(final RealType<?> type) {
+		return type instanceof UnsignedByteType ||
+			type instanceof UnsignedShortType || type instanceof UnsignedIntType;
+	}
+
+	/** Returns true if the two types are the signed and unsigned of one width. */
+	private static boolean sharesStorage(final RealType<?> a, final RealType<?> b)
+	{
+		return pair(a, b, ByteType.class, UnsignedByteType.class) ||
+			pair(a, b, ShortType.class, UnsignedShortType.class) ||
+			pair(a, b, IntType.class, UnsignedIntType.class);
+	}
+
+	private static boolean pair(final RealType<?> a, final RealType<?> b,
+		final Class<?> c1, final Class<?> c2)
+	{
+		return (c1.isInstance(a) && c2.isInstance(b)) ||
+			(c2.isInstance(a) && c1.isInstance(b));
+	}
+
+	/**
+	 * Clamps the raw values of a plane into the range of the signed or unsigned
+	 * type of its width. Either way the values out of range are exactly those
+	 * whose raw signed value is negative.
+	 */
+	private static void clampSign(final Object array, final boolean toUnsigned)
+	{
+		if (array instanceof byte[]) {
+			final byte[] data = (byte[]) array;
+			final byte clamped = toUnsigned ? 0 : Byte.MAX_VALUE;
+			for (int i = 0; i < data.length; i++) {
+				if (data[i] < 0) data[i] = clamped;
+			}
+		}
+		else if (array instanceof short[]) {
+			final short[] data = (short[]) array;
+			final short clamped = toUnsigned ? 0 : Short.MAX_VALUE;
+			for (int i = 0; i < data.length; i++) {
+				if (data[i] < 0) data[i] = clamped;
+			}
+		}
+		else if (array instanceof int[]) {
+			final int[] data = (int[]) array;
+			final int clamped = toUnsigned ? 0 : Integer.MAX_VALUE;
+			for (int i = 0; i < data.length; i++) {
+				if (data[i] < 0) data[i] = clamped;
+			}
+		}
+	}
+
+	/**
+	 * Converts a plane with a dedicated kernel, if there is one for the pair of
+	 * types. Returns false otherwise.
+	 */
+	private static boolean convertDirect(final Object src,
+		final RealType<?> srcType, final Object dst, final RealType<?> dstType)
+	{
+		if (srcType instanceof UnsignedByteType) {
+			final byte[] in = (byte[]) src;
+			if (dstType instanceof FloatType) {
+				final float[] out = (float[]) dst;
+				for (int i = 0; i < in.length; i++) {
+					out[i] = in[i] & 0xff;
+				}
+				return true;
+			}
+			if (dstType instanceof UnsignedShortType || dstType instanceof ShortType)
+			{
+				final short[] out = (short[]) dst;
+				for (int i = 0; i < in.length; i++) {
+					out[i] = (short) (in[i] & 0xff);
+				}
+				return true;
+			}
+		}
+		else if (srcType instanceof UnsignedShortType) {
+			final short[] in = (short[]) src;
+			if (dstType instanceof FloatType) {
+				final float[] out = (float[]) dst;
+				for (int i = 0; i < in.length; i++) {
+					out[i] = in[i] & 0xffff;
+				}
+				return true;
+			}
+			if (dstType instanceof UnsignedByteType) {
+				final byte[] out = (byte[]) dst;
+				for (int i = 0; i < in.length; i++) {
+					final int v = in[i] & 0xffff;
+					out[i] = (byte) (v > 0xff ? 0xff : v);
+				}
+				return true;
+			}
+		}
+		else if (srcType instanceof ShortType) {
+			final short[] in = (short[]) src;
+			if (dstType instanceof FloatType) {
+				final float[] out = (float[]) dst;
+				for (int i = 0; i < in.length; i++) {
+					out[i] = in[i];
+				}
+				return true;
+			}
+		}
+		else if (srcType instanceof FloatType) {
+			final float[] in = (float[]) src;
+			if (dstType instanceof DoubleType) {
+				final double[] out = (double[]) dst;
+				for (int i = 0; i < in.length; i++) {
+					out[i] = in[i];
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Converts a plane in blocks of values exchanged as doubles. */
+	private static void convertBlocks(final PrimitivePlane in,
+		final PrimitivePlane out, final boolean toFloat, final double[] buffer)
+	{
+		final int size = in.size();
+		for (int off = 0; off < size; off += buffer.length) {
+			final int len = Math.min(buffer.length, size - off);
+			in.get(off, buffer, 0, len);
+			if (toFloat) clampToFloat(buffer, len);
+			out.set(off, buffer, 0, len);
+		}
+	}
+
+	/**
+	 * Clamps values to the range of float. PrimitivePlane only clamps values
+	 * written into integer planes.
+	 */
+	private static void clampToFloat(final double[] values, final int length) {
+		for (int i = 0; i < length; i++) {
+			if (values[i] > Float.MAX_VALUE) values[i] = Float.MAX_VALUE;
+			else if (values[i] < -Float.MAX_VALUE) values[i] = -Float.MAX_VALUE;
+		}
+	}
+
+	/** Runs a task for each of the given number of planes, concurrently. */
+	private static void runPlanes(final int planeCount,
+		final ThreadService threadService, final PlaneTask task)
+	{
+		final int taskCount = ParallelUtils.taskCount(planeCount, 1);
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < taskCount; t++) {
+			final int start = (int) ParallelUtils.chunkStart(planeCount, taskCount, t);
+			final int size = (int) ParallelUtils.chunkSize(planeCount, taskCount, t);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					final double[] buffer = new double[BLOCK_SIZE];
+					for (int no = start; no < start + size; no++) {
+						task.convert(no, buffer);
+					}
+					return null;
+				}
+			});
+		}
+		ParallelUtils.invokeAll(threadService, tasks);
+	}
+
+	// -- helper classes --
+
+	/** The conversion of one plane. */
+	private interface PlaneTask {
+
+		/** Converts the given plane, using the given scratch buffer. */
+		void convert(int no, double[] buffer);
+	}
+
+	/**
+	 * Creates planar images whose planes are the given arrays, in order,
+	 * instead of new ones.
+	 */
+	private static class PlaneReusingFactory<T extends NativeType<T>> extends
+		PlanarImgFactory<T>
+	{
+
+		private final List<Object> planes;
+		private int next;
+
+		public PlaneReusingFactory(final List<Object> planes) {
+			this.planes = planes;
+		}
+
+		@Override
+		public PlanarImg<T, ByteArray> createByteInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, ByteArray>(new ByteArray(0) {
+
+				@Override
+				public ByteArray createArray(final int numEntities) {
+					return new ByteArray((byte[]) planes.get(next++));
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, ShortArray> createShortInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, ShortArray>(new ShortArray(0) {
+
+				@Override
+				public ShortArray createArray(final int numEntities) {
+					return new ShortArray((short[]) planes.get(next++));
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, IntArray> createIntInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new PlanarImg<T, IntArray>(new IntArray(0) {
+
+				@Override
+				public IntArray createArray(final int numEntities) {
+					return new IntArray((int[]) planes.get(next++));
+				}
+			}, dimensions, entitiesPerPixel);
+		}
+	}
+
+}
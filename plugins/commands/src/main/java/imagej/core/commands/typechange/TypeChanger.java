@@ -58,6 +58,7 @@
 
 import org.scijava.ItemIO;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 
 /**
  * Transforms a {@link Dataset} (and linked {@link ImgPlus}) between types.
@@ -80,6 +81,9 @@ public abstract class TypeChanger extends DynamicCommand {
 	//@Parameter
 	//private MenuService menuService;
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset data;
 
@@ -103,7 +107,7 @@ protected <T extends RealType<T>> void changeType(final T newType) {
 		Boolean b = (Boolean) getInput(FIELDNAME);
 		if (b != null) Prefs.put(FIELDNAME,b);
 		boolean compositeMode = (b == null) ? false : b;
-		changeType(data, newType, compositeMode);
+		changeType(data, newType, compositeMode, threadService);
 		// TODO
 		//menuService.setSelected(this, true);
 	}
@@ -122,9 +126,21 @@ public Dataset getDataset() {
 	 * Changes the given {@link Dataset}'s underlying {@link Img} data to the
 	 * specified type.
 	 */
-	@SuppressWarnings({"unchecked","rawtypes"})
 	public static <T extends RealType<T>> void changeType(final Dataset dataset,
 		final T newType, boolean compositeMode)
+	{
+		changeType(dataset, newType, compositeMode, null);
+	}
+
+	/**
+	 * Changes the given {@link Dataset}'s underlying {@link Img} data to the
+	 * specified type, converting planes concurrently on the given
+	 * {@link ThreadService} (or on the calling thread if it is null). Planar
+	 * data whose storage suits the new type is converted in place.
+	 */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	public static <T extends RealType<T>> void changeType(final Dataset dataset,
+		final T newType, boolean compositeMode, final ThreadService threadService)
 	{
 		// see if input dataset is already typed correctly
 		if (dataset.isRGBMerged()) {
@@ -139,10 +155,15 @@ else if (dataset.getType().getClass() == newType.getClass()) {
 		final ImgPlus<? extends RealType<?>> inputImg = dataset.getImgPlus();
 		final ImgPlus<? extends RealType<?>> imgPlus;
 		if (compositeMode) {
-			imgPlus = copyToCompositeGrayscale((ImgPlus) inputImg, newType);
+			imgPlus =
+				copyToCompositeGrayscale((ImgPlus) inputImg, newType, threadService);
 		}
 		else {
-			imgPlus = copyToType(inputImg, newType);
+			// NB - the old data is discarded, so its planes may be reused
+			final Img<T> img =
+				PlanarTypeConverter.convertInPlace(inputImg, newType, threadService);
+			if (img != null) imgPlus = new ImgPlus<T>(img, inputImg);
+			else imgPlus = copyToType(inputImg, newType, threadService);
 		}
 		dataset.setRGBMerged(false);  // event order requires this before setImgPlus()
 		dataset.setImgPlus(imgPlus);
@@ -156,11 +177,23 @@ else if (dataset.getType().getClass() == newType.getClass()) {
 	 */
 	public static <T extends RealType<T>> ImgPlus<? extends RealType<?>>
 		copyToType(final ImgPlus<? extends RealType<?>> inputImg, final T newType)
+	{
+		return copyToType(inputImg, newType, (ThreadService) null);
+	}
+
+	/**
+	 * Creates an ImgLib {@link Img} of the given type using the input
+	 * {@link Img}'s factory, converting planes concurrently on the given
+	 * {@link ThreadService}. Output data is range clamped.
+	 */
+	public static <T extends RealType<T>> ImgPlus<? extends RealType<?>>
+		copyToType(final ImgPlus<? extends RealType<?>> inputImg, final T newType,
+			final ThreadService threadService)
 	{
 		final ImgFactory<? extends RealType<?>> factory = inputImg.factory();
 		@SuppressWarnings("unchecked")
 		final ImgFactory<T> typedFactory = (ImgFactory<T>) factory;
-		return copyToType(inputImg, newType, typedFactory);
+		return copyToType(inputImg, newType, typedFactory, threadService);
 	}
 
 	/**
@@ -173,6 +206,23 @@ public static <T extends RealType<T>> ImgPlus<T> copyToType(
 		final ImgPlus<? extends RealType<?>> inputImg, final T newType,
 		final ImgFactory<T> imgFactory)
 	{
+		return copyToType(inputImg, newType, imgFactory, null);
+	}
+
+	/**
+	 * Creates an ImgLib {@link Img} of the given type using the specified
+	 * {@link ImgFactory}. Planar data is converted a plane at a time, with
+	 * planes converted concurrently on the given {@link ThreadService} (or on
+	 * the calling thread if it is null). Output data is range clamped.
+	 */
+	public static <T extends RealType<T>> ImgPlus<T> copyToType(
+		final ImgPlus<? extends RealType<?>> inputImg, final T newType,
+		final ImgFactory<T> imgFactory, final ThreadService threadService)
+	{
+		final Img<T> converted =
+			PlanarTypeConverter.convert(inputImg, newType, imgFactory, threadService);
+		if (converted != null) return new ImgPlus<T>(converted, inputImg);
+
 		final long[] dims = new long[inputImg.numDimensions()];
 		inputImg.dimensions(dims);
 		final Img<T> outputImg = imgFactory.create(dims, newType);
@@ -209,7 +259,8 @@ public static <T extends RealType<T>> ImgPlus<T> copyToType(
 	 * channel values of an input {@link ImgPlus}.
 	 */
 	private static <I extends RealType<I>, O extends RealType<O>> ImgPlus<O>
-		copyToCompositeGrayscale(final ImgPlus<I> inputImg, final O newType)
+		copyToCompositeGrayscale(final ImgPlus<I> inputImg, final O newType,
+			final ThreadService threadService)
 	{
 		// determine the attributes of the output image
 		final String name = inputImg.getName();
@@ -221,6 +272,13 @@ public static <T extends RealType<T>> ImgPlus<T> copyToType(
 		final ImgFactory<? extends RealType<?>> factory = inputImg.factory();
 		@SuppressWarnings("unchecked")
 		final ImgFactory<O> typedFactory = (ImgFactory<O>) factory;
+
+		// average planar data a plane at a time when possible
+		final Img<O> averaged =
+			PlanarTypeConverter.averageChannels(inputImg, newType, typedFactory,
+				dims, threadService);
+		if (averaged != null) return new ImgPlus<O>(averaged, name, axes, cal);
+
 		final Img<O> outputImg = typedFactory.create(dims, newType);
 
 		// Would be nice
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign.noisereduce;
+
+import static org.junit.Assert.assertEquals;
+import imagej.data.Dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.ops.function.real.RealAdaptiveMedianFunction;
+import net.imglib2.ops.function.real.RealImageFunction;
+import net.imglib2.ops.pointset.HyperVolumePointSet;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link NoiseReductionAdaptiveMedian}.
+ */
+public class NoiseReductionAdaptiveMedianTest {
+
+	@Test
+	public void testSlabsMatchSingleThreadedReduction() {
+		final Context context = new Context();
+		try {
+			final ImgPlus<UnsignedByteType> input = noisyImage(37, 23);
+
+			// the reduction as it ran before slabs: one function whose first
+			// neighborhood is the one moved over the image
+			final List<PointSet> neighs = new ArrayList<PointSet>();
+			neighs.add(new HyperVolumePointSet(new long[2], new long[] { 1, 1 },
+				new long[] { 1, 1 }));
+			final RealAdaptiveMedianFunction<DoubleType> function =
+				new RealAdaptiveMedianFunction<DoubleType>(imageFunction(input),
+					neighs);
+			final Dataset expected =
+				new Reducer<UnsignedByteType, DoubleType>(context, input, function,
+					neighs.get(0)).reduceNoise("baseline");
+
+			final NoiseReductionAdaptiveMedian<UnsignedByteType> command =
+				new NoiseReductionAdaptiveMedian<UnsignedByteType>();
+			final Dataset actual =
+				new Reducer<UnsignedByteType, DoubleType>(context, input, command
+					.createFactory(input)).reduceNoise("slabs");
+
+			final Cursor<? extends RealType<?>> c =
+				expected.getImgPlus().localizingCursor();
+			final RandomAccess<? extends RealType<?>> ra =
+				actual.getImgPlus().randomAccess();
+			while (c.hasNext()) {
+				c.fwd();
+				ra.setPosition(c);
+				assertEquals(c.get().getRealDouble(), ra.get().getRealDouble(), 0);
+			}
+		}
+		finally {
+			context.dispose();
+		}
+	}
+
+	// -- helpers --
+
+	/** Creates an image of a gradient with salt and pepper noise. */
+	private ImgPlus<UnsignedByteType> noisyImage(final int w, final int h) {
+		final Img<UnsignedByteType> img =
+			new PlanarImgFactory<UnsignedByteType>().create(new long[] { w, h },
+				new UnsignedByteType());
+		final Random random = new Random(17);
+		final Cursor<UnsignedByteType> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			final int noise = random.nextInt(10);
+			final int value =
+				noise == 0 ? 0 : noise == 1 ? 255 : cursor.getIntPosition(0) * 3 +
+					cursor.getIntPosition(1);
+			cursor.get().set(value);
+		}
+		return new ImgPlus<UnsignedByteType>(img);
+	}
+
+	private RealImageFunction<UnsignedByteType, DoubleType> imageFunction(
+		final ImgPlus<UnsignedByteType> img)
+	{
+		final OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>> oobFactory =
+			new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+				Boundary.DOUBLE);
+		return new RealImageFunction<UnsignedByteType, DoubleType>(img,
+			oobFactory, new DoubleType());
+	}
+
+}
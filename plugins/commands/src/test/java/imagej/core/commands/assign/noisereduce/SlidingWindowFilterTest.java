@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign.noisereduce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import imagej.core.commands.assign.noisereduce.SlidingWindowFilter.Mode;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.ops.function.Function;
+import net.imglib2.ops.function.real.RealImageFunction;
+import net.imglib2.ops.function.real.RealMaxFunction;
+import net.imglib2.ops.function.real.RealMedianFunction;
+import net.imglib2.ops.function.real.RealMinFunction;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link SlidingWindowFilter} against the general {@link Reducer} path.
+ */
+public class SlidingWindowFilterTest {
+
+	private Context context;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testMedian() {
+		// NB - an asymmetric window makes mistakes at the borders show; its odd
+		// size keeps the median a value of the image
+		final ImgPlus<UnsignedByteType> img =
+			image(new UnsignedByteType(), 37, 23, 3);
+		assertSameAsReducer(img, neigh(2, 2, 1, 3), Mode.MEDIAN);
+	}
+
+	@Test
+	public void testMinimum() {
+		assertSameAsReducer(image(new UnsignedByteType(), 37, 23, 3), neigh(2, 1,
+			1, 3), Mode.MINIMUM);
+		assertSameAsReducer(image(new FloatType(), 29, 31, 2), neigh(3, 3, 0, 2),
+			Mode.MINIMUM);
+	}
+
+	@Test
+	public void testMaximum() {
+		assertSameAsReducer(image(new UnsignedByteType(), 37, 23, 3), neigh(2, 1,
+			1, 3), Mode.MAXIMUM);
+		assertSameAsReducer(image(new FloatType(), 29, 31, 2), neigh(3, 3, 0, 2),
+			Mode.MAXIMUM);
+	}
+
+	@Test
+	public void testWindowLargerThanPlane() {
+		// most pixels see mirrored pixels on both sides of the window
+		final ImgPlus<UnsignedByteType> img =
+			image(new UnsignedByteType(), 5, 4, 1);
+		for (final Mode mode : Mode.values()) {
+			assertSameAsReducer(img, neigh(3, 3, 3, 3), mode);
+		}
+	}
+
+	@Test
+	public void testBands() {
+		// a single tall plane is split into bands of rows when threads allow
+		final ImgPlus<UnsignedByteType> img =
+			image(new UnsignedByteType(), 17, 301, 1);
+		for (final Mode mode : Mode.values()) {
+			assertSameAsReducer(img, neigh(1, 1, 2, 2), mode);
+		}
+	}
+
+	@Test
+	public void testCanFilter() {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Dataset bytes =
+			datasetService.create(image(new UnsignedByteType(), 8, 8, 1));
+		final Dataset floats = datasetService.create(image(new FloatType(), 8, 8, 1));
+		final Neighborhood rect = neigh(1, 1, 1, 1);
+		assertTrue(SlidingWindowFilter.canFilter(bytes, rect, Mode.MEDIAN));
+		assertTrue(SlidingWindowFilter.canFilter(floats, rect, Mode.MAXIMUM));
+		// no histogram for the median of real values
+		assertFalse(SlidingWindowFilter.canFilter(floats, rect, Mode.MEDIAN));
+	}
+
+	// -- helpers --
+
+	/** Creates a rectangular XY neighborhood of a 3D image. */
+	private Neighborhood neigh(final long left, final long right, final long up,
+		final long down)
+	{
+		return new RectangularNeigh(new long[] { right, down, 0 }, new long[] {
+			left, up, 0 });
+	}
+
+	/** Creates an image of a gradient with salt and pepper noise. */
+	private <T extends RealType<T> & NativeType<T>> ImgPlus<T> image(
+		final T type, final int w, final int h, final int planes)
+	{
+		final Img<T> img =
+			new PlanarImgFactory<T>().create(new long[] { w, h, planes }, type);
+		final Random random = new Random(23);
+		final Cursor<T> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			final int noise = random.nextInt(8);
+			final double value =
+				noise == 0 ? 0 : noise == 1 ? 255 : (cursor.getIntPosition(0) * 5 +
+					cursor.getIntPosition(1) * 3 + cursor.getIntPosition(2) * 7) % 200 +
+					random.nextInt(4);
+			cursor.get().setReal(value);
+		}
+		return new ImgPlus<T>(img);
+	}
+
+	private <T extends RealType<T>> void assertSameAsReducer(
+		final ImgPlus<T> img, final Neighborhood neigh, final Mode mode)
+	{
+		final Dataset input =
+			context.getService(DatasetService.class).create(img);
+		assertTrue(SlidingWindowFilter.canFilter(input, neigh, mode));
+		final Dataset actual =
+			new SlidingWindowFilter(context, input, neigh, mode).filter("sliding");
+
+		final PointSet points = neigh.copy().getPoints();
+		final Dataset expected =
+			new Reducer<T, DoubleType>(context, img, function(img, mode), points)
+				.reduceNoise("reducer");
+
+		final Cursor<? extends RealType<?>> c =
+			expected.getImgPlus().localizingCursor();
+		final RandomAccess<? extends RealType<?>> ra =
+			actual.getImgPlus().randomAccess();
+		while (c.hasNext()) {
+			c.fwd();
+			ra.setPosition(c);
+			assertEquals(mode + " at " + c.getLongPosition(0) + "," +
+				c.getLongPosition(1) + "," + c.getLongPosition(2), c.get()
+				.getRealDouble(), ra.get().getRealDouble(), 0);
+		}
+	}
+
+	/** Returns the function the noise reduction commands use for a mode. */
+	private <T extends RealType<T>> Function<PointSet, DoubleType> function(
+		final ImgPlus<T> img, final Mode mode)
+	{
+		final OutOfBoundsMirrorFactory<T, RandomAccessibleInterval<T>> oobFactory =
+			new OutOfBoundsMirrorFactory<T, RandomAccessibleInterval<T>>(
+				Boundary.DOUBLE);
+		final RealImageFunction<T, DoubleType> imageFunction =
+			new RealImageFunction<T, DoubleType>(img, oobFactory, new DoubleType());
+		switch (mode) {
+			case MEDIAN:
+				return new RealMedianFunction<DoubleType>(imageFunction);
+			case MINIMUM:
+				return new RealMinFunction<DoubleType>(imageFunction);
+			default:
+				return new RealMaxFunction<DoubleType>(imageFunction);
+		}
+	}
+
+}
@@ -0,0 +1,307 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.neigh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.util.RealRect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link Neighborhood3x3Operation} against the original implementation,
+ * which read each neighborhood from a mirrored copy of the whole image.
+ */
+public class Neighborhood3x3OperationTest {
+
+	private Context context;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testMirroredEdges() {
+		final Dataset ds = dataset(23, 17, 2);
+		assertSameAsBaseline(ds, new RealRect(), new WeightedWatcher(null));
+	}
+
+	@Test
+	public void testSelection() {
+		// rows and columns next to the selection are read but left unchanged
+		final Dataset ds = dataset(23, 17, 2);
+		assertSameAsBaseline(ds, new RealRect(3, 4, 12, 9), new WeightedWatcher(
+			null));
+	}
+
+	@Test
+	public void testSingleThreaded() {
+		// watchers that cannot be copied are run on the calling thread
+		final Dataset ds = dataset(23, 300, 1);
+		final WeightedWatcher weighted = new WeightedWatcher(null);
+		assertSameAsBaseline(ds, new RealRect(), new Neighborhood3x3Watcher() {
+
+			@Override
+			public void setup() {
+				weighted.setup();
+			}
+
+			@Override
+			public void initializeNeighborhood(final long[] position) {
+				weighted.initializeNeighborhood(position);
+			}
+
+			@Override
+			public void visitLocation(final int dx, final int dy,
+				final double value)
+			{
+				weighted.visitLocation(dx, dy, value);
+			}
+
+			@Override
+			public double calcOutputValue() {
+				return weighted.calcOutputValue();
+			}
+		});
+	}
+
+	@Test
+	public void testBands() {
+		// NB - tall planes are split into bands of rows when there is more than
+		// one processor; each band must see the original rows of its neighbors
+		// and a freshly set up watcher
+		final int height = 1000;
+		final Dataset ds = dataset(31, height, 2);
+		final List<long[]> runs = Collections.synchronizedList(new ArrayList<long[]>());
+		assertSameAsBaseline(ds, new RealRect(0, 10, 0, height - 20),
+			new WeightedWatcher(runs));
+
+		// the rows visited after each setup are one contiguous band, and the
+		// bands of each plane cover the selected rows exactly once
+		Collections.sort(runs, new Comparator<long[]>() {
+
+			@Override
+			public int compare(final long[] a, final long[] b) {
+				if (a[0] != b[0]) return a[0] < b[0] ? -1 : 1;
+				return a[1] < b[1] ? -1 : a[1] > b[1] ? 1 : 0;
+			}
+		});
+		final long[] nextRow = { 10, 10 };
+		for (final long[] run : runs) {
+			assertTrue("rows not contiguous after a setup", run[3] == 0);
+			assertEquals(nextRow[(int) run[0]], run[1]);
+			nextRow[(int) run[0]] = run[2] + 1;
+		}
+		assertEquals(height - 10, nextRow[0]);
+		assertEquals(height - 10, nextRow[1]);
+	}
+
+	// -- helpers --
+
+	/** Creates a Dataset of random integers, exactly represented as floats. */
+	private Dataset dataset(final int w, final int h, final int planes) {
+		final Dataset ds =
+			context.getService(DatasetService.class).create(new FloatType(),
+				new long[] { w, h, planes }, "test",
+				new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+		final Random random = new Random(5);
+		final Cursor<? extends RealType<?>> cursor = ds.getImgPlus().cursor();
+		while (cursor.hasNext()) {
+			cursor.next().setReal(random.nextInt(100));
+		}
+		return ds;
+	}
+
+	/** Runs the operation and compares it to the original implementation. */
+	private void assertSameAsBaseline(final Dataset ds, final RealRect selection,
+		final Neighborhood3x3Watcher watcher)
+	{
+		final Img<? extends RealType<?>> expected =
+			baseline(ds.getImgPlus(), new RealRect(selection.x, selection.y,
+				selection.width, selection.height));
+		new Neighborhood3x3Operation(ds, selection, watcher).run();
+		final Cursor<? extends RealType<?>> c = expected.localizingCursor();
+		final RandomAccess<? extends RealType<?>> ra =
+			ds.getImgPlus().randomAccess();
+		while (c.hasNext()) {
+			c.fwd();
+			ra.setPosition(c);
+			assertEquals("pixel " + c.getLongPosition(0) + "," +
+				c.getLongPosition(1) + "," + c.getLongPosition(2), c.get()
+				.getRealDouble(), ra.get().getRealDouble(), 0);
+		}
+	}
+
+	/**
+	 * Computes the operation as it was done before rows were buffered: every
+	 * neighborhood is read from a copy of the image mirrored at its edges.
+	 */
+	private Img<FloatType> baseline(final Img<? extends RealType<?>> img,
+		final RealRect selection)
+	{
+		final long[] dims = new long[img.numDimensions()];
+		img.dimensions(dims);
+		final ArrayImgFactory<FloatType> factory = new ArrayImgFactory<FloatType>();
+		final Img<FloatType> copy = factory.create(dims, new FloatType());
+		final Img<FloatType> result = factory.create(dims, new FloatType());
+		final Cursor<? extends RealType<?>> cursor = img.localizingCursor();
+		final RandomAccess<FloatType> copyAccess = copy.randomAccess();
+		final RandomAccess<FloatType> resultAccess = result.randomAccess();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			copyAccess.setPosition(cursor);
+			copyAccess.get().setReal(cursor.get().getRealDouble());
+			resultAccess.setPosition(cursor);
+			resultAccess.get().setReal(cursor.get().getRealDouble());
+		}
+
+		if (selection.width == 0) selection.width = dims[0];
+		if (selection.height == 0) selection.height = dims[1];
+		final RandomAccess<FloatType> extended =
+			Views.extendMirrorSingle(copy).randomAccess();
+		final WeightedWatcher watcher = new WeightedWatcher(null);
+		final long[] pos = new long[dims.length];
+		final long[] local = new long[dims.length];
+		for (long p = 0; p < dims[2]; p++) {
+			pos[2] = local[2] = p;
+			for (long y = (long) selection.y; y < selection.y + selection.height; y++)
+			{
+				pos[1] = y;
+				for (long x = (long) selection.x; x < selection.x + selection.width; x++)
+				{
+					pos[0] = x;
+					watcher.initializeNeighborhood(pos);
+					for (int dy = -1; dy <= 1; dy++) {
+						local[1] = y + dy;
+						for (int dx = -1; dx <= 1; dx++) {
+							local[0] = x + dx;
+							extended.setPosition(local);
+							watcher.visitLocation(dx, dy, extended.get().getRealDouble());
+						}
+					}
+					resultAccess.setPosition(pos);
+					resultAccess.get().setReal(watcher.calcOutputValue());
+				}
+			}
+		}
+		return result;
+	}
+
+	// -- helper classes --
+
+	/**
+	 * Weighs each neighbor differently, so that neighbors read from the wrong
+	 * place change the result. Optionally records the rows it visits after each
+	 * setup as {plane, first row, last row, gaps}.
+	 */
+	private static class WeightedWatcher implements
+		CopyableNeighborhood3x3Watcher
+	{
+
+		private final List<long[]> runs;
+		private long[] run;
+		private double sum;
+
+		public WeightedWatcher(final List<long[]> runs) {
+			this.runs = runs;
+		}
+
+		@Override
+		public Neighborhood3x3Watcher copy() {
+			return new WeightedWatcher(runs);
+		}
+
+		@Override
+		public void setup() {
+			run = null;
+		}
+
+		@Override
+		public void initializeNeighborhood(final long[] position) {
+			sum = 0;
+			if (runs == null) return;
+			final long y = position[1];
+			if (run == null) {
+				run = new long[] { position[2], y, y, 0 };
+				runs.add(run);
+			}
+			else if (position[2] != run[0] || y < run[2] || y > run[2] + 1) {
+				// a band began without a setup
+				run[3]++;
+			}
+			else run[2] = y;
+		}
+
+		@Override
+		public void visitLocation(final int dx, final int dy, final double value)
+		{
+			sum += value * (3 * (dy + 1) + dx + 2);
+		}
+
+		@Override
+		public double calcOutputValue() {
+			return sum;
+		}
+	}
+
+}
@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.restructure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.cow.PlaneShare;
+import imagej.data.cow.SharedPlane;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link PlanarRestructurer}.
+ * 
+ * @author Barry DeZonia
+ */
+public class PlanarRestructurerTest {
+
+	private static final AxisType[] AXES = { Axes.X, Axes.Y, Axes.Z };
+
+	@Test
+	public void testReversePlanes() {
+		final Dataset ds = createDataset(3);
+		final Object[] planes = planes(ds.getImgPlus());
+		final ImgPlus<? extends RealType<?>> result =
+			PlanarRestructurer.restructure(ds, new long[] { 2, 2, 3 }, AXES,
+				new Mover(0));
+		final Object[] moved = planes(result);
+		assertSame(planes[2], moved[0]);
+		assertSame(planes[1], moved[1]);
+		assertSame(planes[0], moved[2]);
+		assertEquals(3, value(result, 1, 0), 0);
+		assertEquals(1, value(result, 1, 2), 0);
+	}
+
+	@Test
+	public void testInsertPlanes() {
+		final Dataset ds = createDataset(2);
+		final Object[] planes = planes(ds.getImgPlus());
+		// move each plane up one: the first plane of the result is new
+		final ImgPlus<? extends RealType<?>> result =
+			PlanarRestructurer.restructure(ds, new long[] { 2, 2, 3 }, AXES,
+				new Mover(1));
+		final Object[] moved = planes(result);
+		assertSame(planes[0], moved[1]);
+		assertSame(planes[1], moved[2]);
+		assertEquals(0, value(result, 1, 0), 0);
+		assertEquals(2, value(result, 1, 2), 0);
+	}
+
+	@Test
+	public void testDroppedSharedPlanesReleased() {
+		final Dataset ds = createDataset(3);
+		final Dataset copy = ds.duplicate();
+		final PlaneShare share =
+			((SharedPlane) planes(copy.getImgPlus())[1]).getShare();
+		assertEquals(2, share.getSharers());
+		final ImgPlus<? extends RealType<?>> result =
+			PlanarRestructurer.restructure(ds, new long[] { 2, 2, 2 }, AXES,
+				new Dropper(1));
+		assertEquals(3, value(result, 1, 1), 0);
+		assertEquals(1, share.getSharers());
+	}
+
+	@Test
+	public void testXYChangeRejected() {
+		final Dataset ds = createDataset(3);
+		assertNull(PlanarRestructurer.restructure(ds, new long[] { 1, 2, 3 },
+			AXES, new Mover(0)));
+	}
+
+	// -- helpers --
+
+	/**
+	 * Creates a 2 x 2 x numPlanes Dataset whose pixel (1, 0) holds one more than
+	 * its plane number.
+	 */
+	private Dataset createDataset(final int numPlanes) {
+		final Context context = new Context(DatasetService.class);
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Img<UnsignedByteType> img =
+			new PlanarImgFactory<UnsignedByteType>().create(new long[] { 2, 2,
+				numPlanes }, new UnsignedByteType());
+		final RandomAccess<UnsignedByteType> access = img.randomAccess();
+		access.setPosition(1, 0);
+		for (int z = 0; z < numPlanes; z++) {
+			access.setPosition(z, 2);
+			access.get().setReal(z + 1);
+		}
+		return datasetService.create(new ImgPlus<UnsignedByteType>(img, "test",
+			AXES));
+	}
+
+	private Object[] planes(final ImgPlus<?> imgPlus) {
+		final PlanarImg<?, ?> img = (PlanarImg<?, ?>) imgPlus.getImg();
+		final Object[] planes = new Object[img.numSlices()];
+		for (int no = 0; no < planes.length; no++) {
+			planes[no] = img.getPlane(no);
+		}
+		return planes;
+	}
+
+	private double value(final ImgPlus<? extends RealType<?>> imgPlus,
+		final long x, final long z)
+	{
+		final RandomAccess<? extends RealType<?>> access = imgPlus.randomAccess();
+		access.setPosition(x, 0);
+		access.setPosition(z, 2);
+		return access.get().getRealDouble();
+	}
+
+	// -- helper classes --
+
+	/**
+	 * Moves Z plane z to offset + z, or reverses the planes when offset is 0.
+	 */
+	private static class Mover implements ColorTableRemapper.RemapAlgorithm {
+
+		private final int offset;
+
+		public Mover(final int offset) {
+			this.offset = offset;
+		}
+
+		@Override
+		public boolean isValidSourcePlane(final long i) {
+			return true;
+		}
+
+		@Override
+		public void remapPlanePosition(final long[] origPlaneDims,
+			final long[] origPlanePos, final long[] newPlanePos)
+		{
+			if (offset == 0) newPlanePos[0] = origPlaneDims[0] - 1 - origPlanePos[0];
+			else newPlanePos[0] = origPlanePos[0] + offset;
+		}
+	}
+
+	/** Drops one Z plane, moving the planes after it down one. */
+	private static class Dropper implements ColorTableRemapper.RemapAlgorithm {
+
+		private final long dropped;
+
+		public Dropper(final long dropped) {
+			this.dropped = dropped;
+		}
+
+		@Override
+		public boolean isValidSourcePlane(final long i) {
+			return i != dropped;
+		}
+
+		@Override
+		public void remapPlanePosition(final long[] origPlaneDims,
+			final long[] origPlanePos, final long[] newPlanePos)
+		{
+			newPlanePos[0] = origPlanePos[0] - (origPlanePos[0] > dropped ? 1 : 0);
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.typechange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PlanarTypeConverter}.
+ * 
+ * @author Barry DeZonia
+ */
+public class PlanarTypeConverterTest {
+
+	@Test
+	public void testConvertClamps() {
+		final ImgPlus<UnsignedShortType> input =
+			create(new UnsignedShortType(), 0, 200, 300, 65535);
+		final Img<UnsignedByteType> output =
+			PlanarTypeConverter.convert(input, new UnsignedByteType(),
+				new PlanarImgFactory<UnsignedByteType>(), null);
+		assertEquals(0, value(output, 0, 0), 0);
+		assertEquals(200, value(output, 1, 0), 0);
+		assertEquals(255, value(output, 0, 1), 0);
+		assertEquals(255, value(output, 1, 1), 0);
+	}
+
+	@Test
+	public void testConvertInPlace() {
+		final ImgPlus<ShortType> input = create(new ShortType(), -5, 0, 7, 32767);
+		final Object plane =
+			((PlanarImg<?, ?>) input.getImg()).getPlane(0).getCurrentStorageArray();
+		final Img<UnsignedShortType> output =
+			PlanarTypeConverter.convertInPlace(input, new UnsignedShortType(), null);
+		assertSame(plane, ((PlanarImg<?, ?>) output).getPlane(0)
+			.getCurrentStorageArray());
+		assertEquals(0, value(output, 0, 0), 0);
+		assertEquals(7, value(output, 0, 1), 0);
+		assertEquals(32767, value(output, 1, 1), 0);
+	}
+
+	@Test
+	public void testAverageChannels() {
+		final Img<FloatType> img =
+			new PlanarImgFactory<FloatType>().create(new long[] { 1, 1, 3 },
+				new FloatType());
+		final ImgPlus<FloatType> input =
+			new ImgPlus<FloatType>(img, "test", new AxisType[] { Axes.X, Axes.Y,
+				Axes.CHANNEL });
+		final RandomAccess<FloatType> access = input.randomAccess();
+		for (int c = 0; c < 3; c++) {
+			access.setPosition(c, 2);
+			access.get().setReal(10 * c + 1);
+		}
+		final Img<UnsignedByteType> output =
+			PlanarTypeConverter.averageChannels(input, new UnsignedByteType(),
+				new PlanarImgFactory<UnsignedByteType>(), new long[] { 1, 1 }, null);
+		assertEquals(11, value(output, 0, 0), 0);
+	}
+
+	// -- helpers --
+
+	/** Creates a 2 x 2 planar image holding the given values in raster order. */
+	private <T extends RealType<T> & NativeType<T>> ImgPlus<T>
+		create(final T type, final double... values)
+	{
+		final Img<T> img =
+			new PlanarImgFactory<T>().create(new long[] { 2, 2 }, type);
+		final RandomAccess<T> access = img.randomAccess();
+		for (int i = 0; i < values.length; i++) {
+			access.setPosition(i % 2, 0);
+			access.setPosition(i / 2, 1);
+			access.get().setReal(values[i]);
+		}
+		return new ImgPlus<T>(img);
+	}
+
+	private double value(final Img<? extends RealType<?>> img, final long x,
+		final long y)
+	{
+		final RandomAccess<? extends RealType<?>> access = img.randomAccess();
+		access.setPosition(x, 0);
+		access.setPosition(y, 1);
+		return access.get().getRealDouble();
+	}
+
+}
@@ -0,0 +1,380 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.script.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.script.ScriptException;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles single Java sources in memory using the {@link javax.tools} API.
+ * <p>
+ * Neither the source nor the class files touch the disk. The compiled classes
+ * are cached by a hash of the source and the class path, so that running an
+ * unchanged script again only needs to define its classes anew.
+ * </p>
+ * 
+ * @author Johannes Schindelin
+ */
+public class InMemoryCompiler {
+
+	private final static String JAVAC_TOOL = "com.sun.tools.javac.api.JavacTool";
+	private final static int MAX_CACHED = 32;
+
+	/** The class files of recently compiled sources, least recently used first. */
+	private final static Map<String, Map<String, byte[]>> cache =
+		new LinkedHashMap<String, Map<String, byte[]>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Map<String, byte[]>> eldest) {
+				return size() > MAX_CACHED;
+			}
+		};
+
+	private final JavaCompiler compiler;
+	private final ClassLoader parent;
+	private final String classPath;
+
+	/**
+	 * Makes a compiler whose classes see those of the given class loader.
+	 */
+	public InMemoryCompiler(final ClassLoader parent) {
+		this.parent = parent;
+		compiler = findCompiler();
+		classPath = getClassPath(parent);
+	}
+
+	/**
+	 * Returns whether an in-process compiler is available. Without one (e.g.
+	 * when running on a JRE) the caller needs to fall back to calling javac.
+	 */
+	public boolean isAvailable() {
+		return compiler != null;
+	}
+
+	/**
+	 * Compiles the given source (unless it was compiled before) and loads the
+	 * given class from it, in a class loader of its own.
+	 * 
+	 * @param className the fully qualified name of the class to load
+	 * @param source the Java source defining the class
+	 * @param err where to report compile errors; may be null
+	 * @throws UnresolvedSymbolException if the source refers to classes or
+	 *           packages not on the class path, e.g. because it needs the
+	 *           dependencies of a Maven project; nothing is reported to
+	 *           {@code err} then
+	 * @throws ScriptException if the source does not compile
+	 */
+	public Class<?> compile(final String className, final String source,
+			final PrintStream err) throws ScriptException,
+			ClassNotFoundException {
+		final String key = hash(className, source);
+		Map<String, byte[]> classes;
+		synchronized (cache) {
+			classes = cache.get(key);
+		}
+		if (classes == null) {
+			classes = doCompile(className, source, err);
+			synchronized (cache) {
+				cache.put(key, classes);
+			}
+		}
+		return new ByteArrayClassLoader(classes, parent).loadClass(className);
+	}
+
+	/** Forgets all compiled classes. */
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/** Returns the number of sources whose classes are cached. */
+	static int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	// -- helpers --
+
+	private Map<String, byte[]> doCompile(final String className,
+			final String source, final PrintStream err) throws ScriptException {
+		final DiagnosticCollector<JavaFileObject> diagnostics =
+			new DiagnosticCollector<JavaFileObject>();
+		final StandardJavaFileManager standard =
+			compiler.getStandardFileManager(diagnostics, null, null);
+		final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		final JavaFileManager fileManager = new InMemoryFileManager(standard, classes);
+
+		// NB: annotation processors would write their output to the disk
+		final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager,
+			diagnostics, Arrays.asList("-classpath", classPath, "-proc:none", "-g"),
+			null, Arrays.asList(new SourceFile(className, source)));
+		final boolean success = task.call();
+		try {
+			fileManager.close();
+		} catch (IOException e) {
+			// nothing was written to disk; ignore
+		}
+
+		final StringBuilder messages = new StringBuilder();
+		boolean unresolved = false;
+		for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			messages.append(diagnostic.getKind()).append(": line ")
+				.append(diagnostic.getLineNumber()).append(": ")
+				.append(diagnostic.getMessage(null)).append('\n');
+			if (isUnresolved(diagnostic)) unresolved = true;
+		}
+		if (!success && unresolved) {
+			throw new UnresolvedSymbolException("Could not resolve symbols in " +
+				className + ":\n" + messages);
+		}
+		if (err != null && messages.length() > 0) err.print(messages);
+		if (!success) {
+			throw new ScriptException("Could not compile " + className + ":\n" + messages);
+		}
+		return classes;
+	}
+
+	private static JavaCompiler findCompiler() {
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler != null) return compiler;
+		// the JDK's tools.jar (or javac.jar) might be on the class path of a JRE
+		try {
+			final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+			return (JavaCompiler)loader.loadClass(JAVAC_TOOL).newInstance();
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns whether the diagnostic reports a symbol or package that could not
+	 * be found. The codes are those of javac; other compilers never match.
+	 */
+	private static boolean isUnresolved(
+		final Diagnostic<? extends JavaFileObject> diagnostic)
+	{
+		if (diagnostic.getKind() != Diagnostic.Kind.ERROR) return false;
+		final String code = diagnostic.getCode();
+		if (code == null) return false;
+		return code.startsWith("compiler.err.cant.resolve") ||
+			code.equals("compiler.err.doesnt.exist");
+	}
+
+	static String getClassPath(final ClassLoader classLoader) {
+		final StringBuilder builder = new StringBuilder();
+		for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+			if (loader instanceof URLClassLoader) {
+				for (final URL url : ((URLClassLoader)loader).getURLs()) {
+					if (url.getProtocol().equals("file")) {
+						if (builder.length() > 0) builder.append(File.pathSeparator);
+						builder.append(toFile(url).getPath());
+					}
+				}
+			}
+		}
+		final String systemClassPath = System.getProperty("java.class.path");
+		if (systemClassPath != null && systemClassPath.length() > 0) {
+			if (builder.length() > 0) builder.append(File.pathSeparator);
+			builder.append(systemClassPath);
+		}
+		return builder.toString();
+	}
+
+	/** Returns the file of a file: URL, decoding escapes such as %20. */
+	private static File toFile(final URL url) {
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			// NB: URLs made by File.toURL() are not escaped at all
+			return new File(url.getPath());
+		} catch (IllegalArgumentException e) {
+			// e.g. UNC paths, whose URIs have an authority component
+			return new File(url.getPath());
+		}
+	}
+
+	private String hash(final String className, final String source) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(className.getBytes("UTF-8"));
+			digest.update((byte)0);
+			digest.update(classPath.getBytes("UTF-8"));
+			digest.update((byte)0);
+			digest.update(source.getBytes("UTF-8"));
+			final StringBuilder builder = new StringBuilder();
+			for (final byte b : digest.digest()) {
+				builder.append(String.format("%02x", b & 0xff));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static URI toURI(final String className, final Kind kind) {
+		return URI.create("memory:///" + className.replace('.', '/') + kind.extension);
+	}
+
+	// -- helper classes --
+
+	/**
+	 * Thrown when a source does not compile because it refers to classes or
+	 * packages the compiler cannot find.
+	 */
+	public static class UnresolvedSymbolException extends ScriptException {
+
+		private static final long serialVersionUID = 1L;
+
+		public UnresolvedSymbolException(final String message) {
+			super(message);
+		}
+	}
+
+	/** A source file held in a String. */
+	private static class SourceFile extends SimpleJavaFileObject {
+
+		private final String source;
+
+		public SourceFile(final String className, final String source) {
+			super(toURI(className, Kind.SOURCE), Kind.SOURCE);
+			this.source = source;
+		}
+
+		@Override
+		public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+
+	/** A class file written into a map once the compiler is done with it. */
+	private static class ClassFile extends SimpleJavaFileObject {
+
+		private final String className;
+		private final Map<String, byte[]> classes;
+
+		public ClassFile(final String className, final Map<String, byte[]> classes) {
+			super(toURI(className, Kind.CLASS), Kind.CLASS);
+			this.className = className;
+			this.classes = classes;
+		}
+
+		@Override
+		public OutputStream openOutputStream() {
+			return new ByteArrayOutputStream() {
+
+				@Override
+				public void close() throws IOException {
+					super.close();
+					classes.put(className, toByteArray());
+				}
+			};
+		}
+	}
+
+	/** Lets the compiler read class files as usual but write them to memory. */
+	private static class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+		private final Map<String, byte[]> classes;
+
+		public InMemoryFileManager(final StandardJavaFileManager fileManager,
+				final Map<String, byte[]> classes) {
+			super(fileManager);
+			this.classes = classes;
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(final Location location,
+				final String className, final Kind kind, final FileObject sibling)
+				throws IOException {
+			if (kind != Kind.CLASS) {
+				return super.getJavaFileForOutput(location, className, kind, sibling);
+			}
+			return new ClassFile(className, classes);
+		}
+	}
+
+	/** Defines classes from compiled class files. */
+	private static class ByteArrayClassLoader extends ClassLoader {
+
+		private final Map<String, byte[]> classes;
+
+		public ByteArrayClassLoader(final Map<String, byte[]> classes, final ClassLoader parent) {
+			super(parent);
+			this.classes = classes;
+		}
+
+		@Override
+		protected Class<?> findClass(final String name) throws ClassNotFoundException {
+			final byte[] bytes = classes.get(name);
+			if (bytes == null) throw new ClassNotFoundException(name);
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+}
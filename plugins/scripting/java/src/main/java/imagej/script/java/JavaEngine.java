@@ -123,56 +123,31 @@ public void println(final String line) throws IOException {
 		}
 
 		try {
-			boolean verbose = "true".equals(get("verbose"));
-			boolean debug = "true".equals(get("debug"));
-			BuildEnvironment env = new BuildEnvironment(err, true, verbose, debug);
-			final MavenProject project;
-			String mainClass = null;
-
 			final String path = (String)get(FILENAME);
-			File file = path == null ? null : new File(path);
-			if (file == null || !file.exists()) try {
-				project = writeTemporaryProject(env, reader);
-				mainClass = project.getMainClass();
-			} catch (Exception e) {
-				throw new ScriptException(e);
-			} else {
-				if (file.getName().equals("pom.xml")) {
-					project = env.parse(file, null);
-				} else {
-					mainClass = getFullClassName(file);
-					project = getMavenProject(env, file, mainClass);
-				}
-			}
-
-			project.build(true);
-			if (mainClass == null) {
-				mainClass = project.getMainClass();
-				if (mainClass == null) {
-					throw new ScriptException("No main class found for file " + file);
-				}
+			final File file = path == null ? null : new File(path);
+			Class<?> clazz = null;
+
+			// compile scripts that are not part of a project in memory
+			if (file == null || !file.exists()) {
+				final String source = readAll(reader);
+				clazz = compileInMemory(source, err);
+				if (clazz == null) reader = new StringReader(source);
+			} else if (isStandalone(file)) {
+				clazz = compileInMemory(readAll(new FileReader(file)), err);
 			}
 
-			// make class loader
-			String[] paths = project.getClassPath(false).split(File.pathSeparator);
-			URL[] urls = new URL[paths.length];
-			for (int i = 0; i < urls.length; i++)
-				urls[i] = new URL("file:" + paths[i] + (paths[i].endsWith(".jar") ? "" : "/"));
-			URLClassLoader classLoader = new URLClassLoader(urls, getClass().getClassLoader());
-
-			// needed for sezpoz
-			Thread.currentThread().setContextClassLoader(classLoader);
+			if (clazz == null) clazz = build(file, reader, err);
 
 			// launch main class
-			final Class<?> clazz = classLoader.loadClass(mainClass);
+			final Class<?> mainClass = clazz;
 			if (Command.class.isAssignableFrom(clazz)) {
 				final Context context = (Context)get(ScriptService.CONTEXT);
 				final Plugin annotation = clazz.getAnnotation(Plugin.class);
-				final CommandInfo info = new CommandInfo(mainClass, annotation) {
+				final CommandInfo info = new CommandInfo(clazz.getName(), annotation) {
 
 					@Override
 					public Class<? extends Command> loadClass() {
-						return (Class<? extends Command>) clazz;
+						return (Class<? extends Command>) mainClass;
 					}
 				};
 
@@ -194,6 +169,110 @@ public Class<? extends Command> loadClass() {
 		return null;
 	}
 
+	/**
+	 * Builds the script (or the project it belongs to) with MiniMaven and loads
+	 * its main class.
+	 */
+	private Class<?> build(final File file, final Reader reader,
+			final PrintStream err) throws Exception {
+		boolean verbose = "true".equals(get("verbose"));
+		boolean debug = "true".equals(get("debug"));
+		BuildEnvironment env = new BuildEnvironment(err, true, verbose, debug);
+		final MavenProject project;
+		String mainClass = null;
+
+		if (file == null || !file.exists()) try {
+			project = writeTemporaryProject(env, reader);
+			mainClass = project.getMainClass();
+		} catch (Exception e) {
+			throw new ScriptException(e);
+		} else {
+			if (file.getName().equals("pom.xml")) {
+				project = env.parse(file, null);
+			} else {
+				mainClass = getFullClassName(file);
+				project = getMavenProject(env, file, mainClass);
+			}
+		}
+
+		project.build(true);
+		if (mainClass == null) {
+			mainClass = project.getMainClass();
+			if (mainClass == null) {
+				throw new ScriptException("No main class found for file " + file);
+			}
+		}
+
+		// make class loader
+		String[] paths = project.getClassPath(false).split(File.pathSeparator);
+		URL[] urls = new URL[paths.length];
+		for (int i = 0; i < urls.length; i++)
+			urls[i] = new URL("file:" + paths[i] + (paths[i].endsWith(".jar") ? "" : "/"));
+		URLClassLoader classLoader = new URLClassLoader(urls, getClass().getClassLoader());
+
+		// needed for sezpoz
+		Thread.currentThread().setContextClassLoader(classLoader);
+
+		return classLoader.loadClass(mainClass);
+	}
+
+	/**
+	 * Compiles a script with the in-process compiler and loads its main class.
+	 * Returns null if there is no in-process compiler, no public class in the
+	 * source or the source refers to classes the in-process compiler cannot
+	 * see, in which case the script needs to be built by MiniMaven.
+	 */
+	private Class<?> compileInMemory(final String source, final PrintStream err)
+			throws ScriptException, IOException, ClassNotFoundException {
+		final InMemoryCompiler compiler = new InMemoryCompiler(getClass().getClassLoader());
+		if (!compiler.isAvailable()) return null;
+		final String mainClass = getFullClassName(new StringReader(source), "");
+		if (mainClass.equals("") || mainClass.endsWith(".")) return null;
+		final Class<?> clazz;
+		try {
+			clazz = compiler.compile(mainClass, source, err);
+		} catch (InMemoryCompiler.UnresolvedSymbolException e) {
+			// MiniMaven might know the dependencies
+			return null;
+		}
+
+		// needed for sezpoz
+		Thread.currentThread().setContextClassLoader(clazz.getClassLoader());
+
+		return clazz;
+	}
+
+	/**
+	 * Returns whether the given file is a single source file, i.e. neither a
+	 * POM nor a source of a Maven project, and has no other sources next to it
+	 * that it might depend on.
+	 */
+	private static boolean isStandalone(final File file) throws IOException {
+		if (!file.getName().endsWith(".java")) return false;
+		final String mainClass = getFullClassName(file);
+		if (findPOM(file, mainClass) != null) return false;
+		final File[] siblings = file.getAbsoluteFile().getParentFile().listFiles();
+		if (siblings == null) return false;
+		for (final File sibling : siblings) {
+			if (sibling.getName().endsWith(".java") && !sibling.getName().equals(file.getName())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String readAll(final Reader reader) throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		final BufferedReader in = new BufferedReader(reader);
+		for (;;) {
+			final String line = in.readLine();
+			if (line == null) break;
+			builder.append(line).append('\n');
+		}
+		in.close();
+		return builder.toString();
+	}
+
 	private MavenProject getMavenProject(final BuildEnvironment env,
 			final File file, final String mainClass) throws IOException,
 			ParserConfigurationException, SAXException, ScriptException,
@@ -203,15 +282,29 @@ private MavenProject getMavenProject(final BuildEnvironment env,
 		if (!path.replace(File.separatorChar, '.').endsWith("." + mainClass + ".java")) {
 			throw new ScriptException("Class " + mainClass + " in invalid directory: " + path);
 		}
+		final File pom = findPOM(file, mainClass);
+		if (pom != null) return env.parse(pom, null);
+		final File rootDirectory = file.getParentFile();
+		final String artifactId = fakeArtifactId(env, file.getName());
+		return fakePOM(env, rootDirectory, artifactId, mainClass);
+	}
+
+	/**
+	 * Returns the pom.xml of the Maven project whose sources contain the given
+	 * file, or null if it is not part of one.
+	 */
+	private static File findPOM(final File file, final String mainClass) {
+		String path = file.getAbsolutePath();
+		if (!path.replace(File.separatorChar, '.').endsWith("." + mainClass + ".java")) {
+			return null;
+		}
 		path = path.substring(0, path.length() - mainClass.length() - 5);
 		if (path.replace(File.separatorChar, '/').endsWith("/src/main/java/")) {
 			path = path.substring(0, path.length() - "src/main/java/".length());
 			final File pom = new File(path + "pom.xml");
-			if (pom.exists()) return env.parse(pom, null);
+			if (pom.exists()) return pom;
 		}
-		final File rootDirectory = file.getParentFile();
-		final String artifactId = fakeArtifactId(env, file.getName());
-		return fakePOM(env, rootDirectory, artifactId, mainClass);
+		return null;
 	}
 
 	private static String getFullClassName(final File file) throws IOException {
@@ -220,14 +313,18 @@ private static String getFullClassName(final File file) throws IOException {
 			throw new UnsupportedOperationException();
 		}
 		name = name.substring(0, name.length() - 5);
+		return getFullClassName(new FileReader(file), name);
+	}
 
+	private static String getFullClassName(final Reader source, String name) throws IOException {
 		String packageName = "";
 		final Pattern packagePattern = Pattern.compile("package ([a-zA-Z0-9_.]*).*");
 		final Pattern classPattern = Pattern.compile(".*public class ([a-zA-Z0-9_]*).*");
-		final BufferedReader reader = new BufferedReader(new FileReader(file));
+		final BufferedReader reader = new BufferedReader(source);
 		for (;;) {
-			String line = reader.readLine().trim();
+			String line = reader.readLine();
 			if (line == null) break;
+			line = line.trim();
 		outerLoop:
 			while (line.startsWith("/*")) {
 				int end = line.indexOf("*/", 2);
@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.script.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.script.ScriptException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the in-memory compilation of Java 'scripts'.
+ * 
+ * @author Johannes Schindelin
+ */
+public class InMemoryCompilerTest {
+
+	private final static String SOURCE = "package pinky.brain;\n" +
+			"public class Narf {\n" +
+			"\tpublic static String poit() {\n" +
+			"\t\treturn \"Zort!\";\n" +
+			"\t}\n" +
+			"}";
+
+	private InMemoryCompiler compiler;
+
+	@Before
+	public void assumeCompiler() {
+		compiler = new InMemoryCompiler(getClass().getClassLoader());
+		assumeTrue(compiler.isAvailable());
+		InMemoryCompiler.clearCache();
+	}
+
+	@Test
+	public void testCompile() throws Exception {
+		final Class<?> clazz = compiler.compile("pinky.brain.Narf", SOURCE, null);
+		assertEquals("Zort!", clazz.getMethod("poit").invoke(null));
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		final Class<?> first = compiler.compile("pinky.brain.Narf", SOURCE, null);
+		final Class<?> second = compiler.compile("pinky.brain.Narf", SOURCE, null);
+		assertEquals(1, InMemoryCompiler.getCacheSize());
+		// every run gets classes of its own
+		assertNotSame(first, second);
+		assertEquals("Zort!", second.getMethod("poit").invoke(null));
+
+		compiler.compile("pinky.brain.Narf", SOURCE.replace("Zort", "Troz"), null);
+		assertEquals(2, InMemoryCompiler.getCacheSize());
+	}
+
+	@Test
+	public void testCompileError() throws Exception {
+		boolean result = false;
+		try {
+			compiler.compile("pinky.brain.Narf", SOURCE.replace("return", "retrun"), null);
+		} catch (ScriptException e) {
+			// a syntax error is no reason to try MiniMaven
+			assertFalse(e instanceof InMemoryCompiler.UnresolvedSymbolException);
+			result = true;
+		}
+		assertTrue(result);
+		assertEquals(0, InMemoryCompiler.getCacheSize());
+	}
+
+	@Test
+	public void testUnresolvedSymbol() throws Exception {
+		boolean result = false;
+		try {
+			compiler.compile("pinky.brain.Narf", SOURCE.replace("public class",
+				"import acme.Anvil;\npublic class"), null);
+		} catch (InMemoryCompiler.UnresolvedSymbolException e) {
+			result = true;
+		}
+		assertTrue(result);
+		assertEquals(0, InMemoryCompiler.getCacheSize());
+	}
+
+	@Test
+	public void testClassPathDecodesEscapes() throws Exception {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "with space");
+		final URL url = dir.toURI().toURL();
+		assertTrue(url.toString().contains("%20"));
+		final String classPath =
+			InMemoryCompiler.getClassPath(new URLClassLoader(new URL[] { url }, null));
+		assertEquals(dir.getAbsolutePath(), classPath.split(File.pathSeparator)[0]);
+	}
+
+}
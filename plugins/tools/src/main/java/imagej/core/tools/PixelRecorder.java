@@ -49,6 +49,7 @@
 import imagej.util.Colors;
 import imagej.util.IntCoords;
 import imagej.util.RealCoords;
+import imagej.util.RealRect;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -156,7 +157,15 @@ public boolean record(final MsEvent evt) {
 					imageDisplayService.getActiveDatasetView(imageDisplay);
 			ARGBScreenImage screenImage = view.getScreenImage();
 			int[] argbPixels = view.getScreenImage().getData();
-			int pixelIndex = (int) (cy*screenImage.dimension(0) + cx);
+			// NB - the screen image may only cover the visible part of the plane
+			RealRect bounds = view.getScreenImageBounds();
+			long w = screenImage.dimension(0);
+			long h = screenImage.dimension(1);
+			long sx = (long) Math.floor((cx - bounds.x) * w / bounds.width);
+			long sy = (long) Math.floor((cy - bounds.y) * h / bounds.height);
+			sx = Math.max(0, Math.min(w - 1, sx));
+			sy = Math.max(0, Math.min(h - 1, sy));
+			int pixelIndex = (int) (sy*w + sx);
 			int argb = argbPixels[pixelIndex];
 			int r = (argb >> 16) & 0xff;
 			int g = (argb >>  8) & 0xff;
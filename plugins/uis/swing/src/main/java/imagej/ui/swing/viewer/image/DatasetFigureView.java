@@ -38,6 +38,7 @@
 import imagej.data.Dataset;
 import imagej.data.display.DatasetView;
 import imagej.data.display.event.DataViewUpdatedEvent;
+import imagej.util.RealRect;
 import imagej.util.awt.AWTImageTools;
 
 import java.awt.Image;
@@ -95,8 +96,9 @@ public void update() {
 		log.debug("Updating image figure: " + this);
 		final Image image = datasetView.getScreenImage().image();
 		final BufferedImage bufImage = AWTImageTools.makeBuffered(image);
-		figure.setBounds(new Rectangle2D.Double(0, 0, bufImage.getWidth(),
-			bufImage.getHeight()));
+		final RealRect bounds = datasetView.getScreenImageBounds();
+		figure.setBounds(new Rectangle2D.Double(bounds.x, bounds.y, bounds.width,
+			bounds.height));
 		figure.setBufferedImage(bufImage);
 	}
 
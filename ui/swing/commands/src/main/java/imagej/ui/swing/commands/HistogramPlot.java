@@ -38,11 +38,13 @@
 import imagej.command.Command;
 import imagej.command.ContextCommand;
 import imagej.data.Dataset;
+import imagej.data.autoscale.DataRange;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
 import imagej.data.display.OverlayService;
 import imagej.data.event.DatasetRestructuredEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.histogram.HistogramService;
 import imagej.ui.UIService;
 
 import java.awt.BasicStroke;
@@ -60,7 +62,6 @@
 import javax.swing.JTextArea;
 import javax.swing.WindowConstants;
 
-import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
 import net.imglib2.algorithm.histogram.Histogram1d;
 import net.imglib2.algorithm.histogram.Real1dBinMapper;
@@ -129,6 +130,9 @@
 	@Parameter
 	private OverlayService overlayService;
 
+	@Parameter
+	private HistogramService histogramService;
+
 	@Parameter
 	private ImageDisplay display;
 
@@ -436,19 +440,11 @@ private static final void setBackgroundDefault(final JFreeChart chart) {
 	}
 
 	private void calcBinInfo() {
-		// calc the data ranges - 1st pass thru data
-		dataMin = Double.POSITIVE_INFINITY;
-		dataMax = Double.NEGATIVE_INFINITY;
-		Cursor<? extends RealType<?>> cursor = dataset.getImgPlus().cursor();
-		while (cursor.hasNext()) {
-			double val = cursor.next().getRealDouble();
-			if (val < dataMin) dataMin = val;
-			if (val > dataMax) dataMax = val;
-		}
-		if (dataMin > dataMax) {
-			dataMin = 0;
-			dataMax = 0;
-		}
+		// calc the data ranges - shared with other users of the data and only
+		// recalculated for planes that changed
+		DataRange range = histogramService.getRange(dataset);
+		dataMin = range.getMin();
+		dataMax = range.getMax();
 		double dataRange = dataMax - dataMin;
 		if (dataset.isInteger()) {
 			dataRange += 1;
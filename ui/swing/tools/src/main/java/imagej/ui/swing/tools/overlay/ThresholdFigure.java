@@ -39,19 +39,23 @@
 import imagej.data.display.ImageDisplay;
 import imagej.data.overlay.ThresholdOverlay;
 import imagej.display.Displayable;
+import imagej.util.ColorRGB;
 import imagej.util.awt.AWTColors;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Point2D.Double;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 import net.imglib2.Cursor;
 import net.imglib2.meta.AxisType;
 import net.imglib2.ops.pointset.HyperVolumePointSet;
-import net.imglib2.ops.pointset.PointSet;
 
 import org.jhotdraw.draw.AbstractAttributedFigure;
 import org.jhotdraw.draw.AttributeKeys;
@@ -70,8 +74,15 @@ public class ThresholdFigure extends AbstractAttributedFigure implements
 	private final ImageDisplay display;
 	private final Dataset dataset;
 	private final ThresholdOverlay overlay;
-	private final Rectangle2D.Double rect;
 	private double[] tmpPos;
+
+	// cached rendering of the viewed plane and the state it was built from
+	private BufferedImage mask;
+	private byte[] classes;
+	private long[] maskPlanePos;
+	private double maskMin, maskMax;
+	private long maskDataVersion;
+	private int[] maskColors;
 	
 	public ThresholdFigure(ImageDisplay display, Dataset dataset,
 		ThresholdOverlay overlay)
@@ -79,7 +90,6 @@ public ThresholdFigure(ImageDisplay display, Dataset dataset,
 		this.display = display;
 		this.dataset = dataset;
 		this.overlay = overlay;
-		this.rect = new Rectangle2D.Double();
 		setAttributeEnabled(AttributeKeys.FILL_COLOR, true);
 		setAttributeEnabled(AttributeKeys.STROKE_COLOR, false);
 		setAttributeEnabled(AttributeKeys.TEXT_COLOR, false);
@@ -147,47 +157,33 @@ public void setBounds(Double anchor, Double lead) {
 
 	// NB - not using a ConditionalPointSet directly. ConditionalPointSet may
 	// encompass a huge hypervolume and we are only interested in the points in
-	// the displayed plane. So we define a smaller hypervolume of just the viewed
-	// plane, iterate it and then classify the point directly. This is
-	// much faster for display purposes.
+	// the displayed plane. So the viewed plane is classified in one bulk pass
+	// into a cached ARGB image which is then drawn in a single call. The cache
+	// is only rebuilt when the range, colors, plane or data change. Planes too
+	// large for a single image are classified and drawn a point at a time.
 
 	@Override
 	protected void drawFill(final Graphics2D g) {
-		final Color origC = g.getColor();
-		final Color withinColor = AWTColors.getColor(overlay.getColorWithin());
-		final Color lessColor = AWTColors.getColor(overlay.getColorLess());
-		final Color greaterColor = AWTColors.getColor(overlay.getColorGreater());
-		Color color = null;
-		Color lastColor = null;
-		rect.width = 1;
-		rect.height = 1;
-		// only iterate currently viewed plane
-		Cursor<long[]> cursor = getViewedPlane().cursor();
-		while (cursor.hasNext()) {
-			long[] pos = cursor.next();
-			// only draw points that satisfy the threshold conditions
-			int classification = overlay.classify(pos);
-			if (classification == Integer.MAX_VALUE) { // NaN data value
-				color = null;
-			}
-			else if (classification < 0) {
-				color = lessColor;
-			}
-			else if (classification > 0) {
-				color = greaterColor;
-			}
-			else color = withinColor;
-			if (color != null) {
-				if (color != lastColor) {
-					g.setColor(color);
-					lastColor = color;
-				}
-				rect.x = pos[0];
-				rect.y = pos[1];
-				g.fill(rect);
-			}
+		final long[] planePos = getPlanePosition();
+		if (!overlay.canClassifyPlane()) {
+			mask = null;
+			classes = null;
+			drawPoints(g, planePos);
+			return;
+		}
+		final int[] colors = {
+			argb(overlay.getColorLess()),
+			argb(overlay.getColorWithin()),
+			argb(overlay.getColorGreater()) };
+		if (isMaskStale(planePos, colors)) buildMask(planePos, colors);
+		final Object origHint =
+			g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+			RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g.drawImage(mask, 0, 0, null);
+		if (origHint != null) {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, origHint);
 		}
-		g.setColor(origC);
 	}
 
 	// -- Displayable --
@@ -202,15 +198,89 @@ public void draw() {
 
 	// -- helpers --
 
-	private PointSet getViewedPlane() {
-		long[] pt1 = new long[dataset.numDimensions()];
-		long[] pt2 = pt1.clone();
+	private long[] getPlanePosition() {
+		final long[] planePos = new long[dataset.numDimensions() - 2];
+		for (int i = 0; i < planePos.length; i++) {
+			AxisType axisType = dataset.axis(i + 2);
+			planePos[i] = display.getLongPosition(axisType);
+		}
+		return planePos;
+	}
+
+	/** Fills each classified point of the viewed plane with its color. */
+	private void drawPoints(final Graphics2D g, final long[] planePos) {
+		final Color origC = g.getColor();
+		final Color withinColor = AWTColors.getColor(overlay.getColorWithin());
+		final Color lessColor = AWTColors.getColor(overlay.getColorLess());
+		final Color greaterColor = AWTColors.getColor(overlay.getColorGreater());
+		final Rectangle2D.Double rect = new Rectangle2D.Double(0, 0, 1, 1);
+		final long[] pt1 = new long[dataset.numDimensions()];
+		final long[] pt2 = new long[pt1.length];
 		pt2[0] = dataset.dimension(0) - 1;
 		pt2[1] = dataset.dimension(1) - 1;
 		for (int i = 2; i < pt1.length; i++) {
-			AxisType axisType = dataset.axis(i);
-			pt1[i] = pt2[i] = display.getLongPosition(axisType);
+			pt1[i] = pt2[i] = planePos[i - 2];
+		}
+		Color lastColor = null;
+		final Cursor<long[]> cursor = new HyperVolumePointSet(pt1, pt2).cursor();
+		while (cursor.hasNext()) {
+			final long[] pos = cursor.next();
+			final int classification = overlay.classify(pos);
+			// NaN data values are left transparent
+			if (classification == Integer.MAX_VALUE) continue;
+			final Color color;
+			if (classification < 0) color = lessColor;
+			else if (classification > 0) color = greaterColor;
+			else color = withinColor;
+			if (color == null) continue;
+			if (color != lastColor) {
+				g.setColor(color);
+				lastColor = color;
+			}
+			rect.x = pos[0];
+			rect.y = pos[1];
+			g.fill(rect);
 		}
-		return new HyperVolumePointSet(pt1, pt2);
+		g.setColor(origC);
+	}
+
+	private boolean isMaskStale(final long[] planePos, final int[] colors) {
+		if (mask == null) return true;
+		if (mask.getWidth() != dataset.dimension(0)) return true;
+		if (mask.getHeight() != dataset.dimension(1)) return true;
+		if (maskMin != overlay.getRangeMin()) return true;
+		if (maskMax != overlay.getRangeMax()) return true;
+		if (maskDataVersion != overlay.getDataVersion()) return true;
+		if (!Arrays.equals(maskPlanePos, planePos)) return true;
+		return !Arrays.equals(maskColors, colors);
+	}
+
+	private void buildMask(final long[] planePos, final int[] colors) {
+		final int width = (int) dataset.dimension(0);
+		final int height = (int) dataset.dimension(1);
+		maskMin = overlay.getRangeMin();
+		maskMax = overlay.getRangeMax();
+		maskDataVersion = overlay.getDataVersion();
+		maskPlanePos = planePos;
+		maskColors = colors;
+		classes = overlay.classify(planePos, classes);
+		if (mask == null || mask.getWidth() != width ||
+			mask.getHeight() != height)
+		{
+			mask = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		}
+		final int[] pixels =
+			((DataBufferInt) mask.getRaster().getDataBuffer()).getData();
+		for (int i = 0; i < pixels.length; i++) {
+			final byte c = classes[i];
+			// NaN data values are left transparent
+			pixels[i] = (c == ThresholdOverlay.NAN_CLASS) ? 0 : colors[c + 1];
+		}
+	}
+
+	/** Returns an opaque ARGB value for a color, or transparent for null. */
+	private int argb(final ColorRGB color) {
+		if (color == null) return 0;
+		return AWTColors.getColor(color).getRGB();
 	}
 }